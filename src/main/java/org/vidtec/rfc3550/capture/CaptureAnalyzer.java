@@ -0,0 +1,505 @@
+package org.vidtec.rfc3550.capture;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import org.vidtec.rfc3550.rtp.RTPPacketView;
+
+/**
+ * Analyzes the RTP streams of a capture file (rtpdump, pcap or pcapng) in parallel, giving a
+ * {@link StreamSummary} per ssrc.
+ *
+ * The file is split into ranges of whole records by stepping over the record headers only (record boundaries
+ * cannot be found from an arbitrary offset without guessing). Each range is submitted to a fork-join pool as
+ * soon as its end is found, so its packets are decoded and summarized while the rest of the file is still being
+ * split, and the summaries of consecutive ranges are merged in file order.
+ *
+ *   final CaptureAnalyzer analyzer = CaptureAnalyzer.builder().withClockRate(8000).build();
+ *   final StreamSummary summary = analyzer.analyze(path).get(ssrc);
+ *
+ * NB: RTCP packets, and pcap datagrams that are not valid RTP packets, are ignored.
+ * NB: This class is thread-safe, the same analyzer can analyze several files at once.
+ */
+public final class CaptureAnalyzer
+{
+
+	/** The default size of a range of the file. */
+	private static final long DEFAULT_RANGE_SIZE = 1L << 26;
+
+
+	/** The clock rate of the streams in Hz. */
+	private final int clockRate;
+
+	/** The minimum size of a range of the file. */
+	private final long rangeSize;
+
+	/** The pool to analyze ranges on. */
+	private final ForkJoinPool pool;
+
+	/** The ports to accept in pcap files, or null to accept all. */
+	private final int[] ports;
+
+
+	/**
+	 * Create an analyzer.
+	 *
+	 * @param builder The builder instance to construct an analyzer from.
+	 *
+	 * @throws IllegalArgumentException If any of the values are invalid.
+	 */
+	private CaptureAnalyzer(final Builder builder)
+	{
+		if (builder.clockRate <= 0)
+		{
+			throw new IllegalArgumentException("Expected valid clock rate not " + builder.clockRate);
+		}
+		if (builder.rangeSize <= 0)
+		{
+			throw new IllegalArgumentException("Expected valid range size not " + builder.rangeSize);
+		}
+		if (builder.pool == null)
+		{
+			throw new IllegalArgumentException("pool cannot be null");
+		}
+		if (builder.ports != null)
+		{
+			// Validate the ports now, rather than on each file.
+			PcapReader.builder().withPorts(builder.ports);
+		}
+
+		this.clockRate = builder.clockRate;
+		this.rangeSize = builder.rangeSize;
+		this.pool = builder.pool;
+		this.ports = builder.ports;
+	}
+
+
+	/**
+	 * Analyze a capture file.
+	 *
+	 * @param path The file to analyze.
+	 * @return The summary of each stream, by ssrc.
+	 *
+	 * @throws IOException If there is an I/O error reading the file.
+	 * @throws IllegalArgumentException If the path is null, or the file is not valid.
+	 */
+	public Map<Long, StreamSummary> analyze(final Path path) throws IOException
+	{
+		if (path == null)
+		{
+			throw new IllegalArgumentException("path cannot be null");
+		}
+
+		final List<ForkJoinTask<Map<Long, StreamSummary>>> tasks = new ArrayList<>();
+		if (isRtpDump(path))
+		{
+			try (RTPDumpReader reader = RTPDumpReader.open(path))
+			{
+				try
+				{
+					RTPDumpReader range = reader.range();
+					long start = reader.position();
+					while (reader.next())
+					{
+						if (reader.position() - start >= rangeSize)
+						{
+							range.limit(reader.position());
+							tasks.add(pool.submit(new RangeTask(analyzer(range))));
+							range = reader.range();
+							start = reader.position();
+						}
+					}
+					tasks.add(pool.submit(new RangeTask(analyzer(range))));
+
+					return merge(tasks);
+				}
+				catch (IOException | RuntimeException e)
+				{
+					cancel(tasks);
+					throw e;
+				}
+			}
+		}
+
+		try (PcapReader reader = PcapReader.builder().withPorts(ports).open(path))
+		{
+			try
+			{
+				PcapReader range = reader.range();
+				long start = reader.position();
+				while (reader.skip())
+				{
+					if (reader.position() - start >= rangeSize)
+					{
+						range.limit(reader.position());
+						tasks.add(pool.submit(new RangeTask(analyzer(range))));
+						range = reader.range();
+						start = reader.position();
+					}
+				}
+				tasks.add(pool.submit(new RangeTask(analyzer(range))));
+
+				return merge(tasks);
+			}
+			catch (IOException | RuntimeException e)
+			{
+				cancel(tasks);
+				throw e;
+			}
+		}
+	}
+
+
+	/**
+	 * Wait for the analysis of each range, and merge their summaries in file order.
+	 *
+	 * @param tasks The tasks of the ranges, in file order.
+	 * @return The summary of each stream, by ssrc.
+	 *
+	 * @throws IOException If there is an I/O error reading the file.
+	 */
+	private static Map<Long, StreamSummary> merge(final List<ForkJoinTask<Map<Long, StreamSummary>>> tasks) throws IOException
+	{
+		try
+		{
+			final Map<Long, StreamSummary> streams = new TreeMap<>();
+			for (final ForkJoinTask<Map<Long, StreamSummary>> task : tasks)
+			{
+				for (final StreamSummary summary : task.join().values())
+				{
+					final StreamSummary existing = streams.get(summary.ssrc());
+					if (existing == null)
+					{
+						streams.put(summary.ssrc(), summary);
+					}
+					else
+					{
+						existing.merge(summary);
+					}
+				}
+			}
+
+			return Collections.unmodifiableMap(streams);
+		}
+		catch (UncheckedIOException e)
+		{
+			throw e.getCause();
+		}
+	}
+
+
+	/**
+	 * Cancel the analysis of the ranges, and wait for any that have started.
+	 * NB: Ranges read the file of the reader, so must finish before it is closed.
+	 *
+	 * @param tasks The tasks of the ranges.
+	 */
+	private static void cancel(final List<ForkJoinTask<Map<Long, StreamSummary>>> tasks)
+	{
+		for (final ForkJoinTask<?> task : tasks)
+		{
+			task.cancel(false);
+		}
+		for (final ForkJoinTask<?> task : tasks)
+		{
+			task.quietlyJoin();
+		}
+	}
+
+
+	/**
+	 * Create the analysis of a range of an rtpdump file.
+	 *
+	 * @param reader The reader of the range.
+	 * @return The range analysis.
+	 */
+	private Range analyzer(final RTPDumpReader reader)
+	{
+		return () ->
+		{
+			final Map<Long, StreamSummary> streams = new HashMap<>();
+			StreamSummary last = null;
+			while (reader.next())
+			{
+				// NB: Most packets that are not RTP are rejected by the header checks, so rarely throw.
+				if (reader.isRtp())
+				{
+					try
+					{
+						last = add(streams, last, reader.rtp(), reader.arrivalMillis() * 1000000L);
+					}
+					catch (IllegalArgumentException e)
+					{
+						// Not a valid RTP packet, e.g. a bad extension or padding length.
+					}
+				}
+			}
+
+			return streams;
+		};
+	}
+
+
+	/**
+	 * Create the analysis of a range of a pcap or pcapng file.
+	 *
+	 * @param reader The reader of the range.
+	 * @return The range analysis.
+	 */
+	private Range analyzer(final PcapReader reader)
+	{
+		return () ->
+		{
+			final Map<Long, StreamSummary> streams = new HashMap<>();
+			StreamSummary last = null;
+			while (reader.next())
+			{
+				// NB: Most packets that are not RTP are rejected by the header checks, so rarely throw.
+				if (reader.isRtp())
+				{
+					try
+					{
+						last = add(streams, last, reader.rtp(), reader.timestampNanos());
+					}
+					catch (IllegalArgumentException e)
+					{
+						// Not a valid RTP packet, e.g. a bad extension or padding length.
+					}
+				}
+			}
+
+			return streams;
+		};
+	}
+
+
+	/**
+	 * Add a packet to the summary of its stream.
+	 *
+	 * @param streams The summaries of the range.
+	 * @param last The summary of the previous packet, or null.
+	 * @param packet The packet.
+	 * @param arrivalNanos The capture time of the packet, in nanoseconds since the Unix epoch.
+	 * @return The summary of the packet.
+	 */
+	private StreamSummary add(final Map<Long, StreamSummary> streams, final StreamSummary last, final RTPPacketView packet, final long arrivalNanos)
+	{
+		StreamSummary summary = last;
+		final long ssrc = packet.ssrcIdentifier();
+		if (summary == null || summary.ssrc() != ssrc)
+		{
+			// NB: Packets mostly come in runs of one stream, so the map is only used when the stream changes.
+			summary = streams.get(ssrc);
+			if (summary == null)
+			{
+				summary = new StreamSummary(ssrc, clockRate);
+				streams.put(ssrc, summary);
+			}
+		}
+
+		summary.add(packet.sequenceNumber(), packet.timestamp(), arrivalNanos, packet.packetLength());
+		return summary;
+	}
+
+
+	/**
+	 * Determine if a file is an rtpdump file, from its identification line.
+	 *
+	 * @param path The file.
+	 * @return true if an rtpdump file.
+	 *
+	 * @throws IOException If there is an I/O error reading the file.
+	 */
+	private static boolean isRtpDump(final Path path) throws IOException
+	{
+		final byte[] magic = RTPDumpWriter.MAGIC.getBytes(StandardCharsets.US_ASCII);
+		final ByteBuffer bb = ByteBuffer.allocate(magic.length);
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+		{
+			while (bb.hasRemaining() && channel.read(bb) >= 0)
+			{
+				// Read the whole prefix.
+			}
+		}
+
+		return !bb.hasRemaining() && ByteBuffer.wrap(magic).equals(bb.flip());
+	}
+
+
+	/**
+	 * Obtain a builder for the analyzer.
+	 *
+	 * @return The builder instance.
+	 */
+	public static Builder builder()
+	{
+		return new Builder();
+	}
+
+
+	/**
+	 * The analysis of a range of a file.
+	 */
+	@FunctionalInterface
+	private interface Range
+	{
+		/**
+		 * Summarize the streams of the range.
+		 *
+		 * @return The summary of each stream, by ssrc.
+		 *
+		 * @throws IOException If there is an I/O error reading the file.
+		 */
+		Map<Long, StreamSummary> analyze() throws IOException;
+	}
+
+
+	/**
+	 * A task to analyze a range.
+	 */
+	private static final class RangeTask extends RecursiveTask<Map<Long, StreamSummary>>
+	{
+		/** The serialization version. */
+		private static final long serialVersionUID = 1L;
+
+		/** The range to analyze. */
+		private final transient Range range;
+
+		/**
+		 * Create a task.
+		 *
+		 * @param range The range to analyze.
+		 */
+		private RangeTask(final Range range)
+		{
+			this.range = range;
+		}
+
+
+		/**
+		 * Analyze the range.
+		 *
+		 * @return The summary of each stream, by ssrc.
+		 */
+		@Override
+		protected Map<Long, StreamSummary> compute()
+		{
+			try
+			{
+				return range.analyze();
+			}
+			catch (IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+
+	/**
+	 * A builder for the analyzer.
+	 */
+	public static final class Builder
+	{
+		/** The clock rate of the streams in Hz. */
+		private int clockRate = 90000;
+
+		/** The minimum size of a range of the file. */
+		private long rangeSize = DEFAULT_RANGE_SIZE;
+
+		/** The pool to analyze ranges on. */
+		private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+		/** The ports to accept in pcap files, or null to accept all. */
+		private int[] ports;
+
+		/**
+		 * Private constructor.
+		 */
+		private Builder() { /* Empty Constructor */ }
+
+
+		/**
+		 * Use the clock rate of the streams, for jitter.
+		 * NB: The default is 90000 (video).
+		 *
+		 * @param clockRate The clock rate in Hz.
+		 * @return The builder instance.
+		 */
+		public Builder withClockRate(final int clockRate)
+		{
+			this.clockRate = clockRate;
+			return this;
+		}
+
+
+		/**
+		 * Use the minimum size of the ranges of a file analyzed as one task.
+		 * NB: The default is 64MB.
+		 *
+		 * @param rangeSize The range size in bytes.
+		 * @return The builder instance.
+		 */
+		public Builder withRangeSize(final long rangeSize)
+		{
+			this.rangeSize = rangeSize;
+			return this;
+		}
+
+
+		/**
+		 * Use a pool to analyze ranges on.
+		 * NB: The default is the common pool.
+		 *
+		 * @param pool The pool.
+		 * @return The builder instance.
+		 */
+		public Builder withPool(final ForkJoinPool pool)
+		{
+			this.pool = pool;
+			return this;
+		}
+
+
+		/**
+		 * Only analyze the datagrams of pcap files sent from or to the given ports.
+		 * NB: rtpdump files do not record ports, so are not filtered.
+		 *
+		 * @param ports The UDP ports.
+		 * @return The builder instance.
+		 */
+		public Builder withPorts(final int ... ports)
+		{
+			this.ports = ports == null ? null : ports.clone();
+			return this;
+		}
+
+
+		/**
+		 * Build the analyzer.
+		 *
+		 * @return The analyzer.
+		 *
+		 * @throws IllegalArgumentException If any of the values are invalid.
+		 */
+		public CaptureAnalyzer build()
+		{
+			return new CaptureAnalyzer(this);
+		}
+	}
+
+}
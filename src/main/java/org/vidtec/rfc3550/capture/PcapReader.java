@@ -0,0 +1,1108 @@
+package org.vidtec.rfc3550.capture;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.vidtec.rfc3550.rtcp.RTCPPackets;
+import org.vidtec.rfc3550.rtp.RTPPacketView;
+
+/**
+ * Reads the UDP datagrams (e.g. RTP and RTCP packets) of a pcap or pcapng capture file, as written by
+ * tcpdump, Wireshark and similar tools.
+ *
+ * The file is memory-mapped (in windows of up to 1GB, so captures of any size can be read), and the reader
+ * steps through the captured frames with next(), walking the link (Ethernet, with VLAN tags, Linux cooked,
+ * BSD loopback or raw IP), IPv4 / IPv6 and UDP headers in place. Frames that are not UDP, are IP fragments, or
+ * do not match the port and SSRC filters are skipped before any packet is decoded. RTP packets are exposed
+ * through a single re-used {@link RTPPacketView} over the mapped file, so no packet data is copied and no
+ * objects are created per frame.
+ *
+ *   try (PcapReader reader = PcapReader.builder().withPorts(5004).open(path))
+ *   {
+ *       while (reader.next())
+ *       {
+ *           if (!reader.isRtcp())
+ *           {
+ *               process(reader.rtp(), reader.timestampNanos());
+ *           }
+ *       }
+ *   }
+ *
+ * NB: Packet views are only valid until the next call to next(), as the mapped window may move.
+ * NB: A record truncated by the end of the file (e.g. a capture that was killed) ends the file.
+ * NB: This class is NOT thread-safe.
+ */
+public final class PcapReader implements Closeable
+{
+
+	/** The pcap magic number, with microsecond timestamps. */
+	private static final int PCAP_MICROS = 0xA1B2C3D4;
+
+	/** The pcap magic number, with nanosecond timestamps. */
+	private static final int PCAP_NANOS = 0xA1B23C4D;
+
+	/** The pcapng section header block type. */
+	private static final int PCAPNG_SECTION = 0x0A0D0D0A;
+
+	/** The pcapng byte order magic number. */
+	private static final int PCAPNG_BYTE_ORDER = 0x1A2B3C4D;
+
+	/** The pcapng interface description block type. */
+	private static final int PCAPNG_INTERFACE = 1;
+
+	/** The pcapng simple packet block type. */
+	private static final int PCAPNG_SIMPLE_PACKET = 3;
+
+	/** The pcapng enhanced packet block type. */
+	private static final int PCAPNG_ENHANCED_PACKET = 6;
+
+	/** The link types supported. */
+	private static final int LINKTYPE_NULL = 0, LINKTYPE_ETHERNET = 1, LINKTYPE_RAW = 101, LINKTYPE_LINUX_SLL = 113,
+							 LINKTYPE_IPV4 = 228, LINKTYPE_IPV6 = 229;
+
+	/** The maximum size of a mapped window. */
+	private static final long WINDOW_SIZE = 1L << 30;
+
+
+	/** The file being read. */
+	private final FileChannel channel;
+
+	/** The size of the file. */
+	private final long fileSize;
+
+	/** Whether the file is pcapng. */
+	private final boolean pcapng;
+
+	/** The ports to accept, as a bitmap, or null to accept all. */
+	private final long[] ports;
+
+	/** The SSRCs to accept, sorted, or null to accept all. */
+	private final long[] ssrcs;
+
+	/** The view of the current RTP packet. */
+	private final RTPPacketView view = new RTPPacketView();
+
+	/** The byte order of the file (or current pcapng section) headers. */
+	private ByteOrder order;
+
+	/** The mapped window, in the file byte order. */
+	private ByteBuffer file;
+
+	/** The mapped window, in network byte order. */
+	private ByteBuffer net;
+
+	/** The file position of the mapped window. */
+	private long windowBase;
+
+	/** The file position of the next record or block. */
+	private long position;
+
+	/** The file position of the first record or block. */
+	private final long firstPosition;
+
+	/** The file position the reader stops at. */
+	private long end;
+
+	/** The link type of a pcap file. */
+	private int linkType;
+
+	/** The timestamp units per second of a pcap file. */
+	private long unitsPerSecond;
+
+	/** The link type of each pcapng interface. */
+	private int[] interfaceLinkTypes = new int[4];
+
+	/** The timestamp units per second of each pcapng interface. */
+	private long[] interfaceUnits = new long[4];
+
+	/** The number of pcapng interfaces in the current section. */
+	private int interfaceCount;
+
+	/** The number of frames read. */
+	private long frames;
+
+	/** The window offset of the current datagram payload, or -1 if there is no current datagram. */
+	private int payloadOffset = -1;
+
+	/** The length of the current datagram payload. */
+	private int payloadLength;
+
+	/** The timestamp of the current frame, in nanoseconds since the Unix epoch. */
+	private long timestampNanos;
+
+	/** The window offset of the source IP address of the current datagram. */
+	private int addressOffset;
+
+	/** The length of the IP addresses of the current datagram, 4 or 16. */
+	private int addressLength;
+
+	/** The UDP source port of the current datagram. */
+	private int sourcePort;
+
+	/** The UDP destination port of the current datagram. */
+	private int destinationPort;
+
+
+	/**
+	 * Create a reader, and read the file header.
+	 *
+	 * @param channel The file to read.
+	 * @param builder The builder with the filters.
+	 *
+	 * @throws IOException If there is an I/O error reading.
+	 * @throws IllegalArgumentException If the file header is not valid.
+	 */
+	private PcapReader(final FileChannel channel, final Builder builder) throws IOException
+	{
+		this.channel = channel;
+		this.fileSize = channel.size();
+		this.ports = builder.ports;
+		this.ssrcs = builder.ssrcs;
+
+		final int offset = ensure(0, 24);
+		if (offset < 0)
+		{
+			throw new IllegalArgumentException("Invalid capture file header");
+		}
+
+		final int magic = net.getInt(offset);
+		if (magic == PCAPNG_SECTION)
+		{
+			this.pcapng = true;
+			this.firstPosition = 0;
+		}
+		else
+		{
+			if (magic == PCAP_MICROS || magic == PCAP_NANOS)
+			{
+				order = ByteOrder.BIG_ENDIAN;
+			}
+			else if (Integer.reverseBytes(magic) == PCAP_MICROS || Integer.reverseBytes(magic) == PCAP_NANOS)
+			{
+				order = ByteOrder.LITTLE_ENDIAN;
+			}
+			else
+			{
+				throw new IllegalArgumentException("Invalid capture file header");
+			}
+			file.order(order);
+
+			this.pcapng = false;
+			this.firstPosition = 24;
+			this.unitsPerSecond = file.getInt(offset) == PCAP_NANOS ? 1000000000L : 1000000L;
+			this.linkType = file.getInt(offset + 20);
+		}
+		this.position = firstPosition;
+		this.end = fileSize;
+	}
+
+
+	/**
+	 * Create a reader over the rest of the file from the position of another reader, carrying over the
+	 * file format and interface descriptions read so far.
+	 *
+	 * @param reader The reader to copy.
+	 */
+	private PcapReader(final PcapReader reader)
+	{
+		this.channel = reader.channel;
+		this.fileSize = reader.fileSize;
+		this.pcapng = reader.pcapng;
+		this.ports = reader.ports;
+		this.ssrcs = reader.ssrcs;
+		this.order = reader.order;
+		this.linkType = reader.linkType;
+		this.unitsPerSecond = reader.unitsPerSecond;
+		this.interfaceLinkTypes = reader.interfaceLinkTypes.clone();
+		this.interfaceUnits = reader.interfaceUnits.clone();
+		this.interfaceCount = reader.interfaceCount;
+		this.firstPosition = reader.position;
+		this.position = reader.position;
+		this.end = reader.end;
+	}
+
+
+	/**
+	 * Step to the next UDP datagram that matches the filters.
+	 *
+	 * @return true if there is a datagram, false at the end of the file.
+	 *
+	 * @throws IOException If there is an I/O error reading.
+	 * @throws IllegalArgumentException If a record or block is not valid.
+	 */
+	public boolean next() throws IOException
+	{
+		payloadOffset = -1;
+		while (true)
+		{
+			if (position >= end || !(pcapng ? nextBlock(true) : nextRecord(true)))
+			{
+				return false;
+			}
+			if (payloadOffset >= 0)
+			{
+				return true;
+			}
+		}
+	}
+
+
+	/**
+	 * Step back to the first record.
+	 */
+	public void rewind()
+	{
+		position = firstPosition;
+		payloadOffset = -1;
+	}
+
+
+	/**
+	 * Step over the next record or block, reading only its header (and any pcapng section or interface
+	 * description), e.g. to split the file into ranges.
+	 *
+	 * @return true if there was a record or block, false at the end of the file.
+	 *
+	 * @throws IOException If there is an I/O error reading.
+	 * @throws IllegalArgumentException If a record or block is not valid.
+	 */
+	boolean skip() throws IOException
+	{
+		payloadOffset = -1;
+		return position < end && (pcapng ? nextBlock(false) : nextRecord(false));
+	}
+
+
+	/**
+	 * Gets the file position of the next record or block.
+	 *
+	 * @return The file position.
+	 */
+	long position()
+	{
+		return position;
+	}
+
+
+	/**
+	 * Create a reader of the records from the current position, with its own mapped window, so ranges of the
+	 * file can be read in parallel.
+	 * NB: The range shares the file of this reader, so must not be used once this reader is closed.
+	 *
+	 * @return The range reader.
+	 */
+	PcapReader range()
+	{
+		return new PcapReader(this);
+	}
+
+
+	/**
+	 * Stop reading at a file position.
+	 *
+	 * @param rangeEnd The file position to stop at, which must be the start of a record or block.
+	 */
+	void limit(final long rangeEnd)
+	{
+		end = Math.min(end, rangeEnd);
+	}
+
+
+	/**
+	 * Gets the number of frames read (including those skipped).
+	 *
+	 * @return The frame count.
+	 */
+	public long frames()
+	{
+		return frames;
+	}
+
+
+	/**
+	 * Gets the capture time of the current datagram.
+	 *
+	 * @return The time in nanoseconds since the Unix epoch.
+	 *
+	 * @throws IllegalStateException If there is no current datagram.
+	 */
+	public long timestampNanos()
+	{
+		checkDatagram();
+		return timestampNanos;
+	}
+
+
+	/**
+	 * Gets the capture time of the current datagram.
+	 *
+	 * @return The time in milliseconds since the Unix epoch.
+	 *
+	 * @throws IllegalStateException If there is no current datagram.
+	 */
+	public long timestampMillis()
+	{
+		return timestampNanos() / 1000000L;
+	}
+
+
+	/**
+	 * Gets the IP version of the current datagram.
+	 *
+	 * @return 4 or 6.
+	 *
+	 * @throws IllegalStateException If there is no current datagram.
+	 */
+	public int ipVersion()
+	{
+		checkDatagram();
+		return addressLength == 4 ? 4 : 6;
+	}
+
+
+	/**
+	 * Copy the source IP address of the current datagram.
+	 *
+	 * @param address The array to copy to, of at least 16 bytes for IPv6.
+	 * @return The length of the address, 4 or 16.
+	 *
+	 * @throws IllegalStateException If there is no current datagram.
+	 */
+	public int sourceAddress(final byte[] address)
+	{
+		checkDatagram();
+		return copyAddress(addressOffset, address);
+	}
+
+
+	/**
+	 * Copy the destination IP address of the current datagram.
+	 *
+	 * @param address The array to copy to, of at least 16 bytes for IPv6.
+	 * @return The length of the address, 4 or 16.
+	 *
+	 * @throws IllegalStateException If there is no current datagram.
+	 */
+	public int destinationAddress(final byte[] address)
+	{
+		checkDatagram();
+		return copyAddress(addressOffset + addressLength, address);
+	}
+
+
+	/**
+	 * Gets the UDP source port of the current datagram.
+	 *
+	 * @return The port.
+	 *
+	 * @throws IllegalStateException If there is no current datagram.
+	 */
+	public int sourcePort()
+	{
+		checkDatagram();
+		return sourcePort;
+	}
+
+
+	/**
+	 * Gets the UDP destination port of the current datagram.
+	 *
+	 * @return The port.
+	 *
+	 * @throws IllegalStateException If there is no current datagram.
+	 */
+	public int destinationPort()
+	{
+		checkDatagram();
+		return destinationPort;
+	}
+
+
+	/**
+	 * Gets the length of the UDP payload of the current datagram.
+	 *
+	 * @return The length in bytes.
+	 *
+	 * @throws IllegalStateException If there is no current datagram.
+	 */
+	public int payloadLength()
+	{
+		checkDatagram();
+		return payloadLength;
+	}
+
+
+	/**
+	 * Determine if the current datagram is an RTCP packet, by its packet type (as per RFC 5761 section 4),
+	 * so RTP and RTCP multiplexed on one port can be told apart.
+	 *
+	 * @return true if the datagram looks like RTCP, false otherwise.
+	 *
+	 * @throws IllegalStateException If there is no current datagram.
+	 */
+	public boolean isRtcp()
+	{
+		checkDatagram();
+		return payloadLength >= 8 && isRtcp(payloadOffset);
+	}
+
+
+	/**
+	 * Determine if the current datagram looks like an RTP packet, from its version and the length of its
+	 * fixed header and CSRCs, so that other datagrams can be skipped without the cost of a failed rtp().
+	 * NB: A datagram that looks like RTP may still be rejected by rtp(), e.g. for a bad extension or padding.
+	 *
+	 * @return true if the datagram looks like RTP, false otherwise.
+	 *
+	 * @throws IllegalStateException If there is no current datagram.
+	 */
+	public boolean isRtp()
+	{
+		checkDatagram();
+		return payloadLength >= 13 && (0xC0 & net.get(payloadOffset)) == 0x80 && !isRtcp(payloadOffset)
+			   && payloadLength > 12 + 4 * (0x0F & net.get(payloadOffset));
+	}
+
+
+	/**
+	 * Gets the current datagram as an RTP packet, as a view over the mapped file.
+	 * NB: The same view instance is returned for every datagram, and is re-pointed by this call.
+	 *
+	 * @return The packet view.
+	 *
+	 * @throws IllegalStateException If there is no current datagram.
+	 * @throws IllegalArgumentException If the payload is not a valid RTP packet.
+	 */
+	public RTPPacketView rtp()
+	{
+		checkDatagram();
+		return view.wrap(net, payloadOffset, payloadLength);
+	}
+
+
+	/**
+	 * Gets the current datagram as RTCP packets.
+	 * NB: RTCP packets are decoded from a copy of the payload, as they are immutable objects.
+	 *
+	 * @return The packets.
+	 *
+	 * @throws IllegalStateException If there is no current datagram.
+	 * @throws IllegalArgumentException If the payload is not a valid RTCP packet.
+	 */
+	public RTCPPackets rtcp()
+	{
+		return RTCPPackets.fromByteArray(copyPayload());
+	}
+
+
+	/**
+	 * Gets a copy of the UDP payload of the current datagram.
+	 *
+	 * @return The payload data.
+	 *
+	 * @throws IllegalStateException If there is no current datagram.
+	 */
+	public byte[] copyPayload()
+	{
+		checkDatagram();
+		final byte[] data = new byte[payloadLength];
+		final ByteBuffer bb = net.duplicate();
+		bb.position(payloadOffset);
+		bb.get(data);
+
+		return data;
+	}
+
+
+	/**
+	 * Close the file.
+	 * NB: The mapping is released when the reader is garbage collected, views must not be used after close.
+	 *
+	 * @throws IOException If there is an I/O error closing.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		channel.close();
+	}
+
+
+	/**
+	 * Read the next pcap record.
+	 *
+	 * @param parse Whether to parse the frame of the record.
+	 * @return true if a record was read, false at the end of the file.
+	 *
+	 * @throws IOException If there is an I/O error reading.
+	 * @throws IllegalArgumentException If the record is not valid.
+	 */
+	private boolean nextRecord(final boolean parse) throws IOException
+	{
+		int offset = ensure(position, 16);
+		if (offset < 0)
+		{
+			return false;
+		}
+
+		final int captured = file.getInt(offset + 8);
+		if (captured < 0 || captured > WINDOW_SIZE - 16)
+		{
+			throw new IllegalArgumentException("Invalid record length " + (0xFFFFFFFFL & captured) + " at offset " + position);
+		}
+
+		offset = ensure(position, 16 + captured);
+		if (offset < 0)
+		{
+			return false;
+		}
+
+		final long seconds = 0xFFFFFFFFL & file.getInt(offset);
+		final long fraction = 0xFFFFFFFFL & file.getInt(offset + 4);
+		timestampNanos = seconds * 1000000000L + fraction * (1000000000L / unitsPerSecond);
+		position += 16 + captured;
+
+		if (parse)
+		{
+			frame(linkType, offset + 16, captured);
+		}
+		return true;
+	}
+
+
+	/**
+	 * Read the next pcapng block.
+	 *
+	 * @param parse Whether to parse the frame of a packet block.
+	 * @return true if a block was read, false at the end of the file.
+	 *
+	 * @throws IOException If there is an I/O error reading.
+	 * @throws IllegalArgumentException If the block is not valid.
+	 */
+	private boolean nextBlock(final boolean parse) throws IOException
+	{
+		int offset = ensure(position, 12);
+		if (offset < 0)
+		{
+			return false;
+		}
+
+		// NB: The section header type is the same in either byte order, and gives the order of the section.
+		final int type = net.getInt(offset);
+		if (type == PCAPNG_SECTION)
+		{
+			final int magic = net.getInt(offset + 8);
+			if (magic == PCAPNG_BYTE_ORDER)
+			{
+				order = ByteOrder.BIG_ENDIAN;
+			}
+			else if (Integer.reverseBytes(magic) == PCAPNG_BYTE_ORDER)
+			{
+				order = ByteOrder.LITTLE_ENDIAN;
+			}
+			else
+			{
+				throw new IllegalArgumentException("Invalid pcapng byte order at offset " + position);
+			}
+			file.order(order);
+			interfaceCount = 0;
+		}
+		else if (order == null)
+		{
+			throw new IllegalArgumentException("Invalid capture file header");
+		}
+
+		final int length = file.getInt(offset + 4);
+		if (length < 12 || length % 4 != 0 || length > WINDOW_SIZE)
+		{
+			throw new IllegalArgumentException("Invalid block length " + (0xFFFFFFFFL & length) + " at offset " + position);
+		}
+
+		offset = ensure(position, length);
+		if (offset < 0)
+		{
+			return false;
+		}
+		position += length;
+
+		switch (file.getInt(offset))
+		{
+			case PCAPNG_INTERFACE:
+				addInterface(offset, length);
+				break;
+
+			case PCAPNG_ENHANCED_PACKET:
+			{
+				if (!parse)
+				{
+					break;
+				}
+
+				final int id = file.getInt(offset + 8);
+				final int captured = file.getInt(offset + 20);
+				if (id < 0 || id >= interfaceCount || captured < 0 || captured > length - 32)
+				{
+					throw new IllegalArgumentException("Invalid enhanced packet block at offset " + (position - length));
+				}
+
+				final long units = interfaceUnits[id];
+				final long ts = (0xFFFFFFFFL & file.getInt(offset + 12)) << 32 | (0xFFFFFFFFL & file.getInt(offset + 16));
+				timestampNanos = ts / units * 1000000000L + (long)((double)(ts % units) * 1e9 / units);
+
+				frame(interfaceLinkTypes[id], offset + 28, captured);
+				break;
+			}
+
+			case PCAPNG_SIMPLE_PACKET:
+			{
+				if (!parse)
+				{
+					break;
+				}
+
+				if (interfaceCount == 0)
+				{
+					throw new IllegalArgumentException("Invalid simple packet block at offset " + (position - length));
+				}
+
+				// NB: Simple packets have no timestamp.
+				timestampNanos = 0;
+				frame(interfaceLinkTypes[0], offset + 12, Math.max(0, Math.min(file.getInt(offset + 8), length - 16)));
+				break;
+			}
+
+			default:
+				// Other blocks (statistics, name resolution, etc) are not needed.
+				break;
+		}
+
+		return true;
+	}
+
+
+	/**
+	 * Record a pcapng interface description.
+	 *
+	 * @param offset The window offset of the block.
+	 * @param length The length of the block.
+	 */
+	private void addInterface(final int offset, final int length)
+	{
+		if (interfaceCount == interfaceLinkTypes.length)
+		{
+			interfaceLinkTypes = Arrays.copyOf(interfaceLinkTypes, interfaceCount << 1);
+			interfaceUnits = Arrays.copyOf(interfaceUnits, interfaceCount << 1);
+		}
+
+		interfaceLinkTypes[interfaceCount] = 0xFFFF & file.getShort(offset + 8);
+		interfaceUnits[interfaceCount] = 1000000L;
+
+		// Walk the options for the timestamp resolution (if_tsresol).
+		final int end = offset + length - 4;
+		int option = offset + 16;
+		while (option + 4 <= end)
+		{
+			final int code = 0xFFFF & file.getShort(option);
+			final int optionLength = 0xFFFF & file.getShort(option + 2);
+			if (code == 0)
+			{
+				break;
+			}
+			if (code == 9 && optionLength >= 1)
+			{
+				final int resolution = 0xFF & file.get(option + 4);
+				final int exponent = resolution & 0x7F;
+				interfaceUnits[interfaceCount] = (resolution & 0x80) == 0 ? (exponent > 18 ? 1000000000000000000L : pow10(exponent))
+																		   : 1L << Math.min(exponent, 62);
+			}
+			option += 4 + ((optionLength + 3) & ~3);
+		}
+
+		interfaceCount++;
+	}
+
+
+	/**
+	 * Walk the headers of a captured frame, and make it the current datagram if it is a UDP datagram
+	 * matching the filters.
+	 *
+	 * @param link The link type of the frame.
+	 * @param offset The window offset of the frame.
+	 * @param length The captured length of the frame.
+	 */
+	private void frame(final int link, final int offset, final int length)
+	{
+		frames++;
+		final int end = offset + length;
+
+		int ip;
+		switch (link)
+		{
+			case LINKTYPE_ETHERNET:
+			{
+				if (length < 14)
+				{
+					return;
+				}
+				ip = offset + 14;
+				int etherType = 0xFFFF & net.getShort(offset + 12);
+				while ((etherType == 0x8100 || etherType == 0x88A8) && ip + 4 <= end)
+				{
+					// Skip VLAN tags.
+					etherType = 0xFFFF & net.getShort(ip + 2);
+					ip += 4;
+				}
+				if (etherType != 0x0800 && etherType != 0x86DD)
+				{
+					return;
+				}
+				break;
+			}
+
+			case LINKTYPE_LINUX_SLL:
+			{
+				if (length < 16)
+				{
+					return;
+				}
+				final int protocol = 0xFFFF & net.getShort(offset + 14);
+				if (protocol != 0x0800 && protocol != 0x86DD)
+				{
+					return;
+				}
+				ip = offset + 16;
+				break;
+			}
+
+			case LINKTYPE_NULL:
+				// NB: The address family is in the byte order of the capturing host, so the IP version is used instead.
+				ip = offset + 4;
+				break;
+
+			case LINKTYPE_RAW:
+			case LINKTYPE_IPV4:
+			case LINKTYPE_IPV6:
+				ip = offset;
+				break;
+
+			default:
+				return;
+		}
+
+		if (ip >= end)
+		{
+			return;
+		}
+
+		int udp;
+		int ipEnd;
+		final int version = (0xF0 & net.get(ip)) >> 4;
+		if (version == 4)
+		{
+			final int headerLength = (0x0F & net.get(ip)) * 4;
+			if (headerLength < 20 || ip + headerLength > end || net.get(ip + 9) != 17 || (0x3FFF & net.getShort(ip + 6)) != 0)
+			{
+				// Too short, not UDP, or a fragment.
+				return;
+			}
+
+			udp = ip + headerLength;
+			ipEnd = Math.min(end, ip + (0xFFFF & net.getShort(ip + 2)));
+			addressOffset = ip + 12;
+			addressLength = 4;
+		}
+		else if (version == 6)
+		{
+			if (ip + 40 > end)
+			{
+				return;
+			}
+
+			udp = ip + 40;
+			ipEnd = Math.min(end, udp + (0xFFFF & net.getShort(ip + 4)));
+			int nextHeader = 0xFF & net.get(ip + 6);
+			while (nextHeader == 0 || nextHeader == 43 || nextHeader == 60)
+			{
+				// Skip hop-by-hop, routing and destination options headers.
+				if (udp + 8 > ipEnd)
+				{
+					return;
+				}
+				nextHeader = 0xFF & net.get(udp);
+				udp += ((0xFF & net.get(udp + 1)) + 1) * 8;
+			}
+			if (nextHeader != 17)
+			{
+				// Not UDP, or a fragment.
+				return;
+			}
+
+			addressOffset = ip + 8;
+			addressLength = 16;
+		}
+		else
+		{
+			return;
+		}
+
+		if (udp + 8 > ipEnd)
+		{
+			return;
+		}
+
+		final int source = 0xFFFF & net.getShort(udp);
+		final int destination = 0xFFFF & net.getShort(udp + 2);
+		if (ports != null && !hasPort(source) && !hasPort(destination))
+		{
+			return;
+		}
+
+		final int payload = udp + 8;
+		final int payloadEnd = Math.min(ipEnd, udp + (0xFFFF & net.getShort(udp + 4)));
+		if (payloadEnd < payload)
+		{
+			return;
+		}
+
+		if (ssrcs != null)
+		{
+			// RTCP packets start with the sender SSRC at byte 4, RTP packets have the SSRC at byte 8.
+			final int ssrcOffset = payloadEnd - payload >= 8 && isRtcp(payload) ? payload + 4 : payload + 8;
+			if (ssrcOffset + 4 > payloadEnd || Arrays.binarySearch(ssrcs, 0xFFFFFFFFL & net.getInt(ssrcOffset)) < 0)
+			{
+				return;
+			}
+		}
+
+		sourcePort = source;
+		destinationPort = destination;
+		payloadOffset = payload;
+		payloadLength = payloadEnd - payload;
+	}
+
+
+	/**
+	 * Determine if a payload looks like RTCP (RFC 5761 section 4), version 2 and a packet type of 192 - 223.
+	 *
+	 * @param offset The window offset of the payload.
+	 * @return true if the payload looks like RTCP.
+	 */
+	private boolean isRtcp(final int offset)
+	{
+		final int packetType = 0xFF & net.get(offset + 1);
+		return (0xC0 & net.get(offset)) == 0x80 && packetType >= 192 && packetType <= 223;
+	}
+
+
+	/**
+	 * Determine if a port is accepted by the filter.
+	 *
+	 * @param port The port.
+	 * @return true if accepted.
+	 */
+	private boolean hasPort(final int port)
+	{
+		return (ports[port >>> 6] & (1L << port)) != 0;
+	}
+
+
+	/**
+	 * Copy an IP address from the window.
+	 *
+	 * @param offset The window offset of the address.
+	 * @param address The array to copy to.
+	 * @return The length of the address.
+	 */
+	private int copyAddress(final int offset, final byte[] address)
+	{
+		for (int i = 0 ; i < addressLength ; i++)
+		{
+			address[i] = net.get(offset + i);
+		}
+
+		return addressLength;
+	}
+
+
+	/**
+	 * Check that there is a current datagram.
+	 *
+	 * @throws IllegalStateException If there is no current datagram.
+	 */
+	private void checkDatagram()
+	{
+		if (payloadOffset < 0)
+		{
+			throw new IllegalStateException("no current datagram");
+		}
+	}
+
+
+	/**
+	 * Ensure a region of the file is in the mapped window, moving the window if needed.
+	 *
+	 * @param start The file position of the region.
+	 * @param length The length of the region, at most the window size.
+	 * @return The window offset of the region, or -1 if the region extends past the end of the file.
+	 *
+	 * @throws IOException If there is an I/O error mapping the file.
+	 */
+	private int ensure(final long start, final int length) throws IOException
+	{
+		if (start + length > fileSize)
+		{
+			return -1;
+		}
+
+		if (net == null || start < windowBase || start + length > windowBase + net.capacity())
+		{
+			windowBase = start;
+			net = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, fileSize - start));
+			file = net.duplicate().order(order == null ? ByteOrder.BIG_ENDIAN : order);
+		}
+
+		return (int)(start - windowBase);
+	}
+
+
+	/**
+	 * Compute a power of ten.
+	 *
+	 * @param exponent The exponent, at most 18.
+	 * @return The power of ten.
+	 */
+	private static long pow10(final int exponent)
+	{
+		long value = 1;
+		for (int i = 0 ; i < exponent ; i++)
+		{
+			value *= 10;
+		}
+
+		return value;
+	}
+
+
+	/**
+	 * Obtain a builder for the reader.
+	 *
+	 * @return The builder instance.
+	 */
+	public static Builder builder()
+	{
+		return new Builder();
+	}
+
+
+	/**
+	 * A builder for the capture reader.
+	 */
+	public static final class Builder
+	{
+		/** The ports to accept, as a bitmap, or null to accept all. */
+		private long[] ports;
+
+		/** The SSRCs to accept, sorted, or null to accept all. */
+		private long[] ssrcs;
+
+		/**
+		 * Private constructor.
+		 */
+		private Builder() { /* Empty Constructor */ }
+
+
+		/**
+		 * Only read datagrams sent from or to the given ports.
+		 *
+		 * @param ports The UDP ports.
+		 * @return The builder instance.
+		 *
+		 * @throws IllegalArgumentException If a port is not valid.
+		 */
+		public Builder withPorts(final int ... ports)
+		{
+			if (ports != null)
+			{
+				if (this.ports == null)
+				{
+					this.ports = new long[1024];
+				}
+				for (final int port : ports)
+				{
+					if (port < 0 || port > 0xFFFF)
+					{
+						throw new IllegalArgumentException("Expected valid port not " + port);
+					}
+					this.ports[port >>> 6] |= 1L << port;
+				}
+			}
+
+			return this;
+		}
+
+
+		/**
+		 * Only read RTP packets of the given SSRCs, and RTCP packets sent by them.
+		 *
+		 * @param ssrcs The SSRCs.
+		 * @return The builder instance.
+		 *
+		 * @throws IllegalArgumentException If an ssrc is not valid.
+		 */
+		public Builder withSsrcs(final long ... ssrcs)
+		{
+			if (ssrcs != null)
+			{
+				for (final long ssrc : ssrcs)
+				{
+					if (ssrc < 0 || ssrc > 0xFFFFFFFFL)
+					{
+						throw new IllegalArgumentException("Expected valid ssrc not " + ssrc);
+					}
+				}
+
+				final long[] merged = this.ssrcs == null ? new long[ssrcs.length] : Arrays.copyOf(this.ssrcs, this.ssrcs.length + ssrcs.length);
+				System.arraycopy(ssrcs, 0, merged, merged.length - ssrcs.length, ssrcs.length);
+				Arrays.sort(merged);
+				this.ssrcs = merged;
+			}
+
+			return this;
+		}
+
+
+		/**
+		 * Open a capture file, and read its header.
+		 *
+		 * @param path The file to open.
+		 * @return The reader instance.
+		 *
+		 * @throws IOException If there is an I/O error opening the file.
+		 * @throws IllegalArgumentException If the path is null, or the file header is not valid.
+		 */
+		public PcapReader open(final Path path) throws IOException
+		{
+			if (path == null)
+			{
+				throw new IllegalArgumentException("path cannot be null");
+			}
+
+			final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+			try
+			{
+				return new PcapReader(channel, this);
+			}
+			catch (IOException | RuntimeException e)
+			{
+				channel.close();
+				throw e;
+			}
+		}
+	}
+
+}
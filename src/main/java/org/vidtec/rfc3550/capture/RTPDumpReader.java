@@ -0,0 +1,471 @@
+package org.vidtec.rfc3550.capture;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.vidtec.rfc3550.rtcp.RTCPPackets;
+import org.vidtec.rfc3550.rtp.RTPPacketView;
+
+/**
+ * Reads the RTP and RTCP packets of a file in the rtpdump binary format (as used by rtptools), see
+ * {@link RTPDumpWriter} for the format.
+ *
+ * The file is memory-mapped (in windows of up to 1GB, so captures of any size can be read), and the reader
+ * steps through the records with next(). RTP packets are exposed
+ * through a single re-used {@link RTPPacketView} over the mapped file, so no packet data is copied and no
+ * objects are created per record.
+ *
+ *   try (RTPDumpReader reader = RTPDumpReader.open(path))
+ *   {
+ *       while (reader.next())
+ *       {
+ *           if (!reader.isRtcp())
+ *           {
+ *               process(reader.rtp(), reader.arrivalMillis());
+ *           }
+ *       }
+ *   }
+ *
+ * NB: Packet views are only valid until the next call to next(), as the mapped window may move.
+ * NB: A record truncated by the end of the file (e.g. a capture that was killed) ends the file.
+ * NB: This class is NOT thread-safe.
+ */
+public final class RTPDumpReader implements Closeable
+{
+
+	/** The maximum length of the file identification line. */
+	private static final int MAX_LINE_LENGTH = 128;
+
+	/** The maximum size of a mapped window. */
+	private static final long WINDOW_SIZE = 1L << 30;
+
+
+	/** The file being read. */
+	private final FileChannel channel;
+
+	/** The size of the file. */
+	private final long fileSize;
+
+	/** The mapped window. */
+	private ByteBuffer buffer;
+
+	/** The file position of the mapped window. */
+	private long windowBase;
+
+	/** The file position of the first record. */
+	private final long firstRecord;
+
+	/** The file position the reader stops at. */
+	private long end;
+
+	/** The start time of the capture, in milliseconds since the Unix epoch. */
+	private final long startMillis;
+
+	/** The source address from the file header. */
+	private final int address;
+
+	/** The source port from the file header. */
+	private final int port;
+
+	/** The view of the current RTP packet. */
+	private final RTPPacketView view = new RTPPacketView();
+
+	/** The file position of the next record. */
+	private long nextRecord;
+
+	/** The window offset of the current packet data, or -1 if there is no current record. */
+	private int packetOffset = -1;
+
+	/** The length of the current packet data. */
+	private int packetLength;
+
+	/** Whether the current packet is RTCP. */
+	private boolean rtcp;
+
+	/** The offset of the current packet from the start time, in milliseconds. */
+	private long offsetMillis;
+
+
+	/**
+	 * Create a reader.
+	 *
+	 * @param channel The file to read.
+	 *
+	 * @throws IOException If there is an I/O error reading.
+	 * @throws IllegalArgumentException If the file header is not valid.
+	 */
+	private RTPDumpReader(final FileChannel channel) throws IOException
+	{
+		this.channel = channel;
+		this.fileSize = channel.size();
+
+		final int headerLength = (int)Math.min(fileSize, MAX_LINE_LENGTH + RTPDumpWriter.FILE_HEADER_LENGTH);
+		ensure(0, headerLength);
+
+		final int limit = Math.min(headerLength, MAX_LINE_LENGTH);
+		int lineEnd = 0;
+		while (lineEnd < limit && buffer.get(lineEnd) != '\n')
+		{
+			lineEnd++;
+		}
+
+		final byte[] magic = RTPDumpWriter.MAGIC.getBytes(StandardCharsets.US_ASCII);
+		if (lineEnd == limit || lineEnd < magic.length || headerLength < lineEnd + 1 + RTPDumpWriter.FILE_HEADER_LENGTH)
+		{
+			throw new IllegalArgumentException("Invalid rtpdump file header");
+		}
+		for (int i = 0 ; i < magic.length ; i++)
+		{
+			if (buffer.get(i) != magic[i])
+			{
+				throw new IllegalArgumentException("Invalid rtpdump file header");
+			}
+		}
+
+		final int header = lineEnd + 1;
+		this.startMillis = (0xFFFFFFFFL & buffer.getInt(header)) * 1000 + (0xFFFFFFFFL & buffer.getInt(header + 4)) / 1000;
+		this.address = buffer.getInt(header + 8);
+		this.port = 0xFFFF & buffer.getShort(header + 12);
+		this.firstRecord = header + RTPDumpWriter.FILE_HEADER_LENGTH;
+		this.nextRecord = firstRecord;
+		this.end = fileSize;
+	}
+
+
+	/**
+	 * Create a reader of the rest of the records of another reader, from its position.
+	 *
+	 * @param reader The reader to copy.
+	 */
+	private RTPDumpReader(final RTPDumpReader reader)
+	{
+		this.channel = reader.channel;
+		this.fileSize = reader.fileSize;
+		this.end = reader.end;
+		this.startMillis = reader.startMillis;
+		this.address = reader.address;
+		this.port = reader.port;
+		this.firstRecord = reader.nextRecord;
+		this.nextRecord = reader.nextRecord;
+	}
+
+
+	/**
+	 * Step to the next record.
+	 *
+	 * @return true if there is a record, false at the end of the file.
+	 *
+	 * @throws IOException If there is an I/O error reading.
+	 * @throws IllegalArgumentException If the record header is not valid.
+	 */
+	public boolean next() throws IOException
+	{
+		packetOffset = -1;
+		if (end - nextRecord < RTPDumpWriter.RECORD_HEADER_LENGTH)
+		{
+			return false;
+		}
+
+		int offset = ensure(nextRecord, RTPDumpWriter.RECORD_HEADER_LENGTH);
+		final int length = 0xFFFF & buffer.getShort(offset);
+		if (length < RTPDumpWriter.RECORD_HEADER_LENGTH)
+		{
+			throw new IllegalArgumentException("Invalid record length " + length + " at offset " + nextRecord);
+		}
+		if (end - nextRecord < length)
+		{
+			return false;
+		}
+
+		offset = ensure(nextRecord, length);
+		rtcp = buffer.getShort(offset + 2) == 0;
+		offsetMillis = 0xFFFFFFFFL & buffer.getInt(offset + 4);
+		packetOffset = offset + RTPDumpWriter.RECORD_HEADER_LENGTH;
+		packetLength = length - RTPDumpWriter.RECORD_HEADER_LENGTH;
+		nextRecord += length;
+
+		return true;
+	}
+
+
+	/**
+	 * Step back to the first record.
+	 */
+	public void rewind()
+	{
+		nextRecord = firstRecord;
+		packetOffset = -1;
+	}
+
+
+	/**
+	 * Gets the file position of the next record.
+	 *
+	 * @return The file position.
+	 */
+	long position()
+	{
+		return nextRecord;
+	}
+
+
+	/**
+	 * Create a reader of the records from the current position, with its own mapped window, so ranges of the
+	 * file can be read in parallel.
+	 * NB: The range shares the file of this reader, so must not be used once this reader is closed.
+	 *
+	 * @return The range reader.
+	 */
+	RTPDumpReader range()
+	{
+		return new RTPDumpReader(this);
+	}
+
+
+	/**
+	 * Stop reading at a file position.
+	 *
+	 * @param rangeEnd The file position to stop at, which must be the start of a record.
+	 */
+	void limit(final long rangeEnd)
+	{
+		end = Math.min(end, rangeEnd);
+	}
+
+
+	/**
+	 * Determine if the current record is an RTCP packet.
+	 *
+	 * @return true if the record is RTCP, false if RTP.
+	 *
+	 * @throws IllegalStateException If there is no current record.
+	 */
+	public boolean isRtcp()
+	{
+		checkRecord();
+		return rtcp;
+	}
+
+
+	/**
+	 * Determine if the current record looks like an RTP packet, from its version and the length of its
+	 * fixed header and CSRCs, so that other records can be skipped without the cost of a failed rtp().
+	 * NB: A record that looks like RTP may still be rejected by rtp(), e.g. for a bad extension or padding.
+	 *
+	 * @return true if the record looks like RTP, false otherwise.
+	 *
+	 * @throws IllegalStateException If there is no current record.
+	 */
+	public boolean isRtp()
+	{
+		checkRecord();
+		return !rtcp && packetLength >= 13 && (0xC0 & buffer.get(packetOffset)) == 0x80
+			   && packetLength > 12 + 4 * (0x0F & buffer.get(packetOffset));
+	}
+
+
+	/**
+	 * Gets the arrival time of the current record.
+	 *
+	 * @return The time in milliseconds since the Unix epoch.
+	 *
+	 * @throws IllegalStateException If there is no current record.
+	 */
+	public long arrivalMillis()
+	{
+		checkRecord();
+		return startMillis + offsetMillis;
+	}
+
+
+	/**
+	 * Gets the length of the packet data of the current record.
+	 *
+	 * @return The length in bytes.
+	 *
+	 * @throws IllegalStateException If there is no current record.
+	 */
+	public int packetLength()
+	{
+		checkRecord();
+		return packetLength;
+	}
+
+
+	/**
+	 * Gets the current RTP packet, as a view over the mapped file.
+	 * NB: The same view instance is returned for every record, and is re-pointed by this call.
+	 *
+	 * @return The packet view.
+	 *
+	 * @throws IllegalStateException If there is no current record, or it is an RTCP packet.
+	 * @throws IllegalArgumentException If the packet is not valid.
+	 */
+	public RTPPacketView rtp()
+	{
+		checkRecord();
+		if (rtcp)
+		{
+			throw new IllegalStateException("current record is not an RTP packet");
+		}
+
+		return view.wrap(buffer, packetOffset, packetLength);
+	}
+
+
+	/**
+	 * Gets the current RTCP packet.
+	 * NB: RTCP packets are decoded from a copy of the record, as they are immutable objects.
+	 *
+	 * @return The packets.
+	 *
+	 * @throws IllegalStateException If there is no current record, or it is an RTP packet.
+	 * @throws IllegalArgumentException If the packet is not valid.
+	 */
+	public RTCPPackets rtcp()
+	{
+		checkRecord();
+		if (!rtcp)
+		{
+			throw new IllegalStateException("current record is not an RTCP packet");
+		}
+
+		return RTCPPackets.fromByteArray(copyPacket());
+	}
+
+
+	/**
+	 * Gets a copy of the packet data of the current record.
+	 *
+	 * @return The packet data.
+	 *
+	 * @throws IllegalStateException If there is no current record.
+	 */
+	public byte[] copyPacket()
+	{
+		checkRecord();
+		final byte[] data = new byte[packetLength];
+		final ByteBuffer bb = buffer.duplicate();
+		bb.position(packetOffset);
+		bb.get(data);
+
+		return data;
+	}
+
+
+	/**
+	 * Gets the start time of the capture.
+	 *
+	 * @return The time in milliseconds since the Unix epoch.
+	 */
+	public long startMillis()
+	{
+		return startMillis;
+	}
+
+
+	/**
+	 * Gets the source address from the file header.
+	 *
+	 * @return The IPv4 address, in network order.
+	 */
+	public int address()
+	{
+		return address;
+	}
+
+
+	/**
+	 * Gets the source port from the file header.
+	 *
+	 * @return The port.
+	 */
+	public int port()
+	{
+		return port;
+	}
+
+
+	/**
+	 * Close the file.
+	 * NB: The mapping is released when the reader is garbage collected, views must not be used after close.
+	 *
+	 * @throws IOException If there is an I/O error closing.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		channel.close();
+	}
+
+
+	/**
+	 * Check that there is a current record.
+	 *
+	 * @throws IllegalStateException If there is no current record.
+	 */
+	private void checkRecord()
+	{
+		if (packetOffset < 0)
+		{
+			throw new IllegalStateException("no current record");
+		}
+	}
+
+
+	/**
+	 * Ensure a region of the file is in the mapped window, moving the window if needed.
+	 *
+	 * @param start The file position of the region, which must lie within the file.
+	 * @param length The length of the region, at most the window size.
+	 * @return The window offset of the region.
+	 *
+	 * @throws IOException If there is an I/O error mapping the file.
+	 */
+	private int ensure(final long start, final int length) throws IOException
+	{
+		if (buffer == null || start < windowBase || start + length > windowBase + buffer.capacity())
+		{
+			windowBase = start;
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, fileSize - start)).order(ByteOrder.BIG_ENDIAN);
+		}
+
+		return (int)(start - windowBase);
+	}
+
+
+	/**
+	 * Open an rtpdump file, and read its header.
+	 *
+	 * @param path The file to open.
+	 * @return The reader instance.
+	 *
+	 * @throws IOException If there is an I/O error opening the file.
+	 * @throws IllegalArgumentException If the path is null, or the file header is not valid.
+	 */
+	public static RTPDumpReader open(final Path path) throws IOException
+	{
+		if (path == null)
+		{
+			throw new IllegalArgumentException("path cannot be null");
+		}
+
+		final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try
+		{
+			return new RTPDumpReader(channel);
+		}
+		catch (IOException | RuntimeException e)
+		{
+			channel.close();
+			throw e;
+		}
+	}
+
+}
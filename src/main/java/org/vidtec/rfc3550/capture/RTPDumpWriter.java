@@ -0,0 +1,263 @@
+package org.vidtec.rfc3550.capture;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.vidtec.rfc3550.rtcp.RTCPPackets;
+import org.vidtec.rfc3550.rtp.RTPPacket;
+import org.vidtec.rfc3550.rtp.RTPPacketView;
+
+/**
+ * Writes RTP and RTCP packets to a file in the rtpdump binary format (as used by rtptools), e.g. to
+ * capture traffic for later replay in regression tests.
+ *
+ *   #!rtpplay1.0 address/port\n
+ *
+ *    0                   1                   2                   3
+ *    0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1
+ *   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ *   |                     start time (seconds)                      |
+ *   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ *   |                   start time (microseconds)                   |
+ *   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ *   |                        source address                         |
+ *   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ *   |          source port          |            padding            |
+ *   +=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+
+ *   |      record length            |     packet length (0=RTCP)    |  repeated for
+ *   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+  each packet
+ *   |              offset from start time (milliseconds)            |
+ *   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ *   |                         packet data                         ...
+ *   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ *
+ * Records are encoded straight into a direct buffer (RTP packets without any intermediate copy), and written
+ * to the file channel when the buffer is full, so a write per packet is not made.
+ *
+ * NB: Records are only guaranteed to be in the file after flush() or close().
+ * NB: This class is NOT thread-safe.
+ */
+public final class RTPDumpWriter implements Closeable
+{
+
+	/** The file identification line prefix. */
+	static final String MAGIC = "#!rtpplay1.0 ";
+
+	/** The length of the binary file header. */
+	static final int FILE_HEADER_LENGTH = 16;
+
+	/** The length of a record header. */
+	static final int RECORD_HEADER_LENGTH = 8;
+
+	/** The maximum packet length a record can hold. */
+	static final int MAX_PACKET_LENGTH = 0xFFFF - RECORD_HEADER_LENGTH;
+
+
+	/** The file being written. */
+	private final FileChannel channel;
+
+	/** The records not yet written to the file. */
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 17);
+
+	/** The start time of the capture, in milliseconds since the Unix epoch. */
+	private final long startMillis;
+
+
+	/**
+	 * Create a writer.
+	 *
+	 * @param channel The file to write to.
+	 * @param startMillis The start time of the capture, in milliseconds since the Unix epoch.
+	 */
+	private RTPDumpWriter(final FileChannel channel, final long startMillis)
+	{
+		this.channel = channel;
+		this.startMillis = startMillis;
+	}
+
+
+	/**
+	 * Write an RTP packet.
+	 *
+	 * @param packet The packet to write.
+	 * @param arrivalMillis The arrival time of the packet, in milliseconds since the Unix epoch.
+	 *
+	 * @throws IOException If there is an I/O error writing.
+	 * @throws IllegalArgumentException If the packet is null, too long, or arrived before the start time.
+	 */
+	public void write(final RTPPacket packet, final long arrivalMillis) throws IOException
+	{
+		if (packet == null)
+		{
+			throw new IllegalArgumentException("packet cannot be null");
+		}
+
+		final int length = packet.packetLength();
+		putRecordHeader(length, length, arrivalMillis);
+		packet.writeTo(buffer);
+	}
+
+
+	/**
+	 * Write an RTP packet held in a view, e.g. a slot of a receive ring.
+	 *
+	 * @param packet The packet to write.
+	 * @param arrivalMillis The arrival time of the packet, in milliseconds since the Unix epoch.
+	 *
+	 * @throws IOException If there is an I/O error writing.
+	 * @throws IllegalArgumentException If the packet is null, too long, or arrived before the start time.
+	 */
+	public void write(final RTPPacketView packet, final long arrivalMillis) throws IOException
+	{
+		if (packet == null)
+		{
+			throw new IllegalArgumentException("packet cannot be null");
+		}
+
+		final int length = packet.packetLength();
+		putRecordHeader(length, length, arrivalMillis);
+
+		final ByteBuffer source = packet.buffer().duplicate();
+		source.limit(packet.offset() + length).position(packet.offset());
+		buffer.put(source);
+	}
+
+
+	/**
+	 * Write an RTCP (compound) packet.
+	 *
+	 * @param packets The packets to write.
+	 * @param arrivalMillis The arrival time of the packet, in milliseconds since the Unix epoch.
+	 *
+	 * @throws IOException If there is an I/O error writing.
+	 * @throws IllegalArgumentException If the packets are null, too long, or arrived before the start time.
+	 */
+	public void write(final RTCPPackets packets, final long arrivalMillis) throws IOException
+	{
+		if (packets == null)
+		{
+			throw new IllegalArgumentException("packets cannot be null");
+		}
+
+		final byte[] data = packets.asByteArray();
+		putRecordHeader(data.length, 0, arrivalMillis);
+		buffer.put(data);
+	}
+
+
+	/**
+	 * Write any buffered records to the file.
+	 *
+	 * @throws IOException If there is an I/O error writing.
+	 */
+	public void flush() throws IOException
+	{
+		buffer.flip();
+		while (buffer.hasRemaining())
+		{
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+
+	/**
+	 * Write any buffered records, and close the file.
+	 *
+	 * @throws IOException If there is an I/O error writing.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		try
+		{
+			flush();
+		}
+		finally
+		{
+			channel.close();
+		}
+	}
+
+
+	/**
+	 * Put a record header into the buffer, making room for the record.
+	 *
+	 * @param length The length of the packet data.
+	 * @param packetLength The packet length field, 0 for RTCP.
+	 * @param arrivalMillis The arrival time of the packet, in milliseconds since the Unix epoch.
+	 *
+	 * @throws IOException If there is an I/O error writing.
+	 * @throws IllegalArgumentException If the packet is too long, or arrived before the start time.
+	 */
+	private void putRecordHeader(final int length, final int packetLength, final long arrivalMillis) throws IOException
+	{
+		if (length > MAX_PACKET_LENGTH)
+		{
+			throw new IllegalArgumentException("Expected valid packet length not " + length);
+		}
+
+		final long offset = arrivalMillis - startMillis;
+		if (offset < 0 || offset > 0xFFFFFFFFL)
+		{
+			throw new IllegalArgumentException("Expected valid arrival time not " + arrivalMillis);
+		}
+
+		if (buffer.remaining() < RECORD_HEADER_LENGTH + length)
+		{
+			flush();
+		}
+
+		buffer.putShort((short)(RECORD_HEADER_LENGTH + length));
+		buffer.putShort((short)packetLength);
+		buffer.putInt((int)offset);
+	}
+
+
+	/**
+	 * Create an rtpdump file, replacing any existing file, and write its header.
+	 *
+	 * @param path The file to create.
+	 * @param address The IPv4 address the packets were sent to (or from), in network order.
+	 * @param port The port the packets were sent to (or from).
+	 * @param startMillis The start time of the capture, in milliseconds since the Unix epoch.
+	 * @return The writer instance.
+	 *
+	 * @throws IOException If there is an I/O error creating the file.
+	 * @throws IllegalArgumentException If the path is null, or the port or start time are not valid.
+	 */
+	public static RTPDumpWriter create(final Path path, final int address, final int port, final long startMillis) throws IOException
+	{
+		if (path == null)
+		{
+			throw new IllegalArgumentException("path cannot be null");
+		}
+		if (port < 0 || port > 0xFFFF)
+		{
+			throw new IllegalArgumentException("Expected valid port not " + port);
+		}
+		if (startMillis < 0)
+		{
+			throw new IllegalArgumentException("Expected valid start time not " + startMillis);
+		}
+
+		final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		final RTPDumpWriter writer = new RTPDumpWriter(channel, startMillis);
+
+		final String line = MAGIC + (0xFF & address >>> 24) + "." + (0xFF & address >>> 16) + "." + (0xFF & address >>> 8) + "." + (0xFF & address) + "/" + port + "\n";
+		writer.buffer.put(line.getBytes(StandardCharsets.US_ASCII));
+		writer.buffer.putInt((int)(startMillis / 1000));
+		writer.buffer.putInt((int)(startMillis % 1000 * 1000));
+		writer.buffer.putInt(address);
+		writer.buffer.putShort((short)port);
+		writer.buffer.putShort((short)0);
+
+		return writer;
+	}
+
+}
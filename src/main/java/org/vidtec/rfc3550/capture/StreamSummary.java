@@ -0,0 +1,324 @@
+package org.vidtec.rfc3550.capture;
+
+/**
+ * A summary of the RTP packets of a single stream (ssrc) in a capture, e.g. packet counts, loss, jitter,
+ * reordering and bitrate.
+ *
+ * Summaries are partial statistics, so a capture can be split into ranges that are summarized in parallel,
+ * and the summaries of consecutive ranges merged, giving the same result as summarizing the whole capture:
+ *  - sequence numbers are extended relative to the first packet of each range, and re-based on merge.
+ *  - the interarrival jitter of RFC 3550 section 6.4.1 is linear in its starting value, so each range keeps
+ *    its jitter as if started from zero with the decay of that start value, and merging applies the
+ *    jitter of the earlier range through the decay of the later.
+ *  - reordering is counted as packets that arrived with a lower sequence number than the packet before,
+ *    so only the pair of packets either side of a range boundary need to be compared on merge.
+ *
+ * NB: Jitter is in RTP timestamp units, computed from the capture time of each packet at the clock rate.
+ * NB: This class is NOT thread-safe.
+ */
+public final class StreamSummary
+{
+
+	/** The weight of each jitter update, as per RFC 3550. */
+	private static final double JITTER_GAIN = 1.0 / 16;
+
+
+	/** The SSRC of the stream. */
+	private final long ssrc;
+
+	/** The clock rate of the stream in Hz. */
+	private final int clockRate;
+
+	/** The number of packets. */
+	private long packets;
+
+	/** The number of bytes of the packets. */
+	private long bytes;
+
+	/** The capture time of the first packet, in nanoseconds since the Unix epoch. */
+	private long firstArrivalNanos;
+
+	/** The capture time of the last packet, in nanoseconds since the Unix epoch. */
+	private long lastArrivalNanos;
+
+	/** The extended sequence number of the first packet to arrive. */
+	private long firstSequence;
+
+	/** The extended sequence number of the last packet to arrive. */
+	private long lastSequence;
+
+	/** The lowest extended sequence number. */
+	private long lowestSequence;
+
+	/** The highest extended sequence number. */
+	private long highestSequence;
+
+	/** The number of packets that arrived with a lower sequence number than the previous packet. */
+	private long reordered;
+
+	/** The transit time of the first packet. */
+	private int firstTransit;
+
+	/** The transit time of the last packet. */
+	private int lastTransit;
+
+	/** The jitter, as if started from zero at the first packet. */
+	private double jitter;
+
+	/** The weight left on the jitter value before the first packet. */
+	private double decay = 1;
+
+
+	/**
+	 * Create an empty summary.
+	 *
+	 * @param ssrc The SSRC of the stream.
+	 * @param clockRate The clock rate of the stream in Hz.
+	 *
+	 * @throws IllegalArgumentException If the ssrc or clock rate are not valid.
+	 */
+	public StreamSummary(final long ssrc, final int clockRate)
+	{
+		if (ssrc < 0 || ssrc > 0xFFFFFFFFL)
+		{
+			throw new IllegalArgumentException("Expected valid ssrc not " + ssrc);
+		}
+		if (clockRate <= 0)
+		{
+			throw new IllegalArgumentException("Expected valid clock rate not " + clockRate);
+		}
+
+		this.ssrc = ssrc;
+		this.clockRate = clockRate;
+	}
+
+
+	/**
+	 * Record a packet of the stream.
+	 *
+	 * @param sequenceNumber The sequence number of the packet.
+	 * @param timestamp The RTP timestamp of the packet.
+	 * @param arrivalNanos The capture time of the packet, in nanoseconds since the Unix epoch.
+	 * @param length The length of the packet in bytes.
+	 */
+	public void add(final int sequenceNumber, final long timestamp, final long arrivalNanos, final int length)
+	{
+		final long arrival = arrivalNanos / 1000000000L * clockRate + arrivalNanos % 1000000000L * clockRate / 1000000000L;
+		final int transit = (int)(arrival - timestamp);
+
+		if (packets == 0)
+		{
+			firstSequence = lastSequence = lowestSequence = highestSequence = 0x10000L + (0xFFFF & sequenceNumber);
+			firstArrivalNanos = arrivalNanos;
+			firstTransit = transit;
+		}
+		else
+		{
+			// Signed distance from the highest, allowing for wraparound.
+			final long sequence = highestSequence + (short)(sequenceNumber - (int)highestSequence);
+			if (sequence < lastSequence)
+			{
+				reordered++;
+			}
+
+			lastSequence = sequence;
+			lowestSequence = Math.min(lowestSequence, sequence);
+			highestSequence = Math.max(highestSequence, sequence);
+
+			jitter += (Math.abs(transit - lastTransit) - jitter) * JITTER_GAIN;
+			decay *= 1 - JITTER_GAIN;
+		}
+
+		packets++;
+		bytes += length;
+		lastArrivalNanos = arrivalNanos;
+		lastTransit = transit;
+	}
+
+
+	/**
+	 * Merge the summary of the packets that followed the packets of this summary, e.g. of the next range of
+	 * a capture.
+	 *
+	 * @param later The summary of the later packets.
+	 *
+	 * @throws IllegalArgumentException If the summary is null, or of a different stream.
+	 */
+	public void merge(final StreamSummary later)
+	{
+		if (later == null)
+		{
+			throw new IllegalArgumentException("summary cannot be null");
+		}
+		if (later.ssrc != ssrc || later.clockRate != clockRate)
+		{
+			throw new IllegalArgumentException("Expected summary of ssrc " + ssrc + " not " + later.ssrc);
+		}
+
+		if (later.packets == 0)
+		{
+			return;
+		}
+		if (packets == 0)
+		{
+			copy(later);
+			return;
+		}
+
+		// Re-base the later sequence numbers on the highest so far, allowing for wraparound.
+		final long shift = highestSequence + (short)(later.firstSequence - highestSequence) - later.firstSequence;
+		if (later.firstSequence + shift < lastSequence)
+		{
+			reordered++;
+		}
+		reordered += later.reordered;
+		lastSequence = later.lastSequence + shift;
+		lowestSequence = Math.min(lowestSequence, later.lowestSequence + shift);
+		highestSequence = Math.max(highestSequence, later.highestSequence + shift);
+
+		// Step the jitter over the boundary, then through the later packets.
+		final double boundary = jitter + (Math.abs(later.firstTransit - lastTransit) - jitter) * JITTER_GAIN;
+		jitter = boundary * later.decay + later.jitter;
+		decay *= (1 - JITTER_GAIN) * later.decay;
+
+		packets += later.packets;
+		bytes += later.bytes;
+		lastArrivalNanos = later.lastArrivalNanos;
+		lastTransit = later.lastTransit;
+	}
+
+
+	/**
+	 * Gets the SSRC of the stream.
+	 *
+	 * @return The ssrc.
+	 */
+	public long ssrc()
+	{
+		return ssrc;
+	}
+
+
+	/**
+	 * Gets the number of packets received, including duplicates.
+	 *
+	 * @return The packet count.
+	 */
+	public long packets()
+	{
+		return packets;
+	}
+
+
+	/**
+	 * Gets the number of bytes of the packets received.
+	 *
+	 * @return The byte count.
+	 */
+	public long bytes()
+	{
+		return bytes;
+	}
+
+
+	/**
+	 * Gets the number of packets expected, from the lowest to the highest sequence number.
+	 *
+	 * @return The expected packet count.
+	 */
+	public long expected()
+	{
+		return packets == 0 ? 0 : highestSequence - lowestSequence + 1;
+	}
+
+
+	/**
+	 * Gets the number of packets lost, as per RFC 3550 (so may be negative if there are duplicates).
+	 *
+	 * @return The lost packet count.
+	 */
+	public long lost()
+	{
+		return expected() - packets;
+	}
+
+
+	/**
+	 * Gets the number of packets that arrived with a lower sequence number than the packet before them.
+	 *
+	 * @return The reordered packet count.
+	 */
+	public long reordered()
+	{
+		return reordered;
+	}
+
+
+	/**
+	 * Gets the interarrival jitter at the last packet, as per RFC 3550.
+	 *
+	 * @return The jitter in RTP timestamp units.
+	 */
+	public long jitter()
+	{
+		return Math.round(jitter);
+	}
+
+
+	/**
+	 * Gets the capture time of the first packet.
+	 *
+	 * @return The time in nanoseconds since the Unix epoch.
+	 */
+	public long firstArrivalNanos()
+	{
+		return firstArrivalNanos;
+	}
+
+
+	/**
+	 * Gets the capture time of the last packet.
+	 *
+	 * @return The time in nanoseconds since the Unix epoch.
+	 */
+	public long lastArrivalNanos()
+	{
+		return lastArrivalNanos;
+	}
+
+
+	/**
+	 * Gets the mean bitrate of the stream, between the first and last packet.
+	 *
+	 * @return The bitrate in bits per second, or 0 if there is no duration.
+	 */
+	public double bitrate()
+	{
+		final long duration = lastArrivalNanos - firstArrivalNanos;
+		return duration <= 0 ? 0 : bytes * 8e9 / duration;
+	}
+
+
+	/**
+	 * Copy the values of another summary.
+	 *
+	 * @param other The summary to copy.
+	 */
+	private void copy(final StreamSummary other)
+	{
+		packets = other.packets;
+		bytes = other.bytes;
+		firstArrivalNanos = other.firstArrivalNanos;
+		lastArrivalNanos = other.lastArrivalNanos;
+		firstSequence = other.firstSequence;
+		lastSequence = other.lastSequence;
+		lowestSequence = other.lowestSequence;
+		highestSequence = other.highestSequence;
+		reordered = other.reordered;
+		firstTransit = other.firstTransit;
+		lastTransit = other.lastTransit;
+		jitter = other.jitter;
+		decay = other.decay;
+	}
+
+}
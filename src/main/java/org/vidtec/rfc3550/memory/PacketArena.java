@@ -0,0 +1,351 @@
+package org.vidtec.rfc3550.memory;
+
+import java.nio.ByteBuffer;
+
+import org.vidtec.rfc3550.rtp.RTPPacket;
+import org.vidtec.rfc3550.rtp.RTPPacketView;
+
+/**
+ * An off-heap arena for packet storage, made up of fixed-size slots in a single direct buffer.
+ *
+ * Packets are copied into a free slot when stored, and referenced by an integer handle until they are
+ * freed. No objects are created per packet, and the packet data is never visible to the garbage collector,
+ * so very large jitter or retransmission buffers can be held without adding to GC scanning or pause times.
+ *
+ * Stored packets can be inspected in place using {@link PacketHeaders} (via buffer() and offset()), or
+ * through a re-usable {@link RTPPacketView}.
+ *
+ * Slot allocation and release are O(1), using a free list of handles.
+ *
+ * NB: Packets larger than the slot size cannot be stored, so the slot size should be at least the path MTU.
+ * NB: Handles are re-used once freed, it is the caller's responsibility not to use a handle after freeing it.
+ * NB: This class is NOT thread-safe.
+ */
+public final class PacketArena
+{
+
+	/** The slot memory. */
+	private final ByteBuffer buffer;
+
+	/** A view of the slot memory used for bulk copies, so that the arena buffer is never repositioned. */
+	private final ByteBuffer copyView;
+
+	/** The size of each slot in bytes. */
+	private final int slotSize;
+
+	/** The length of the packet in each slot, or -1 if the slot is free. */
+	private final int[] lengths;
+
+	/** The stack of free slot handles. */
+	private final int[] free;
+
+	/** The number of free slots. */
+	private int freeCount;
+
+
+	/**
+	 * Create a packet arena.
+	 *
+	 * @param slotCount The number of slots in the arena.
+	 * @param slotSize The size of each slot in bytes.
+	 *
+	 * @throws IllegalArgumentException If the slot count or size is invalid.
+	 */
+	private PacketArena(final int slotCount, final int slotSize)
+	{
+		if (slotCount <= 0)
+		{
+			throw new IllegalArgumentException("Expected valid slot count not " + slotCount);
+		}
+		if (slotSize <= 0 || (long)slotCount * slotSize > Integer.MAX_VALUE)
+		{
+			throw new IllegalArgumentException("Expected valid slot size not " + slotSize);
+		}
+
+		this.slotSize = slotSize;
+		this.buffer = ByteBuffer.allocateDirect(slotCount * slotSize);
+		this.copyView = buffer.duplicate();
+		this.lengths = new int[slotCount];
+		this.free = new int[slotCount];
+
+		// Hand out low handles first.
+		for (int i = 0 ; i < slotCount ; i++)
+		{
+			lengths[i] = -1;
+			free[i] = slotCount - 1 - i;
+		}
+		freeCount = slotCount;
+	}
+
+
+	/**
+	 * Store an RTP packet in the arena.
+	 *
+	 * @param packet The packet to store.
+	 * @return The handle of the stored packet, or -1 if the arena is full or the packet is larger than a slot.
+	 *
+	 * @throws IllegalArgumentException If the packet is null.
+	 */
+	public int store(final RTPPacket packet)
+	{
+		if (packet == null)
+		{
+			throw new IllegalArgumentException("packet cannot be null");
+		}
+		if (freeCount == 0 || packet.packetLength() > slotSize)
+		{
+			return -1;
+		}
+
+		final int handle = free[--freeCount];
+		copyView.limit(offset(handle) + slotSize).position(offset(handle));
+		lengths[handle] = packet.writeTo(copyView);
+
+		return handle;
+	}
+
+
+	/**
+	 * Store a packet region of a buffer in the arena.
+	 * NB: The buffer position and limit are not used or modified.
+	 *
+	 * @param bb The buffer holding the packet data.
+	 * @param offset The offset of the packet in the buffer.
+	 * @param length The length of the packet.
+	 * @return The handle of the stored packet, or -1 if the arena is full or the packet is larger than a slot.
+	 *
+	 * @throws IllegalArgumentException If the buffer is null or the region is invalid.
+	 */
+	public int store(final ByteBuffer bb, final int offset, final int length)
+	{
+		if (bb == null)
+		{
+			throw new IllegalArgumentException("packet data cannot be null");
+		}
+		if (offset < 0 || length <= 0 || offset + length > bb.capacity())
+		{
+			throw new IllegalArgumentException("Invalid packet region, offset " + offset + " and length " + length);
+		}
+		if (freeCount == 0 || length > slotSize)
+		{
+			return -1;
+		}
+
+		final ByteBuffer src = bb.duplicate();
+		src.limit(offset + length).position(offset);
+
+		final int handle = free[--freeCount];
+		copyView.limit(offset(handle) + slotSize).position(offset(handle));
+		copyView.put(src);
+		lengths[handle] = length;
+
+		return handle;
+	}
+
+
+	/**
+	 * Store the packet that a view is pointing at in the arena.
+	 *
+	 * @param view The view of the packet to store.
+	 * @return The handle of the stored packet, or -1 if the arena is full or the packet is larger than a slot.
+	 *
+	 * @throws IllegalArgumentException If the view is null.
+	 */
+	public int store(final RTPPacketView view)
+	{
+		if (view == null)
+		{
+			throw new IllegalArgumentException("packet cannot be null");
+		}
+
+		return store(view.buffer(), view.offset(), view.packetLength());
+	}
+
+
+	/**
+	 * Free a stored packet, making its slot available for re-use.
+	 *
+	 * @param handle The handle of the packet.
+	 *
+	 * @throws IllegalArgumentException If the handle is not valid.
+	 */
+	public void free(final int handle)
+	{
+		checkHandle(handle);
+
+		lengths[handle] = -1;
+		free[freeCount++] = handle;
+	}
+
+
+	/**
+	 * Get the length of a stored packet.
+	 *
+	 * @param handle The handle of the packet.
+	 * @return The packet length in bytes.
+	 *
+	 * @throws IllegalArgumentException If the handle is not valid.
+	 */
+	public int length(final int handle)
+	{
+		checkHandle(handle);
+		return lengths[handle];
+	}
+
+
+	/**
+	 * Get the offset of a stored packet in the arena buffer.
+	 *
+	 * @param handle The handle of the packet.
+	 * @return The packet offset.
+	 */
+	public int offset(final int handle)
+	{
+		return handle * slotSize;
+	}
+
+
+	/**
+	 * Get the arena buffer, for use with {@link PacketHeaders}.
+	 * NB: The returned buffer is read-only.
+	 *
+	 * @return The arena buffer.
+	 */
+	public ByteBuffer buffer()
+	{
+		return buffer.asReadOnlyBuffer();
+	}
+
+
+	/**
+	 * Point a view at a stored RTP packet.
+	 *
+	 * @param handle The handle of the packet.
+	 * @param view The view instance to re-use.
+	 * @return The given view.
+	 *
+	 * @throws IllegalArgumentException If the handle is not valid or the stored packet is not valid RTP.
+	 */
+	public RTPPacketView view(final int handle, final RTPPacketView view)
+	{
+		checkHandle(handle);
+		return view.wrap(buffer, offset(handle), lengths[handle]);
+	}
+
+
+	/**
+	 * Copy a stored packet into a buffer (e.g. for sending).
+	 *
+	 * @param handle The handle of the packet.
+	 * @param dst The buffer to copy to, from its current position.
+	 * @return The number of bytes copied.
+	 *
+	 * @throws IllegalArgumentException If the handle is not valid.
+	 * @throws java.nio.BufferOverflowException If the destination does not have enough space.
+	 */
+	public int copyTo(final int handle, final ByteBuffer dst)
+	{
+		checkHandle(handle);
+
+		copyView.limit(offset(handle) + lengths[handle]).position(offset(handle));
+		dst.put(copyView);
+
+		return lengths[handle];
+	}
+
+
+	/**
+	 * Gets a stored packet as a byte[].
+	 *
+	 * @param handle The handle of the packet.
+	 * @return a copy of the packet data.
+	 *
+	 * @throws IllegalArgumentException If the handle is not valid.
+	 */
+	public byte[] asByteArray(final int handle)
+	{
+		checkHandle(handle);
+
+		final byte[] data = new byte[lengths[handle]];
+		copyView.limit(offset(handle) + data.length).position(offset(handle));
+		copyView.get(data);
+
+		return data;
+	}
+
+
+	/**
+	 * Get the number of packets stored.
+	 *
+	 * @return The number of slots in use.
+	 */
+	public int size()
+	{
+		return lengths.length - freeCount;
+	}
+
+
+	/**
+	 * Get the number of free slots.
+	 *
+	 * @return The number of slots available.
+	 */
+	public int available()
+	{
+		return freeCount;
+	}
+
+
+	/**
+	 * Get the number of slots in the arena.
+	 *
+	 * @return The slot count.
+	 */
+	public int capacity()
+	{
+		return lengths.length;
+	}
+
+
+	/**
+	 * Get the size of each slot.
+	 *
+	 * @return The slot size in bytes.
+	 */
+	public int slotSize()
+	{
+		return slotSize;
+	}
+
+
+	/**
+	 * Validate a handle.
+	 *
+	 * @param handle The handle to check.
+	 *
+	 * @throws IllegalArgumentException If the handle is out of range or not in use.
+	 */
+	private void checkHandle(final int handle)
+	{
+		if (handle < 0 || handle >= lengths.length || lengths[handle] < 0)
+		{
+			throw new IllegalArgumentException("Invalid packet handle " + handle);
+		}
+	}
+
+
+	/**
+	 * Create an arena with a given number of slots.
+	 *
+	 * @param slotCount The number of slots in the arena.
+	 * @param slotSize The size of each slot in bytes.
+	 * @return The arena instance.
+	 *
+	 * @throws IllegalArgumentException If the slot count or size is invalid.
+	 */
+	public static PacketArena allocate(final int slotCount, final int slotSize)
+	{
+		return new PacketArena(slotCount, slotSize);
+	}
+
+}
@@ -0,0 +1,249 @@
+package org.vidtec.rfc3550.memory;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Helper methods to read RTP and RTCP header fields directly from packet memory, without decoding
+ * the packet or creating any objects.
+ *
+ * All multi-byte fields are read with big-endian (network order) VarHandle accessors at an absolute
+ * offset, so the result does not depend on the position, limit or byte order of the buffer. This works
+ * equally for heap, direct and read-only buffers, and is used to inspect packets held in off-heap storage.
+ *
+ * NB: No validation of the packet is performed, these methods are intended for use on packets that have
+ *     already been validated (or to triage packets before full decode).
+ * NB: An IndexOutOfBoundsException is thrown if a field lies outside of the buffer.
+ */
+public final class PacketHeaders
+{
+
+	/** Big-endian 16-bit accessor. */
+	private static final VarHandle SHORT = MethodHandles.byteBufferViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+
+	/** Big-endian 32-bit accessor. */
+	private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+
+	/**
+	 * Prevent construction.
+	 */
+	private PacketHeaders()
+	{
+	}
+
+
+	/**
+	 * Read an unsigned 8-bit value.
+	 *
+	 * @param bb The buffer to read from.
+	 * @param offset The absolute offset of the value.
+	 * @return The value from 0 - 255.
+	 */
+	public static int getUnsignedByte(final ByteBuffer bb, final int offset)
+	{
+		return 0xFF & bb.get(offset);
+	}
+
+
+	/**
+	 * Read an unsigned big-endian 16-bit value.
+	 *
+	 * @param bb The buffer to read from.
+	 * @param offset The absolute offset of the value.
+	 * @return The value from 0 - 65,535.
+	 */
+	public static int getUnsignedShort(final ByteBuffer bb, final int offset)
+	{
+		return 0xFFFF & (short)SHORT.get(bb, offset);
+	}
+
+
+	/**
+	 * Read an unsigned big-endian 32-bit value.
+	 *
+	 * @param bb The buffer to read from.
+	 * @param offset The absolute offset of the value.
+	 * @return The value as a 32-bit unsigned integer.
+	 */
+	public static long getUnsignedInt(final ByteBuffer bb, final int offset)
+	{
+		return 0xFFFFFFFFL & (int)INT.get(bb, offset);
+	}
+
+
+	/**
+	 * Write a big-endian 16-bit value.
+	 *
+	 * @param bb The buffer to write to.
+	 * @param offset The absolute offset of the value.
+	 * @param value The value to write, only the lower 16 bits are used.
+	 */
+	public static void putShort(final ByteBuffer bb, final int offset, final int value)
+	{
+		SHORT.set(bb, offset, (short)value);
+	}
+
+
+	/**
+	 * Write a big-endian 32-bit value.
+	 *
+	 * @param bb The buffer to write to.
+	 * @param offset The absolute offset of the value.
+	 * @param value The value to write, only the lower 32 bits are used.
+	 */
+	public static void putInt(final ByteBuffer bb, final int offset, final long value)
+	{
+		INT.set(bb, offset, (int)value);
+	}
+
+
+	/**
+	 * Get the version of an RTP or RTCP packet.
+	 *
+	 * @param bb The buffer holding the packet.
+	 * @param offset The offset of the start of the packet.
+	 * @return The version number - should be 2 as per RFC 3550.
+	 */
+	public static int version(final ByteBuffer bb, final int offset)
+	{
+		return (0xC0 & bb.get(offset)) >>> 6;
+	}
+
+
+	/**
+	 * Determine if a packet is RTCP rather than RTP, as per RFC 5761 section 4.
+	 * NB: RTCP packet types 192 - 223 would be RTP payload types 64 - 95 with the marker set,
+	 *     which are not used by RTP, so the two can be demultiplexed on the second byte.
+	 *
+	 * @param bb The buffer holding the packet.
+	 * @param offset The offset of the start of the packet.
+	 * @return true if the packet is RTCP, false if it is RTP.
+	 */
+	public static boolean isRtcp(final ByteBuffer bb, final int offset)
+	{
+		final int pt = getUnsignedByte(bb, offset + 1);
+		return pt >= 192 && pt <= 223;
+	}
+
+
+	/**
+	 * Get the marker of an RTP packet.
+	 *
+	 * @param bb The buffer holding the packet.
+	 * @param offset The offset of the start of the packet.
+	 * @return true if the marker is set, false otherwise.
+	 */
+	public static boolean rtpMarker(final ByteBuffer bb, final int offset)
+	{
+		return (bb.get(offset + 1) & 0x80) == 0x80;
+	}
+
+
+	/**
+	 * Get the payload type of an RTP packet.
+	 *
+	 * @param bb The buffer holding the packet.
+	 * @param offset The offset of the start of the packet.
+	 * @return The payload type from 0 - 127.
+	 */
+	public static int rtpPayloadType(final ByteBuffer bb, final int offset)
+	{
+		return bb.get(offset + 1) & 0x7F;
+	}
+
+
+	/**
+	 * Get the sequence number of an RTP packet.
+	 *
+	 * @param bb The buffer holding the packet.
+	 * @param offset The offset of the start of the packet.
+	 * @return The sequence number ranging from 0 - 65,535.
+	 */
+	public static int rtpSequenceNumber(final ByteBuffer bb, final int offset)
+	{
+		return getUnsignedShort(bb, offset + 2);
+	}
+
+
+	/**
+	 * Get the timestamp of an RTP packet.
+	 *
+	 * @param bb The buffer holding the packet.
+	 * @param offset The offset of the start of the packet.
+	 * @return The timestamp as a 32-bit unsigned integer.
+	 */
+	public static long rtpTimestamp(final ByteBuffer bb, final int offset)
+	{
+		return getUnsignedInt(bb, offset + 4);
+	}
+
+
+	/**
+	 * Get the sync. source identifier of an RTP packet.
+	 *
+	 * @param bb The buffer holding the packet.
+	 * @param offset The offset of the start of the packet.
+	 * @return The ssrc identifier as a 32-bit unsigned integer.
+	 */
+	public static long rtpSsrc(final ByteBuffer bb, final int offset)
+	{
+		return getUnsignedInt(bb, offset + 8);
+	}
+
+
+	/**
+	 * Get the count field of an RTCP packet (report count, source count, or sub-type, depending on packet type).
+	 *
+	 * @param bb The buffer holding the packet.
+	 * @param offset The offset of the start of the packet.
+	 * @return The count from 0 - 31.
+	 */
+	public static int rtcpCount(final ByteBuffer bb, final int offset)
+	{
+		return bb.get(offset) & 0x1F;
+	}
+
+
+	/**
+	 * Get the payload type of an RTCP packet.
+	 *
+	 * @param bb The buffer holding the packet.
+	 * @param offset The offset of the start of the packet.
+	 * @return The payload type from 0 - 255.
+	 */
+	public static int rtcpPayloadType(final ByteBuffer bb, final int offset)
+	{
+		return getUnsignedByte(bb, offset + 1);
+	}
+
+
+	/**
+	 * Get the full length of an RTCP packet from its stated length.
+	 *
+	 * @param bb The buffer holding the packet.
+	 * @param offset The offset of the start of the packet.
+	 * @return The packet length in bytes, including the header.
+	 */
+	public static int rtcpPacketLength(final ByteBuffer bb, final int offset)
+	{
+		// Stated length is in 32-bit words, minus one.
+		return (getUnsignedShort(bb, offset + 2) + 1) * 4;
+	}
+
+
+	/**
+	 * Get the sender ssrc of an RTCP packet.
+	 *
+	 * @param bb The buffer holding the packet.
+	 * @param offset The offset of the start of the packet.
+	 * @return The ssrc identifier as a 32-bit unsigned integer.
+	 */
+	public static long rtcpSsrc(final ByteBuffer bb, final int offset)
+	{
+		return getUnsignedInt(bb, offset + 4);
+	}
+
+}
@@ -0,0 +1,300 @@
+package org.vidtec.rfc3550.memory;
+
+import java.util.Arrays;
+
+/**
+ * An index of SSRCs to entries, for tables of per-source state held in parallel primitive arrays.
+ *
+ * Each SSRC added is given an entry, an integer in the range [0, capacity()) that does not change until the
+ * SSRC is removed, so the caller keeps its values in arrays indexed by entry. The entries are found through an
+ * open-addressed table keyed by SSRC, which is kept at most half full, so a lookup is a hash and a short probe,
+ * with no boxing and no objects created.
+ *
+ * When all entries are in use, adding an SSRC doubles the capacity, the caller should then grow its value
+ * arrays to capacity() (e.g. with Arrays.copyOf()), existing entries keep their index. Removed entries are
+ * re-used by later additions, so the caller should reset the values of an entry when it is added.
+ *
+ * NB: SSRCs are 32 bit unsigned values, so -1 is never a valid SSRC.
+ * NB: This class is NOT thread-safe, an index that is no longer modified may be read by any thread once it
+ *     has been safely published.
+ */
+public final class SsrcIndex
+{
+
+	/** The value of an empty table slot, or an entry not in use. */
+	public static final int NIL = -1;
+
+	/** The value of the SSRC of an entry not in use. */
+	private static final long EMPTY = -1;
+
+
+	/** The entry of each table slot, or NIL. */
+	private int[] table;
+
+	/** The SSRC of each entry, or EMPTY. */
+	private long[] ssrcs;
+
+	/** The next free entry after each free entry. */
+	private int[] nextFree;
+
+	/** The first free entry. */
+	private int free;
+
+	/** The number of SSRCs held. */
+	private int size;
+
+
+	/**
+	 * Create an empty index.
+	 *
+	 * @param capacity The initial number of entries, a power of two.
+	 *
+	 * @throws IllegalArgumentException If the capacity is not valid.
+	 */
+	public SsrcIndex(final int capacity)
+	{
+		if (capacity < 1 || capacity > 0x20000000 || Integer.bitCount(capacity) != 1)
+		{
+			throw new IllegalArgumentException("Expected valid capacity not " + capacity);
+		}
+
+		table = new int[capacity << 1];
+		Arrays.fill(table, NIL);
+		ssrcs = new long[capacity];
+		nextFree = new int[capacity];
+		chainFree(0);
+	}
+
+
+	/**
+	 * Create a copy of an index, with the same entries.
+	 *
+	 * @param index The index to copy.
+	 *
+	 * @throws IllegalArgumentException If the index is null.
+	 */
+	public SsrcIndex(final SsrcIndex index)
+	{
+		if (index == null)
+		{
+			throw new IllegalArgumentException("index cannot be null");
+		}
+
+		table = index.table.clone();
+		ssrcs = index.ssrcs.clone();
+		nextFree = index.nextFree.clone();
+		free = index.free;
+		size = index.size;
+	}
+
+
+	/**
+	 * Find the entry of an SSRC.
+	 *
+	 * @param ssrc The ssrc.
+	 * @return The entry, or NIL if not held.
+	 */
+	public int find(final long ssrc)
+	{
+		final int slot = slot(ssrc);
+		return slot < 0 ? NIL : table[slot];
+	}
+
+
+	/**
+	 * Find the entry of an SSRC, adding it if not held.
+	 *
+	 * NB: The capacity doubles if all entries are in use, so the caller should check capacity() after adding.
+	 *
+	 * @param ssrc The ssrc.
+	 * @return The entry.
+	 *
+	 * @throws IllegalArgumentException If the ssrc is not valid.
+	 */
+	public int add(final long ssrc)
+	{
+		if (ssrc == EMPTY)
+		{
+			throw new IllegalArgumentException("Expected valid ssrc not " + ssrc);
+		}
+
+		final int mask = table.length - 1;
+		int slot = hash(ssrc) & mask;
+		for ( ; table[slot] != NIL ; slot = (slot + 1) & mask)
+		{
+			if (ssrcs[table[slot]] == ssrc)
+			{
+				return table[slot];
+			}
+		}
+
+		if (free == NIL)
+		{
+			grow();
+			return add(ssrc);
+		}
+
+		final int entry = free;
+		free = nextFree[entry];
+		ssrcs[entry] = ssrc;
+		table[slot] = entry;
+		size++;
+		return entry;
+	}
+
+
+	/**
+	 * Remove an SSRC, freeing its entry for re-use.
+	 *
+	 * @param ssrc The ssrc.
+	 * @return The entry the ssrc had, or NIL if not held.
+	 */
+	public int remove(final long ssrc)
+	{
+		int slot = slot(ssrc);
+		if (slot < 0)
+		{
+			return NIL;
+		}
+
+		final int entry = table[slot];
+		ssrcs[entry] = EMPTY;
+		nextFree[entry] = free;
+		free = entry;
+		size--;
+
+		// Backward shift deletion, so that no tombstones are needed.
+		final int mask = table.length - 1;
+		int next = (slot + 1) & mask;
+		while (table[next] != NIL)
+		{
+			final int home = hash(ssrcs[table[next]]) & mask;
+			if (((next - home) & mask) >= ((next - slot) & mask))
+			{
+				table[slot] = table[next];
+				slot = next;
+			}
+			next = (next + 1) & mask;
+		}
+
+		table[slot] = NIL;
+		return entry;
+	}
+
+
+	/**
+	 * Gets the SSRC of an entry, e.g. to iterate over the entries in use.
+	 *
+	 * @param entry The entry, in the range [0, capacity()).
+	 * @return The ssrc, or -1 if the entry is not in use.
+	 */
+	public long ssrc(final int entry)
+	{
+		return ssrcs[entry];
+	}
+
+
+	/**
+	 * Gets the number of SSRCs held.
+	 *
+	 * @return The ssrc count.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+
+	/**
+	 * Gets the number of entries, the length the value arrays of the caller must have.
+	 *
+	 * @return The entry capacity.
+	 */
+	public int capacity()
+	{
+		return ssrcs.length;
+	}
+
+
+	/**
+	 * Find the table slot of an SSRC.
+	 *
+	 * @param ssrc The ssrc.
+	 * @return The slot index, or -1 if not held.
+	 */
+	private int slot(final long ssrc)
+	{
+		final int mask = table.length - 1;
+		for (int slot = hash(ssrc) & mask ; table[slot] != NIL ; slot = (slot + 1) & mask)
+		{
+			if (ssrcs[table[slot]] == ssrc)
+			{
+				return slot;
+			}
+		}
+
+		return -1;
+	}
+
+
+	/**
+	 * Double the entries, and the table indexing them.
+	 * NB: Entries keep their index, so the values of the caller only need to be copied.
+	 */
+	private void grow()
+	{
+		final int entries = ssrcs.length;
+		if (entries >= 0x20000000)
+		{
+			throw new IllegalStateException("index is full");
+		}
+
+		ssrcs = Arrays.copyOf(ssrcs, entries << 1);
+		nextFree = Arrays.copyOf(nextFree, entries << 1);
+		chainFree(entries);
+
+		table = new int[table.length << 1];
+		Arrays.fill(table, NIL);
+		final int mask = table.length - 1;
+		for (int entry = 0 ; entry < entries ; entry++)
+		{
+			int slot = hash(ssrcs[entry]) & mask;
+			while (table[slot] != NIL)
+			{
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = entry;
+		}
+	}
+
+
+	/**
+	 * Chain the entries from an index to the end into the free list, in ascending order.
+	 *
+	 * @param from The first entry to chain.
+	 */
+	private void chainFree(final int from)
+	{
+		for (int entry = from ; entry < ssrcs.length ; entry++)
+		{
+			ssrcs[entry] = EMPTY;
+			nextFree[entry] = entry + 1;
+		}
+		nextFree[ssrcs.length - 1] = NIL;
+		free = from;
+	}
+
+
+	/**
+	 * Hash an SSRC, SSRCs are random but may be chosen badly, so mix the bits.
+	 *
+	 * @param ssrc The ssrc.
+	 * @return The hash value.
+	 */
+	private static int hash(final long ssrc)
+	{
+		final int h = (int)ssrc * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+}
@@ -0,0 +1,26 @@
+package org.vidtec.rfc3550.rtcp;
+
+import org.vidtec.rfc3550.rtcp.types.RTCPPacket;
+
+/**
+ * A decoder for a single RTCP packet type, as registered with an {@link RTCPPacketRegistry}.
+ *
+ * NB: Decoders for types that are not described by {@link RTCPPacket.PayloadType} should
+ *     return packets with a payload type of UNKNOWN, these are passed to
+ *     {@link RTCPPacketsVisitor#visitOther(RTCPPacket)} when visited.
+ */
+@FunctionalInterface
+public interface RTCPPacketDecoder
+{
+
+	/**
+	 * Decode a single RTCP packet.
+	 *
+	 * @param data The packet data, exactly one packet long (as per the stated length).
+	 * @return The packet instance.
+	 *
+	 * @throws IllegalArgumentException If there is a problem with the validity of the packet.
+	 */
+	RTCPPacket<?> decode(byte[] data);
+
+}
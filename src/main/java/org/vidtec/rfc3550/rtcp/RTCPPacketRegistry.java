@@ -0,0 +1,216 @@
+package org.vidtec.rfc3550.rtcp;
+
+import java.util.Arrays;
+
+import org.vidtec.rfc3550.rtcp.types.RTCPPacket.PayloadType;
+import org.vidtec.rfc3550.rtcp.types.app.AppRTCPPacket;
+import org.vidtec.rfc3550.rtcp.types.bye.ByeRTCPPacket;
+import org.vidtec.rfc3550.rtcp.types.feedback.PayloadFeedbackRTCPPacket;
+import org.vidtec.rfc3550.rtcp.types.feedback.TransportFeedbackRTCPPacket;
+import org.vidtec.rfc3550.rtcp.types.report.ReceiverReportRTCPPacket;
+import org.vidtec.rfc3550.rtcp.types.report.SenderReportRTCPPacket;
+import org.vidtec.rfc3550.rtcp.types.sdes.SdesRTCPPacket;
+import org.vidtec.rfc3550.rtcp.types.unknown.UnknownRTCPPacket;
+import org.vidtec.rfc3550.rtcp.types.xr.XrRTCPPacket;
+
+/**
+ * A table of RTCP packet decoders, indexed by the payload type value of the packet header.
+ *
+ * When decoding an {@link RTCPPackets} container, the decoder for each packet is found with a
+ * single array lookup. Applications can register decoders for additional (e.g. proprietary) types,
+ * or replace the decoders for the standard types.
+ *
+ * The standard() registry decodes the types supported by this library, and rejects any other type.
+ * The lenient() registry also decodes any other type as an {@link UnknownRTCPPacket}.
+ *
+ * NB: Registries are immutable once built, and so are safe to share between threads.
+ */
+public final class RTCPPacketRegistry
+{
+
+	/** The registry of standard types. */
+	private static final RTCPPacketRegistry STANDARD = builder().withStandardTypes().build();
+
+	/** The registry of standard types, passing through any other type. */
+	private static final RTCPPacketRegistry LENIENT = builder().withStandardTypes().withUnknownTypes().build();
+
+
+	/** The decoders, indexed by payload type value. */
+	private final RTCPPacketDecoder[] decoders;
+
+
+	/**
+	 * Create a registry from a builder.
+	 *
+	 * @param builder The builder instance to construct a registry from.
+	 */
+	private RTCPPacketRegistry(final Builder builder)
+	{
+		this.decoders = Arrays.copyOf(builder.decoders, builder.decoders.length);
+
+		if (builder.unknown != null)
+		{
+			for (int i = 0 ; i < decoders.length ; i++)
+			{
+				if (decoders[i] == null)
+				{
+					decoders[i] = builder.unknown;
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Get the decoder for a payload type value.
+	 *
+	 * @param value The payload type value, from 0 - 255.
+	 * @return The decoder instance.
+	 *
+	 * @throws IllegalArgumentException If there is no decoder for the type.
+	 */
+	public RTCPPacketDecoder decoder(final int value)
+	{
+		final RTCPPacketDecoder decoder = (value & ~0xFF) == 0 ? decoders[value] : null;
+		if (decoder == null)
+		{
+			throw new IllegalArgumentException("Unknown type - " + String.valueOf(value));
+		}
+
+		return decoder;
+	}
+
+
+	/**
+	 * Determine if there is a decoder for a payload type value.
+	 *
+	 * @param value The payload type value, from 0 - 255.
+	 * @return true if packets of this type can be decoded, false otherwise.
+	 */
+	public boolean isRegistered(final int value)
+	{
+		return (value & ~0xFF) == 0 && decoders[value] != null;
+	}
+
+
+	/**
+	 * Get the registry of the standard types supported by this library.
+	 *
+	 * @return The shared registry instance.
+	 */
+	public static RTCPPacketRegistry standard()
+	{
+		return STANDARD;
+	}
+
+
+	/**
+	 * Get the registry of the standard types, which decodes any other type as an {@link UnknownRTCPPacket}.
+	 *
+	 * @return The shared registry instance.
+	 */
+	public static RTCPPacketRegistry lenient()
+	{
+		return LENIENT;
+	}
+
+
+	/**
+	 * Creates a builder to manually build an {@link RTCPPacketRegistry}.
+	 *
+	 * @return The builder instance.
+	 */
+	public static Builder builder()
+	{
+		return new Builder();
+	}
+
+
+	/**
+	 * A Builder class to build {@link RTCPPacketRegistry} instances.
+	 */
+	public static final class Builder
+	{
+		/** The decoder of each payload type, indexed by value. */
+		private final RTCPPacketDecoder[] decoders = new RTCPPacketDecoder[256];
+
+		/** The decoder for payload types with no decoder, or null. */
+		private RTCPPacketDecoder unknown;
+
+
+		/**
+		 * Private constructor.
+		 */
+		private Builder() { /* Empty Constructor */ }
+
+
+		/**
+		 * The registry should decode the standard types supported by this library.
+		 *
+		 * @return The builder instance.
+		 */
+		public Builder withStandardTypes()
+		{
+			decoders[PayloadType.SR.pt] = SenderReportRTCPPacket::fromByteArray;
+			decoders[PayloadType.RR.pt] = ReceiverReportRTCPPacket::fromByteArray;
+			decoders[PayloadType.SDES.pt] = SdesRTCPPacket::fromByteArray;
+			decoders[PayloadType.BYE.pt] = ByeRTCPPacket::fromByteArray;
+			decoders[PayloadType.APP.pt] = AppRTCPPacket::fromByteArray;
+			decoders[PayloadType.RTPFB.pt] = TransportFeedbackRTCPPacket::fromByteArray;
+			decoders[PayloadType.PSFB.pt] = PayloadFeedbackRTCPPacket::fromByteArray;
+			decoders[PayloadType.XR.pt] = XrRTCPPacket::fromByteArray;
+
+			return this;
+		}
+
+
+		/**
+		 * The registry should decode a type with a given decoder.
+		 * NB: This replaces any decoder already set for the type.
+		 *
+		 * @param value The payload type value, from 0 - 255.
+		 * @param decoder The decoder for the type.
+		 * @return The builder instance.
+		 *
+		 * @throws IllegalArgumentException If the type value is not valid, or the decoder is null.
+		 */
+		public Builder withDecoder(final int value, final RTCPPacketDecoder decoder)
+		{
+			if ((value & ~0xFF) != 0)
+			{
+				throw new IllegalArgumentException("Expected valid payload type not " + value);
+			}
+			if (decoder == null)
+			{
+				throw new IllegalArgumentException("decoder cannot be null");
+			}
+
+			decoders[value] = decoder;
+			return this;
+		}
+
+
+		/**
+		 * The registry should decode all types without a decoder as {@link UnknownRTCPPacket}s.
+		 *
+		 * @return The builder instance.
+		 */
+		public Builder withUnknownTypes()
+		{
+			this.unknown = UnknownRTCPPacket::fromByteArray;
+			return this;
+		}
+
+
+		/**
+		 * Build the registry.
+		 *
+		 * @return The registry instance.
+		 */
+		public RTCPPacketRegistry build()
+		{
+			return new RTCPPacketRegistry(this);
+		}
+	}
+
+}
@@ -7,28 +7,49 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.BiConsumer;
 import java.util.stream.IntStream;
 
 import org.vidtec.rfc3550.rtcp.types.RTCPPacket;
 import org.vidtec.rfc3550.rtcp.types.RTCPPacket.PayloadType;
 import org.vidtec.rfc3550.rtcp.types.app.AppRTCPPacket;
 import org.vidtec.rfc3550.rtcp.types.bye.ByeRTCPPacket;
+import org.vidtec.rfc3550.rtcp.types.feedback.PayloadFeedbackRTCPPacket;
+import org.vidtec.rfc3550.rtcp.types.feedback.TransportFeedbackRTCPPacket;
 import org.vidtec.rfc3550.rtcp.types.report.ReceiverReportRTCPPacket;
 import org.vidtec.rfc3550.rtcp.types.report.SenderReportRTCPPacket;
 import org.vidtec.rfc3550.rtcp.types.sdes.SdesRTCPPacket;
+import org.vidtec.rfc3550.rtcp.types.unknown.UnknownRTCPPacket;
+import org.vidtec.rfc3550.rtcp.types.xr.XrRTCPPacket;
 
 /**
  * A container for RTCP packets. This is the entry point for 
  * decoding RTCP packets as received, as they could be compound.
  * 
+ * By default packets must follow the compound rules of RFC 3550 (a multi-packet container must
+ * start with SR or RR). If reduced-size RTCP has been negotiated for the session (RFC 5506), the
+ * REDUCED_SIZE mode accepts and builds containers without this rule, e.g. a standalone feedback packet.
+ * 
+ * When parsing leniently, packets of an unknown type are kept as opaque {@link UnknownRTCPPacket}s rather
+ * than failing the whole container, so the known packets can still be used and the unknown ones passed through.
+ * Decoders for each packet type are found through an {@link RTCPPacketRegistry}, which can be extended with
+ * decoders for other types.
+ * 
  * https://tools.ietf.org/html/rfc3550
+ * https://tools.ietf.org/html/rfc5506
  */
 public final class RTCPPackets 
 {
 
-	/* The list of packets. */
+	/** The list of packets. */
 	private final List<RTCPPacket<?>> packets = new ArrayList<>();
 	
+	/** The mode the container was created with. */
+	private final Mode mode;
+	
+	/** The visitor dispatch for each payload type, indexed by ordinal. */
+	private static final BiConsumer<RTCPPacketsVisitor, RTCPPacket<?>>[] VISITS = visits();
+	
 	
 	/**
 	 * Construct a packet container with decoded packets from a given byte[]
@@ -46,7 +67,7 @@ public final class RTCPPackets
 		{
 			throw new IllegalArgumentException("container must have at least one packet.");
 		}
-		if (builder.packets.size() > 1)
+		if (builder.packets.size() > 1 && builder.mode == Mode.COMPOUND)
 		{
 			final PayloadType pt = builder.packets.get(0).payloadType();
 			if (!(PayloadType.SR == pt) && !(PayloadType.RR == pt))
@@ -56,6 +77,7 @@ public final class RTCPPackets
 		}
 		
 		this.packets.addAll(builder.packets);
+		this.mode = builder.mode;
 	}
 	
 	
@@ -66,11 +88,14 @@ public final class RTCPPackets
 	 *     use isCompound() to determine this.
 	 * 
 	 * @param bb The ByteBuffer to decode from.
+	 * @param mode The compound rules to apply.
+	 * @param registry The decoders to use for each packet type.
 	 * 
 	 * @throws IllegalArgumentException If there is a problem with the validity of the data.
 	 */
-	private RTCPPackets(final ByteBuffer bb)
+	private RTCPPackets(final ByteBuffer bb, final Mode mode, final RTCPPacketRegistry registry)
 	{
+		this.mode = mode;
 
 		// packet must be at least minimum of one header (min 32 bits)
 		if (bb.remaining() < 4)
@@ -83,11 +108,17 @@ public final class RTCPPackets
 		final int firstStatedLength = (RTCPPacket.peekStatedLength(bb) + 1) * 4;
 		final boolean isCompound = firstStatedLength < bb.remaining();
 		
-		if (isCompound)
+		if (isCompound && mode == Mode.COMPOUND)
 		{
 			// If we are compound ... first should be SR or RR
-			final PayloadType pt = RTCPPacket.peekPayloadType(bb);
-			if (!(PayloadType.SR == pt) && !(PayloadType.RR == pt))
+			final int pt = 0xFF & bb.get(bb.position() + 1);
+			
+			// An unknown type is reported as such, rather than as a compound packet not starting with SR or RR.
+			if (!registry.isRegistered(pt))
+			{
+				throw new IllegalArgumentException("Unknown type - " + pt);
+			}
+			if (PayloadType.SR.pt != pt && PayloadType.RR.pt != pt)
 			{
 				throw new IllegalArgumentException("This looks like a compound packet, but first entry is NOT SR or RR.");
 			}
@@ -101,43 +132,48 @@ public final class RTCPPackets
 				throw new IllegalArgumentException("At least one packet has a malformed length, not enough data remaining.");
 			}
 			
-			// Work out the packet type.
-			final PayloadType payloadType = RTCPPacket.peekPayloadType(bb);
+			// Work out the packet decoder from the payload type.
+			final RTCPPacketDecoder decoder = registry.decoder(0xFF & bb.get(bb.position() + 1));
 
-			// Read the packet data,
+			// Read the packet data, and decode.
 			final byte[] buffer = new byte[nextPacketLength];
 			bb.get(buffer);
 			
-			// Now parse based on the payload type.
-			switch (payloadType)
+			packets.add(decoder.decode(buffer));
+		}
+	}
+	
+	
+	/**
+	 * Create the visitor dispatch table.
+	 * 
+	 * @return The visitor dispatch for each payload type, indexed by ordinal.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static BiConsumer<RTCPPacketsVisitor, RTCPPacket<?>>[] visits()
+	{
+		final BiConsumer<RTCPPacketsVisitor, RTCPPacket<?>>[] visits = new BiConsumer[PayloadType.values().length];
+		visits[PayloadType.SR.ordinal()] = (v, p) -> v.visit((SenderReportRTCPPacket)p);
+		visits[PayloadType.RR.ordinal()] = (v, p) -> v.visit((ReceiverReportRTCPPacket)p);
+		visits[PayloadType.SDES.ordinal()] = (v, p) -> v.visit((SdesRTCPPacket)p);
+		visits[PayloadType.BYE.ordinal()] = (v, p) -> v.visit((ByeRTCPPacket)p);
+		visits[PayloadType.APP.ordinal()] = (v, p) -> v.visit((AppRTCPPacket)p);
+		visits[PayloadType.RTPFB.ordinal()] = (v, p) -> v.visit((TransportFeedbackRTCPPacket)p);
+		visits[PayloadType.PSFB.ordinal()] = (v, p) -> v.visit((PayloadFeedbackRTCPPacket)p);
+		visits[PayloadType.XR.ordinal()] = (v, p) -> v.visit((XrRTCPPacket)p);
+		visits[PayloadType.UNKNOWN.ordinal()] = (v, p) -> 
+		{
+			if (p instanceof UnknownRTCPPacket)
 			{
-				case SR:
-				{
-					packets.add(SenderReportRTCPPacket.fromByteArray(buffer));
-					break;
-				}
-				case RR:
-				{
-					packets.add(ReceiverReportRTCPPacket.fromByteArray(buffer));
-					break;
-				}
-				case SDES:
-				{
-					packets.add(SdesRTCPPacket.fromByteArray(buffer));
-					break;
-				}
-				case APP:
-				{
-					packets.add(AppRTCPPacket.fromByteArray(buffer));
-					break;
-				}
-				case BYE:
-				{
-					packets.add(ByeRTCPPacket.fromByteArray(buffer));
-					break;
-				}
+				v.visit((UnknownRTCPPacket)p);
 			}
-		}
+			else
+			{
+				v.visitOther(p);
+			}
+		};
+		
+		return visits;
 	}
 	
 	
@@ -152,6 +188,29 @@ public final class RTCPPackets
 	}
 	
 
+	/**
+	 * Is this a reduced-size RTCP packet (RFC 5506), i.e. does it NOT start with SR or RR ?
+	 * 
+	 * @return true if this container does not follow the RFC 3550 compound rules, false otherwise.
+	 */
+	public boolean isReducedSize()
+	{
+		final PayloadType pt = packets.get(0).payloadType();
+		return PayloadType.SR != pt && PayloadType.RR != pt;
+	}
+	
+	
+	/**
+	 * Get the compound rules that this container was created with.
+	 * 
+	 * @return The mode of the container.
+	 */
+	public Mode mode()
+	{
+		return mode;
+	}
+	
+
 	/**
 	 * Get the length of all the RTCP packets when combined.
 	 * 
@@ -185,34 +244,7 @@ public final class RTCPPackets
 	{
 		for (RTCPPacket<?> p : packets)
 		{
-			switch (p.payloadType())
-			{
-				case SR:
-				{
-					visitor.visit((SenderReportRTCPPacket)p);
-					break;
-				}
-				case RR:
-				{
-					visitor.visit((ReceiverReportRTCPPacket)p);
-					break;
-				}
-				case SDES:
-				{
-					visitor.visit((SdesRTCPPacket)p);
-					break;
-				}
-				case APP:
-				{
-					visitor.visit((AppRTCPPacket)p);
-					break;
-				}
-				case BYE:
-				{
-					visitor.visit((ByeRTCPPacket)p);
-					break;
-				}
-			}
+			VISITS[p.payloadType().ordinal()].accept(visitor, p);
 		}
 	}
 	
@@ -268,13 +300,70 @@ public final class RTCPPackets
 	 * @throws IllegalArgumentException If there is a problem with the validity of the packet.
 	 */
 	public static RTCPPackets fromByteArray(final byte[] data)
+	{
+		return fromByteArray(data, Mode.COMPOUND);
+	}
+	
+	
+	/**
+	 * Returns an RTCPPackets object derived from a given byte[], using the given compound rules.
+	 * 
+	 * @param data DatagramPacket construct a RTCP packet(s) from.
+	 * @param mode The compound rules negotiated for the session.
+	 * @return The RTCPPackets instance representing the given data.
+	 * 
+	 * @throws IllegalArgumentException If there is a problem with the validity of the packet.
+	 */
+	public static RTCPPackets fromByteArray(final byte[] data, final Mode mode)
+	{
+		return fromByteArray(data, mode, false);
+	}
+	
+	
+	/**
+	 * Returns an RTCPPackets object derived from a given byte[], using the given compound rules.
+	 * NB: When lenient, packets of an unknown type are kept as {@link UnknownRTCPPacket}s.
+	 * 
+	 * @param data DatagramPacket construct a RTCP packet(s) from.
+	 * @param mode The compound rules negotiated for the session.
+	 * @param lenient true if unknown packet types should be kept as opaque packets, false if they should be rejected.
+	 * @return The RTCPPackets instance representing the given data.
+	 * 
+	 * @throws IllegalArgumentException If there is a problem with the validity of the packet.
+	 */
+	public static RTCPPackets fromByteArray(final byte[] data, final Mode mode, final boolean lenient)
+	{
+		return fromByteArray(data, mode, lenient ? RTCPPacketRegistry.lenient() : RTCPPacketRegistry.standard());
+	}
+	
+	
+	/**
+	 * Returns an RTCPPackets object derived from a given byte[], using the given compound rules and decoders.
+	 * 
+	 * @param data DatagramPacket construct a RTCP packet(s) from.
+	 * @param mode The compound rules negotiated for the session.
+	 * @param registry The decoders to use for each packet type.
+	 * @return The RTCPPackets instance representing the given data.
+	 * 
+	 * @throws IllegalArgumentException If there is a problem with the validity of the packet.
+	 */
+	public static RTCPPackets fromByteArray(final byte[] data, final Mode mode, final RTCPPacketRegistry registry)
 	{
 		if (data == null)
 		{
 			throw new IllegalArgumentException("packet data cannot be null");
 		}
+		if (mode == null)
+		{
+			throw new IllegalArgumentException("mode cannot be null");
+		}
 		
-		return new RTCPPackets( ByteBuffer.wrap(data) );
+		if (registry == null)
+		{
+			throw new IllegalArgumentException("registry cannot be null");
+		}
+		
+		return new RTCPPackets( ByteBuffer.wrap(data), mode, registry );
 	}
 	
 	
@@ -288,13 +377,70 @@ public final class RTCPPackets
 	 * @throws IllegalArgumentException If there is a problem with the validity of the packet.
 	 */
 	public static RTCPPackets fromDatagramPacket(final DatagramPacket packet)
+	{
+		return fromDatagramPacket(packet, Mode.COMPOUND);
+	}
+	
+	
+	/**
+	 * Returns an RTCPPackets object derived from a given DatagramPacket, using the given compound rules.
+	 * 
+	 * @param packet DatagramPacket construct a RTCP packet(s) from.
+	 * @param mode The compound rules negotiated for the session.
+	 * @return The RTCPPackets instance representing the given data.
+	 * 
+	 * @throws IllegalArgumentException If there is a problem with the validity of the packet.
+	 */
+	public static RTCPPackets fromDatagramPacket(final DatagramPacket packet, final Mode mode)
+	{
+		return fromDatagramPacket(packet, mode, false);
+	}
+	
+	
+	/**
+	 * Returns an RTCPPackets object derived from a given DatagramPacket, using the given compound rules.
+	 * NB: When lenient, packets of an unknown type are kept as {@link UnknownRTCPPacket}s.
+	 * 
+	 * @param packet DatagramPacket construct a RTCP packet(s) from.
+	 * @param mode The compound rules negotiated for the session.
+	 * @param lenient true if unknown packet types should be kept as opaque packets, false if they should be rejected.
+	 * @return The RTCPPackets instance representing the given data.
+	 * 
+	 * @throws IllegalArgumentException If there is a problem with the validity of the packet.
+	 */
+	public static RTCPPackets fromDatagramPacket(final DatagramPacket packet, final Mode mode, final boolean lenient)
+	{
+		return fromDatagramPacket(packet, mode, lenient ? RTCPPacketRegistry.lenient() : RTCPPacketRegistry.standard());
+	}
+	
+	
+	/**
+	 * Returns an RTCPPackets object derived from a given DatagramPacket, using the given compound rules and decoders.
+	 * 
+	 * @param packet DatagramPacket construct a RTCP packet(s) from.
+	 * @param mode The compound rules negotiated for the session.
+	 * @param registry The decoders to use for each packet type.
+	 * @return The RTCPPackets instance representing the given data.
+	 * 
+	 * @throws IllegalArgumentException If there is a problem with the validity of the packet.
+	 */
+	public static RTCPPackets fromDatagramPacket(final DatagramPacket packet, final Mode mode, final RTCPPacketRegistry registry)
 	{
 		if (packet == null)
 		{
 			throw new IllegalArgumentException("packet cannot be null");
 		}
+		if (mode == null)
+		{
+			throw new IllegalArgumentException("mode cannot be null");
+		}
 		
-		return new RTCPPackets( ByteBuffer.wrap(packet.getData(), 0, packet.getLength()) );
+		if (registry == null)
+		{
+			throw new IllegalArgumentException("registry cannot be null");
+		}
+		
+		return new RTCPPackets( ByteBuffer.wrap(packet.getData(), 0, packet.getLength()), mode, registry );
 	}
 	
 	
@@ -326,8 +472,12 @@ public final class RTCPPackets
 	 */
 	public static final class Builder 
 	{
+		/** The list of packets. */
 		private List<RTCPPacket<?>> packets = new ArrayList<>();
 
+		/** The mode to validate the packets against. */
+		private Mode mode = Mode.COMPOUND;
+
 		
 		/**
 		 * Private constructor.
@@ -386,6 +536,19 @@ public final class RTCPPackets
 		}
 
 		
+		/**
+		 * This container may be reduced-size (RFC 5506), i.e. it does not have to start with SR or RR.
+		 * NB: This should only be used if reduced-size RTCP has been negotiated for the session.
+		 * 
+		 * @return The builder instance.
+		 */
+		public Builder withReducedSize()
+		{
+			this.mode = Mode.REDUCED_SIZE;
+			return this;
+		}
+
+		
 		/**
 		 * Build the packet.
 		 * 
@@ -400,7 +563,16 @@ public final class RTCPPackets
 	}
 	
 	
-	
-	
+	/**
+	 * An enumeration of the compound packet rules, as negotiated per session.
+	 */
+	public static enum Mode
+	{
+		/** Compound packets must start with SR or RR, as per RFC 3550 section 6.1. */
+		COMPOUND,
+		
+		/** Reduced-size packets are allowed, as per RFC 5506. */
+		REDUCED_SIZE;
+	}
 	
 }
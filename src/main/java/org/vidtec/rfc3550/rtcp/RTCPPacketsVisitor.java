@@ -1,10 +1,15 @@
 package org.vidtec.rfc3550.rtcp;
 
+import org.vidtec.rfc3550.rtcp.types.RTCPPacket;
 import org.vidtec.rfc3550.rtcp.types.app.AppRTCPPacket;
 import org.vidtec.rfc3550.rtcp.types.bye.ByeRTCPPacket;
+import org.vidtec.rfc3550.rtcp.types.feedback.PayloadFeedbackRTCPPacket;
+import org.vidtec.rfc3550.rtcp.types.feedback.TransportFeedbackRTCPPacket;
 import org.vidtec.rfc3550.rtcp.types.report.ReceiverReportRTCPPacket;
 import org.vidtec.rfc3550.rtcp.types.report.SenderReportRTCPPacket;
 import org.vidtec.rfc3550.rtcp.types.sdes.SdesRTCPPacket;
+import org.vidtec.rfc3550.rtcp.types.unknown.UnknownRTCPPacket;
+import org.vidtec.rfc3550.rtcp.types.xr.XrRTCPPacket;
 
 /**
  * An interface for supporting visiting RTCP packets in a stream.
@@ -66,4 +71,60 @@ public interface RTCPPacketsVisitor
 		// Do nothing
 	};
 	
+	
+	/**
+	 * Handle a RTPFB (transport layer feedback) RTCP packet in the packet stream.
+	 * 
+	 * @param packet The packet instance.
+	 */
+	default void visit(final TransportFeedbackRTCPPacket packet)
+	{
+		// Do nothing
+	};
+	
+	
+	/**
+	 * Handle a PSFB (payload-specific feedback) RTCP packet in the packet stream.
+	 * 
+	 * @param packet The packet instance.
+	 */
+	default void visit(final PayloadFeedbackRTCPPacket packet)
+	{
+		// Do nothing
+	};
+	
+	
+	/**
+	 * Handle a XR RTCP packet in the packet stream.
+	 * 
+	 * @param packet The packet instance.
+	 */
+	default void visit(final XrRTCPPacket packet)
+	{
+		// Do nothing
+	};
+	
+	
+	/**
+	 * Handle an RTCP packet of an unknown type in the packet stream (only seen when parsing leniently).
+	 * 
+	 * @param packet The packet instance.
+	 */
+	default void visit(final UnknownRTCPPacket packet)
+	{
+		// Do nothing
+	};
+	
+	
+	/**
+	 * Handle an RTCP packet of a type not described by this interface, i.e. from a decoder registered
+	 * for an additional type with an {@link RTCPPacketRegistry}.
+	 * 
+	 * @param packet The packet instance.
+	 */
+	default void visitOther(final RTCPPacket<?> packet)
+	{
+		// Do nothing
+	};
+	
 }
@@ -0,0 +1,813 @@
+package org.vidtec.rfc3550.rtcp.stats;
+
+import org.vidtec.rfc3550.rtcp.types.xr.PacketReceiptTimesBlock;
+import org.vidtec.rfc3550.rtcp.types.xr.RunLengthBlock;
+import org.vidtec.rfc3550.rtcp.types.xr.StatisticsSummaryBlock;
+import org.vidtec.rfc3550.rtcp.types.xr.VoipMetricsBlock;
+import org.vidtec.rfc3550.rtp.RTPPacket;
+
+/**
+ * A receive-side collector of the metrics reported in RTCP extended reports (RFC 3611), for a single
+ * RTP stream (ssrc).
+ *
+ * All metrics are updated incrementally as each packet arrives, so creating a report never re-scans the
+ * packet history:
+ *  - the received / duplicated packets and receipt times of the most recent packets are held in a sliding
+ *    window (as bitmaps and an array, indexed by extended sequence number modulo the window size), for the
+ *    Loss RLE, Duplicate RLE and Packet Receipt Times blocks.
+ *  - lost and duplicate counts, and the min / max / mean / deviation of the jitter and TTL (or hop limit)
+ *    values are kept as running totals, for the Statistics Summary block.
+ *  - the burst / gap transition counts are kept by the Gmin state machine of RFC 3611 appendix A.2, for
+ *    the VoIP Metrics block.
+ *
+ * Packets are only tracked from the start of the reporting interval, reset() starts a new interval.
+ *
+ * NB: Arrival times are supplied by the caller in RTP timestamp units, from any monotonic clock.
+ * NB: This class is NOT thread-safe.
+ */
+public final class ExtendedReportStatistics
+{
+
+	/** The SSRC of the source. */
+	private final long ssrc;
+
+	/** The received packet bitmap, indexed by extended sequence number modulo the window size. */
+	private final long[] received;
+
+	/** The duplicated packet bitmap, indexed by extended sequence number modulo the window size. */
+	private final long[] duplicated;
+
+	/** The arrival time of each slot. */
+	private final long[] receiptTimes;
+
+	/** The window mask. */
+	private final int mask;
+
+	/** The gap threshold. */
+	private final int gmin;
+
+	/** The media duration of a packet, in milliseconds. */
+	private final int packetDurationMillis;
+
+	/** The kind of TTL values reported. */
+	private final int toh;
+
+	/** The first extended sequence number of the interval. */
+	private long first = -1;
+
+	/** The highest extended sequence number received, or -1 if none. */
+	private long highest = -1;
+
+	/** The number of distinct packets received in the interval. */
+	private long receivedCount;
+
+	/** The number of duplicate packets received in the interval. */
+	private long duplicateCount;
+
+	/** The number of packets discarded in the interval. */
+	private long discardCount;
+
+	/** The transit time of the previous packet. */
+	private int previousTransit;
+
+	/** Whether there is a previous transit time in the interval. */
+	private boolean hasTransit;
+
+	/** The jitter values. */
+	private final RunningStatistics jitter = new RunningStatistics();
+
+	/** The TTL values. */
+	private final RunningStatistics ttl = new RunningStatistics();
+
+	// Burst / gap state, as per RFC 3611 appendix A.2, where the states are 1 - received in a gap, 2 - received
+	// in a burst, 3 - lost in a burst and 4 - lost in a gap (an isolated loss).
+
+	/** The number of packets lost in the interval. */
+	private long lostEvents;
+
+	/** The number of packets received since the last loss. */
+	private long pkt;
+
+	/** The number of packets lost in the current burst. */
+	private long lost;
+
+	/** The number of transitions from state 1 to state 1. */
+	private long c11;
+
+	/** The number of transitions from state 1 to state 3. */
+	private long c13;
+
+	/** The number of transitions from state 1 to state 4. */
+	private long c14;
+
+	/** The number of transitions from state 2 to state 2. */
+	private long c22;
+
+	/** The number of transitions from state 2 to state 3. */
+	private long c23;
+
+	/** The number of transitions from state 3 to state 3. */
+	private long c33;
+
+
+	/**
+	 * Create a statistics collector.
+	 *
+	 * @param builder The builder instance to construct a collector from.
+	 *
+	 * @throws IllegalArgumentException If any of the values are invalid.
+	 */
+	private ExtendedReportStatistics(final Builder builder)
+	{
+		if (builder.ssrc < 0 || builder.ssrc > 0xFFFFFFFFL)
+		{
+			throw new IllegalArgumentException("Expected valid ssrc not " + builder.ssrc);
+		}
+		if (builder.windowSize < 64 || builder.windowSize > 0x8000 || Integer.bitCount(builder.windowSize) != 1)
+		{
+			throw new IllegalArgumentException("Expected valid window size not " + builder.windowSize);
+		}
+		if (builder.gmin < 1 || builder.gmin > 0xFF)
+		{
+			throw new IllegalArgumentException("Expected valid gmin not " + builder.gmin);
+		}
+		if (builder.packetDurationMillis < 1 || builder.packetDurationMillis > 0xFFFF)
+		{
+			throw new IllegalArgumentException("Expected valid packet duration not " + builder.packetDurationMillis);
+		}
+		if (builder.toh != StatisticsSummaryBlock.TOH_IPV4_TTL && builder.toh != StatisticsSummaryBlock.TOH_IPV6_HOP_LIMIT)
+		{
+			throw new IllegalArgumentException("Expected valid ToH value not " + builder.toh);
+		}
+
+		this.ssrc = builder.ssrc;
+		this.received = new long[builder.windowSize >>> 6];
+		this.duplicated = new long[builder.windowSize >>> 6];
+		this.receiptTimes = new long[builder.windowSize];
+		this.mask = builder.windowSize - 1;
+		this.gmin = builder.gmin;
+		this.packetDurationMillis = builder.packetDurationMillis;
+		this.toh = builder.toh;
+	}
+
+
+	/**
+	 * Record a received packet.
+	 *
+	 * @param packet The packet received.
+	 * @param arrival The arrival time of the packet, in RTP timestamp units.
+	 * @param ttl The IP TTL (or hop limit) of the packet, or -1 if not known.
+	 * @return true if the packet is a duplicate, false otherwise.
+	 *
+	 * @throws IllegalArgumentException If the packet is null, or the ttl is not valid.
+	 */
+	public boolean received(final RTPPacket packet, final long arrival, final int ttl)
+	{
+		if (packet == null)
+		{
+			throw new IllegalArgumentException("packet cannot be null");
+		}
+
+		return received(packet.sequenceNumber(), packet.timestamp(), arrival, ttl);
+	}
+
+
+	/**
+	 * Record a received packet.
+	 *
+	 * @param sequenceNumber The sequence number of the packet received.
+	 * @param timestamp The RTP timestamp of the packet received.
+	 * @param arrival The arrival time of the packet, in RTP timestamp units.
+	 * @param ttl The IP TTL (or hop limit) of the packet, or -1 if not known.
+	 * @return true if the packet is a duplicate, false otherwise.
+	 *
+	 * @throws IllegalArgumentException If the ttl is not valid.
+	 */
+	public boolean received(final int sequenceNumber, final long timestamp, final long arrival, final int ttl)
+	{
+		if (ttl < -1 || ttl > 0xFF)
+		{
+			throw new IllegalArgumentException("Expected valid ttl not " + ttl);
+		}
+
+		if (highest < 0)
+		{
+			first = highest = 0x10000L + (0xFFFF & sequenceNumber);
+			setReceived((int)highest & mask, arrival);
+			packetEvent();
+			update(timestamp, arrival, ttl);
+			return false;
+		}
+
+		// Signed distance from the highest, allowing for wraparound.
+		final int delta = (short)(sequenceNumber - (int)highest);
+		final long ext = highest + delta;
+
+		if (delta > 0)
+		{
+			// Clear the slots being re-used, the part of the gap beyond the window is not tracked.
+			for (long e = Math.max(highest + 1, ext - mask) ; e < ext ; e++)
+			{
+				clear((int)e & mask);
+			}
+			clear((int)ext & mask);
+
+			if (delta > 1)
+			{
+				lossEvents(delta - 1);
+			}
+			packetEvent();
+
+			highest = ext;
+			setReceived((int)ext & mask, arrival);
+			update(timestamp, arrival, ttl);
+			return false;
+		}
+
+		if (ext < first)
+		{
+			// Before the start of the interval.
+			return false;
+		}
+
+		if (highest - ext > mask)
+		{
+			// Too late to be tracked, assume it is not a duplicate.
+			receivedCount++;
+			update(timestamp, arrival, ttl);
+			return false;
+		}
+
+		final int slot = (int)ext & mask;
+		if (isSet(received, slot))
+		{
+			duplicated[slot >>> 6] |= 1L << (slot & 0x3F);
+			duplicateCount++;
+			return true;
+		}
+
+		// A late packet, the burst / gap state has already counted it as lost.
+		setReceived(slot, arrival);
+		update(timestamp, arrival, ttl);
+		return false;
+	}
+
+
+	/**
+	 * Record a packet that was received, but discarded (e.g. it arrived too late to be played out).
+	 */
+	public void discarded()
+	{
+		discardCount++;
+	}
+
+
+	/**
+	 * Start a new reporting interval, the next packet after the highest received so far is the first
+	 * of the interval.
+	 */
+	public void reset()
+	{
+		if (highest >= 0)
+		{
+			first = highest + 1;
+		}
+
+		receivedCount = 0;
+		duplicateCount = 0;
+		discardCount = 0;
+		hasTransit = false;
+		jitter.reset();
+		ttl.reset();
+		lostEvents = pkt = lost = c11 = c13 = c14 = c22 = c23 = c33 = 0;
+	}
+
+
+	/**
+	 * Gets the number of packets lost in the interval.
+	 *
+	 * @return The lost packet count.
+	 */
+	public long lostCount()
+	{
+		return Math.max(0, expectedCount() - receivedCount);
+	}
+
+
+	/**
+	 * Gets the number of duplicate packets received in the interval.
+	 *
+	 * @return The duplicate packet count.
+	 */
+	public long duplicateCount()
+	{
+		return duplicateCount;
+	}
+
+
+	/**
+	 * Gets the number of packets discarded in the interval.
+	 *
+	 * @return The discarded packet count.
+	 */
+	public long discardedCount()
+	{
+		return discardCount;
+	}
+
+
+	/**
+	 * Create a Loss RLE block covering the packets in the window.
+	 *
+	 * @return The block instance.
+	 */
+	public RunLengthBlock lossRle()
+	{
+		final int count = windowCount();
+		return RunLengthBlock.lossRle(ssrc, 0xFFFF & (int)windowBegin(), count, windowBitmap(received, count));
+	}
+
+
+	/**
+	 * Create a Duplicate RLE block covering the packets in the window.
+	 *
+	 * @return The block instance.
+	 */
+	public RunLengthBlock duplicateRle()
+	{
+		final int count = windowCount();
+		return RunLengthBlock.duplicateRle(ssrc, 0xFFFF & (int)windowBegin(), count, windowBitmap(duplicated, count));
+	}
+
+
+	/**
+	 * Create a Packet Receipt Times block covering the packets in the window.
+	 * NB: Lost packets are reported with a receipt time of 0.
+	 *
+	 * @return The block instance.
+	 */
+	public PacketReceiptTimesBlock packetReceiptTimes()
+	{
+		final long begin = windowBegin();
+		final long[] times = new long[windowCount()];
+		for (int i = 0 ; i < times.length ; i++)
+		{
+			final int slot = (int)(begin + i) & mask;
+			times[i] = isSet(received, slot) ? receiptTimes[slot] : 0;
+		}
+
+		return PacketReceiptTimesBlock.receiptTimes(ssrc, 0xFFFF & (int)begin, times);
+	}
+
+
+	/**
+	 * Create a Statistics Summary block covering the interval.
+	 *
+	 * @return The block instance.
+	 */
+	public StatisticsSummaryBlock statisticsSummary()
+	{
+		final StatisticsSummaryBlock.Builder builder = StatisticsSummaryBlock.builder()
+				.withSsrc(ssrc)
+				.withSequenceRange(0xFFFF & (int)Math.max(first, 0), 0xFFFF & (int)(highest + 1))
+				.withLoss(Math.min(lostCount(), 0xFFFFFFFFL))
+				.withDuplicates(Math.min(duplicateCount, 0xFFFFFFFFL));
+
+		if (jitter.count > 0)
+		{
+			builder.withJitter(clamp(jitter.min, 0xFFFFFFFFL), clamp(jitter.max, 0xFFFFFFFFL),
+					clamp(jitter.mean(), 0xFFFFFFFFL), clamp(jitter.deviation(), 0xFFFFFFFFL));
+		}
+		if (ttl.count > 0)
+		{
+			builder.withTtl(toh, (int)ttl.min, (int)ttl.max, (int)clamp(ttl.mean(), 0xFF), (int)clamp(ttl.deviation(), 0xFF));
+		}
+
+		return builder.build();
+	}
+
+
+	/**
+	 * Create a VoIP Metrics block builder, with the loss, discard and burst / gap metrics of the interval.
+	 * The application can add the remaining (media dependent) metrics before building the block.
+	 *
+	 * @return The builder instance.
+	 */
+	public VoipMetricsBlock.Builder voipMetrics()
+	{
+		final long expected = expectedCount();
+		final int lossRate = expected == 0 ? 0 : (int)clamp((lostCount() << 8) / expected, 0xFF);
+		final int discardRate = expected == 0 ? 0 : (int)clamp((discardCount << 8) / expected, 0xFF);
+
+		// As per RFC 3611 appendix A.2, including the packets received since the last loss.
+		final long c11 = this.c11 + pkt;
+		final long c31 = c13;
+		final long c32 = c23;
+		final long total = c11 + c14 + c13 + c22 + c23 + c31 + c32 + c33;
+
+		final double p32 = (c31 + c32 + c33) == 0 ? 0 : (double)c32 / (c31 + c32 + c33);
+		final double p23 = (c22 + c23) == 0 ? 1 : 1 - (double)c22 / (c22 + c23);
+
+		final int burstDensity = (int)clamp(Math.round(256 * p23 / (p23 + p32)), 0xFF);
+		final int gapDensity = (c11 + c14) == 0 ? 0 : (int)clamp(256 * c14 / (c11 + c14), 0xFF);
+
+		int burstDuration = 0;
+		int gapDuration = 0;
+		if (c13 > 0)
+		{
+			final long gapLength = (c11 + c14 + c13) * packetDurationMillis / c13;
+			gapDuration = (int)clamp(gapLength, 0xFFFF);
+			burstDuration = (int)clamp(total * packetDurationMillis / c13 - gapLength, 0xFFFF);
+		}
+		else if (lostEvents == 0)
+		{
+			// No losses, the whole interval is a gap.
+			gapDuration = (int)clamp(c11 * packetDurationMillis, 0xFFFF);
+		}
+
+		return VoipMetricsBlock.builder()
+				.withSsrc(ssrc)
+				.withLoss(lossRate, discardRate)
+				.withBurstGap(lostEvents == 0 ? 0 : burstDensity, gapDensity, burstDuration, gapDuration, gmin);
+	}
+
+
+	/**
+	 * Gets the number of packets expected in the interval.
+	 *
+	 * @return The expected packet count.
+	 */
+	private long expectedCount()
+	{
+		return highest < first ? 0 : highest - first + 1;
+	}
+
+
+	/**
+	 * Gets the first extended sequence number of the window.
+	 *
+	 * @return The extended sequence number.
+	 */
+	private long windowBegin()
+	{
+		return highest < first ? Math.max(first, 0) : Math.max(first, highest - mask);
+	}
+
+
+	/**
+	 * Gets the number of sequence numbers in the window.
+	 *
+	 * @return The sequence number count.
+	 */
+	private int windowCount()
+	{
+		return highest < first ? 0 : (int)(highest - windowBegin() + 1);
+	}
+
+
+	/**
+	 * Copy the window of a bitmap, so that bit i represents the first sequence number of the window + i.
+	 *
+	 * @param bitmap The bitmap to copy.
+	 * @param count The number of sequence numbers in the window.
+	 * @return The copied bitmap.
+	 */
+	private long[] windowBitmap(final long[] bitmap, final int count)
+	{
+		final long begin = windowBegin();
+		final long[] copy = new long[(count + 63) >>> 6];
+		for (int i = 0 ; i < count ; i++)
+		{
+			if (isSet(bitmap, (int)(begin + i) & mask))
+			{
+				copy[i >>> 6] |= 1L << (i & 0x3F);
+			}
+		}
+
+		return copy;
+	}
+
+
+	/**
+	 * Update the running jitter and TTL statistics for a packet.
+	 *
+	 * @param timestamp The RTP timestamp of the packet.
+	 * @param arrival The arrival time of the packet.
+	 * @param ttl The TTL of the packet, or -1 if not known.
+	 */
+	private void update(final long timestamp, final long arrival, final int ttl)
+	{
+		// As per RFC 3550 section 6.4.1, the transit time allowing for wraparound.
+		final int transit = (int)(arrival - timestamp);
+		if (hasTransit)
+		{
+			jitter.add(Math.abs((long)transit - previousTransit));
+		}
+		previousTransit = transit;
+		hasTransit = true;
+
+		if (ttl >= 0)
+		{
+			this.ttl.add(ttl);
+		}
+	}
+
+
+	/**
+	 * Update the burst / gap state for a received packet.
+	 */
+	private void packetEvent()
+	{
+		pkt++;
+	}
+
+
+	/**
+	 * Update the burst / gap state for a run of lost packets.
+	 *
+	 * @param count The number of lost packets.
+	 */
+	private void lossEvents(final int count)
+	{
+		lostEvents += count;
+
+		if (pkt >= gmin)
+		{
+			if (lost == 1)
+			{
+				c14++;
+			}
+			else
+			{
+				c13++;
+			}
+			lost = 1;
+			c11 += pkt;
+		}
+		else
+		{
+			lost++;
+			if (pkt == 0)
+			{
+				c33++;
+			}
+			else
+			{
+				c23++;
+				c22 += pkt - 1;
+			}
+		}
+
+		// The remaining losses of the run follow a loss, so there are no received packets in between.
+		lost += count - 1;
+		c33 += count - 1;
+		pkt = 0;
+	}
+
+
+	/**
+	 * Mark a slot as received.
+	 *
+	 * @param slot The slot index.
+	 * @param arrival The arrival time.
+	 */
+	private void setReceived(final int slot, final long arrival)
+	{
+		received[slot >>> 6] |= 1L << (slot & 0x3F);
+		receiptTimes[slot] = 0xFFFFFFFFL & arrival;
+		receivedCount++;
+	}
+
+
+	/**
+	 * Clear a slot for re-use.
+	 *
+	 * @param slot The slot index.
+	 */
+	private void clear(final int slot)
+	{
+		received[slot >>> 6] &= ~(1L << (slot & 0x3F));
+		duplicated[slot >>> 6] &= ~(1L << (slot & 0x3F));
+	}
+
+
+	/**
+	 * Determine if a slot is set in a bitmap.
+	 *
+	 * @param bitmap The bitmap.
+	 * @param slot The slot index.
+	 * @return true if set, false otherwise.
+	 */
+	private static boolean isSet(final long[] bitmap, final int slot)
+	{
+		return (bitmap[slot >>> 6] & (1L << (slot & 0x3F))) != 0;
+	}
+
+
+	/**
+	 * Clamp a value to a maximum.
+	 *
+	 * @param value The value.
+	 * @param max The maximum.
+	 * @return The clamped value.
+	 */
+	private static long clamp(final long value, final long max)
+	{
+		return Math.min(Math.max(value, 0), max);
+	}
+
+
+	/**
+	 * Running min / max / mean / deviation of a series of values (using Welford's method).
+	 */
+	private static final class RunningStatistics
+	{
+		/** The number of values. */
+		private long count;
+
+		/** The smallest value. */
+		private long min;
+
+		/** The largest value. */
+		private long max;
+
+		/** The mean of the values. */
+		private double mean;
+
+		/** The sum of squared differences from the mean. */
+		private double m2;
+
+
+		/**
+		 * Add a value.
+		 *
+		 * @param value The value.
+		 */
+		private void add(final long value)
+		{
+			if (count == 0)
+			{
+				min = max = value;
+			}
+			else
+			{
+				min = Math.min(min, value);
+				max = Math.max(max, value);
+			}
+
+			count++;
+			final double d = value - mean;
+			mean += d / count;
+			m2 += d * (value - mean);
+		}
+
+
+		/**
+		 * Gets the mean of the values.
+		 *
+		 * @return The rounded mean.
+		 */
+		private long mean()
+		{
+			return Math.round(mean);
+		}
+
+
+		/**
+		 * Gets the (population) standard deviation of the values.
+		 *
+		 * @return The rounded deviation.
+		 */
+		private long deviation()
+		{
+			return count == 0 ? 0 : Math.round(Math.sqrt(m2 / count));
+		}
+
+
+		/**
+		 * Clear all values.
+		 */
+		private void reset()
+		{
+			count = min = max = 0;
+			mean = m2 = 0;
+		}
+	}
+
+
+	/**
+	 * Obtain a builder for the statistics collector.
+	 *
+	 * @return The builder instance.
+	 */
+	public static Builder builder()
+	{
+		return new Builder();
+	}
+
+
+	/**
+	 * A builder for the statistics collector.
+	 */
+	public static final class Builder
+	{
+		/** The SSRC of the source. */
+		private long ssrc = -1;
+
+		/** The number of packets covered by the RLE and receipt times blocks. */
+		private int windowSize = 1024;
+
+		/** The gap threshold. */
+		private int gmin = 16;
+
+		/** The media duration of each packet. */
+		private int packetDurationMillis = 20;
+
+		/** The kind of TTL values supplied. */
+		private int toh = StatisticsSummaryBlock.TOH_IPV4_TTL;
+
+		/**
+		 * Private constructor.
+		 */
+		private Builder() { /* Empty Constructor */ }
+
+
+		/**
+		 * Set the SSRC of the source.
+		 *
+		 * @param ssrc The ssrc identifier.
+		 * @return The builder instance.
+		 */
+		public Builder withSsrc(final long ssrc)
+		{
+			this.ssrc = ssrc;
+			return this;
+		}
+
+
+		/**
+		 * Set the number of packets covered by the RLE and receipt times blocks.
+		 *
+		 * @param windowSize The window size, a power of two from 64 - 32768 (default 1024).
+		 * @return The builder instance.
+		 */
+		public Builder withWindow(final int windowSize)
+		{
+			this.windowSize = windowSize;
+			return this;
+		}
+
+
+		/**
+		 * Set the gap threshold, the minimum number of received packets between losses for them to be in a gap.
+		 *
+		 * @param gmin The gap threshold, from 1 - 255 (default 16).
+		 * @return The builder instance.
+		 */
+		public Builder withGmin(final int gmin)
+		{
+			this.gmin = gmin;
+			return this;
+		}
+
+
+		/**
+		 * Set the media duration of each packet, used for the burst and gap durations.
+		 *
+		 * @param packetDurationMillis The packet duration in milliseconds (default 20).
+		 * @return The builder instance.
+		 */
+		public Builder withPacketDuration(final int packetDurationMillis)
+		{
+			this.packetDurationMillis = packetDurationMillis;
+			return this;
+		}
+
+
+		/**
+		 * Set the kind of TTL values supplied.
+		 *
+		 * @param toh TOH_IPV4_TTL (default) or TOH_IPV6_HOP_LIMIT.
+		 * @return The builder instance.
+		 */
+		public Builder withTtlKind(final int toh)
+		{
+			this.toh = toh;
+			return this;
+		}
+
+
+		/**
+		 * Build the statistics collector.
+		 *
+		 * @return The collector instance.
+		 *
+		 * @throws IllegalArgumentException If any of the values are invalid.
+		 */
+		public ExtendedReportStatistics build()
+		{
+			return new ExtendedReportStatistics(this);
+		}
+	}
+
+}
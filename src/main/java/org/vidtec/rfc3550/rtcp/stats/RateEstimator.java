@@ -0,0 +1,561 @@
+package org.vidtec.rfc3550.rtcp.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.vidtec.rfc3550.rtp.RTPPacket;
+import org.vidtec.rfc3550.rtp.RTPPacketView;
+
+/**
+ * Estimates the packet rate and bitrate of a single RTP stream (ssrc), e.g. for admission control, and keeps
+ * the packet and octet totals of the stream for the sender info of RTCP SR packets.
+ *
+ * Rates are measured over a sliding window, held as a fixed ring of buckets (one per window / buckets
+ * milliseconds), each counting the packets and bytes of its interval:
+ *  - each bucket counter is an atomic long holding the bucket interval (low 32 bits of the epoch) in the high
+ *    32 bits and the count in the low 32 bits, so a single CAS both moves a bucket on to a new interval and
+ *    counts the packet, no locks are taken, and nothing is allocated per packet.
+ *  - the window rate is the sum of the completed buckets in the window (so it is never skewed by a partly
+ *    filled bucket), over the window length (or the time since the first packet, if shorter).
+ *  - an exponentially weighted moving average of the rate of each completed bucket is folded in as buckets
+ *    complete, by the first packet of a later bucket (before it can re-use the ring slot of a bucket not yet
+ *    folded in) or by a reader, whichever comes first. So every bucket is folded in once, however rarely
+ *    the average is read, and the write path only allocates once per bucket, not per packet.
+ *
+ * NB: Times are supplied by the caller in milliseconds, from any monotonic clock, and may be negative
+ *     (e.g. System.nanoTime() / 1000000).
+ * NB: A packet recorded with a time before the interval of its bucket (e.g. by a thread delayed for longer
+ *     than the window) is counted in the totals, but not the rates.
+ * NB: Each bucket counts at most 4GB, so buckets should be shorter than a second at the highest bitrates.
+ * NB: This class is thread-safe.
+ */
+public final class RateEstimator
+{
+
+	/** The mask of the interval tag of a bucket counter. */
+	private static final long TAG_MASK = 0xFFFFFFFF00000000L;
+
+	/** The mask of the count of a bucket counter. */
+	private static final long COUNT_MASK = 0x00000000FFFFFFFFL;
+
+	/** The epoch of no packet, as any time may be given. */
+	private static final long NONE = Long.MIN_VALUE;
+
+
+	/** The SSRC of the stream. */
+	private final long ssrc;
+
+	/** The length of a bucket in milliseconds. */
+	private final long bucketMillis;
+
+	/** The number of completed buckets in the window. */
+	private final int buckets;
+
+	/** The weight of each completed bucket in the moving average. */
+	private final double smoothing;
+
+	/** The packet and byte counter of each bucket, the window plus the current bucket. */
+	private final AtomicLongArray counters;
+
+	/** The epoch (time / bucket length) of the first packet, or NONE. */
+	private final AtomicLong firstEpoch = new AtomicLong(NONE);
+
+	/** The total packets. */
+	private final AtomicLong packets = new AtomicLong();
+
+	/** The total bytes of the packets. */
+	private final AtomicLong bytes = new AtomicLong();
+
+	/** The total payload octets of the packets. */
+	private final AtomicLong octets = new AtomicLong();
+
+	/** The moving average, as of the last completed bucket folded in. */
+	private final AtomicReference<Average> average = new AtomicReference<>(new Average(NONE, 0, 0));
+
+
+	/**
+	 * Create an estimator.
+	 *
+	 * @param builder The builder instance to construct an estimator from.
+	 *
+	 * @throws IllegalArgumentException If any of the values are invalid.
+	 */
+	private RateEstimator(final Builder builder)
+	{
+		if (builder.ssrc < 0 || builder.ssrc > 0xFFFFFFFFL)
+		{
+			throw new IllegalArgumentException("Expected valid ssrc not " + builder.ssrc);
+		}
+		if (builder.buckets < 2 || builder.buckets > 1024)
+		{
+			throw new IllegalArgumentException("Expected valid bucket count not " + builder.buckets);
+		}
+		if (builder.windowMillis < builder.buckets || builder.windowMillis % builder.buckets != 0)
+		{
+			throw new IllegalArgumentException("Expected valid window not " + builder.windowMillis);
+		}
+		if (!(builder.smoothing > 0 && builder.smoothing <= 1))
+		{
+			throw new IllegalArgumentException("Expected valid smoothing not " + builder.smoothing);
+		}
+
+		this.ssrc = builder.ssrc;
+		this.buckets = builder.buckets;
+		this.bucketMillis = builder.windowMillis / builder.buckets;
+		this.smoothing = builder.smoothing;
+		this.counters = new AtomicLongArray((builder.buckets + 1) * 2);
+	}
+
+
+	/**
+	 * Record a sent (or received) packet.
+	 *
+	 * @param packet The packet.
+	 * @param nowMillis The time of the packet, in milliseconds.
+	 *
+	 * @throws IllegalArgumentException If the packet is null.
+	 */
+	public void record(final RTPPacket packet, final long nowMillis)
+	{
+		if (packet == null)
+		{
+			throw new IllegalArgumentException("packet cannot be null");
+		}
+
+		record(packet.packetLength(), packet.payloadLength(), nowMillis);
+	}
+
+
+	/**
+	 * Record a sent (or received) packet held in a view.
+	 *
+	 * @param packet The packet.
+	 * @param nowMillis The time of the packet, in milliseconds.
+	 *
+	 * @throws IllegalArgumentException If the packet is null.
+	 */
+	public void record(final RTPPacketView packet, final long nowMillis)
+	{
+		if (packet == null)
+		{
+			throw new IllegalArgumentException("packet cannot be null");
+		}
+
+		record(packet.packetLength(), packet.payloadLength(), nowMillis);
+	}
+
+
+	/**
+	 * Record a sent (or received) packet.
+	 *
+	 * @param packetLength The length of the packet in bytes.
+	 * @param payloadLength The length of the payload of the packet in bytes.
+	 * @param nowMillis The time of the packet, in milliseconds.
+	 *
+	 * @throws IllegalArgumentException If the lengths are not valid.
+	 */
+	public void record(final int packetLength, final int payloadLength, final long nowMillis)
+	{
+		if (packetLength < 0)
+		{
+			throw new IllegalArgumentException("Expected valid packet length not " + packetLength);
+		}
+		if (payloadLength < 0 || payloadLength > packetLength)
+		{
+			throw new IllegalArgumentException("Expected valid payload length not " + payloadLength);
+		}
+		packets.incrementAndGet();
+		bytes.addAndGet(packetLength);
+		octets.addAndGet(payloadLength);
+
+		final long epoch = Math.floorDiv(nowMillis, bucketMillis);
+		firstEpoch.compareAndSet(NONE, epoch);
+
+		if (average.get().epoch < epoch - 1)
+		{
+			// The first packet of a bucket, so fold in the completed buckets before any can be re-used.
+			average(epoch);
+		}
+
+		final int slot = slot(epoch);
+		add(slot, epoch, 1);
+		add(slot + 1, epoch, packetLength);
+	}
+
+
+	/**
+	 * Gets the SSRC of the stream.
+	 *
+	 * @return The ssrc.
+	 */
+	public long ssrc()
+	{
+		return ssrc;
+	}
+
+
+	/**
+	 * Gets the total number of packets, e.g. for the sender's packet count of an SR packet.
+	 * NB: The SR field is 32 bits, so wraps at 0xFFFFFFFF.
+	 *
+	 * @return The packet count.
+	 */
+	public long packetCount()
+	{
+		return packets.get();
+	}
+
+
+	/**
+	 * Gets the total number of payload octets, e.g. for the sender's octet count of an SR packet.
+	 * NB: The SR field is 32 bits, so wraps at 0xFFFFFFFF.
+	 *
+	 * @return The octet count.
+	 */
+	public long octetCount()
+	{
+		return octets.get();
+	}
+
+
+	/**
+	 * Gets the total number of bytes of the packets, including the RTP headers.
+	 *
+	 * @return The byte count.
+	 */
+	public long byteCount()
+	{
+		return bytes.get();
+	}
+
+
+	/**
+	 * Gets the packet rate over the window of completed buckets.
+	 *
+	 * @param nowMillis The current time, in milliseconds.
+	 * @return The rate in packets per second.
+	 */
+	public double packetRate(final long nowMillis)
+	{
+		return windowRate(0, nowMillis);
+	}
+
+
+	/**
+	 * Gets the byte rate over the window of completed buckets.
+	 *
+	 * @param nowMillis The current time, in milliseconds.
+	 * @return The rate in bytes per second.
+	 */
+	public double byteRate(final long nowMillis)
+	{
+		return windowRate(1, nowMillis);
+	}
+
+
+	/**
+	 * Gets the bitrate over the window of completed buckets.
+	 *
+	 * @param nowMillis The current time, in milliseconds.
+	 * @return The rate in bits per second.
+	 */
+	public double bitrate(final long nowMillis)
+	{
+		return byteRate(nowMillis) * 8;
+	}
+
+
+	/**
+	 * Gets the moving average of the packet rate of each completed bucket.
+	 *
+	 * @param nowMillis The current time, in milliseconds.
+	 * @return The rate in packets per second.
+	 */
+	public double averagePacketRate(final long nowMillis)
+	{
+		return average(Math.floorDiv(nowMillis, bucketMillis)).packetRate;
+	}
+
+
+	/**
+	 * Gets the moving average of the byte rate of each completed bucket.
+	 *
+	 * @param nowMillis The current time, in milliseconds.
+	 * @return The rate in bytes per second.
+	 */
+	public double averageByteRate(final long nowMillis)
+	{
+		return average(Math.floorDiv(nowMillis, bucketMillis)).byteRate;
+	}
+
+
+	/**
+	 * Add to a bucket counter, moving the bucket on to the interval if it holds an earlier interval.
+	 *
+	 * @param index The index of the counter.
+	 * @param epoch The epoch (time / bucket length) of the interval.
+	 * @param amount The amount to add.
+	 */
+	private void add(final int index, final long epoch, final long amount)
+	{
+		if (amount == 0)
+		{
+			// NB: So that a count of zero always means a counter that has never been used.
+			return;
+		}
+
+		final long tag = epoch << 32;
+		while (true)
+		{
+			final long current = counters.get(index);
+			final int age = (int)((tag - (current & TAG_MASK)) >> 32);
+
+			final long next;
+			if (age == 0)
+			{
+				next = current + Math.min(amount, COUNT_MASK - (current & COUNT_MASK));
+			}
+			else if (age > 0 || (current & COUNT_MASK) == 0)
+			{
+				next = tag | Math.min(amount, COUNT_MASK);
+			}
+			else
+			{
+				// The bucket has moved on to a later interval, so the packet is too late for the window.
+				return;
+			}
+
+			if (counters.compareAndSet(index, current, next))
+			{
+				return;
+			}
+		}
+	}
+
+
+	/**
+	 * Gets the count of a bucket counter for an interval.
+	 *
+	 * @param index The index of the counter.
+	 * @param epoch The epoch (time / bucket length) of the interval.
+	 * @return The count, or 0 if the bucket does not hold the interval.
+	 */
+	private long count(final int index, final long epoch)
+	{
+		final long current = counters.get(index);
+		return (current & TAG_MASK) == epoch << 32 ? current & COUNT_MASK : 0;
+	}
+
+
+	/**
+	 * Gets the rate of a counter over the window of completed buckets.
+	 *
+	 * @param counter The counter, 0 for packets, 1 for bytes.
+	 * @param nowMillis The current time, in milliseconds.
+	 * @return The rate per second.
+	 */
+	private double windowRate(final int counter, final long nowMillis)
+	{
+		final long first = firstEpoch.get();
+		final long epoch = Math.floorDiv(nowMillis, bucketMillis);
+		final long span = Math.min(buckets, epoch - first);
+		if (first == NONE || span <= 0)
+		{
+			return 0;
+		}
+
+		long sum = 0;
+		for (long e = epoch - span ; e < epoch ; e++)
+		{
+			sum += count(slot(e) + counter, e);
+		}
+
+		return sum * 1000.0 / (span * bucketMillis);
+	}
+
+
+	/**
+	 * Gets the moving average, folding in any buckets completed before an epoch.
+	 *
+	 * @param epoch The current epoch (time / bucket length).
+	 * @return The moving average.
+	 */
+	private Average average(final long epoch)
+	{
+		while (true)
+		{
+			final Average current = average.get();
+			final long first = firstEpoch.get();
+			if (first == NONE || epoch <= first || current.epoch >= epoch - 1)
+			{
+				return current;
+			}
+
+			// NB: Every bucket up to the current epoch is still in the ring, as the first packet of a bucket folds
+			//     in the completed buckets before it writes. Buckets beyond the reach of the ring had no packets, so
+			//     are folded in as zero.
+			final long start = Math.max(first, current.epoch + 1);
+			final long readable = Math.max(start, epoch - buckets - 1);
+			final double decay = Math.pow(1 - smoothing, readable - start);
+			double packetRate = current.packetRate * decay;
+			double byteRate = current.byteRate * decay;
+
+			for (long e = readable ; e < epoch ; e++)
+			{
+				final int slot = slot(e);
+				packetRate += (count(slot, e) * 1000.0 / bucketMillis - packetRate) * smoothing;
+				byteRate += (count(slot + 1, e) * 1000.0 / bucketMillis - byteRate) * smoothing;
+			}
+
+			final Average next = new Average(epoch - 1, packetRate, byteRate);
+			if (average.compareAndSet(current, next))
+			{
+				return next;
+			}
+		}
+	}
+
+
+	/**
+	 * Gets the index of the packet counter of the bucket of an epoch.
+	 *
+	 * @param epoch The epoch (time / bucket length).
+	 * @return The counter index, the byte counter follows it.
+	 */
+	private int slot(final long epoch)
+	{
+		return (int)Math.floorMod(epoch, (long)(buckets + 1)) * 2;
+	}
+
+
+	/**
+	 * Obtain a builder for the estimator.
+	 *
+	 * @return The builder instance.
+	 */
+	public static Builder builder()
+	{
+		return new Builder();
+	}
+
+
+	/**
+	 * The moving average of the rates, as of a completed bucket.
+	 */
+	private static final class Average
+	{
+		/** The epoch of the last completed bucket folded in. */
+		private final long epoch;
+
+		/** The average packets per second. */
+		private final double packetRate;
+
+		/** The average bytes per second. */
+		private final double byteRate;
+
+		/**
+		 * Create an average.
+		 *
+		 * @param epoch The epoch of the last completed bucket folded in.
+		 * @param packetRate The average packets per second.
+		 * @param byteRate The average bytes per second.
+		 */
+		private Average(final long epoch, final double packetRate, final double byteRate)
+		{
+			this.epoch = epoch;
+			this.packetRate = packetRate;
+			this.byteRate = byteRate;
+		}
+	}
+
+
+	/**
+	 * A builder for the estimator.
+	 */
+	public static final class Builder
+	{
+		/** The SSRC of the stream. */
+		private long ssrc = -1;
+
+		/** The length of the sliding window. */
+		private long windowMillis = 1000;
+
+		/** The number of buckets the window is divided into. */
+		private int buckets = 10;
+
+		/** The weight of each completed bucket in the moving average. */
+		private double smoothing = 0.125;
+
+		/**
+		 * Private constructor.
+		 */
+		private Builder() { /* Empty Constructor */ }
+
+
+		/**
+		 * Set the SSRC of the stream.
+		 *
+		 * @param ssrc The ssrc identifier.
+		 * @return The builder instance.
+		 */
+		public Builder withSsrc(final long ssrc)
+		{
+			this.ssrc = ssrc;
+			return this;
+		}
+
+
+		/**
+		 * Set the length of the sliding window.
+		 *
+		 * @param windowMillis The window in milliseconds, a multiple of the bucket count (default 1000).
+		 * @return The builder instance.
+		 */
+		public Builder withWindow(final long windowMillis)
+		{
+			this.windowMillis = windowMillis;
+			return this;
+		}
+
+
+		/**
+		 * Set the number of buckets the window is divided into.
+		 *
+		 * @param buckets The bucket count, from 2 - 1024 (default 10).
+		 * @return The builder instance.
+		 */
+		public Builder withBuckets(final int buckets)
+		{
+			this.buckets = buckets;
+			return this;
+		}
+
+
+		/**
+		 * Set the weight of each completed bucket in the moving average.
+		 *
+		 * @param smoothing The weight, greater than 0 and at most 1 (default 0.125).
+		 * @return The builder instance.
+		 */
+		public Builder withSmoothing(final double smoothing)
+		{
+			this.smoothing = smoothing;
+			return this;
+		}
+
+
+		/**
+		 * Build the estimator.
+		 *
+		 * @return The estimator.
+		 *
+		 * @throws IllegalArgumentException If any of the values are invalid.
+		 */
+		public RateEstimator build()
+		{
+			return new RateEstimator(this);
+		}
+	}
+
+}
@@ -0,0 +1,355 @@
+package org.vidtec.rfc3550.rtcp.stats;
+
+import java.util.Arrays;
+
+import org.vidtec.rfc3550.memory.SsrcIndex;
+import org.vidtec.rfc3550.rtcp.sync.NtpClock;
+import org.vidtec.rfc3550.rtcp.types.report.ReportBlock;
+import org.vidtec.rfc3550.rtcp.types.report.ReportRTCPPacket;
+import org.vidtec.rfc3550.rtcp.types.report.SenderReportRTCPPacket;
+
+/**
+ * Computes the round trip time to each participant, from the LSR and DLSR values of the report blocks they
+ * send back, as per RFC 3550 section 6.4.1.
+ *
+ * For each SSRC, the estimator records (using the compact NTP format, the middle 32 bits of an NTP timestamp):
+ *  - the time of the last SR sent by a local source, to validate the LSR value of report blocks about it.
+ *  - the time of the last SR received from a remote source, and when it arrived, to supply the LSR and DLSR
+ *    values of the report blocks sent about it.
+ *  - the last and smoothed round trip time to a remote participant.
+ *
+ * The values are held in primitive arrays indexed by an {@link SsrcIndex}, so a lookup is a hash and a short
+ * probe, and no objects are created per packet. The table grows as participants are added, remove()
+ * should be called when a participant leaves.
+ *
+ * Round trip times are in compact NTP units (1/65536 seconds), the smoothed value is an exponentially
+ * weighted moving average with a gain of 1/8 (as for TCP).
+ *
+ * NB: Times are supplied by the caller as 64 bit NTP timestamps, e.g. from an {@link NtpClock}.
+ * NB: This class is NOT thread-safe.
+ */
+public final class RoundTripTimeEstimator
+{
+
+	/** The value of a value not yet known. */
+	private static final long EMPTY = -1;
+
+	/** The entry of each SSRC. */
+	private final SsrcIndex index;
+
+	/** The compact NTP time of the last SR sent, or -1. */
+	private long[] sentSR;
+
+	/** The compact NTP time of the last SR received, or -1. */
+	private long[] receivedSR;
+
+	/** The compact NTP time the last SR was received at. */
+	private long[] receivedAt;
+
+	/** The last round trip time, or -1. */
+	private long[] rtt;
+
+	/** The smoothed round trip time, or -1. */
+	private long[] smoothedRtt;
+
+
+	/**
+	 * Create an estimator.
+	 *
+	 * @param builder The builder instance to construct an estimator from.
+	 *
+	 * @throws IllegalArgumentException If any of the values are invalid.
+	 */
+	private RoundTripTimeEstimator(final Builder builder)
+	{
+		if (builder.capacity < 16 || builder.capacity > 0x40000000 || Integer.bitCount(builder.capacity) != 1)
+		{
+			throw new IllegalArgumentException("Expected valid capacity not " + builder.capacity);
+		}
+
+		this.index = new SsrcIndex(builder.capacity >>> 1);
+		this.sentSR = new long[index.capacity()];
+		this.receivedSR = new long[index.capacity()];
+		this.receivedAt = new long[index.capacity()];
+		this.rtt = new long[index.capacity()];
+		this.smoothedRtt = new long[index.capacity()];
+	}
+
+
+	/**
+	 * Record an SR sent by a local source.
+	 *
+	 * @param packet The packet sent.
+	 *
+	 * @throws IllegalArgumentException If the packet is null.
+	 */
+	public void sent(final SenderReportRTCPPacket packet)
+	{
+		if (packet == null)
+		{
+			throw new IllegalArgumentException("packet cannot be null");
+		}
+
+		final int entry = insert(packet.ssrcSenderIdentifier());
+		sentSR[entry] = NtpClock.compact(packet.ntpTimestamp());
+	}
+
+
+	/**
+	 * Record a received SR or RR, updating the round trip time to the sender from any report blocks about
+	 * local sources.
+	 *
+	 * @param packet The packet received.
+	 * @param arrivalNtp The time the packet arrived, as a 64 bit NTP timestamp.
+	 * @return The number of report blocks that gave a round trip time.
+	 *
+	 * @throws IllegalArgumentException If the packet is null.
+	 */
+	public int received(final ReportRTCPPacket<?> packet, final long arrivalNtp)
+	{
+		if (packet == null)
+		{
+			throw new IllegalArgumentException("packet cannot be null");
+		}
+
+		final long arrival = NtpClock.compact(arrivalNtp);
+
+		int entry = -1;
+		if (packet instanceof SenderReportRTCPPacket)
+		{
+			entry = insert(packet.ssrcSenderIdentifier());
+			receivedSR[entry] = NtpClock.compact(((SenderReportRTCPPacket)packet).ntpTimestamp());
+			receivedAt[entry] = arrival;
+		}
+
+		int count = 0;
+		for (final ReportBlock block : packet.blocks())
+		{
+			final long sample = roundTripTime(block, arrival);
+			if (sample >= 0)
+			{
+				if (entry < 0)
+				{
+					entry = insert(packet.ssrcSenderIdentifier());
+				}
+
+				rtt[entry] = sample;
+				smoothedRtt[entry] = smoothedRtt[entry] < 0 ? sample : smoothedRtt[entry] + ((sample - smoothedRtt[entry]) >> 3);
+				count++;
+			}
+		}
+
+		return count;
+	}
+
+
+	/**
+	 * Gets the last round trip time to a participant.
+	 *
+	 * @param ssrc The ssrc of the participant.
+	 * @return The round trip time in compact NTP units, or -1 if not known.
+	 */
+	public long lastRtt(final long ssrc)
+	{
+		final int entry = find(ssrc);
+		return entry < 0 ? EMPTY : rtt[entry];
+	}
+
+
+	/**
+	 * Gets the smoothed round trip time to a participant.
+	 *
+	 * @param ssrc The ssrc of the participant.
+	 * @return The round trip time in compact NTP units, or -1 if not known.
+	 */
+	public long smoothedRtt(final long ssrc)
+	{
+		final int entry = find(ssrc);
+		return entry < 0 ? EMPTY : smoothedRtt[entry];
+	}
+
+
+	/**
+	 * Gets the smoothed round trip time to a participant in milliseconds.
+	 *
+	 * @param ssrc The ssrc of the participant.
+	 * @return The round trip time in milliseconds, or -1 if not known.
+	 */
+	public long smoothedRttMillis(final long ssrc)
+	{
+		final long value = smoothedRtt(ssrc);
+		return value < 0 ? EMPTY : NtpClock.compactToMillis(value);
+	}
+
+
+	/**
+	 * Gets the LSR value for a report block about a remote source.
+	 *
+	 * @param ssrc The ssrc of the remote source.
+	 * @return The compact NTP time of the last SR received, or 0 if none has been received.
+	 */
+	public long lastSR(final long ssrc)
+	{
+		final int entry = find(ssrc);
+		return entry < 0 || receivedSR[entry] < 0 ? 0 : receivedSR[entry];
+	}
+
+
+	/**
+	 * Gets the DLSR value for a report block about a remote source.
+	 *
+	 * @param ssrc The ssrc of the remote source.
+	 * @param nowNtp The current time, as a 64 bit NTP timestamp.
+	 * @return The delay since the last SR was received in compact NTP units, or 0 if none has been received.
+	 */
+	public long dlSR(final long ssrc, final long nowNtp)
+	{
+		final int entry = find(ssrc);
+		return entry < 0 || receivedSR[entry] < 0 ? 0 : 0xFFFFFFFFL & (NtpClock.compact(nowNtp) - receivedAt[entry]);
+	}
+
+
+	/**
+	 * Remove all values for an SSRC (e.g. when a BYE is received).
+	 *
+	 * @param ssrc The ssrc to remove.
+	 * @return true if the ssrc was held, false otherwise.
+	 */
+	public boolean remove(final long ssrc)
+	{
+		return index.remove(ssrc) != SsrcIndex.NIL;
+	}
+
+
+	/**
+	 * Gets the number of SSRCs held.
+	 *
+	 * @return The ssrc count.
+	 */
+	public int size()
+	{
+		return index.size();
+	}
+
+
+	/**
+	 * Compute the round trip time from a report block, as per RFC 3550 section 6.4.1.
+	 *
+	 * @param block The report block.
+	 * @param arrival The compact NTP time the block arrived.
+	 * @return The round trip time in compact NTP units, or -1 if the block is not about a local source or is not valid.
+	 */
+	private long roundTripTime(final ReportBlock block, final long arrival)
+	{
+		if (block.lastSR() == 0)
+		{
+			// No SR received by the participant yet.
+			return EMPTY;
+		}
+
+		final int entry = find(block.ssrcIdentifier());
+		if (entry < 0 || sentSR[entry] < 0 || (int)(sentSR[entry] - block.lastSR()) < 0)
+		{
+			// Not a local source, or an LSR later than the last SR sent.
+			return EMPTY;
+		}
+
+		final int value = (int)(arrival - block.lastSR() - block.dlSR());
+		return value < 0 ? EMPTY : value;
+	}
+
+
+	/**
+	 * Find the entry of an SSRC.
+	 *
+	 * @param ssrc The ssrc.
+	 * @return The entry index, or -1 if not held.
+	 */
+	private int find(final long ssrc)
+	{
+		return index.find(ssrc);
+	}
+
+
+	/**
+	 * Find the entry of an SSRC, adding it if not held.
+	 *
+	 * @param ssrc The ssrc.
+	 * @return The entry index.
+	 */
+	private int insert(final long ssrc)
+	{
+		int entry = index.find(ssrc);
+		if (entry != SsrcIndex.NIL)
+		{
+			return entry;
+		}
+
+		entry = index.add(ssrc);
+		if (index.capacity() > rtt.length)
+		{
+			sentSR = Arrays.copyOf(sentSR, index.capacity());
+			receivedSR = Arrays.copyOf(receivedSR, index.capacity());
+			receivedAt = Arrays.copyOf(receivedAt, index.capacity());
+			rtt = Arrays.copyOf(rtt, index.capacity());
+			smoothedRtt = Arrays.copyOf(smoothedRtt, index.capacity());
+		}
+
+		sentSR[entry] = receivedSR[entry] = rtt[entry] = smoothedRtt[entry] = EMPTY;
+		receivedAt[entry] = 0;
+		return entry;
+	}
+
+
+	/**
+	 * Obtain a builder for the estimator.
+	 *
+	 * @return The builder instance.
+	 */
+	public static Builder builder()
+	{
+		return new Builder();
+	}
+
+
+	/**
+	 * A builder for the round trip time estimator.
+	 */
+	public static final class Builder
+	{
+		/** The initial table capacity. */
+		private int capacity = 64;
+
+		/**
+		 * Private constructor.
+		 */
+		private Builder() { /* Empty Constructor */ }
+
+
+		/**
+		 * Set the initial table capacity, the table grows when more than half full.
+		 *
+		 * @param capacity The capacity, a power of two of at least 16 (default 64).
+		 * @return The builder instance.
+		 */
+		public Builder withCapacity(final int capacity)
+		{
+			this.capacity = capacity;
+			return this;
+		}
+
+
+		/**
+		 * Build the estimator.
+		 *
+		 * @return The estimator instance.
+		 *
+		 * @throws IllegalArgumentException If any of the values are invalid.
+		 */
+		public RoundTripTimeEstimator build()
+		{
+			return new RoundTripTimeEstimator(this);
+		}
+	}
+
+}
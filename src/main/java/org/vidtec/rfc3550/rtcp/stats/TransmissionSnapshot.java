@@ -0,0 +1,424 @@
+package org.vidtec.rfc3550.rtcp.stats;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * An immutable snapshot of the {@link TransmissionStatistics} of a stream (ssrc), e.g. to push to an
+ * aggregator.
+ *
+ * A snapshot taken from the statistics covers a point in time (its start and end times are the same), with
+ * the totals since the statistics started. The delta of two snapshots covers the interval between them, and
+ * snapshots of the same stream from different nodes (or shards) can be merged.
+ *
+ * Snapshots have a fixed-width binary encoding of 40 bytes (big-endian), so many can be packed into a single
+ * datagram, and decoded without any intermediate objects:
+ *
+ *    0                   1                   2                   3
+ *    0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1
+ *   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ *   |                              SSRC                             |
+ *   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ *   |           extended highest sequence number received           |
+ *   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ *   |                   start time (milliseconds)                   |
+ *   |                                                               |
+ *   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ *   |                    end time (milliseconds)                    |
+ *   |                                                               |
+ *   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ *   |                        packets received                       |
+ *   |                                                               |
+ *   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ *   |                          packets lost                         |
+ *   |                                                               |
+ *   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ *
+ * NB: Packets lost may be negative, as per RFC 3550, if duplicates are received.
+ */
+public final class TransmissionSnapshot
+{
+
+	/** The length of an encoded snapshot. */
+	public static final int ENCODED_LENGTH = 40;
+
+
+	/** The SSRC of the stream. */
+	private final long ssrcIdentifier;
+
+	/** The start of the interval, in milliseconds. */
+	private final long startMillis;
+
+	/** The end of the interval, in milliseconds. */
+	private final long endMillis;
+
+	/** The packets received in the interval. */
+	private final long received;
+
+	/** The packets lost in the interval. */
+	private final long lost;
+
+	/** The extended highest sequence number received. */
+	private final long extendedHighestSequenceNumber;
+
+
+	/**
+	 * Create a snapshot.
+	 *
+	 * @param ssrcIdentifier The SSRC of the stream.
+	 * @param startMillis The start of the interval, in milliseconds.
+	 * @param endMillis The end of the interval, in milliseconds.
+	 * @param received The packets received in the interval.
+	 * @param lost The packets lost in the interval.
+	 * @param extendedHighestSequenceNumber The extended highest sequence number received.
+	 */
+	private TransmissionSnapshot(final long ssrcIdentifier, final long startMillis, final long endMillis, final long received, final long lost, final long extendedHighestSequenceNumber)
+	{
+		this.ssrcIdentifier = ssrcIdentifier;
+		this.startMillis = startMillis;
+		this.endMillis = endMillis;
+		this.received = received;
+		this.lost = lost;
+		this.extendedHighestSequenceNumber = extendedHighestSequenceNumber;
+	}
+
+
+	/**
+	 * Gets the SSRC of the stream.
+	 *
+	 * @return The SSRC identifier.
+	 */
+	public long ssrcIdentifier()
+	{
+		return ssrcIdentifier;
+	}
+
+
+	/**
+	 * Gets the start of the interval covered.
+	 *
+	 * @return The time in milliseconds.
+	 */
+	public long startMillis()
+	{
+		return startMillis;
+	}
+
+
+	/**
+	 * Gets the end of the interval covered.
+	 *
+	 * @return The time in milliseconds.
+	 */
+	public long endMillis()
+	{
+		return endMillis;
+	}
+
+
+	/**
+	 * Gets the length of the interval covered.
+	 *
+	 * @return The interval in milliseconds, 0 for a point in time.
+	 */
+	public long intervalMillis()
+	{
+		return endMillis - startMillis;
+	}
+
+
+	/**
+	 * Gets the number of packets received.
+	 *
+	 * @return The received packet count.
+	 */
+	public long received()
+	{
+		return received;
+	}
+
+
+	/**
+	 * Gets the number of packets lost.
+	 *
+	 * @return The lost packet count.
+	 */
+	public long lost()
+	{
+		return lost;
+	}
+
+
+	/**
+	 * Gets the number of packets expected, as received plus lost.
+	 *
+	 * @return The expected packet count.
+	 */
+	public long expected()
+	{
+		return received + lost;
+	}
+
+
+	/**
+	 * Gets the extended highest sequence number received.
+	 *
+	 * @return The highest sequence number seen.
+	 */
+	public long extendedHighestSequenceNumber()
+	{
+		return extendedHighestSequenceNumber;
+	}
+
+
+	/**
+	 * Gets the fraction of packets lost, as per RFC 3550 appendix A.3 (so 0 if duplicates outnumber losses).
+	 *
+	 * @return The fraction lost, as a fixed point number with the binary point at the left edge.
+	 */
+	public short fractionLost()
+	{
+		final long expected = expected();
+		return expected <= 0 || lost <= 0 ? 0 : (short)Math.min(0xFF, (lost << 8) / expected);
+	}
+
+
+	/**
+	 * Gets the snapshot of the interval between an earlier snapshot of the same stream and this snapshot.
+	 *
+	 * @param earlier The earlier snapshot.
+	 * @return The interval snapshot.
+	 *
+	 * @throws IllegalArgumentException If the snapshot is null, of a different stream, or not earlier.
+	 */
+	public TransmissionSnapshot delta(final TransmissionSnapshot earlier)
+	{
+		checkStream(earlier);
+		if (earlier.endMillis > endMillis || earlier.received > received)
+		{
+			throw new IllegalArgumentException("Expected earlier snapshot ending before " + endMillis + " not " + earlier.endMillis);
+		}
+
+		return new TransmissionSnapshot(ssrcIdentifier, earlier.endMillis, endMillis, received - earlier.received, lost - earlier.lost, extendedHighestSequenceNumber);
+	}
+
+
+	/**
+	 * Merge the snapshot of the same stream from another node (or shard), covering both intervals.
+	 *
+	 * @param other The other snapshot.
+	 * @return The merged snapshot.
+	 *
+	 * @throws IllegalArgumentException If the snapshot is null, or of a different stream.
+	 */
+	public TransmissionSnapshot merge(final TransmissionSnapshot other)
+	{
+		checkStream(other);
+
+		return new TransmissionSnapshot(ssrcIdentifier, Math.min(startMillis, other.startMillis), Math.max(endMillis, other.endMillis),
+										received + other.received, lost + other.lost,
+										Math.max(extendedHighestSequenceNumber, other.extendedHighestSequenceNumber));
+	}
+
+
+	/**
+	 * Write the snapshot into a buffer, at its position.
+	 *
+	 * @param bb The buffer to write to, with at least ENCODED_LENGTH bytes remaining.
+	 *
+	 * @throws IllegalArgumentException If the buffer is null.
+	 */
+	public void writeTo(final ByteBuffer bb)
+	{
+		if (bb == null)
+		{
+			throw new IllegalArgumentException("buffer cannot be null");
+		}
+
+		// Snapshots are always written in network order, regardless of the buffer's order.
+		final ByteOrder order = bb.order();
+		bb.order(ByteOrder.BIG_ENDIAN);
+		try
+		{
+			bb.putInt((int)ssrcIdentifier);
+			bb.putInt((int)extendedHighestSequenceNumber);
+			bb.putLong(startMillis);
+			bb.putLong(endMillis);
+			bb.putLong(received);
+			bb.putLong(lost);
+		}
+		finally
+		{
+			bb.order(order);
+		}
+	}
+
+
+	/**
+	 * Get the snapshot as a byte array.
+	 *
+	 * @return The encoded snapshot.
+	 */
+	public byte[] asByteArray()
+	{
+		final byte[] data = new byte[ENCODED_LENGTH];
+		writeTo(ByteBuffer.wrap(data));
+
+		return data;
+	}
+
+
+	/**
+	 * Snapshots are equal if all of their values are equal.
+	 *
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean equals(final Object obj)
+	{
+		if (!(obj instanceof TransmissionSnapshot))
+		{
+			return false;
+		}
+
+		final TransmissionSnapshot other = (TransmissionSnapshot)obj;
+		return ssrcIdentifier == other.ssrcIdentifier && startMillis == other.startMillis && endMillis == other.endMillis
+			   && received == other.received && lost == other.lost && extendedHighestSequenceNumber == other.extendedHighestSequenceNumber;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int hashCode()
+	{
+		return Long.hashCode(ssrcIdentifier) * 31 + Long.hashCode(endMillis);
+	}
+
+
+	/**
+	 * Check that a snapshot is of this stream.
+	 *
+	 * @param other The other snapshot.
+	 *
+	 * @throws IllegalArgumentException If the snapshot is null, or of a different stream.
+	 */
+	private void checkStream(final TransmissionSnapshot other)
+	{
+		if (other == null)
+		{
+			throw new IllegalArgumentException("snapshot cannot be null");
+		}
+		if (other.ssrcIdentifier != ssrcIdentifier)
+		{
+			throw new IllegalArgumentException("Expected snapshot of ssrc " + ssrcIdentifier + " not " + other.ssrcIdentifier);
+		}
+	}
+
+
+	/**
+	 * Create a snapshot.
+	 *
+	 * @param ssrcIdentifier The SSRC of the stream.
+	 * @param startMillis The start of the interval, in milliseconds.
+	 * @param endMillis The end of the interval, in milliseconds.
+	 * @param received The packets received in the interval.
+	 * @param lost The packets lost in the interval.
+	 * @param extendedHighestSequenceNumber The extended highest sequence number received.
+	 * @return The snapshot.
+	 *
+	 * @throws IllegalArgumentException If any of the values are invalid.
+	 */
+	static TransmissionSnapshot of(final long ssrcIdentifier, final long startMillis, final long endMillis, final long received, final long lost, final long extendedHighestSequenceNumber)
+	{
+		if (ssrcIdentifier < 0 || ssrcIdentifier > 0xFFFFFFFFL)
+		{
+			throw new IllegalArgumentException("Expected valid ssrc not " + ssrcIdentifier);
+		}
+		if (endMillis < startMillis)
+		{
+			throw new IllegalArgumentException("Expected valid end time not " + endMillis);
+		}
+		if (received < 0)
+		{
+			throw new IllegalArgumentException("Expected valid received count not " + received);
+		}
+		if (extendedHighestSequenceNumber < 0 || extendedHighestSequenceNumber > 0xFFFFFFFFL)
+		{
+			throw new IllegalArgumentException("Expected valid extended sequence number not " + extendedHighestSequenceNumber);
+		}
+
+		return new TransmissionSnapshot(ssrcIdentifier, startMillis, endMillis, received, lost, extendedHighestSequenceNumber);
+	}
+
+
+	/**
+	 * Read a snapshot from a buffer, at its position, e.g. one of several packed into a datagram.
+	 *
+	 * @param bb The buffer to read from.
+	 * @return The snapshot.
+	 *
+	 * @throws IllegalArgumentException If the buffer is null, too short, or the snapshot is not valid.
+	 */
+	public static TransmissionSnapshot fromByteBuffer(final ByteBuffer bb)
+	{
+		if (bb == null)
+		{
+			throw new IllegalArgumentException("buffer cannot be null");
+		}
+		if (bb.remaining() < ENCODED_LENGTH)
+		{
+			throw new IllegalArgumentException("snapshot too short, expecting " + ENCODED_LENGTH + " bytes, but found " + bb.remaining());
+		}
+
+		// Snapshots are always read in network order, regardless of the buffer's order.
+		final ByteOrder order = bb.order();
+		bb.order(ByteOrder.BIG_ENDIAN);
+		final long ssrcIdentifier;
+		final long extendedHighestSequenceNumber;
+		final long startMillis;
+		final long endMillis;
+		final long received;
+		final long lost;
+		try
+		{
+			ssrcIdentifier = 0xFFFFFFFFL & bb.getInt();
+			extendedHighestSequenceNumber = 0xFFFFFFFFL & bb.getInt();
+			startMillis = bb.getLong();
+			endMillis = bb.getLong();
+			received = bb.getLong();
+			lost = bb.getLong();
+		}
+		finally
+		{
+			bb.order(order);
+		}
+
+		return of(ssrcIdentifier, startMillis, endMillis, received, lost, extendedHighestSequenceNumber);
+	}
+
+
+	/**
+	 * Read a snapshot from a byte array.
+	 *
+	 * @param data The encoded snapshot.
+	 * @return The snapshot.
+	 *
+	 * @throws IllegalArgumentException If the data is null, the wrong size, or the snapshot is not valid.
+	 */
+	public static TransmissionSnapshot fromByteArray(final byte[] data)
+	{
+		if (data == null)
+		{
+			throw new IllegalArgumentException("data cannot be null");
+		}
+		if (data.length != ENCODED_LENGTH)
+		{
+			throw new IllegalArgumentException("snapshot was wrong size, expecting " + ENCODED_LENGTH + " bytes, but found " + data.length);
+		}
+
+		return fromByteBuffer(ByteBuffer.wrap(data));
+	}
+
+}
@@ -12,8 +12,6 @@ public class TransmissionStatistics
 {
 	
 	
-	// TODO: need to be able to also calculate betwee two stats
-	
 	// https://www.freesoft.org/CIE/RFC/1889/53.htm
 	
 	
@@ -110,6 +108,22 @@ public class TransmissionStatistics
 	}
 
 
+	/**
+	 * Take a snapshot of the statistics, e.g. to compute the delta from an earlier snapshot.
+	 * NB: The values are read one at a time, so a packet received during the snapshot may be partly included.
+	 * 
+	 * @param ssrcIdentifier The SSRC of the stream.
+	 * @param nowMillis The time of the snapshot, in milliseconds.
+	 * @return The snapshot.
+	 * 
+	 * @throws IllegalArgumentException If the ssrc is invalid.
+	 */
+	public TransmissionSnapshot snapshot(final long ssrcIdentifier, final long nowMillis)
+	{
+		return TransmissionSnapshot.of(ssrcIdentifier, nowMillis, nowMillis, received(), lost(), 0xFFFFFFFFL & maxExtendedSequenceNumber());
+	}
+
+
 	/**
 	 * A packet was received, update the statistics based on the sequence number.
 	 * 
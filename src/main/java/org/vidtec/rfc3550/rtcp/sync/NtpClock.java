@@ -0,0 +1,238 @@
+package org.vidtec.rfc3550.rtcp.sync;
+
+/**
+ * A source of NTP timestamps, as used by RTCP (RFC 3550 section 4), derived from the monotonic
+ * System.nanoTime() clock anchored to wallclock time once, when the clock is created.
+ *
+ * NTP timestamps are 64 bit fixed point values, the number of seconds since 1900 in the upper 32 bits, and the
+ * fraction of a second in the lower 32 bits. The compact format (used by the LSR and DLSR values of report blocks)
+ * is the middle 32 bits, i.e. units of 1/65536 seconds.
+ *
+ * Reading the clock is arithmetic on a single System.nanoTime() call, with no allocation. The static helpers
+ * convert between the NTP formats and milliseconds / microseconds. Conversions to NTP round the fraction up, and
+ * conversions from NTP round down, so that a Unix time converted to NTP and back is unchanged.
+ *
+ * NB: As the clock is only anchored once, it does not follow later adjustments of the system wallclock. Create a
+ * new clock to re-anchor it.
+ * NB: This class is immutable, and so is thread-safe.
+ */
+public final class NtpClock
+{
+
+	/** The number of seconds from the NTP epoch (1900) to the Unix epoch (1970). */
+	public static final long NTP_UNIX_OFFSET_SECONDS = 2208988800L;
+
+	/** The shared system clock. */
+	private static final NtpClock SYSTEM = anchored(System.currentTimeMillis(), System.nanoTime());
+
+
+	/** The NTP timestamp of the anchor. */
+	private final long anchorNtp;
+
+	/** The System.nanoTime() value of the anchor. */
+	private final long anchorNanos;
+
+
+	/**
+	 * Create a clock.
+	 *
+	 * @param anchorNtp The NTP timestamp of the anchor.
+	 * @param anchorNanos The System.nanoTime() value of the anchor.
+	 */
+	private NtpClock(final long anchorNtp, final long anchorNanos)
+	{
+		this.anchorNtp = anchorNtp;
+		this.anchorNanos = anchorNanos;
+	}
+
+
+	/**
+	 * Gets the current time.
+	 *
+	 * @return The 64 bit NTP timestamp.
+	 */
+	public long now()
+	{
+		return ntpAt(System.nanoTime());
+	}
+
+
+	/**
+	 * Gets the current time in the compact format.
+	 *
+	 * @return The compact (middle 32 bits) NTP timestamp.
+	 */
+	public long compactNow()
+	{
+		return compact(now());
+	}
+
+
+	/**
+	 * Gets the time at a System.nanoTime() value, e.g. the receive time of a packet.
+	 *
+	 * @param nanoTime The System.nanoTime() value.
+	 * @return The 64 bit NTP timestamp.
+	 */
+	public long ntpAt(final long nanoTime)
+	{
+		return anchorNtp + nanosToNtp(nanoTime - anchorNanos);
+	}
+
+
+	/**
+	 * Gets the time at a System.nanoTime() value in the compact format.
+	 *
+	 * @param nanoTime The System.nanoTime() value.
+	 * @return The compact (middle 32 bits) NTP timestamp.
+	 */
+	public long compactAt(final long nanoTime)
+	{
+		return compact(ntpAt(nanoTime));
+	}
+
+
+	/**
+	 * Gets the shared clock, anchored when the class was loaded.
+	 *
+	 * @return The clock instance.
+	 */
+	public static NtpClock system()
+	{
+		return SYSTEM;
+	}
+
+
+	/**
+	 * Create a clock anchored at a given wallclock time.
+	 *
+	 * @param unixMillis The wallclock time of the anchor, in milliseconds since the Unix epoch.
+	 * @param nanoTime The System.nanoTime() value at the same instant.
+	 * @return The clock instance.
+	 */
+	public static NtpClock anchored(final long unixMillis, final long nanoTime)
+	{
+		return new NtpClock(fromUnixMillis(unixMillis), nanoTime);
+	}
+
+
+	/**
+	 * Convert an NTP timestamp to the compact format.
+	 *
+	 * @param ntpTimestamp The 64 bit NTP timestamp.
+	 * @return The compact (middle 32 bits) NTP timestamp.
+	 */
+	public static long compact(final long ntpTimestamp)
+	{
+		return 0xFFFFFFFFL & (ntpTimestamp >>> 16);
+	}
+
+
+	/**
+	 * Convert a Unix time to an NTP timestamp.
+	 *
+	 * @param unixMillis The time in milliseconds since the Unix epoch.
+	 * @return The 64 bit NTP timestamp.
+	 */
+	public static long fromUnixMillis(final long unixMillis)
+	{
+		return (Math.floorDiv(unixMillis, 1000L) + NTP_UNIX_OFFSET_SECONDS) << 32 | ((Math.floorMod(unixMillis, 1000L) << 32) + 999) / 1000;
+	}
+
+
+	/**
+	 * Convert a Unix time to an NTP timestamp.
+	 *
+	 * @param unixMicros The time in microseconds since the Unix epoch.
+	 * @return The 64 bit NTP timestamp.
+	 */
+	public static long fromUnixMicros(final long unixMicros)
+	{
+		return (Math.floorDiv(unixMicros, 1000000L) + NTP_UNIX_OFFSET_SECONDS) << 32 | ((Math.floorMod(unixMicros, 1000000L) << 32) + 999999) / 1000000;
+	}
+
+
+	/**
+	 * Convert an NTP timestamp to Unix time.
+	 *
+	 * @param ntpTimestamp The 64 bit NTP timestamp.
+	 * @return The time in milliseconds since the Unix epoch.
+	 */
+	public static long toUnixMillis(final long ntpTimestamp)
+	{
+		return ((ntpTimestamp >>> 32) - NTP_UNIX_OFFSET_SECONDS) * 1000 + (((ntpTimestamp & 0xFFFFFFFFL) * 1000) >>> 32);
+	}
+
+
+	/**
+	 * Convert an NTP timestamp to Unix time.
+	 *
+	 * @param ntpTimestamp The 64 bit NTP timestamp.
+	 * @return The time in microseconds since the Unix epoch.
+	 */
+	public static long toUnixMicros(final long ntpTimestamp)
+	{
+		return ((ntpTimestamp >>> 32) - NTP_UNIX_OFFSET_SECONDS) * 1000000 + (((ntpTimestamp & 0xFFFFFFFFL) * 1000000) >>> 32);
+	}
+
+
+	/**
+	 * Convert a duration to NTP units.
+	 *
+	 * @param nanos The duration in nanoseconds.
+	 * @return The duration in NTP units (1/2^32 seconds).
+	 */
+	public static long nanosToNtp(final long nanos)
+	{
+		return Math.floorDiv(nanos, 1000000000L) << 32 | (Math.floorMod(nanos, 1000000000L) << 32) / 1000000000L;
+	}
+
+
+	/**
+	 * Convert a duration in compact NTP units (e.g. a DLSR value or round trip time) to milliseconds.
+	 *
+	 * @param compact The duration in compact NTP units (1/65536 seconds).
+	 * @return The duration in milliseconds.
+	 */
+	public static long compactToMillis(final long compact)
+	{
+		return (compact * 1000) >> 16;
+	}
+
+
+	/**
+	 * Convert a duration in compact NTP units (e.g. a DLSR value or round trip time) to microseconds.
+	 *
+	 * @param compact The duration in compact NTP units (1/65536 seconds).
+	 * @return The duration in microseconds.
+	 */
+	public static long compactToMicros(final long compact)
+	{
+		return (compact * 1000000) >> 16;
+	}
+
+
+	/**
+	 * Convert a duration in milliseconds to compact NTP units (e.g. for a DLSR value).
+	 *
+	 * @param millis The duration in milliseconds.
+	 * @return The duration in compact NTP units (1/65536 seconds).
+	 */
+	public static long millisToCompact(final long millis)
+	{
+		return (millis << 16) / 1000;
+	}
+
+
+	/**
+	 * Convert a duration in microseconds to compact NTP units (e.g. for a DLSR value).
+	 *
+	 * @param micros The duration in microseconds.
+	 * @return The duration in compact NTP units (1/65536 seconds).
+	 */
+	public static long microsToCompact(final long micros)
+	{
+		return (micros << 16) / 1000000;
+	}
+
+}
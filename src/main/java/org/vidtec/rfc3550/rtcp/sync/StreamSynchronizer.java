@@ -0,0 +1,351 @@
+package org.vidtec.rfc3550.rtcp.sync;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.vidtec.rfc3550.memory.SsrcIndex;
+import org.vidtec.rfc3550.rtcp.types.bye.ByeRTCPPacket;
+import org.vidtec.rfc3550.rtcp.types.report.SenderReportRTCPPacket;
+import org.vidtec.rfc3550.rtcp.types.sdes.Chunk;
+import org.vidtec.rfc3550.rtcp.types.sdes.SdesItem;
+import org.vidtec.rfc3550.rtcp.types.sdes.SdesItem.ItemType;
+import org.vidtec.rfc3550.rtcp.types.sdes.SdesRTCPPacket;
+
+/**
+ * Maintains the {@link WallclockMapping} of each stream (ssrc) from its sender reports, and groups the streams
+ * of each participant by CNAME, so that their media can be synchronized (e.g. audio / video lip sync) as per
+ * RFC 3550 section 6.4.1.
+ *
+ * The mapping and CNAME of each stream are held in arrays indexed by an {@link SsrcIndex}, in a table whose
+ * index is never modified once published. A sender report for a known stream replaces its (immutable) mapping
+ * in place with a single release store. Only a structural change (a stream added or removed) or a CNAME change
+ * copies the table, applies its changes and publishes the copy through a volatile reference. So the read path
+ * (mapping(), cname(), toRtp()) is a volatile read, a probe and arithmetic only, with no locking, boxing or
+ * allocation, and the steady state write path allocates only the new mapping.
+ *
+ * Updates are serialized.
+ *
+ * This class should be considered thread-safe.
+ */
+public final class StreamSynchronizer
+{
+
+	/** The current table, replaced on each update. */
+	private volatile Table table = new Table();
+
+
+	/**
+	 * Update the mapping of a stream from a sender report.
+	 *
+	 * @param packet The sender report received.
+	 * @param clockRate The nominal clock rate of the stream in Hz (as per the payload format).
+	 * @return The new mapping of the stream.
+	 *
+	 * @throws IllegalArgumentException If the packet is null, or the clock rate is not valid.
+	 */
+	public synchronized WallclockMapping update(final SenderReportRTCPPacket packet, final int clockRate)
+	{
+		if (packet == null)
+		{
+			throw new IllegalArgumentException("packet cannot be null");
+		}
+		if (clockRate <= 0)
+		{
+			throw new IllegalArgumentException("Expected valid clock rate not " + clockRate);
+		}
+
+		final long ssrc = packet.ssrcSenderIdentifier();
+		final Table current = table;
+		final int entry = current.index.find(ssrc);
+		if (entry != SsrcIndex.NIL)
+		{
+			// A known stream, so only its mapping changes.
+			final WallclockMapping mapping = WallclockMapping.next(current.mappings.get(entry), ssrc, clockRate, packet.ntpTimestamp(), packet.rtpTimestamp());
+			current.mappings.setRelease(entry, mapping);
+			return mapping;
+		}
+
+		final Table next = new Table(current);
+		final int added = next.add(ssrc);
+		final WallclockMapping mapping = WallclockMapping.next(null, ssrc, clockRate, packet.ntpTimestamp(), packet.rtpTimestamp());
+		next.mappings.set(added, mapping);
+		table = next;
+
+		return mapping;
+	}
+
+
+	/**
+	 * Update the CNAME of each stream described in an SDES packet.
+	 *
+	 * @param packet The SDES packet received.
+	 *
+	 * @throws IllegalArgumentException If the packet is null.
+	 */
+	public synchronized void update(final SdesRTCPPacket packet)
+	{
+		if (packet == null)
+		{
+			throw new IllegalArgumentException("packet cannot be null");
+		}
+
+		// Only copy the table when a CNAME changes, as SDES is usually a repeat.
+		Table next = null;
+		for (final Chunk chunk : packet.chunks())
+		{
+			final SdesItem cname = chunk.item(ItemType.CNAME);
+			if (cname != null && !cname.value().equals(cname(chunk.ssrcIdentifier())))
+			{
+				if (next == null)
+				{
+					next = new Table(table);
+				}
+				final int entry = next.add(chunk.ssrcIdentifier());
+				next.cnames[entry] = cname.value();
+			}
+		}
+
+		if (next != null)
+		{
+			table = next;
+		}
+	}
+
+
+	/**
+	 * Remove each stream leaving in a BYE packet.
+	 *
+	 * @param packet The BYE packet received.
+	 *
+	 * @throws IllegalArgumentException If the packet is null.
+	 */
+	public synchronized void update(final ByeRTCPPacket packet)
+	{
+		if (packet == null)
+		{
+			throw new IllegalArgumentException("packet cannot be null");
+		}
+
+		// Only copy the table when one of the streams is held.
+		Table next = null;
+		for (final long ssrc : packet.ssrcs())
+		{
+			if (table.index.find(ssrc) != SsrcIndex.NIL)
+			{
+				if (next == null)
+				{
+					next = new Table(table);
+				}
+				next.remove(ssrc);
+			}
+		}
+
+		if (next != null)
+		{
+			table = next;
+		}
+	}
+
+
+	/**
+	 * Remove a stream.
+	 *
+	 * @param ssrc The ssrc of the stream.
+	 */
+	public synchronized void remove(final long ssrc)
+	{
+		if (table.index.find(ssrc) != SsrcIndex.NIL)
+		{
+			final Table next = new Table(table);
+			next.remove(ssrc);
+			table = next;
+		}
+	}
+
+
+	/**
+	 * Gets the mapping of a stream.
+	 *
+	 * @param ssrc The ssrc of the stream.
+	 * @return The mapping, or null if no sender report has been received for the stream.
+	 */
+	public WallclockMapping mapping(final long ssrc)
+	{
+		final Table t = table;
+		final int entry = t.index.find(ssrc);
+		return entry == SsrcIndex.NIL ? null : t.mappings.getAcquire(entry);
+	}
+
+
+	/**
+	 * Gets the CNAME of a stream.
+	 *
+	 * @param ssrc The ssrc of the stream.
+	 * @return The CNAME, or null if not known.
+	 */
+	public String cname(final long ssrc)
+	{
+		final Table t = table;
+		final int entry = t.index.find(ssrc);
+		return entry == SsrcIndex.NIL ? null : t.cnames[entry];
+	}
+
+
+	/**
+	 * Gets the mappings of all the streams with a CNAME.
+	 *
+	 * @param cname The CNAME of the participant.
+	 * @return The list of mappings, empty if there are none.
+	 */
+	public List<WallclockMapping> group(final String cname)
+	{
+		if (cname == null)
+		{
+			return Collections.emptyList();
+		}
+
+		final Table t = table;
+		final List<WallclockMapping> group = new ArrayList<>();
+		for (int entry = 0 ; entry < t.index.capacity() ; entry++)
+		{
+			final WallclockMapping mapping = t.mappings.getAcquire(entry);
+			if (mapping != null && cname.equals(t.cnames[entry]))
+			{
+				group.add(mapping);
+			}
+		}
+
+		return group;
+	}
+
+
+	/**
+	 * Convert an RTP timestamp of one stream to the RTP timestamp of another stream with the same wallclock
+	 * time, e.g. to find the video frame to present with an audio sample.
+	 *
+	 * @param fromSsrc The ssrc of the stream to convert from.
+	 * @param rtpTimestamp The RTP timestamp to convert.
+	 * @param toSsrc The ssrc of the stream to convert to.
+	 * @return The 32 bit RTP timestamp, or -1 if either stream has no mapping or they do not share a CNAME.
+	 */
+	public long toRtp(final long fromSsrc, final long rtpTimestamp, final long toSsrc)
+	{
+		final Table t = table;
+		final int fromEntry = t.index.find(fromSsrc);
+		final int toEntry = t.index.find(toSsrc);
+		if (fromEntry == SsrcIndex.NIL || toEntry == SsrcIndex.NIL)
+		{
+			return -1;
+		}
+
+		final WallclockMapping from = t.mappings.getAcquire(fromEntry);
+		final WallclockMapping to = t.mappings.getAcquire(toEntry);
+		final String cname = t.cnames[fromEntry];
+		if (from == null || to == null || cname == null || !cname.equals(t.cnames[toEntry]))
+		{
+			return -1;
+		}
+
+		return to.toRtp(from.toNtp(rtpTimestamp));
+	}
+
+
+	/**
+	 * A table of the mapping and CNAME of each stream.
+	 * NB: A table's index and CNAMEs are only modified by the thread that copied it, before it is published, its
+	 *     mappings are also replaced in place (under the lock) once published.
+	 */
+	private static final class Table
+	{
+		/** The entry of each stream. */
+		private final SsrcIndex index;
+
+		/** The mapping of each entry, or null. */
+		private AtomicReferenceArray<WallclockMapping> mappings;
+
+		/** The CNAME of each entry, or null. */
+		private String[] cnames;
+
+
+		/**
+		 * Create an empty table.
+		 */
+		private Table()
+		{
+			this.index = new SsrcIndex(16);
+			this.mappings = new AtomicReferenceArray<>(index.capacity());
+			this.cnames = new String[index.capacity()];
+		}
+
+
+		/**
+		 * Create a copy of a table.
+		 *
+		 * @param table The table to copy.
+		 */
+		private Table(final Table table)
+		{
+			this.index = new SsrcIndex(table.index);
+			this.mappings = copyOf(table.mappings, table.mappings.length());
+			this.cnames = table.cnames.clone();
+		}
+
+
+		/**
+		 * Find the entry of a stream, adding it if not held.
+		 *
+		 * @param ssrc The ssrc of the stream.
+		 * @return The entry index.
+		 */
+		private int add(final long ssrc)
+		{
+			final int entry = index.add(ssrc);
+			if (index.capacity() > mappings.length())
+			{
+				mappings = copyOf(mappings, index.capacity());
+				cnames = Arrays.copyOf(cnames, index.capacity());
+			}
+
+			return entry;
+		}
+
+
+		/**
+		 * Remove a stream.
+		 *
+		 * @param ssrc The ssrc of the stream.
+		 */
+		private void remove(final long ssrc)
+		{
+			final int entry = index.remove(ssrc);
+			if (entry != SsrcIndex.NIL)
+			{
+				mappings.set(entry, null);
+				cnames[entry] = null;
+			}
+		}
+
+
+		/**
+		 * Copy the mappings into a new array.
+		 *
+		 * @param mappings The mappings to copy.
+		 * @param length The length of the new array, at least that of the mappings.
+		 * @return The new array.
+		 */
+		private static AtomicReferenceArray<WallclockMapping> copyOf(final AtomicReferenceArray<WallclockMapping> mappings, final int length)
+		{
+			final AtomicReferenceArray<WallclockMapping> copy = new AtomicReferenceArray<>(length);
+			for (int entry = 0 ; entry < mappings.length() ; entry++)
+			{
+				copy.setPlain(entry, mappings.getPlain(entry));
+			}
+
+			return copy;
+		}
+	}
+
+}
@@ -0,0 +1,215 @@
+package org.vidtec.rfc3550.rtcp.sync;
+
+/**
+ * A linear mapping between the RTP timestamps of a stream (ssrc) and wallclock (NTP) time, anchored at the
+ * NTP / RTP timestamp pair of the latest sender report, as per RFC 3550 section 6.4.1.
+ *
+ * The slope of the mapping is the nominal clock rate of the stream, corrected by the drift of the sender's
+ * media clock against its wallclock, as measured between consecutive sender reports.
+ *
+ * Instances are immutable, each sender report creates a new mapping, so a mapping can be cached by readers
+ * and used without any locking. Conversions are arithmetic only.
+ *
+ * NB: RTP timestamps are converted relative to the anchor allowing for wraparound, so they must be within
+ * 2^31 ticks of the anchor (e.g. about 6.6 hours at 90kHz).
+ */
+public final class WallclockMapping
+{
+
+	/** The largest drift accepted from a measurement, in parts per million. */
+	private static final double MAX_DRIFT_PPM = 1000;
+
+	/** The gain of the drift smoothing. */
+	private static final double DRIFT_GAIN = 1.0 / 8;
+
+	/** The number of NTP units per second. */
+	private static final double NTP_PER_SECOND = 4294967296.0;
+
+
+	/** The SSRC of the stream. */
+	private final long ssrc;
+
+	/** The nominal clock rate of the stream in Hz. */
+	private final int clockRate;
+
+	/** The NTP timestamp of the anchor. */
+	private final long ntpTimestamp;
+
+	/** The RTP timestamp of the anchor. */
+	private final long rtpTimestamp;
+
+	/** The estimated drift of the media clock, in parts per million. */
+	private final double driftPpm;
+
+	/** The number of NTP units per RTP tick. */
+	private final double ntpPerTick;
+
+	/** The number of RTP ticks per NTP unit. */
+	private final double ticksPerNtp;
+
+	/** The number of drift measurements made. */
+	private final int measurements;
+
+
+	/**
+	 * Create a mapping.
+	 *
+	 * @param ssrc The SSRC of the stream.
+	 * @param clockRate The nominal clock rate of the stream in Hz.
+	 * @param ntpTimestamp The NTP timestamp of the anchor.
+	 * @param rtpTimestamp The RTP timestamp of the anchor.
+	 * @param driftPpm The estimated drift of the media clock, in parts per million.
+	 * @param measurements The number of drift measurements made.
+	 */
+	private WallclockMapping(final long ssrc, final int clockRate, final long ntpTimestamp, final long rtpTimestamp, final double driftPpm, final int measurements)
+	{
+		this.ssrc = ssrc;
+		this.clockRate = clockRate;
+		this.ntpTimestamp = ntpTimestamp;
+		this.rtpTimestamp = rtpTimestamp;
+		this.driftPpm = driftPpm;
+		this.measurements = measurements;
+		this.ntpPerTick = NTP_PER_SECOND / (clockRate * (1 + driftPpm / 1e6));
+		this.ticksPerNtp = 1 / ntpPerTick;
+	}
+
+
+	/**
+	 * Gets the SSRC of the stream.
+	 *
+	 * @return The ssrc identifier.
+	 */
+	public long ssrc()
+	{
+		return ssrc;
+	}
+
+
+	/**
+	 * Gets the nominal clock rate of the stream.
+	 *
+	 * @return The clock rate in Hz.
+	 */
+	public int clockRate()
+	{
+		return clockRate;
+	}
+
+
+	/**
+	 * Gets the NTP timestamp of the anchor (from the latest sender report).
+	 *
+	 * @return The 64 bit NTP timestamp.
+	 */
+	public long ntpTimestamp()
+	{
+		return ntpTimestamp;
+	}
+
+
+	/**
+	 * Gets the RTP timestamp of the anchor (from the latest sender report).
+	 *
+	 * @return The 32 bit RTP timestamp.
+	 */
+	public long rtpTimestamp()
+	{
+		return rtpTimestamp;
+	}
+
+
+	/**
+	 * Gets the estimated drift of the media clock against the sender's wallclock.
+	 *
+	 * @return The drift in parts per million, positive if the media clock runs fast.
+	 */
+	public double driftPpm()
+	{
+		return driftPpm;
+	}
+
+
+	/**
+	 * Gets the number of drift measurements made, i.e. the number of sender reports after the first.
+	 *
+	 * @return The measurement count.
+	 */
+	public int measurements()
+	{
+		return measurements;
+	}
+
+
+	/**
+	 * Convert an RTP timestamp of the stream to wallclock time.
+	 *
+	 * @param rtpTimestamp The RTP timestamp.
+	 * @return The 64 bit NTP timestamp.
+	 */
+	public long toNtp(final long rtpTimestamp)
+	{
+		return ntpTimestamp + Math.round((int)(rtpTimestamp - this.rtpTimestamp) * ntpPerTick);
+	}
+
+
+	/**
+	 * Convert an RTP timestamp of the stream to wallclock time.
+	 *
+	 * @param rtpTimestamp The RTP timestamp.
+	 * @return The time in milliseconds since the Unix epoch.
+	 */
+	public long toUnixMillis(final long rtpTimestamp)
+	{
+		return NtpClock.toUnixMillis(toNtp(rtpTimestamp));
+	}
+
+
+	/**
+	 * Convert a wallclock time to an RTP timestamp of the stream.
+	 *
+	 * @param ntpTimestamp The 64 bit NTP timestamp.
+	 * @return The 32 bit RTP timestamp.
+	 */
+	public long toRtp(final long ntpTimestamp)
+	{
+		return 0xFFFFFFFFL & (rtpTimestamp + Math.round((ntpTimestamp - this.ntpTimestamp) * ticksPerNtp));
+	}
+
+
+	/**
+	 * Create the mapping for a sender report.
+	 *
+	 * @param previous The previous mapping of the stream, or null if there is none.
+	 * @param ssrc The SSRC of the stream.
+	 * @param clockRate The nominal clock rate of the stream in Hz.
+	 * @param ntpTimestamp The NTP timestamp of the sender report.
+	 * @param rtpTimestamp The RTP timestamp of the sender report.
+	 * @return The mapping instance.
+	 */
+	static WallclockMapping next(final WallclockMapping previous, final long ssrc, final int clockRate, final long ntpTimestamp, final long rtpTimestamp)
+	{
+		if (previous == null || previous.clockRate != clockRate)
+		{
+			return new WallclockMapping(ssrc, clockRate, ntpTimestamp, rtpTimestamp, 0, 0);
+		}
+
+		final long ntpDelta = ntpTimestamp - previous.ntpTimestamp;
+		final int rtpDelta = (int)(rtpTimestamp - previous.rtpTimestamp);
+		if (ntpDelta <= 0 || rtpDelta <= 0)
+		{
+			// Out of order, or the stream has been reset, so keep the drift.
+			return new WallclockMapping(ssrc, clockRate, ntpTimestamp, rtpTimestamp, previous.driftPpm, previous.measurements);
+		}
+
+		final double measured = (rtpDelta / (ntpDelta / NTP_PER_SECOND) / clockRate - 1) * 1e6;
+		if (Math.abs(measured) > MAX_DRIFT_PPM)
+		{
+			// Not a plausible clock drift, e.g. a timestamp jump.
+			return new WallclockMapping(ssrc, clockRate, ntpTimestamp, rtpTimestamp, previous.driftPpm, previous.measurements);
+		}
+
+		final double drift = previous.measurements == 0 ? measured : previous.driftPpm + (measured - previous.driftPpm) * DRIFT_GAIN;
+		return new WallclockMapping(ssrc, clockRate, ntpTimestamp, rtpTimestamp, drift, previous.measurements + 1);
+	}
+
+}
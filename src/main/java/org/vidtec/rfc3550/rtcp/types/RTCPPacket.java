@@ -2,8 +2,6 @@ package org.vidtec.rfc3550.rtcp.types;
 
 import java.nio.ByteBuffer;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * An implementation of an RTCP packet according to RFC 3550/.
@@ -11,7 +9,6 @@ import java.util.Map;
  * 
  * @param <T> The packet concrete type.
  * 
- * TODO: support extensions as per RFC 3611
  */
 public abstract class RTCPPacket<T> 
 {
@@ -180,21 +177,52 @@ public abstract class RTCPPacket<T>
 	 * 	 SDES   202   source description        
 	 * 	 BYE    203   goodbye          
 	 * 	 APP    204   application-defined          
+	 * 	 RTPFB  205   transport layer feedback (RFC 4585)
+	 * 	 PSFB   206   payload-specific feedback (RFC 4585)
+	 * 	 XR     207   extended reports (RFC 3611)
+	 * 	 
+	 * 	 UNKNOWN is used for opaque packets of any other type when parsing leniently,
+	 * 	 it is never returned by fromTypeValue(int) and its pt value has no meaning.
 	 */
 	public static enum PayloadType
 	{
-		SR(200), RR(201), SDES(202), BYE(203), APP(204);
+		/** Sender report. */
+		SR(200),
+
+		/** Receiver report. */
+		RR(201),
+
+		/** Source description. */
+		SDES(202),
+
+		/** Goodbye. */
+		BYE(203),
+
+		/** Application-defined. */
+		APP(204),
+
+		/** Transport layer feedback. */
+		RTPFB(205),
+
+		/** Payload-specific feedback. */
+		PSFB(206),
+
+		/** Extended reports. */
+		XR(207),
+
+		/** Any other packet type. */
+		UNKNOWN(0);
 		
 		/** The numeric placeholder. */
 		public final short pt;
 		
-		/** internal cache of values to enumerations. */
-		private static final Map<Integer, PayloadType> TYPES = new HashMap<>();
+		/** internal cache of values to enumerations, indexed by value. */
+		private static final PayloadType[] TYPES = new PayloadType[256];
 		
 		
 		static
 		{
-			Arrays.stream(PayloadType.values()).forEach(t -> TYPES.put(Integer.valueOf(t.pt), t));
+			Arrays.stream(PayloadType.values()).filter(t -> t != UNKNOWN).forEach(t -> TYPES[t.pt] = t);
 		}
 		
 		
@@ -219,7 +247,7 @@ public abstract class RTCPPacket<T>
 		 */
 		public static PayloadType fromTypeValue(final int value)
 		{
-			final PayloadType type = TYPES.get(Integer.valueOf(value));
+			final PayloadType type = fromTypeValue(value, null);
 			if (type == null)
 			{
 				throw new IllegalArgumentException("Unknown type - " + String.valueOf(value));
@@ -227,6 +255,20 @@ public abstract class RTCPPacket<T>
 			
 			return type;
 		}
+		
+		
+		/**
+		 * Get a payload type enumeration from a packet value, without failing for unknown values.
+		 * 
+		 * @param value The payload type value.
+		 * @param defaultType The value to return if the value is not known.
+		 * @return The corresponding enumeration instance, or the default type.
+		 */
+		public static PayloadType fromTypeValue(final int value, final PayloadType defaultType)
+		{
+			final PayloadType type = (value & ~0xFF) == 0 ? TYPES[value] : null;
+			return type == null ? defaultType : type;
+		}
 	}
 	
 }
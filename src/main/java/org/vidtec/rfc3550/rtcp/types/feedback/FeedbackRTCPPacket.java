@@ -0,0 +1,240 @@
+package org.vidtec.rfc3550.rtcp.types.feedback;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.vidtec.rfc3550.rtcp.types.RTCPPacket;
+
+/**
+ * An implementation of the common RTCP feedback packet format (RTPFB/PSFB) according to RFC 4585 section 6.1.
+ * https://tools.ietf.org/html/rfc4585
+ *
+ * @param <T> The packet concrete type.
+ */
+public abstract class FeedbackRTCPPacket<T> extends RTCPPacket<T>
+{
+
+	// RTCP Feedback packet format is defined as: (per RFC 4585, section 6.1)
+	//
+	//    0                   1                   2                   3
+	//    0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   |V=2|P|   FMT   |       PT      |          length               |
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   |                  SSRC of packet sender                        |
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   |                  SSRC of media source                         |
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   :            Feedback Control Information (FCI)                 :
+	//   :                                                               :
+
+
+	/** The fixed header length. */
+	protected static final int MIN_HEAD_LENGTH = 12;
+
+
+	/** The feedback message type. */
+	private final short fmt;
+
+	/** The SSRC of the packet sender. */
+	private final long ssrcSenderIdentifier;
+
+	/** The SSRC of the media source. */
+	private final long ssrcMediaSourceIdentifier;
+
+	/** The feedback control information. */
+	private final byte[] fci;
+
+
+	/**
+	 * Create a feedback RTCP packet.
+	 *
+	 * @param type The packet type.
+	 * @param fmt The feedback message type (0 - 31).
+	 * @param ssrcSenderIdentifier The SSRC of the packet sender.
+	 * @param ssrcMediaSourceIdentifier The SSRC of the media source.
+	 * @param fci The feedback control information.
+	 *
+	 * @throws IllegalArgumentException If there is a problem with the validity of the packet.
+	 */
+	protected FeedbackRTCPPacket(final PayloadType type, final int fmt, final long ssrcSenderIdentifier, final long ssrcMediaSourceIdentifier, final byte[] fci)
+	{
+		super(type);
+
+		if (fmt < 0 || fmt > 31)
+		{
+			throw new IllegalArgumentException("Expected valid feedback message type not " + fmt);
+		}
+		if (ssrcSenderIdentifier < 0 || ssrcSenderIdentifier > 0xFFFFFFFFL)
+		{
+			throw new IllegalArgumentException("Expected valid sender ssrc not " + ssrcSenderIdentifier);
+		}
+		if (ssrcMediaSourceIdentifier < 0 || ssrcMediaSourceIdentifier > 0xFFFFFFFFL)
+		{
+			throw new IllegalArgumentException("Expected valid media source ssrc not " + ssrcMediaSourceIdentifier);
+		}
+		if (fci.length % 4 != 0 || MIN_HEAD_LENGTH + fci.length > 0x40000)
+		{
+			throw new IllegalArgumentException("Expected FCI length to be a multiple of 4 and at most 262132 bytes, but found " + fci.length);
+		}
+
+		this.fmt = (short)fmt;
+		this.ssrcSenderIdentifier = ssrcSenderIdentifier;
+		this.ssrcMediaSourceIdentifier = ssrcMediaSourceIdentifier;
+		this.fci = fci;
+	}
+
+
+	/**
+	 * Gets the feedback message type.
+	 *
+	 * @return The FMT value from 0 - 31.
+	 */
+	public short feedbackMessageType()
+	{
+		return fmt;
+	}
+
+
+	/**
+	 * Gets the sync. source identifier of the packet sender.
+	 *
+	 * @return The sender's ssrc identifier as a 32 bit unsigned integer.
+	 */
+	public long ssrcSenderIdentifier()
+	{
+		return ssrcSenderIdentifier;
+	}
+
+
+	/**
+	 * Gets the sync. source identifier of the media source that the feedback is about.
+	 *
+	 * @return The media source ssrc identifier as a 32 bit unsigned integer.
+	 */
+	public long ssrcMediaSourceIdentifier()
+	{
+		return ssrcMediaSourceIdentifier;
+	}
+
+
+	/**
+	 * Gets the length of the feedback control information.
+	 *
+	 * @return The FCI length in bytes.
+	 */
+	public int fciLength()
+	{
+		return fci.length;
+	}
+
+
+	/**
+	 * Gets the feedback control information as a byte[].
+	 *
+	 * @return a copy of the FCI data.
+	 */
+	public byte[] fciAsByteArray()
+	{
+		return Arrays.copyOf(fci, fci.length);
+	}
+
+
+	/**
+	 * Get direct access to the FCI data, for use by sub-classes decoding it.
+	 *
+	 * @return The FCI data as a read-only buffer.
+	 */
+	protected ByteBuffer fci()
+	{
+		return ByteBuffer.wrap(fci).asReadOnlyBuffer();
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int packetLength()
+	{
+		return MIN_HEAD_LENGTH + fci.length;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public byte[] asByteArray()
+	{
+		final byte[] data = new byte[packetLength()];
+		final ByteBuffer bb = ByteBuffer.wrap(data);
+
+		bb.put((byte)(VERSION << 6 | (0x1F & fmt)));
+		bb.put((byte)(0xFF & payloadType().pt));
+		bb.putShort((short)((data.length / 4) - 1));
+		bb.putInt((int)ssrcSenderIdentifier);
+		bb.putInt((int)ssrcMediaSourceIdentifier);
+		bb.put(fci);
+
+		return data;
+	}
+
+
+	/**
+	 * Validate the common header of a feedback packet.
+	 *
+	 * @param data The packet data.
+	 * @param type The expected payload type.
+	 * @return A buffer positioned at the packet sender SSRC, and limited to exclude any padding.
+	 *
+	 * @throws IllegalArgumentException If there is a problem with the validity of the packet.
+	 */
+	protected static ByteBuffer validate(final byte[] data, final PayloadType type)
+	{
+		if (data == null)
+		{
+			throw new IllegalArgumentException("packet data cannot be null");
+		}
+		if (data.length < MIN_HEAD_LENGTH)
+		{
+			// As per RFC 4585 - the header is 12 bytes, anything less is a bad packet.
+			throw new IllegalArgumentException("Packet too short, expecting at least " + MIN_HEAD_LENGTH + " bytes, but found " + data.length);
+		}
+
+		final ByteBuffer bb = ByteBuffer.wrap(data);
+		final short firstByte = (short)(0xFF & bb.get());
+		if ((firstByte & 0xC0) != VERSION << 6)
+		{
+			throw new IllegalArgumentException("Invalid version number found, expecting " + VERSION);
+		}
+
+		if ((0xFF & bb.get()) != type.pt)
+		{
+			// Wrong payload type.
+			throw new IllegalArgumentException("Invalid or unexpected packet type - should be " + type.pt);
+		}
+
+		// Get the length, and validate.
+		final int length = (0xFFFF & bb.getShort()) * 4;
+		if (bb.remaining() != length)
+		{
+			// Invalid packet length
+			throw new IllegalArgumentException("Packet states " + (length + 4) + " bytes length, but actual length is " + (bb.remaining() + 4));
+		}
+
+		if ((0x20 & firstByte) == 0x20)
+		{
+			// Padding count is in the last byte, and must leave the fixed header intact.
+			final int padding = 0xFF & data[data.length - 1];
+			if (padding == 0 || data.length - padding < MIN_HEAD_LENGTH || (data.length - padding) % 4 != 0)
+			{
+				throw new IllegalArgumentException("Invalid padding length - " + padding);
+			}
+			bb.limit(data.length - padding);
+		}
+
+		return bb;
+	}
+
+}
@@ -0,0 +1,270 @@
+package org.vidtec.rfc3550.rtcp.types.feedback;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * An implementation of an RTCP payload-specific feedback packet (PSFB) according to RFC 4585 section 6.3.
+ * https://tools.ietf.org/html/rfc4585
+ *
+ * Picture Loss Indication (FMT=1) and Full Intra Request (FMT=4, as per RFC 5104 section 4.3.1) are
+ * decoded and encoded directly, other feedback message types are available as raw FCI data.
+ */
+public class PayloadFeedbackRTCPPacket extends FeedbackRTCPPacket<PayloadFeedbackRTCPPacket>
+{
+
+	// PLI has no FCI. (per RFC 4585, section 6.3.1)
+	//
+	// FIR FCI format is defined as: (per RFC 5104, section 4.3.1.1)
+	//
+	//    0                   1                   2                   3
+	//    0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   |                              SSRC                             |
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   | Seq nr.       |    Reserved                                   |
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+
+
+	/** The Picture Loss Indication feedback message type. */
+	public static final int FMT_PLI = 1;
+
+	/** The Full Intra Request feedback message type. */
+	public static final int FMT_FIR = 4;
+
+	/** The size of a FIR FCI entry. */
+	private static final int FIR_ENTRY_SIZE = 8;
+
+
+	/**
+	 * Create a (PSFB) payload-specific feedback RTCP packet.
+	 *
+	 * @param fmt The feedback message type.
+	 * @param ssrcSenderIdentifier The SSRC of the packet sender.
+	 * @param ssrcMediaSourceIdentifier The SSRC of the media source.
+	 * @param fci The feedback control information.
+	 *
+	 * @throws IllegalArgumentException If there is a problem with the validity of the packet.
+	 */
+	private PayloadFeedbackRTCPPacket(final int fmt, final long ssrcSenderIdentifier, final long ssrcMediaSourceIdentifier, final byte[] fci)
+	{
+		super(PayloadType.PSFB, fmt, ssrcSenderIdentifier, ssrcMediaSourceIdentifier, fci);
+
+		if (fmt == FMT_PLI && fci.length != 0)
+		{
+			throw new IllegalArgumentException("PLI must not have FCI data, but found " + fci.length + " bytes");
+		}
+		if (fmt == FMT_FIR && (fci.length == 0 || fci.length % FIR_ENTRY_SIZE != 0))
+		{
+			throw new IllegalArgumentException("FIR must have one or more 8 byte FCI entries, but found " + fci.length + " bytes");
+		}
+	}
+
+
+	/**
+	 * Indicates if this packet is a Picture Loss Indication.
+	 *
+	 * @return true if this is a PLI, false otherwise.
+	 */
+	public boolean isPictureLossIndication()
+	{
+		return feedbackMessageType() == FMT_PLI;
+	}
+
+
+	/**
+	 * Indicates if this packet is a Full Intra Request.
+	 *
+	 * @return true if this is a FIR, false otherwise.
+	 */
+	public boolean isFullIntraRequest()
+	{
+		return feedbackMessageType() == FMT_FIR;
+	}
+
+
+	/**
+	 * Gets the number of FIR entries.
+	 *
+	 * @return The number of entries, or 0 if this is not a FIR.
+	 */
+	public int firCount()
+	{
+		return isFullIntraRequest() ? fciLength() / FIR_ENTRY_SIZE : 0;
+	}
+
+
+	/**
+	 * Gets the media sender ssrcs that a FIR is requesting a decoder refresh from.
+	 *
+	 * @return The array of identifiers, will be empty [] if this is not a FIR.
+	 */
+	public long[] firSsrcs()
+	{
+		final ByteBuffer bb = fci();
+		final long[] ssrcs = new long[firCount()];
+		for (int i = 0 ; i < ssrcs.length ; i++)
+		{
+			ssrcs[i] = 0xFFFFFFFFL & bb.getInt(i * FIR_ENTRY_SIZE);
+		}
+
+		return ssrcs;
+	}
+
+
+	/**
+	 * Gets the command sequence numbers of the FIR entries.
+	 *
+	 * @return The array of sequence numbers (0 - 255), in the same order as firSsrcs(), will be empty [] if this is not a FIR.
+	 */
+	public short[] firSequenceNumbers()
+	{
+		final ByteBuffer bb = fci();
+		final short[] seqs = new short[firCount()];
+		for (int i = 0 ; i < seqs.length ; i++)
+		{
+			seqs[i] = (short)(0xFF & bb.get(i * FIR_ENTRY_SIZE + 4));
+		}
+
+		return seqs;
+	}
+
+
+	/**
+	 * Returns an RTCP packet derived from a given byte array.
+	 *
+	 * @param data The byte[] to construct a packet from.
+	 * @return The instance representing the given data.
+	 *
+	 * @throws IllegalArgumentException If there is a problem with the validity of the packet.
+	 */
+	public static PayloadFeedbackRTCPPacket fromByteArray(final byte[] data)
+	{
+		final ByteBuffer bb = validate(data, PayloadType.PSFB);
+
+		final long ssrcSender = 0xFFFFFFFFL & bb.getInt();
+		final long ssrcMediaSource = 0xFFFFFFFFL & bb.getInt();
+		final byte[] fci = new byte[bb.remaining()];
+		bb.get(fci);
+
+		return new PayloadFeedbackRTCPPacket(0x1F & data[0], ssrcSender, ssrcMediaSource, fci);
+	}
+
+
+	/**
+	 * Creates a builder to manually build an {@link PayloadFeedbackRTCPPacket}.
+	 *
+	 * @return The builder instance.
+	 */
+	public static PayloadFeedbackBuilder builder()
+	{
+		return new PayloadFeedbackBuilder();
+	}
+
+
+	/**
+	 * A PayloadFeedbackBuilder class to build {@link PayloadFeedbackRTCPPacket} instances.
+	 */
+	public static final class PayloadFeedbackBuilder
+	{
+		/** The feedback message type. */
+		private int fmt = -1;
+
+		/** The SSRC of the packet sender. */
+		private long ssrcSender;
+
+		/** The SSRC of the media source. */
+		private long ssrcMediaSource;
+
+		/** The feedback control information. */
+		private byte[] fci = new byte[0];
+
+		/**
+		 * Private constructor.
+		 */
+		private PayloadFeedbackBuilder() { /* Empty Constructor */ }
+
+
+		/**
+		 * This packet must have sender and media source ssrcs.
+		 * NB: For a FIR the media source ssrc should be 0, as per RFC 5104.
+		 *
+		 * @param ssrcSender The ssrc of the packet sender.
+		 * @param ssrcMediaSource The ssrc of the media source the feedback is about.
+		 * @return The builder instance.
+		 */
+		public PayloadFeedbackBuilder withSsrcs(final long ssrcSender, final long ssrcMediaSource)
+		{
+			this.ssrcSender = ssrcSender;
+			this.ssrcMediaSource = ssrcMediaSource;
+			return this;
+		}
+
+
+		/**
+		 * This packet is a Picture Loss Indication.
+		 *
+		 * @return The builder instance.
+		 */
+		public PayloadFeedbackBuilder withPictureLossIndication()
+		{
+			this.fmt = FMT_PLI;
+			this.fci = new byte[0];
+			return this;
+		}
+
+
+		/**
+		 * This packet is (or adds an entry to) a Full Intra Request.
+		 *
+		 * @param ssrc The ssrc of the media sender that should send a decoder refresh point.
+		 * @param sequenceNumber The command sequence number (0 - 255).
+		 * @return The builder instance.
+		 */
+		public PayloadFeedbackBuilder withFullIntraRequest(final long ssrc, final int sequenceNumber)
+		{
+			if (fmt != FMT_FIR)
+			{
+				this.fmt = FMT_FIR;
+				this.fci = new byte[0];
+			}
+
+			final ByteBuffer bb = ByteBuffer.wrap(Arrays.copyOf(fci, fci.length + FIR_ENTRY_SIZE));
+			bb.position(fci.length);
+			bb.putInt((int)ssrc);
+			bb.put((byte)sequenceNumber);
+
+			this.fci = bb.array();
+			return this;
+		}
+
+
+		/**
+		 * This packet has an arbitrary feedback message type.
+		 *
+		 * @param fmt The feedback message type (0 - 31).
+		 * @param fci The feedback control information (a multiple of 4 bytes).
+		 * @return The builder instance.
+		 */
+		public PayloadFeedbackBuilder withFeedback(final int fmt, final byte[] fci)
+		{
+			this.fmt = fmt;
+			this.fci = fci == null ? new byte[0] : Arrays.copyOf(fci, fci.length);
+			return this;
+		}
+
+
+		/**
+		 * Build the packet.
+		 *
+		 * @return The packet instance.
+		 *
+		 * @throws IllegalArgumentException If there is a problem with the supplied packet data.
+		 */
+		public PayloadFeedbackRTCPPacket build()
+		{
+			return new PayloadFeedbackRTCPPacket(fmt, ssrcSender, ssrcMediaSource, fci);
+		}
+	}
+
+}
@@ -0,0 +1,330 @@
+package org.vidtec.rfc3550.rtcp.types.feedback;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * An implementation of an RTCP transport layer feedback packet (RTPFB) according to RFC 4585 section 6.2.
+ * https://tools.ietf.org/html/rfc4585
+ *
+ * Generic NACK (FMT=1) is decoded and encoded directly, other feedback message types are available as raw FCI data.
+ */
+public class TransportFeedbackRTCPPacket extends FeedbackRTCPPacket<TransportFeedbackRTCPPacket>
+{
+
+	// Generic NACK FCI format is defined as: (per RFC 4585, section 6.2.1)
+	//
+	//    0                   1                   2                   3
+	//    0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   |            PID                |             BLP               |
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//
+	// PID is a lost packet sequence number, and bit i of BLP indicates that PID + i + 1 is also lost.
+
+
+	/** The Generic NACK feedback message type. */
+	public static final int FMT_GENERIC_NACK = 1;
+
+
+	/**
+	 * Create a (RTPFB) transport feedback RTCP packet.
+	 *
+	 * @param fmt The feedback message type.
+	 * @param ssrcSenderIdentifier The SSRC of the packet sender.
+	 * @param ssrcMediaSourceIdentifier The SSRC of the media source.
+	 * @param fci The feedback control information.
+	 *
+	 * @throws IllegalArgumentException If there is a problem with the validity of the packet.
+	 */
+	private TransportFeedbackRTCPPacket(final int fmt, final long ssrcSenderIdentifier, final long ssrcMediaSourceIdentifier, final byte[] fci)
+	{
+		super(PayloadType.RTPFB, fmt, ssrcSenderIdentifier, ssrcMediaSourceIdentifier, fci);
+
+		if (fmt == FMT_GENERIC_NACK && fci.length == 0)
+		{
+			throw new IllegalArgumentException("Generic NACK must have at least one FCI entry");
+		}
+	}
+
+
+	/**
+	 * Indicates if this packet is a Generic NACK.
+	 *
+	 * @return true if this is a Generic NACK, false otherwise.
+	 */
+	public boolean isGenericNack()
+	{
+		return feedbackMessageType() == FMT_GENERIC_NACK;
+	}
+
+
+	/**
+	 * Gets the number of PID/BLP entries in a Generic NACK.
+	 *
+	 * @return The number of entries, or 0 if this is not a Generic NACK.
+	 */
+	public int nackCount()
+	{
+		return isGenericNack() ? fciLength() / 4 : 0;
+	}
+
+
+	/**
+	 * Gets all of the sequence numbers reported as lost by a Generic NACK.
+	 *
+	 * @return The lost sequence numbers in packet order, will be empty [] if this is not a Generic NACK.
+	 */
+	public int[] lostSequenceNumbers()
+	{
+		if (!isGenericNack())
+		{
+			return new int[0];
+		}
+
+		final ByteBuffer bb = fci();
+
+		// Count first, so that the result can be sized exactly.
+		int count = 0;
+		for (int i = 0 ; i < nackCount() ; i++)
+		{
+			count += 1 + Integer.bitCount(0xFFFF & bb.getShort(i * 4 + 2));
+		}
+
+		final int[] lost = new int[count];
+		int n = 0;
+		for (int i = 0 ; i < nackCount() ; i++)
+		{
+			final int pid = 0xFFFF & bb.getShort(i * 4);
+			int blp = 0xFFFF & bb.getShort(i * 4 + 2);
+
+			lost[n++] = pid;
+			while (blp != 0)
+			{
+				lost[n++] = (pid + Integer.numberOfTrailingZeros(blp) + 1) & 0xFFFF;
+				blp &= blp - 1;
+			}
+		}
+
+		return lost;
+	}
+
+
+	/**
+	 * Returns an RTCP packet derived from a given byte array.
+	 *
+	 * @param data The byte[] to construct a packet from.
+	 * @return The instance representing the given data.
+	 *
+	 * @throws IllegalArgumentException If there is a problem with the validity of the packet.
+	 */
+	public static TransportFeedbackRTCPPacket fromByteArray(final byte[] data)
+	{
+		final ByteBuffer bb = validate(data, PayloadType.RTPFB);
+
+		final long ssrcSender = 0xFFFFFFFFL & bb.getInt();
+		final long ssrcMediaSource = 0xFFFFFFFFL & bb.getInt();
+		final byte[] fci = new byte[bb.remaining()];
+		bb.get(fci);
+
+		return new TransportFeedbackRTCPPacket(0x1F & data[0], ssrcSender, ssrcMediaSource, fci);
+	}
+
+
+	/**
+	 * Pack lost sequence numbers into Generic NACK PID/BLP entries.
+	 *
+	 * @param baseSequenceNumber The sequence number represented by bit 0 of the bitmap.
+	 * @param lossBitmap The loss bitmap, bit i (of word i / 64) is set if baseSequenceNumber + i is lost.
+	 * @return The FCI data, with as few entries as possible.
+	 */
+	static byte[] packGenericNack(final int baseSequenceNumber, final long[] lossBitmap)
+	{
+		int lostCount = 0;
+		for (final long word : lossBitmap)
+		{
+			lostCount += Long.bitCount(word);
+		}
+
+		// Worst case is one entry per lost packet.
+		final ByteBuffer bb = ByteBuffer.allocate(4 * lostCount);
+
+		int pid = -1;
+		int blp = 0;
+		for (int w = 0 ; w < lossBitmap.length ; w++)
+		{
+			long bits = lossBitmap[w];
+			while (bits != 0)
+			{
+				final int offset = w * 64 + Long.numberOfTrailingZeros(bits);
+				bits &= bits - 1;
+
+				if (pid >= 0 && offset - pid <= 16)
+				{
+					// Covered by the current entry.
+					blp |= 1 << (offset - pid - 1);
+				}
+				else
+				{
+					if (pid >= 0)
+					{
+						bb.putShort((short)(baseSequenceNumber + pid));
+						bb.putShort((short)blp);
+					}
+					pid = offset;
+					blp = 0;
+				}
+			}
+		}
+
+		if (pid >= 0)
+		{
+			bb.putShort((short)(baseSequenceNumber + pid));
+			bb.putShort((short)blp);
+		}
+
+		return Arrays.copyOf(bb.array(), bb.position());
+	}
+
+
+	/**
+	 * Creates a builder to manually build an {@link TransportFeedbackRTCPPacket}.
+	 *
+	 * @return The builder instance.
+	 */
+	public static TransportFeedbackBuilder builder()
+	{
+		return new TransportFeedbackBuilder();
+	}
+
+
+	/**
+	 * A TransportFeedbackBuilder class to build {@link TransportFeedbackRTCPPacket} instances.
+	 */
+	public static final class TransportFeedbackBuilder
+	{
+		/** The feedback message type. */
+		private int fmt = -1;
+
+		/** The SSRC of the packet sender. */
+		private long ssrcSender;
+
+		/** The SSRC of the media source. */
+		private long ssrcMediaSource;
+
+		/** The feedback control information. */
+		private byte[] fci = new byte[0];
+
+		/**
+		 * Private constructor.
+		 */
+		private TransportFeedbackBuilder() { /* Empty Constructor */ }
+
+
+		/**
+		 * This packet must have sender and media source ssrcs.
+		 *
+		 * @param ssrcSender The ssrc of the packet sender.
+		 * @param ssrcMediaSource The ssrc of the media source the feedback is about.
+		 * @return The builder instance.
+		 */
+		public TransportFeedbackBuilder withSsrcs(final long ssrcSender, final long ssrcMediaSource)
+		{
+			this.ssrcSender = ssrcSender;
+			this.ssrcMediaSource = ssrcMediaSource;
+			return this;
+		}
+
+
+		/**
+		 * This packet is a Generic NACK for a loss bitmap.
+		 *
+		 * @param baseSequenceNumber The sequence number represented by bit 0 of the bitmap.
+		 * @param lossBitmap The loss bitmap, bit i (of word i / 64) is set if baseSequenceNumber + i is lost.
+		 * @return The builder instance.
+		 */
+		public TransportFeedbackBuilder withGenericNack(final int baseSequenceNumber, final long[] lossBitmap)
+		{
+			if (lossBitmap == null)
+			{
+				throw new IllegalArgumentException("loss bitmap cannot be null");
+			}
+
+			this.fmt = FMT_GENERIC_NACK;
+			this.fci = packGenericNack(baseSequenceNumber, lossBitmap);
+			return this;
+		}
+
+
+		/**
+		 * This packet is a Generic NACK for a set of lost sequence numbers.
+		 * NB: The sequence numbers may be in any order, but must all be within half of the sequence space
+		 *     of each other (so that wraparound is unambiguous).
+		 *
+		 * @param sequenceNumbers The lost sequence numbers.
+		 * @return The builder instance.
+		 */
+		public TransportFeedbackBuilder withGenericNack(final int ... sequenceNumbers)
+		{
+			if (sequenceNumbers == null || sequenceNumbers.length == 0)
+			{
+				throw new IllegalArgumentException("Expected valid sequence numbers not null or empty");
+			}
+
+			// Find the earliest sequence number, allowing for wraparound.
+			int base = 0xFFFF & sequenceNumbers[0];
+			for (final int seq : sequenceNumbers)
+			{
+				final int behind = (base - seq) & 0xFFFF;
+				if (behind > 0 && behind < 0x8000)
+				{
+					base = 0xFFFF & seq;
+				}
+			}
+
+			int maxOffset = 0;
+			for (final int seq : sequenceNumbers)
+			{
+				maxOffset = Math.max(maxOffset, (seq - base) & 0xFFFF);
+			}
+
+			final long[] bitmap = new long[(maxOffset >>> 6) + 1];
+			for (final int seq : sequenceNumbers)
+			{
+				final int offset = (seq - base) & 0xFFFF;
+				bitmap[offset >>> 6] |= 1L << (offset & 0x3F);
+			}
+
+			return withGenericNack(base, bitmap);
+		}
+
+
+		/**
+		 * This packet has an arbitrary feedback message type.
+		 *
+		 * @param fmt The feedback message type (0 - 31).
+		 * @param fci The feedback control information (a multiple of 4 bytes).
+		 * @return The builder instance.
+		 */
+		public TransportFeedbackBuilder withFeedback(final int fmt, final byte[] fci)
+		{
+			this.fmt = fmt;
+			this.fci = fci == null ? new byte[0] : Arrays.copyOf(fci, fci.length);
+			return this;
+		}
+
+
+		/**
+		 * Build the packet.
+		 *
+		 * @return The packet instance.
+		 *
+		 * @throws IllegalArgumentException If there is a problem with the supplied packet data.
+		 */
+		public TransportFeedbackRTCPPacket build()
+		{
+			return new TransportFeedbackRTCPPacket(fmt, ssrcSender, ssrcMediaSource, fci);
+		}
+	}
+
+}
@@ -5,7 +5,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.function.BiConsumer;
 
 import org.vidtec.rfc3550.rtcp.types.sdes.SdesItem.ItemType;
 
@@ -33,12 +33,14 @@ public final class Chunk
 	/** The list of items in the chunk. */
 	private final List<SdesItem> items = new ArrayList<>();
 	
+	/** The full length of the chunk in bytes, NB: computed once as the items never change. */
+	private final int chunkLength;
 	
+	/** The first item of each type, indexed by type code, NB: null if there is no item of the type. */
+	private final SdesItem[] firstItems = new SdesItem[ItemType.values().length];
 	
-	
-	
-	
-	
+	/** The visitor dispatch for each item type, indexed by type code. */
+	private static final BiConsumer<SdesItemsVisitor, SdesItem>[] VISITS = visits();
 	
 	
 	/**
@@ -57,6 +59,8 @@ public final class Chunk
 		
 		this.ssrcIdentifier = builder.ssrcIdentifier;
 		this.items.addAll(builder.items);
+		this.chunkLength = 4 + SdesItems.byteLength(this.items);
+		indexItems();
 	}
 
 
@@ -70,6 +74,44 @@ public final class Chunk
 	{
 		this.ssrcIdentifier = ssrc;
 		this.items.addAll(items);
+		this.chunkLength = 4 + SdesItems.byteLength(this.items);
+		indexItems();
+	}
+
+
+	/**
+	 * Index the first item of each type.
+	 */
+	private void indexItems()
+	{
+		for (int i = items.size() - 1 ; i >= 0 ; i--)
+		{
+			final SdesItem item = items.get(i);
+			firstItems[item.itemType().type] = item;
+		}
+	}
+	
+	
+	/**
+	 * Create the visitor dispatch table.
+	 * 
+	 * @return The visitor dispatch for each item type, indexed by type code.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static BiConsumer<SdesItemsVisitor, SdesItem>[] visits()
+	{
+		final BiConsumer<SdesItemsVisitor, SdesItem>[] visits = new BiConsumer[ItemType.values().length];
+		visits[ItemType.TERM.type] = (v, i) -> { /* Never held as an item. */ };
+		visits[ItemType.CNAME.type] = SdesItemsVisitor::visitCname;
+		visits[ItemType.NAME.type] = SdesItemsVisitor::visitName;
+		visits[ItemType.EMAIL.type] = SdesItemsVisitor::visitEmail;
+		visits[ItemType.PHONE.type] = SdesItemsVisitor::visitPhone;
+		visits[ItemType.LOC.type] = SdesItemsVisitor::visitLoc;
+		visits[ItemType.TOOL.type] = SdesItemsVisitor::visitTool;
+		visits[ItemType.NOTE.type] = SdesItemsVisitor::visitNote;
+		visits[ItemType.PRIV.type] = SdesItemsVisitor::visitPriv;
+		
+		return visits;
 	}
 
 
@@ -114,25 +156,52 @@ public final class Chunk
 	 */
 	public List<SdesItem> items(final ItemType filter)
 	{
-		return items.stream().filter(f -> f.itemType() == filter).collect(Collectors.toList());
+		if (filter == null || firstItems[filter.type] == null)
+		{
+			return Collections.emptyList();
+		}
+		
+		final List<SdesItem> filtered = new ArrayList<>(2);
+		for (final SdesItem item : items)
+		{
+			if (item.itemType() == filter)
+			{
+				filtered.add(item);
+			}
+		}
+		
+		return filtered;
+	}
+	
+	
+	/**
+	 * Get the first item in this chunk of a specific type.
+	 * 
+	 * NB: This is a single array lookup, there should only be one item of each type
+	 *     (except PRIV) in a chunk, e.g. the CNAME.
+	 * 
+	 * @param type The item type to look up.
+	 * @return The first SDES item of the type, or null if there is none.
+	 */
+	public SdesItem item(final ItemType type)
+	{
+		return type == null ? null : firstItems[type.type];
 	}
 	
 	
 	/**
 	 * Visit all the items in this chunk with a visitor that performs some actions.
 	 * 
+	 * NB: Items are visited once each, in the order they appear in the chunk.
+	 * 
 	 * @param visitor A visitor instance to interrogate the packets.
 	 */
 	public void visit(final SdesItemsVisitor visitor)
 	{
-		items().stream().filter(f -> f.itemType() == ItemType.CNAME).forEach(i -> visitor.visitCname(i));
-		items().stream().filter(f -> f.itemType() == ItemType.NAME).forEach(i -> visitor.visitName(i));
-		items().stream().filter(f -> f.itemType() == ItemType.PHONE).forEach(i -> visitor.visitPhone(i));
-		items().stream().filter(f -> f.itemType() == ItemType.EMAIL).forEach(i -> visitor.visitEmail(i));
-		items().stream().filter(f -> f.itemType() == ItemType.LOC).forEach(i -> visitor.visitLoc(i));
-		items().stream().filter(f -> f.itemType() == ItemType.TOOL).forEach(i -> visitor.visitTool(i));
-		items().stream().filter(f -> f.itemType() == ItemType.NOTE).forEach(i -> visitor.visitNote(i));
-		items().stream().filter(f -> f.itemType() == ItemType.PRIV).forEach(i -> visitor.visitPriv(i));
+		for (final SdesItem item : items)
+		{
+			VISITS[item.itemType().type].accept(visitor, item);
+		}
 	}
 	
 
@@ -143,8 +212,8 @@ public final class Chunk
 	 */
 	public int chunkLength() 
 	{
-		// length is 4 bytes plus either 4 for terminating nulls
-		return 4 + SdesItems.byteLength(items);
+		// length is 4 bytes plus the items and terminating nulls
+		return chunkLength;
 	}
 	
 	
@@ -155,14 +224,25 @@ public final class Chunk
 	 */
 	public byte[] asByteArray() 
 	{
-		final byte[] data = new byte[chunkLength()];
-		final ByteBuffer bb = ByteBuffer.wrap(data);
-		
-		bb.putInt((int)(0xFFFFFFFFL & ssrcIdentifier));
-		bb.put(SdesItems.toByteArray(items));
+		final byte[] data = new byte[chunkLength];
+		writeTo(ByteBuffer.wrap(data));
 		
 		return data;
 	}
+	
+	
+	/**
+	 * Write the chunk data into a buffer, without any intermediate copies.
+	 * 
+	 * NB: The buffer must have at least chunkLength() bytes remaining.
+	 * 
+	 * @param bb The buffer to write the chunk to.
+	 */
+	void writeTo(final ByteBuffer bb) 
+	{
+		bb.putInt((int)(0xFFFFFFFFL & ssrcIdentifier));
+		SdesItems.writeTo(items, bb);
+	}
 
 	
 	/**
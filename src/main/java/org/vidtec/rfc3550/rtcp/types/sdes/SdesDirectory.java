@@ -0,0 +1,117 @@
+package org.vidtec.rfc3550.rtcp.types.sdes;
+
+import java.util.List;
+
+import org.vidtec.rfc3550.memory.SsrcIndex;
+import org.vidtec.rfc3550.rtcp.types.sdes.SdesItem.ItemType;
+
+/**
+ * An index of the chunks of an SDES packet by SSRC, so that the items of a source (e.g. its CNAME)
+ * can be found without walking the chunks and their items.
+ *
+ * The chunks are held in an array indexed by an {@link SsrcIndex}, and each chunk indexes its first item
+ * of each type, so a lookup is a hash, a short probe and an array read, with no boxing or allocation.
+ *
+ * NB: If a packet holds more than one chunk for an SSRC, the first chunk is indexed.
+ * NB: This class is immutable, and so is thread-safe.
+ */
+public final class SdesDirectory
+{
+
+	/** The entry of each ssrc, not modified once built. */
+	private final SsrcIndex index;
+
+	/** The chunk of each entry. */
+	private final Chunk[] chunks;
+
+
+	/**
+	 * Create a directory of chunks.
+	 *
+	 * @param chunks The chunks to index.
+	 */
+	private SdesDirectory(final List<Chunk> chunks)
+	{
+		this.index = new SsrcIndex(Integer.highestOneBit(Math.max(1, chunks.size()) * 2 - 1));
+		this.chunks = new Chunk[index.capacity()];
+
+		for (final Chunk chunk : chunks)
+		{
+			if (index.find(chunk.ssrcIdentifier()) == SsrcIndex.NIL)
+			{
+				this.chunks[index.add(chunk.ssrcIdentifier())] = chunk;
+			}
+		}
+	}
+
+
+	/**
+	 * Gets the chunk of a source.
+	 *
+	 * @param ssrc The ssrc of the source.
+	 * @return The chunk, or null if the packet has no chunk for the source.
+	 */
+	public Chunk chunk(final long ssrc)
+	{
+		final int entry = index.find(ssrc);
+		return entry == SsrcIndex.NIL ? null : chunks[entry];
+	}
+
+
+	/**
+	 * Gets the first item of a type for a source.
+	 *
+	 * @param ssrc The ssrc of the source.
+	 * @param type The item type to look up.
+	 * @return The item, or null if the packet has no such item for the source.
+	 */
+	public SdesItem item(final long ssrc, final ItemType type)
+	{
+		final Chunk chunk = chunk(ssrc);
+		return chunk == null ? null : chunk.item(type);
+	}
+
+
+	/**
+	 * Gets the CNAME of a source.
+	 *
+	 * @param ssrc The ssrc of the source.
+	 * @return The CNAME, or null if the packet has no CNAME for the source.
+	 */
+	public String cname(final long ssrc)
+	{
+		final SdesItem item = item(ssrc, ItemType.CNAME);
+		return item == null ? null : item.value();
+	}
+
+
+	/**
+	 * Gets the number of sources indexed.
+	 *
+	 * @return The number of distinct ssrcs.
+	 */
+	public int size()
+	{
+		return index.size();
+	}
+
+
+	/**
+	 * Index the chunks of an SDES packet.
+	 *
+	 * @param packet The packet to index.
+	 * @return The directory instance.
+	 *
+	 * @throws IllegalArgumentException If the packet is null.
+	 */
+	public static SdesDirectory of(final SdesRTCPPacket packet)
+	{
+		if (packet == null)
+		{
+			throw new IllegalArgumentException("packet cannot be null");
+		}
+
+		return new SdesDirectory(packet.chunks());
+	}
+
+}
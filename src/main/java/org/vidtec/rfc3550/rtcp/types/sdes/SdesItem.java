@@ -1,7 +1,7 @@
 package org.vidtec.rfc3550.rtcp.types.sdes;
 
 import java.nio.ByteBuffer;
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
@@ -28,14 +28,27 @@ public final class SdesItem
 	//
 	
 
+	/** An empty encoded value, shared by all non-PRIV items. */
+	private static final byte[] EMPTY = new byte[0];
+	
+
 	/** THe item type. */
 	private final ItemType type;
 	
-	/** The item value (max 255 bytes) NB: BYTES not chars. */
-	private final String value;
+	/** The UTF-8 encoded item value (max 255 bytes). */
+	private final byte[] valueBytes;
+	
+	/** The UTF-8 encoded prefix value (max 255 - value.length - 1 bytes) for PRIV items only! */
+	private final byte[] prefixBytes;
+	
+	/** The full length of the item in bytes. */
+	private final int itemLength;
+	
+	/** The decoded item value, NB: decoded lazily on first access, and cached. */
+	private String value;
 	
-	/** The prefix value (max 255 - value.length - 1 bytes) for PRIV items only!  NB: BYTES not chars. */
-	private final String prefix;
+	/** The decoded prefix value, NB: decoded lazily on first access, and cached. */
+	private String prefix;
 		
 	
 	/**
@@ -63,40 +76,50 @@ public final class SdesItem
 	 */
 	private SdesItem(final ItemType type, final String value, final String prefix)
 	{
-		if (value == null)
-		{
-			throw new IllegalArgumentException("value cannot be null");
-		}
-		if (prefix == null)
-		{
-			throw new IllegalArgumentException("prefix cannot be null");
-		}
+		this(type, encode(value, "value cannot be null"), encode(prefix, "prefix cannot be null"));
 		
+		this.value = value;
+		this.prefix = prefix;
+	}
+	
+	
+	/**
+	 * Create an SDES item from encoded values.
+	 * 
+	 * NB: The arrays are NOT copied, and must not be modified after this call.
+	 * 
+	 * @param type The item type for this item.
+	 * @param valueBytes The UTF-8 encoded item value (max 255 bytes).
+	 * @param prefixBytes The UTF-8 encoded prefix value.
+     *
+	 * @throws IllegalArgumentException If there is a problem with the supplied item data.
+	 */
+	private SdesItem(final ItemType type, final byte[] valueBytes, final byte[] prefixBytes)
+	{
 		if (ItemType.PRIV == type)
 		{
-			final int valLength = value.getBytes(Charset.forName("utf-8")).length; 
-			if (valLength > 254)
+			if (valueBytes.length > 254)
 			{
 				throw new IllegalArgumentException("maximum value length is 254 bytes");
 			}
 
-			final int prefixLength = prefix.getBytes(Charset.forName("utf-8")).length; 
-			if (valLength + 1 + prefixLength > 254)
+			if (valueBytes.length + 1 + prefixBytes.length > 254)
 			{
 				throw new IllegalArgumentException("maximum value and prefix length is 254 bytes");
 			}
 		}
 		else
 		{
-			if (value.getBytes(Charset.forName("utf-8")).length > 255)
+			if (valueBytes.length > 255)
 			{
 				throw new IllegalArgumentException("maximum value length is 255 bytes");
 			}
 		}
 		
 		this.type = type;
-		this.value = value;
-		this.prefix = prefix;
+		this.valueBytes = valueBytes;
+		this.prefixBytes = prefixBytes;
+		this.itemLength = ItemType.PRIV == type ? 3 + valueBytes.length + prefixBytes.length : 2 + valueBytes.length;
 	}
 
 
@@ -130,7 +153,15 @@ public final class SdesItem
 	 */
 	public String value()
 	{
-		return value;
+		// NB: Racing threads may both decode, but will always produce an equal value.
+		String decoded = value;
+		if (decoded == null)
+		{
+			decoded = new String(valueBytes, StandardCharsets.UTF_8);
+			value = decoded;
+		}
+		
+		return decoded;
 	}
 	
 	
@@ -152,10 +183,51 @@ public final class SdesItem
 	 */
 	public String prefix()
 	{
-		return prefix;
+		// NB: Racing threads may both decode, but will always produce an equal value.
+		String decoded = prefix;
+		if (decoded == null)
+		{
+			decoded = new String(prefixBytes, StandardCharsets.UTF_8);
+			prefix = decoded;
+		}
+		
+		return decoded;
 	}
 	
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int hashCode() 
+	{
+		return 31 * (31 * type.hashCode() + Arrays.hashCode(valueBytes)) + Arrays.hashCode(prefixBytes);
+	}
+
+
+	/**
+	 * An item is deemed equal if it has the same type, value and prefix.
+	 * NB: The encoded values are compared, so neither item's strings are decoded.
+	 * 
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean equals(final Object obj) 
+	{
+		if (obj == this)
+		{
+			return true;
+		}
+		if (obj == null || !(obj instanceof SdesItem))
+		{
+			return false;
+		}
+		
+		final SdesItem other = (SdesItem)obj;
+		return type == other.type && Arrays.equals(valueBytes, other.valueBytes) && Arrays.equals(prefixBytes, other.prefixBytes);
+	}
+	
+	
 	/**
 	 * Return the full length of the item in bytes.
 	 * 
@@ -163,8 +235,7 @@ public final class SdesItem
 	 */
 	public int itemLength() 
 	{
-		return isPrivate() ? 3 + value.getBytes(Charset.forName("utf-8")).length + prefix.getBytes(Charset.forName("utf-8")).length
-				           : 2 + value.getBytes(Charset.forName("utf-8")).length;
+		return itemLength;
 	}
 	
 	
@@ -175,12 +246,22 @@ public final class SdesItem
 	 */
 	public byte[] asByteArray() 
 	{
-		final byte[] valueBytes = value.getBytes(Charset.forName("utf-8"));
-		final byte[] prefixBytes = prefix.getBytes(Charset.forName("utf-8"));
-		
-		final byte[] data = new byte[2 + valueBytes.length + (isPrivate() ? 1 + prefixBytes.length : 0)];
-		final ByteBuffer bb = ByteBuffer.wrap(data);
+		final byte[] data = new byte[itemLength];
+		writeTo(ByteBuffer.wrap(data));
 		
+		return data;
+	}
+	
+	
+	/**
+	 * Write the item data into a buffer, without any intermediate copies.
+	 * 
+	 * NB: The buffer must have at least itemLength() bytes remaining.
+	 * 
+	 * @param bb The buffer to write the item to.
+	 */
+	void writeTo(final ByteBuffer bb) 
+	{
 		bb.put((byte)(0xFF & itemType().type));
 
 		if (isPrivate())
@@ -196,9 +277,26 @@ public final class SdesItem
 			bb.put((byte)(0xFF & valueBytes.length));
 			bb.put(valueBytes);
 		}
+	}
+	
+	
+	/**
+	 * Encode a string value as UTF-8.
+	 * 
+	 * @param value The value to encode.
+	 * @param message The validation message if the value is null.
+	 * @return The encoded bytes.
+	 * 
+	 * @throws IllegalArgumentException If the value is null.
+	 */
+	private static byte[] encode(final String value, final String message)
+	{
+		if (value == null)
+		{
+			throw new IllegalArgumentException(message);
+		}
 		
-		
-		return data;
+		return value.getBytes(StandardCharsets.UTF_8);
 	}
 
 	
@@ -253,32 +351,30 @@ public final class SdesItem
 			throw new IllegalArgumentException("data too short for stated length.");
 		}
 		
-		String value = "";
-		String prefix = "";
-		
+		// NB: Only the bytes are copied here, the strings are decoded lazily on first access.
 		if (ItemType.PRIV == type)
 		{
-			final int prefixLength = 0xFF & bb.get();
+			final int prefixLength = length == 0 ? -1 : 0xFF & bb.get();
+			if (prefixLength < 0 || prefixLength > length - 1)
+			{
+				throw new IllegalArgumentException("prefix length exceeds stated length.");
+			}
 
-			byte[] buffer = new byte[prefixLength];
-			bb.get(buffer);
-			prefix = new String(buffer, Charset.forName("utf-8"));	
+			final byte[] prefix = new byte[prefixLength];
+			bb.get(prefix);
 			
 			// value is the string thats left.
-			buffer = new byte[length - 1 - prefixLength];
-			bb.get(buffer);
-			value = new String(buffer, Charset.forName("utf-8"));	
-		}
-		else
-		{
-			// value is the string thats left.
-			final byte[] buffer = new byte[length];
-			bb.get(buffer);
+			final byte[] value = new byte[length - 1 - prefixLength];
+			bb.get(value);
 			
-			value = new String(buffer, Charset.forName("utf-8"));	
+			return new SdesItem(type, value, prefix);
 		}
 		
-		return new SdesItem(type, value, prefix);
+		// value is the string thats left.
+		final byte[] value = new byte[length];
+		bb.get(value);
+		
+		return new SdesItem(type, value, EMPTY);
 	}
 	
 	
@@ -4,7 +4,6 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.stream.IntStream;
 
 import org.vidtec.rfc3550.rtcp.types.sdes.SdesItem.ItemType;
 
@@ -91,18 +90,38 @@ final class SdesItems
 			throw new IllegalArgumentException("items cannot be null");
 		}
 		
-		final int itemsLength = items.stream().flatMapToInt(i -> IntStream.of(i.itemLength())).sum();
-		final int requiredNullCount = 4 - (itemsLength % 4);
-		final byte[] data = new byte[ itemsLength + requiredNullCount ];
-		final ByteBuffer bb = ByteBuffer.wrap(data);
-		
-		items.forEach(item -> bb.put(item.asByteArray()));
-		IntStream.range(0, requiredNullCount).forEach(i -> bb.put((byte) 0x00));
+		final byte[] data = new byte[byteLength(items)];
+		writeTo(items, ByteBuffer.wrap(data));
 		
 		return data;
 	}
 	
 	
+	/**
+	 * Write a list of SDES item entries into a buffer, without any intermediate copies.
+	 * 
+	 * NB: Terminating nulls will be written to the buffer to align to a 4-byte boundary.
+	 * NB: The buffer must have at least byteLength(items) bytes remaining.
+	 * 
+	 * @param items The collection of items, this MAY be empty, in which case only a terminator block is written.
+	 * @param bb The buffer to write the items to.
+	 */
+	static void writeTo(final List<SdesItem> items, final ByteBuffer bb)
+	{
+		int itemsLength = 0;
+		for (final SdesItem item : items)
+		{
+			item.writeTo(bb);
+			itemsLength += item.itemLength();
+		}
+		
+		for (int i = 4 - (itemsLength % 4) ; i > 0 ; i--)
+		{
+			bb.put((byte) 0x00);
+		}
+	}
+	
+	
 	/**
 	 * Calculate the byte length of an item list including any null padding required.
 	 * 
@@ -118,7 +137,12 @@ final class SdesItems
 			throw new IllegalArgumentException("items cannot be null");
 		}
 		
-		final int itemsLength = items.stream().flatMapToInt(i -> IntStream.of(i.itemLength())).sum();
+		int itemsLength = 0;
+		for (final SdesItem item : items)
+		{
+			itemsLength += item.itemLength();
+		}
+		
 		final int requiredNullCount = 4 - (itemsLength % 4);
 		return itemsLength + requiredNullCount;
 	}
@@ -5,7 +5,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.stream.IntStream;
 
 import org.vidtec.rfc3550.rtcp.types.RTCPPacket;
 
@@ -40,6 +39,12 @@ public class SdesRTCPPacket extends RTCPPacket<SdesRTCPPacket>
 	/** The report blocks in this packet. */
 	private final List<Chunk> chunks = new ArrayList<>();
 
+	/** The full length of the packet in bytes, NB: computed once as the chunks never change. */
+	private final int packetLength;
+
+	/** The directory of chunks by SSRC, NB: built lazily on first access, and cached. */
+	private SdesDirectory directory;
+
 	
 	/**
 	 * Create a (SDES)  RTCP packet from a builder.
@@ -72,6 +77,13 @@ public class SdesRTCPPacket extends RTCPPacket<SdesRTCPPacket>
 		}
 		
 		this.chunks.addAll(chunks);
+		
+		int length = MIN_HEAD_LENGTH;
+		for (final Chunk chunk : chunks)
+		{
+			length += chunk.chunkLength();
+		}
+		this.packetLength = length;
 	}
 	
 	
@@ -108,13 +120,32 @@ public class SdesRTCPPacket extends RTCPPacket<SdesRTCPPacket>
 	}	
 	
 	
+	/**
+	 * Gets the directory of chunks by SSRC, e.g. to find the CNAME of a source.
+	 * 
+	 * @return The directory instance.
+	 */
+	public SdesDirectory directory()
+	{
+		// NB: Racing threads may both build a directory, but they will always be equivalent.
+		SdesDirectory built = directory;
+		if (built == null)
+		{
+			built = SdesDirectory.of(this);
+			directory = built;
+		}
+		
+		return built;
+	}
+	
+	
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
 	public int packetLength() 
 	{
-		return MIN_HEAD_LENGTH + chunks().stream().flatMapToInt(chunk -> IntStream.of(chunk.chunkLength())).sum();
+		return packetLength;
 	}
 
 	
@@ -124,14 +155,18 @@ public class SdesRTCPPacket extends RTCPPacket<SdesRTCPPacket>
 	@Override	
 	public byte[] asByteArray()
 	{
-		final byte[] data = new byte[packetLength()];
+		final byte[] data = new byte[packetLength];
 		final ByteBuffer bb = ByteBuffer.wrap(data);
 		
-		bb.put((byte)(VERSION << 6 | (0x1F & chunks().size()) ));
+		bb.put((byte)(VERSION << 6 | (0x1F & chunks.size()) ));
 		bb.put((byte)(0xFF & payloadType().pt));
 		bb.putShort((short)((data.length / 4) - 1));
 
-		chunks().forEach(chunk -> bb.put(chunk.asByteArray()));
+		// NB: Chunks write straight into the packet buffer, no per-chunk or per-item arrays are allocated.
+		for (final Chunk chunk : chunks)
+		{
+			chunk.writeTo(bb);
+		}
 		
 		return data;
 	}
@@ -0,0 +1,143 @@
+package org.vidtec.rfc3550.rtcp.types.unknown;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.vidtec.rfc3550.rtcp.types.RTCPPacket;
+
+/**
+ * An opaque RTCP packet of a type that is not understood (e.g. a vendor specific or not yet supported type).
+ *
+ * These are only created when parsing leniently, so that the known packets in a compound packet can still be
+ * used, and so that the unknown packets can be passed through unchanged (e.g. by a relay). Only the common
+ * header is validated, the rest of the packet is held as raw data.
+ *
+ * NB: The payload type of this packet is always {@link PayloadType#UNKNOWN}, use typeValue() to get the actual type.
+ */
+public class UnknownRTCPPacket extends RTCPPacket<UnknownRTCPPacket>
+{
+
+	/** The minimum header length. */
+	private static final int MIN_HEAD_LENGTH = 4;
+
+
+	/** The raw packet data. */
+	private final byte[] data;
+
+
+	/**
+	 * Create an unknown RTCP packet.
+	 *
+	 * @param data The raw packet data.
+	 */
+	private UnknownRTCPPacket(final byte[] data)
+	{
+		super(PayloadType.UNKNOWN);
+
+		this.data = data;
+	}
+
+
+	/**
+	 * Gets the actual payload type value of this packet.
+	 *
+	 * @return The payload type from 0 - 255.
+	 */
+	public int typeValue()
+	{
+		return 0xFF & data[1];
+	}
+
+
+	/**
+	 * Gets the 5-bit count/sub-type field from the header.
+	 *
+	 * @return The value from 0 - 31.
+	 */
+	public short count()
+	{
+		return (short)(0x1F & data[0]);
+	}
+
+
+	/**
+	 * Indicates if this packet is padded.
+	 *
+	 * @return true if the padding bit is set, false otherwise.
+	 */
+	public boolean isPadded()
+	{
+		return (0x20 & data[0]) == 0x20;
+	}
+
+
+	/**
+	 * Gets the packet body (everything after the 4 byte header, including any padding) as a byte[].
+	 *
+	 * @return a copy of the packet body.
+	 */
+	public byte[] bodyAsByteArray()
+	{
+		return Arrays.copyOfRange(data, MIN_HEAD_LENGTH, data.length);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int packetLength()
+	{
+		return data.length;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public byte[] asByteArray()
+	{
+		return Arrays.copyOf(data, data.length);
+	}
+
+
+	/**
+	 * Returns an RTCP packet derived from a given byte array.
+	 *
+	 * @param data The byte[] to construct a packet from.
+	 * @return The instance representing the given data.
+	 *
+	 * @throws IllegalArgumentException If there is a problem with the validity of the common header.
+	 */
+	public static UnknownRTCPPacket fromByteArray(final byte[] data)
+	{
+		if (data == null)
+		{
+			throw new IllegalArgumentException("packet data cannot be null");
+		}
+		if (data.length < MIN_HEAD_LENGTH)
+		{
+			// As per RFC 3550 - the header is 4 bytes, anything less is a bad packet.
+			throw new IllegalArgumentException("Packet too short, expecting at least " + MIN_HEAD_LENGTH + " bytes, but found " + data.length);
+		}
+
+		final ByteBuffer bb = ByteBuffer.wrap(data);
+		if ((bb.get() & 0xC0) != VERSION << 6)
+		{
+			throw new IllegalArgumentException("Invalid version number found, expecting " + VERSION);
+		}
+		bb.get();
+
+		// Get the length, and validate.
+		final int length = (0xFFFF & bb.getShort()) * 4;
+		if (bb.remaining() != length)
+		{
+			// Invalid packet length
+			throw new IllegalArgumentException("Packet states " + (length + 4) + " bytes length, but actual length is " + (bb.remaining() + 4));
+		}
+
+		return new UnknownRTCPPacket(Arrays.copyOf(data, data.length));
+	}
+
+}
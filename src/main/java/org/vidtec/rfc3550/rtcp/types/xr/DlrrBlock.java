@@ -0,0 +1,251 @@
+package org.vidtec.rfc3550.rtcp.types.xr;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * An XR DLRR (delay since last receiver reference time) report block, as per RFC 3611 section 4.5.
+ *
+ * This is sent in response to {@link ReceiverReferenceTimeBlock}s, with one sub-block per receiver,
+ * and allows each receiver to measure its round trip time in the same way as LSR/DLSR in an SR.
+ */
+public final class DlrrBlock extends XrBlock
+{
+
+	// DLRR block format is defined as: (per RFC 3611, section 4.5)
+	//
+	//    0                   1                   2                   3
+	//    0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   |     BT=5      |   reserved    |         block length          |
+	//   +=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+
+	//   |                 SSRC_1 (SSRC of first receiver)               | sub-
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+ block
+	//   |                         last RR (LRR)                         |   1
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   |                   delay since last RR (DLRR)                  |
+	//   +=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+
+	//   :                               ...                             :   2
+	//   +=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+
+
+
+	/** The size of each sub-block in bytes. */
+	public static final int SUB_BLOCK_SIZE = 12;
+
+
+	/** The sub-block values (ssrc, lrr, dlrr) as 32 bit unsigned integers. */
+	private final long[] values;
+
+
+	/**
+	 * Create a DLRR block.
+	 *
+	 * @param values The sub-block values (ssrc, lrr, dlrr).
+	 */
+	private DlrrBlock(final long[] values)
+	{
+		super(BlockType.DLRR);
+
+		this.values = values;
+	}
+
+
+	/**
+	 * Gets the number of sub-blocks.
+	 *
+	 * @return The sub-block count.
+	 */
+	public int subBlockCount()
+	{
+		return values.length / 3;
+	}
+
+
+	/**
+	 * Gets the SSRC of the receiver a sub-block is for.
+	 *
+	 * @param index The sub-block index.
+	 * @return The ssrc identifier as a 32 bit unsigned integer.
+	 *
+	 * @throws IndexOutOfBoundsException If the index is not valid.
+	 */
+	public long ssrc(final int index)
+	{
+		return values[3 * checkIndex(index)];
+	}
+
+
+	/**
+	 * Gets the last receiver reference time (the middle 32 bits of its NTP timestamp) for a sub-block.
+	 *
+	 * @param index The sub-block index.
+	 * @return The LRR value as a 32 bit unsigned integer.
+	 *
+	 * @throws IndexOutOfBoundsException If the index is not valid.
+	 */
+	public long lastRR(final int index)
+	{
+		return values[3 * checkIndex(index) + 1];
+	}
+
+
+	/**
+	 * Gets the delay since the last receiver reference time for a sub-block.
+	 *
+	 * @param index The sub-block index.
+	 * @return The DLRR value in units of 1/65536 seconds.
+	 *
+	 * @throws IndexOutOfBoundsException If the index is not valid.
+	 */
+	public long delaySinceLastRR(final int index)
+	{
+		return values[3 * checkIndex(index) + 2];
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int typeSpecific()
+	{
+		return 0;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected int contentsLength()
+	{
+		return 4 * values.length;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void writeContents(final ByteBuffer bb)
+	{
+		for (final long value : values)
+		{
+			bb.putInt((int)value);
+		}
+	}
+
+
+	/**
+	 * Validate a sub-block index.
+	 *
+	 * @param index The index to check.
+	 * @return The index.
+	 *
+	 * @throws IndexOutOfBoundsException If the index is not valid.
+	 */
+	private int checkIndex(final int index)
+	{
+		if (index < 0 || index >= subBlockCount())
+		{
+			throw new IndexOutOfBoundsException("Invalid sub-block index " + index);
+		}
+
+		return index;
+	}
+
+
+	/**
+	 * Decode a DLRR block.
+	 *
+	 * @param contents The block contents.
+	 * @return The block instance.
+	 *
+	 * @throws IllegalArgumentException If there is a problem with the validity of the block.
+	 */
+	static DlrrBlock decode(final ByteBuffer contents)
+	{
+		if (contents.remaining() % SUB_BLOCK_SIZE != 0)
+		{
+			throw new IllegalArgumentException(BlockType.DLRR + " block was wrong size, expecting a multiple of " + SUB_BLOCK_SIZE + " bytes of sub-blocks, but found " + contents.remaining());
+		}
+
+		final long[] values = new long[contents.remaining() / 4];
+		for (int i = 0 ; i < values.length ; i++)
+		{
+			values[i] = 0xFFFFFFFFL & contents.getInt();
+		}
+
+		return new DlrrBlock(values);
+	}
+
+
+	/**
+	 * Creates a builder to manually build a {@link DlrrBlock}.
+	 *
+	 * @return The builder instance.
+	 */
+	public static Builder builder()
+	{
+		return new Builder();
+	}
+
+
+	/**
+	 * A Builder class to build {@link DlrrBlock} instances.
+	 */
+	public static final class Builder
+	{
+		/** The SSRC, LRR and DLRR of each sub-block, in turn. */
+		private long[] values = new long[0];
+
+
+		/**
+		 * Private constructor.
+		 */
+		private Builder() { /* Empty Constructor */ }
+
+
+		/**
+		 * This block should have a sub-block for a receiver.
+		 *
+		 * @param ssrc The SSRC of the receiver.
+		 * @param lastRR The middle 32 bits of the NTP timestamp from the receiver's last reference time block.
+		 * @param delaySinceLastRR The delay since that block was received, in units of 1/65536 seconds.
+		 * @return The builder instance.
+		 *
+		 * @throws IllegalArgumentException If any of the values are not valid 32 bit unsigned integers.
+		 */
+		public Builder withSubBlock(final long ssrc, final long lastRR, final long delaySinceLastRR)
+		{
+			if (ssrc < 0 || ssrc > 0xFFFFFFFFL)
+			{
+				throw new IllegalArgumentException("Expected valid ssrc not " + ssrc);
+			}
+			if (lastRR < 0 || lastRR > 0xFFFFFFFFL || delaySinceLastRR < 0 || delaySinceLastRR > 0xFFFFFFFFL)
+			{
+				throw new IllegalArgumentException("Expected valid receiver reference time values.");
+			}
+
+			final int n = values.length;
+			values = Arrays.copyOf(values, n + 3);
+			values[n] = ssrc;
+			values[n + 1] = lastRR;
+			values[n + 2] = delaySinceLastRR;
+
+			return this;
+		}
+
+
+		/**
+		 * Build the block.
+		 *
+		 * @return The block instance.
+		 */
+		public DlrrBlock build()
+		{
+			return new DlrrBlock(Arrays.copyOf(values, values.length));
+		}
+	}
+
+}
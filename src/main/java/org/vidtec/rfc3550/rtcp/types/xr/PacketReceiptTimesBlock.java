@@ -0,0 +1,230 @@
+package org.vidtec.rfc3550.rtcp.types.xr;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * An XR Packet Receipt Times report block, as per RFC 3611 section 4.3.
+ *
+ * The block holds the receipt time of each packet from begin (inclusive) to end (exclusive), in
+ * the same units as the RTP timestamp of the source. For a duplicated packet the receipt time is
+ * that of the first copy.
+ *
+ * NB: Packets that were not received are reported with a receipt time of 0.
+ */
+public final class PacketReceiptTimesBlock extends XrBlock
+{
+
+	// Packet Receipt Times block format is defined as: (per RFC 3611, section 4.3)
+	//
+	//    0                   1                   2                   3
+	//    0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   |     BT=3      | rsvd. |   T   |         block length          |
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   |                        SSRC of source                         |
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   |          begin_seq            |             end_seq           |
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   |       Receipt time of packet begin_seq                        |
+	//   :                              ...                              :
+	//   |       Receipt time of packet (end_seq - 1)                    |
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+
+
+	/** The thinning value. */
+	private final int thinning;
+
+	/** The SSRC of the source. */
+	private final long ssrc;
+
+	/** The first sequence number covered. */
+	private final int beginSequence;
+
+	/** The sequence number after the last covered. */
+	private final int endSequence;
+
+	/** The receipt times, as 32 bit unsigned integers. */
+	private final long[] receiptTimes;
+
+
+	/**
+	 * Create a packet receipt times block.
+	 *
+	 * @param thinning The thinning value, from 0 - 15.
+	 * @param ssrc The SSRC of the source.
+	 * @param beginSequence The first sequence number covered.
+	 * @param endSequence The sequence number after the last covered.
+	 * @param receiptTimes The receipt times.
+	 *
+	 * @throws IllegalArgumentException If there is a problem with the validity of the block.
+	 */
+	private PacketReceiptTimesBlock(final int thinning, final long ssrc, final int beginSequence, final int endSequence, final long[] receiptTimes)
+	{
+		super(BlockType.PACKET_RECEIPT_TIMES);
+
+		if (ssrc < 0 || ssrc > 0xFFFFFFFFL)
+		{
+			throw new IllegalArgumentException("Expected valid ssrc not " + ssrc);
+		}
+		if ((beginSequence & ~0xFFFF) != 0)
+		{
+			throw new IllegalArgumentException("Expected valid sequence number not " + beginSequence);
+		}
+
+		this.thinning = thinning;
+		this.ssrc = ssrc;
+		this.beginSequence = beginSequence;
+		this.endSequence = endSequence;
+		this.receiptTimes = receiptTimes;
+	}
+
+
+	/**
+	 * Gets the thinning value, packets are only reported if their sequence number is a multiple of 2^T.
+	 *
+	 * @return The thinning value, from 0 - 15.
+	 */
+	public int thinning()
+	{
+		return thinning;
+	}
+
+
+	/**
+	 * Gets the SSRC of the source this block reports on.
+	 *
+	 * @return The ssrc identifier as a 32 bit unsigned integer.
+	 */
+	public long ssrc()
+	{
+		return ssrc;
+	}
+
+
+	/**
+	 * Gets the first sequence number covered.
+	 *
+	 * @return The sequence number from 0 - 65,535.
+	 */
+	public int beginSequence()
+	{
+		return beginSequence;
+	}
+
+
+	/**
+	 * Gets the sequence number after the last covered.
+	 *
+	 * @return The sequence number from 0 - 65,535.
+	 */
+	public int endSequence()
+	{
+		return endSequence;
+	}
+
+
+	/**
+	 * Gets the receipt times, entry i is the receipt time of beginSequence() + i.
+	 *
+	 * @return A copy of the receipt times, as 32 bit unsigned integers.
+	 */
+	public long[] receiptTimes()
+	{
+		return Arrays.copyOf(receiptTimes, receiptTimes.length);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int typeSpecific()
+	{
+		return 0x0F & thinning;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected int contentsLength()
+	{
+		return 8 + 4 * receiptTimes.length;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void writeContents(final ByteBuffer bb)
+	{
+		bb.putInt((int)ssrc);
+		bb.putShort((short)beginSequence);
+		bb.putShort((short)endSequence);
+		for (final long time : receiptTimes)
+		{
+			bb.putInt((int)time);
+		}
+	}
+
+
+	/**
+	 * Decode a packet receipt times block.
+	 *
+	 * @param typeSpecific The type-specific header byte.
+	 * @param contents The block contents.
+	 * @return The block instance.
+	 *
+	 * @throws IllegalArgumentException If there is a problem with the validity of the block.
+	 */
+	static PacketReceiptTimesBlock decode(final int typeSpecific, final ByteBuffer contents)
+	{
+		if (contents.remaining() < 8)
+		{
+			throw new IllegalArgumentException(BlockType.PACKET_RECEIPT_TIMES + " block was wrong size, expecting at least " + (8 + HEADER_LENGTH) + " bytes, but found " + (contents.remaining() + HEADER_LENGTH));
+		}
+
+		final long ssrc = 0xFFFFFFFFL & contents.getInt();
+		final int begin = 0xFFFF & contents.getShort();
+		final int end = 0xFFFF & contents.getShort();
+
+		final long[] times = new long[contents.remaining() / 4];
+		for (int i = 0 ; i < times.length ; i++)
+		{
+			times[i] = 0xFFFFFFFFL & contents.getInt();
+		}
+
+		return new PacketReceiptTimesBlock(0x0F & typeSpecific, ssrc, begin, end, times);
+	}
+
+
+	/**
+	 * Create a packet receipt times block.
+	 *
+	 * @param ssrc The SSRC of the source.
+	 * @param beginSequence The first sequence number covered.
+	 * @param receiptTimes The receipt times, entry i is the receipt time of beginSequence + i.
+	 * @return The block instance.
+	 *
+	 * @throws IllegalArgumentException If there is a problem with the supplied block data.
+	 */
+	public static PacketReceiptTimesBlock receiptTimes(final long ssrc, final int beginSequence, final long[] receiptTimes)
+	{
+		if (receiptTimes == null || receiptTimes.length > 0xFFFF)
+		{
+			throw new IllegalArgumentException("Expected valid receipt times not null or more than 65535 entries");
+		}
+
+		final long[] times = new long[receiptTimes.length];
+		for (int i = 0 ; i < times.length ; i++)
+		{
+			times[i] = 0xFFFFFFFFL & receiptTimes[i];
+		}
+
+		return new PacketReceiptTimesBlock(0, ssrc, beginSequence, 0xFFFF & (beginSequence + times.length), times);
+	}
+
+}
@@ -0,0 +1,127 @@
+package org.vidtec.rfc3550.rtcp.types.xr;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An XR Receiver Reference Time report block, as per RFC 3611 section 4.4.
+ *
+ * This allows a receiver that does not send SRs to provide a timestamp, which the sender can
+ * echo in a DLRR block so that the receiver can measure the round trip time.
+ */
+public final class ReceiverReferenceTimeBlock extends XrBlock
+{
+
+	// Receiver Reference Time block format is defined as: (per RFC 3611, section 4.4)
+	//
+	//    0                   1                   2                   3
+	//    0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   |     BT=4      |   reserved    |       block length = 2        |
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   |              NTP timestamp, most significant word             |
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   |             NTP timestamp, least significant word             |
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+
+
+	/** The block contents length. */
+	private static final int CONTENTS_LENGTH = 8;
+
+
+	/** The 64 bit NTP timestamp. */
+	private final long ntpTimestamp;
+
+
+	/**
+	 * Create a receiver reference time block.
+	 *
+	 * @param ntpTimestamp The 64 bit NTP timestamp.
+	 */
+	private ReceiverReferenceTimeBlock(final long ntpTimestamp)
+	{
+		super(BlockType.RECEIVER_REFERENCE_TIME);
+
+		this.ntpTimestamp = ntpTimestamp;
+	}
+
+
+	/**
+	 * Gets the NTP timestamp.
+	 *
+	 * @return The 64 bit NTP timestamp (seconds in the upper 32 bits, fraction in the lower 32 bits).
+	 */
+	public long ntpTimestamp()
+	{
+		return ntpTimestamp;
+	}
+
+
+	/**
+	 * Gets the middle 32 bits of the NTP timestamp, as echoed in the LRR field of a DLRR block.
+	 *
+	 * @return The compact NTP timestamp as a 32 bit unsigned integer.
+	 */
+	public long compactNtpTimestamp()
+	{
+		return 0xFFFFFFFFL & (ntpTimestamp >>> 16);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int typeSpecific()
+	{
+		return 0;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected int contentsLength()
+	{
+		return CONTENTS_LENGTH;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void writeContents(final ByteBuffer bb)
+	{
+		bb.putLong(ntpTimestamp);
+	}
+
+
+	/**
+	 * Decode a receiver reference time block.
+	 *
+	 * @param contents The block contents.
+	 * @return The block instance.
+	 *
+	 * @throws IllegalArgumentException If there is a problem with the validity of the block.
+	 */
+	static ReceiverReferenceTimeBlock decode(final ByteBuffer contents)
+	{
+		checkLength(BlockType.RECEIVER_REFERENCE_TIME, contents, CONTENTS_LENGTH);
+
+		return new ReceiverReferenceTimeBlock(contents.getLong());
+	}
+
+
+	/**
+	 * Create a receiver reference time block.
+	 *
+	 * @param ntpTimestamp The 64 bit NTP timestamp.
+	 * @return The block instance.
+	 */
+	public static ReceiverReferenceTimeBlock referenceTime(final long ntpTimestamp)
+	{
+		return new ReceiverReferenceTimeBlock(ntpTimestamp);
+	}
+
+}
@@ -0,0 +1,433 @@
+package org.vidtec.rfc3550.rtcp.types.xr;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * An XR Loss RLE or Duplicate RLE report block, as per RFC 3611 sections 4.1 and 4.2.
+ *
+ * The block covers the sequence numbers from begin (inclusive) to end (exclusive), as a run length
+ * encoded bitmap. For Loss RLE a set bit indicates that the packet was received, for Duplicate RLE a set
+ * bit indicates that the packet was duplicated.
+ *
+ * The bitmap is exposed in the same form as used by the recovery package, i.e. bit i of the long[]
+ * (least significant bit first) represents sequence number begin + i.
+ */
+public final class RunLengthBlock extends XrBlock
+{
+
+	// Loss/Duplicate RLE block format is defined as: (per RFC 3611, section 4.1)
+	//
+	//    0                   1                   2                   3
+	//    0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   |    BT=1|2     | rsvd. |   T   |         block length          |
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   |                        SSRC of source                         |
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   |          begin_seq            |             end_seq           |
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   |          chunk 1              |             chunk 2           |
+	//   :                              ...                              :
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//
+	// A chunk is either a run length (0, run type bit, 14 bit length), a bit vector (1, 15 bits
+	// with the first packet in the most significant bit) or a null chunk (all zero) used as padding.
+
+
+	/** The longest run that fits in a run length chunk. */
+	private static final int MAX_RUN = 0x3FFF;
+
+
+	/** The thinning value. */
+	private final int thinning;
+
+	/** The SSRC of the source. */
+	private final long ssrc;
+
+	/** The first sequence number covered. */
+	private final int beginSequence;
+
+	/** The sequence number after the last covered. */
+	private final int endSequence;
+
+	/** The encoded chunks, excluding any null chunks. */
+	private final short[] chunks;
+
+
+	/**
+	 * Create a run length block.
+	 *
+	 * @param type The block type, LOSS_RLE or DUPLICATE_RLE.
+	 * @param thinning The thinning value, from 0 - 15.
+	 * @param ssrc The SSRC of the source.
+	 * @param beginSequence The first sequence number covered.
+	 * @param endSequence The sequence number after the last covered.
+	 * @param chunks The encoded chunks.
+	 *
+	 * @throws IllegalArgumentException If there is a problem with the validity of the block.
+	 */
+	private RunLengthBlock(final BlockType type, final int thinning, final long ssrc, final int beginSequence, final int endSequence, final short[] chunks)
+	{
+		super(type);
+
+		if (ssrc < 0 || ssrc > 0xFFFFFFFFL)
+		{
+			throw new IllegalArgumentException("Expected valid ssrc not " + ssrc);
+		}
+		if ((beginSequence & ~0xFFFF) != 0)
+		{
+			throw new IllegalArgumentException("Expected valid sequence number not " + beginSequence);
+		}
+		if ((endSequence & ~0xFFFF) != 0)
+		{
+			throw new IllegalArgumentException("Expected valid sequence number not " + endSequence);
+		}
+
+		this.thinning = thinning;
+		this.ssrc = ssrc;
+		this.beginSequence = beginSequence;
+		this.endSequence = endSequence;
+		this.chunks = chunks;
+	}
+
+
+	/**
+	 * Indicates if this is a Loss RLE block.
+	 *
+	 * @return true if set bits indicate received packets, false if they indicate duplicated packets.
+	 */
+	public boolean isLossRle()
+	{
+		return blockType() == BlockType.LOSS_RLE;
+	}
+
+
+	/**
+	 * Gets the thinning value, packets are only reported if their sequence number is a multiple of 2^T.
+	 *
+	 * @return The thinning value, from 0 - 15.
+	 */
+	public int thinning()
+	{
+		return thinning;
+	}
+
+
+	/**
+	 * Gets the SSRC of the source this block reports on.
+	 *
+	 * @return The ssrc identifier as a 32 bit unsigned integer.
+	 */
+	public long ssrc()
+	{
+		return ssrc;
+	}
+
+
+	/**
+	 * Gets the first sequence number covered.
+	 *
+	 * @return The sequence number from 0 - 65,535.
+	 */
+	public int beginSequence()
+	{
+		return beginSequence;
+	}
+
+
+	/**
+	 * Gets the sequence number after the last covered.
+	 *
+	 * @return The sequence number from 0 - 65,535.
+	 */
+	public int endSequence()
+	{
+		return endSequence;
+	}
+
+
+	/**
+	 * Gets the number of sequence numbers covered by this block.
+	 *
+	 * @return The count of sequence numbers from begin to end.
+	 */
+	public int count()
+	{
+		return 0xFFFF & (endSequence - beginSequence);
+	}
+
+
+	/**
+	 * Gets the number of chunks in the block, excluding any null chunks.
+	 *
+	 * @return The chunk count.
+	 */
+	public int chunkCount()
+	{
+		return chunks.length;
+	}
+
+
+	/**
+	 * Decode the chunks to a bitmap, bit i represents beginSequence() + i.
+	 *
+	 * @return A bitmap covering count() sequence numbers.
+	 */
+	public long[] bitmap()
+	{
+		final int count = count();
+		final long[] bitmap = new long[(count + 63) >>> 6];
+
+		int i = 0;
+		for (final short chunk : chunks)
+		{
+			if (i >= count)
+			{
+				break;
+			}
+
+			if ((chunk & 0x8000) == 0)
+			{
+				// Run length.
+				final int run = Math.min(count - i, chunk & MAX_RUN);
+				if ((chunk & 0x4000) != 0)
+				{
+					for (int j = 0 ; j < run ; j++)
+					{
+						bitmap[(i + j) >>> 6] |= 1L << ((i + j) & 0x3F);
+					}
+				}
+				i += run;
+			}
+			else
+			{
+				// Bit vector, first packet in the most significant bit.
+				for (int j = 0 ; j < 15 && i < count ; j++, i++)
+				{
+					if ((chunk & (0x4000 >>> j)) != 0)
+					{
+						bitmap[i >>> 6] |= 1L << (i & 0x3F);
+					}
+				}
+			}
+		}
+
+		return bitmap;
+	}
+
+
+	/**
+	 * Gets the number of set bits in the block (received packets for Loss RLE, duplicated packets for Duplicate RLE).
+	 *
+	 * @return The number of sequence numbers with a set bit.
+	 */
+	public int markedCount()
+	{
+		return Arrays.stream(bitmap()).mapToInt(Long::bitCount).sum();
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int typeSpecific()
+	{
+		return 0x0F & thinning;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected int contentsLength()
+	{
+		// Pad with a null chunk to a 32-bit boundary.
+		return 8 + 4 * ((chunks.length + 1) / 2);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void writeContents(final ByteBuffer bb)
+	{
+		bb.putInt((int)ssrc);
+		bb.putShort((short)beginSequence);
+		bb.putShort((short)endSequence);
+		for (final short chunk : chunks)
+		{
+			bb.putShort(chunk);
+		}
+		if (chunks.length % 2 != 0)
+		{
+			bb.putShort((short)0);
+		}
+	}
+
+
+	/**
+	 * Decode a run length block.
+	 *
+	 * @param type The block type, LOSS_RLE or DUPLICATE_RLE.
+	 * @param typeSpecific The type-specific header byte.
+	 * @param contents The block contents.
+	 * @return The block instance.
+	 *
+	 * @throws IllegalArgumentException If there is a problem with the validity of the block.
+	 */
+	static RunLengthBlock decode(final BlockType type, final int typeSpecific, final ByteBuffer contents)
+	{
+		if (contents.remaining() < 8)
+		{
+			throw new IllegalArgumentException(type + " block was wrong size, expecting at least " + (8 + HEADER_LENGTH) + " bytes, but found " + (contents.remaining() + HEADER_LENGTH));
+		}
+
+		final long ssrc = 0xFFFFFFFFL & contents.getInt();
+		final int begin = 0xFFFF & contents.getShort();
+		final int end = 0xFFFF & contents.getShort();
+
+		final short[] chunks = new short[contents.remaining() / 2];
+		int count = 0;
+		while (contents.hasRemaining())
+		{
+			final short chunk = contents.getShort();
+			if (chunk != 0)
+			{
+				chunks[count++] = chunk;
+			}
+		}
+
+		return new RunLengthBlock(type, 0x0F & typeSpecific, ssrc, begin, end, Arrays.copyOf(chunks, count));
+	}
+
+
+	/**
+	 * Run length encode a bitmap.
+	 *
+	 * @param bitmap The bitmap, bit i represents the i'th sequence number.
+	 * @param count The number of sequence numbers to encode.
+	 * @return The encoded chunks.
+	 */
+	private static short[] encode(final long[] bitmap, final int count)
+	{
+		short[] chunks = new short[16];
+		int n = 0;
+
+		int i = 0;
+		while (i < count)
+		{
+			// Measure the run of equal bits from here.
+			final boolean bit = isSet(bitmap, i);
+			int run = 1;
+			while (i + run < count && run < MAX_RUN && isSet(bitmap, i + run) == bit)
+			{
+				run++;
+			}
+
+			short chunk;
+			if (run >= 15 || i + run == count)
+			{
+				chunk = (short)((bit ? 0x4000 : 0) | run);
+				i += run;
+			}
+			else
+			{
+				chunk = (short)0x8000;
+				for (int j = 0 ; j < 15 && i < count ; j++, i++)
+				{
+					if (isSet(bitmap, i))
+					{
+						chunk |= 0x4000 >>> j;
+					}
+				}
+			}
+
+			if (n == chunks.length)
+			{
+				chunks = Arrays.copyOf(chunks, n * 2);
+			}
+			chunks[n++] = chunk;
+		}
+
+		return Arrays.copyOf(chunks, n);
+	}
+
+
+	/**
+	 * Test a bit in a bitmap.
+	 *
+	 * @param bitmap The bitmap.
+	 * @param i The bit index.
+	 * @return true if the bit is set, false otherwise.
+	 */
+	private static boolean isSet(final long[] bitmap, final int i)
+	{
+		return (bitmap[i >>> 6] & (1L << (i & 0x3F))) != 0;
+	}
+
+
+	/**
+	 * Create a block from a bitmap.
+	 *
+	 * @param type The block type.
+	 * @param ssrc The SSRC of the source.
+	 * @param beginSequence The first sequence number covered.
+	 * @param count The number of sequence numbers covered.
+	 * @param bitmap The bitmap, bit i represents beginSequence + i.
+	 * @return The block instance.
+	 *
+	 * @throws IllegalArgumentException If there is a problem with the supplied block data.
+	 */
+	private static RunLengthBlock create(final BlockType type, final long ssrc, final int beginSequence, final int count, final long[] bitmap)
+	{
+		if (count < 0 || count > 0xFFFF)
+		{
+			throw new IllegalArgumentException("Expected valid sequence number count not " + count);
+		}
+		if (bitmap == null || bitmap.length * 64L < count)
+		{
+			throw new IllegalArgumentException("Expected bitmap covering at least " + count + " packets");
+		}
+
+		return new RunLengthBlock(type, 0, ssrc, beginSequence, 0xFFFF & (beginSequence + count), encode(bitmap, count));
+	}
+
+
+	/**
+	 * Create a Loss RLE block from a bitmap of received packets.
+	 *
+	 * @param ssrc The SSRC of the source.
+	 * @param beginSequence The first sequence number covered.
+	 * @param count The number of sequence numbers covered.
+	 * @param received The bitmap, bit i is set if beginSequence + i was received.
+	 * @return The block instance.
+	 *
+	 * @throws IllegalArgumentException If there is a problem with the supplied block data.
+	 */
+	public static RunLengthBlock lossRle(final long ssrc, final int beginSequence, final int count, final long[] received)
+	{
+		return create(BlockType.LOSS_RLE, ssrc, beginSequence, count, received);
+	}
+
+
+	/**
+	 * Create a Duplicate RLE block from a bitmap of duplicated packets.
+	 *
+	 * @param ssrc The SSRC of the source.
+	 * @param beginSequence The first sequence number covered.
+	 * @param count The number of sequence numbers covered.
+	 * @param duplicated The bitmap, bit i is set if beginSequence + i was duplicated.
+	 * @return The block instance.
+	 *
+	 * @throws IllegalArgumentException If there is a problem with the supplied block data.
+	 */
+	public static RunLengthBlock duplicateRle(final long ssrc, final int beginSequence, final int count, final long[] duplicated)
+	{
+		return create(BlockType.DUPLICATE_RLE, ssrc, beginSequence, count, duplicated);
+	}
+
+}
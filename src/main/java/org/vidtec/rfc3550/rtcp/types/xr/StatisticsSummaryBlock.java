@@ -0,0 +1,549 @@
+package org.vidtec.rfc3550.rtcp.types.xr;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An XR Statistics Summary report block, as per RFC 3611 section 4.6.
+ *
+ * The block summarises the packets received from begin (inclusive) to end (exclusive). The flags in
+ * the header indicate which of the loss, duplicate, jitter and TTL (or hop limit) fields are reported,
+ * fields that are not reported are 0.
+ */
+public final class StatisticsSummaryBlock extends XrBlock
+{
+
+	// Statistics Summary block format is defined as: (per RFC 3611, section 4.6)
+	//
+	//    0                   1                   2                   3
+	//    0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   |     BT=6      |L|D|J|ToH|rsvd.|       block length = 9        |
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   |                        SSRC of source                         |
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   |          begin_seq            |             end_seq           |
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   |                        lost_packets                           |
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   |                        dup_packets                            |
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   |                         min_jitter                            |
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   |                         max_jitter                            |
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   |                         mean_jitter                           |
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   |                         dev_jitter                            |
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   | min_ttl_or_hl | max_ttl_or_hl |mean_ttl_or_hl | dev_ttl_or_hl |
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+
+
+	/** The block contents length. */
+	private static final int CONTENTS_LENGTH = 36;
+
+	/** The ToH value when no TTL or hop limit values are reported. */
+	public static final int TOH_NONE = 0;
+
+	/** The ToH value when IPv4 TTL values are reported. */
+	public static final int TOH_IPV4_TTL = 1;
+
+	/** The ToH value when IPv6 hop limit values are reported. */
+	public static final int TOH_IPV6_HOP_LIMIT = 2;
+
+
+	/** The type-specific flags. */
+	private final int flags;
+
+	/** The SSRC of the source. */
+	private final long ssrc;
+
+	/** The first sequence number covered. */
+	private final int beginSequence;
+
+	/** The sequence number after the last covered. */
+	private final int endSequence;
+
+	/** The loss, duplicate and jitter values, as 32 bit unsigned integers. */
+	private final long lostPackets, duplicatePackets, minJitter, maxJitter, meanJitter, devJitter;
+
+	/** The TTL or hop limit values, from 0 - 255. */
+	private final int minTtl, maxTtl, meanTtl, devTtl;
+
+
+	/**
+	 * Create a statistics summary block from a builder.
+	 *
+	 * @param builder The builder instance to construct a block from.
+	 *
+	 * @throws IllegalArgumentException If there is a problem with the validity of the block.
+	 */
+	private StatisticsSummaryBlock(final Builder builder)
+	{
+		super(BlockType.STATISTICS_SUMMARY);
+
+		if (builder.ssrc < 0 || builder.ssrc > 0xFFFFFFFFL)
+		{
+			throw new IllegalArgumentException("Expected valid ssrc not " + builder.ssrc);
+		}
+		if ((builder.beginSequence & ~0xFFFF) != 0)
+		{
+			throw new IllegalArgumentException("Expected valid sequence number not " + builder.beginSequence);
+		}
+		if ((builder.endSequence & ~0xFFFF) != 0)
+		{
+			throw new IllegalArgumentException("Expected valid sequence number not " + builder.endSequence);
+		}
+		for (final long value : new long[] { builder.lostPackets, builder.duplicatePackets, builder.minJitter, builder.maxJitter, builder.meanJitter, builder.devJitter })
+		{
+			if (value < 0 || value > 0xFFFFFFFFL)
+			{
+				throw new IllegalArgumentException("Expected valid packet statistics values.");
+			}
+		}
+		for (final int value : new int[] { builder.minTtl, builder.maxTtl, builder.meanTtl, builder.devTtl })
+		{
+			if ((value & ~0xFF) != 0)
+			{
+				throw new IllegalArgumentException("Expected valid TTL or hop limit values.");
+			}
+		}
+
+		flags = builder.flags;
+		ssrc = builder.ssrc;
+		beginSequence = builder.beginSequence;
+		endSequence = builder.endSequence;
+		lostPackets = builder.lostPackets;
+		duplicatePackets = builder.duplicatePackets;
+		minJitter = builder.minJitter;
+		maxJitter = builder.maxJitter;
+		meanJitter = builder.meanJitter;
+		devJitter = builder.devJitter;
+		minTtl = builder.minTtl;
+		maxTtl = builder.maxTtl;
+		meanTtl = builder.meanTtl;
+		devTtl = builder.devTtl;
+	}
+
+
+	/**
+	 * Gets the SSRC of the source this block reports on.
+	 *
+	 * @return The ssrc identifier as a 32 bit unsigned integer.
+	 */
+	public long ssrc()
+	{
+		return ssrc;
+	}
+
+
+	/**
+	 * Gets the first sequence number covered.
+	 *
+	 * @return The sequence number from 0 - 65,535.
+	 */
+	public int beginSequence()
+	{
+		return beginSequence;
+	}
+
+
+	/**
+	 * Gets the sequence number after the last covered.
+	 *
+	 * @return The sequence number from 0 - 65,535.
+	 */
+	public int endSequence()
+	{
+		return endSequence;
+	}
+
+
+	/**
+	 * Indicates if the lost packet count is reported.
+	 *
+	 * @return true if the L flag is set, false otherwise.
+	 */
+	public boolean hasLoss()
+	{
+		return (flags & 0x80) != 0;
+	}
+
+
+	/**
+	 * Indicates if the duplicate packet count is reported.
+	 *
+	 * @return true if the D flag is set, false otherwise.
+	 */
+	public boolean hasDuplicates()
+	{
+		return (flags & 0x40) != 0;
+	}
+
+
+	/**
+	 * Indicates if the jitter values are reported.
+	 *
+	 * @return true if the J flag is set, false otherwise.
+	 */
+	public boolean hasJitter()
+	{
+		return (flags & 0x20) != 0;
+	}
+
+
+	/**
+	 * Gets the kind of TTL or hop limit values reported.
+	 *
+	 * @return One of TOH_NONE, TOH_IPV4_TTL or TOH_IPV6_HOP_LIMIT (3 is undefined).
+	 */
+	public int ttlOrHopLimit()
+	{
+		return (flags >>> 3) & 0x03;
+	}
+
+
+	/**
+	 * Gets the number of packets lost in the sequence number range.
+	 *
+	 * @return The lost packet count.
+	 */
+	public long lostPackets()
+	{
+		return lostPackets;
+	}
+
+
+	/**
+	 * Gets the number of duplicate packets in the sequence number range.
+	 *
+	 * @return The duplicate packet count.
+	 */
+	public long duplicatePackets()
+	{
+		return duplicatePackets;
+	}
+
+
+	/**
+	 * Gets the minimum relative transit time between two packets, in RTP timestamp units.
+	 *
+	 * @return The minimum jitter.
+	 */
+	public long minJitter()
+	{
+		return minJitter;
+	}
+
+
+	/**
+	 * Gets the maximum relative transit time between two packets, in RTP timestamp units.
+	 *
+	 * @return The maximum jitter.
+	 */
+	public long maxJitter()
+	{
+		return maxJitter;
+	}
+
+
+	/**
+	 * Gets the mean relative transit time between two packets, in RTP timestamp units.
+	 *
+	 * @return The mean jitter.
+	 */
+	public long meanJitter()
+	{
+		return meanJitter;
+	}
+
+
+	/**
+	 * Gets the standard deviation of the relative transit time between two packets, in RTP timestamp units.
+	 *
+	 * @return The jitter deviation.
+	 */
+	public long devJitter()
+	{
+		return devJitter;
+	}
+
+
+	/**
+	 * Gets the minimum TTL or hop limit.
+	 *
+	 * @return The value from 0 - 255.
+	 */
+	public int minTtl()
+	{
+		return minTtl;
+	}
+
+
+	/**
+	 * Gets the maximum TTL or hop limit.
+	 *
+	 * @return The value from 0 - 255.
+	 */
+	public int maxTtl()
+	{
+		return maxTtl;
+	}
+
+
+	/**
+	 * Gets the mean TTL or hop limit, rounded to the nearest integer.
+	 *
+	 * @return The value from 0 - 255.
+	 */
+	public int meanTtl()
+	{
+		return meanTtl;
+	}
+
+
+	/**
+	 * Gets the standard deviation of the TTL or hop limit, rounded to the nearest integer.
+	 *
+	 * @return The value from 0 - 255.
+	 */
+	public int devTtl()
+	{
+		return devTtl;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int typeSpecific()
+	{
+		return flags;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected int contentsLength()
+	{
+		return CONTENTS_LENGTH;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void writeContents(final ByteBuffer bb)
+	{
+		bb.putInt((int)ssrc);
+		bb.putShort((short)beginSequence);
+		bb.putShort((short)endSequence);
+		bb.putInt((int)lostPackets);
+		bb.putInt((int)duplicatePackets);
+		bb.putInt((int)minJitter);
+		bb.putInt((int)maxJitter);
+		bb.putInt((int)meanJitter);
+		bb.putInt((int)devJitter);
+		bb.put((byte)minTtl);
+		bb.put((byte)maxTtl);
+		bb.put((byte)meanTtl);
+		bb.put((byte)devTtl);
+	}
+
+
+	/**
+	 * Decode a statistics summary block.
+	 *
+	 * @param typeSpecific The type-specific header byte.
+	 * @param contents The block contents.
+	 * @return The block instance.
+	 *
+	 * @throws IllegalArgumentException If there is a problem with the validity of the block.
+	 */
+	static StatisticsSummaryBlock decode(final int typeSpecific, final ByteBuffer contents)
+	{
+		checkLength(BlockType.STATISTICS_SUMMARY, contents, CONTENTS_LENGTH);
+
+		final Builder builder = builder()
+				.withSsrc(0xFFFFFFFFL & contents.getInt())
+				.withSequenceRange(0xFFFF & contents.getShort(), 0xFFFF & contents.getShort());
+
+		builder.lostPackets = 0xFFFFFFFFL & contents.getInt();
+		builder.duplicatePackets = 0xFFFFFFFFL & contents.getInt();
+		builder.minJitter = 0xFFFFFFFFL & contents.getInt();
+		builder.maxJitter = 0xFFFFFFFFL & contents.getInt();
+		builder.meanJitter = 0xFFFFFFFFL & contents.getInt();
+		builder.devJitter = 0xFFFFFFFFL & contents.getInt();
+		builder.minTtl = 0xFF & contents.get();
+		builder.maxTtl = 0xFF & contents.get();
+		builder.meanTtl = 0xFF & contents.get();
+		builder.devTtl = 0xFF & contents.get();
+		builder.flags = 0xFF & typeSpecific;
+
+		return builder.build();
+	}
+
+
+	/**
+	 * Creates a builder to manually build a {@link StatisticsSummaryBlock}.
+	 *
+	 * @return The builder instance.
+	 */
+	public static Builder builder()
+	{
+		return new Builder();
+	}
+
+
+	/**
+	 * A Builder class to build {@link StatisticsSummaryBlock} instances.
+	 */
+	public static final class Builder
+	{
+		/** The type-specific flags, set by each group of values supplied. */
+		private int flags;
+
+		/** The SSRC of the source. */
+		private long ssrc = -1;
+
+		/** The first sequence number covered. */
+		private int beginSequence;
+
+		/** The sequence number after the last covered. */
+		private int endSequence;
+
+		/** The loss, duplicate and jitter values. */
+		private long lostPackets, duplicatePackets, minJitter, maxJitter, meanJitter, devJitter;
+
+		/** The TTL or hop limit values. */
+		private int minTtl, maxTtl, meanTtl, devTtl;
+
+
+		/**
+		 * Private constructor.
+		 */
+		private Builder() { /* Empty Constructor */ }
+
+
+		/**
+		 * This block should have an ssrc identifier.
+		 *
+		 * @param ssrc The SSRC of the source.
+		 * @return The builder instance.
+		 */
+		public Builder withSsrc(final long ssrc)
+		{
+			this.ssrc = ssrc;
+			return this;
+		}
+
+
+		/**
+		 * This block should cover a range of sequence numbers.
+		 *
+		 * @param beginSequence The first sequence number covered.
+		 * @param endSequence The sequence number after the last covered.
+		 * @return The builder instance.
+		 */
+		public Builder withSequenceRange(final int beginSequence, final int endSequence)
+		{
+			this.beginSequence = beginSequence;
+			this.endSequence = endSequence;
+			return this;
+		}
+
+
+		/**
+		 * This block should report the number of lost packets.
+		 *
+		 * @param lostPackets The lost packet count.
+		 * @return The builder instance.
+		 */
+		public Builder withLoss(final long lostPackets)
+		{
+			this.flags |= 0x80;
+			this.lostPackets = lostPackets;
+			return this;
+		}
+
+
+		/**
+		 * This block should report the number of duplicate packets.
+		 *
+		 * @param duplicatePackets The duplicate packet count.
+		 * @return The builder instance.
+		 */
+		public Builder withDuplicates(final long duplicatePackets)
+		{
+			this.flags |= 0x40;
+			this.duplicatePackets = duplicatePackets;
+			return this;
+		}
+
+
+		/**
+		 * This block should report jitter, in RTP timestamp units.
+		 *
+		 * @param min The minimum jitter.
+		 * @param max The maximum jitter.
+		 * @param mean The mean jitter.
+		 * @param dev The standard deviation of the jitter.
+		 * @return The builder instance.
+		 */
+		public Builder withJitter(final long min, final long max, final long mean, final long dev)
+		{
+			this.flags |= 0x20;
+			this.minJitter = min;
+			this.maxJitter = max;
+			this.meanJitter = mean;
+			this.devJitter = dev;
+			return this;
+		}
+
+
+		/**
+		 * This block should report TTL or hop limit values.
+		 *
+		 * @param toh The kind of values, TOH_IPV4_TTL or TOH_IPV6_HOP_LIMIT.
+		 * @param min The minimum value.
+		 * @param max The maximum value.
+		 * @param mean The mean value.
+		 * @param dev The standard deviation of the values.
+		 * @return The builder instance.
+		 *
+		 * @throws IllegalArgumentException If the kind of values is not valid.
+		 */
+		public Builder withTtl(final int toh, final int min, final int max, final int mean, final int dev)
+		{
+			if (toh != TOH_IPV4_TTL && toh != TOH_IPV6_HOP_LIMIT)
+			{
+				throw new IllegalArgumentException("Expected valid ToH value not " + toh);
+			}
+
+			this.flags = (flags & ~0x18) | toh << 3;
+			this.minTtl = min;
+			this.maxTtl = max;
+			this.meanTtl = mean;
+			this.devTtl = dev;
+			return this;
+		}
+
+
+		/**
+		 * Build the block.
+		 *
+		 * @return The block instance.
+		 *
+		 * @throws IllegalArgumentException If there is a problem with the supplied block data.
+		 */
+		public StatisticsSummaryBlock build()
+		{
+			return new StatisticsSummaryBlock(this);
+		}
+	}
+
+}
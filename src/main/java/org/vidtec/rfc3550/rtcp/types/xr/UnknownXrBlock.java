@@ -0,0 +1,108 @@
+package org.vidtec.rfc3550.rtcp.types.xr;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * An opaque XR report block of a type that is not understood, held as raw data so it can be passed through.
+ *
+ * NB: The block type of this block is always {@link BlockType#UNKNOWN}, use typeValue() to get the actual type.
+ */
+public final class UnknownXrBlock extends XrBlock
+{
+
+	/** The actual block type value. */
+	private final int typeValue;
+
+	/** The type-specific header byte. */
+	private final int typeSpecific;
+
+	/** The raw block contents. */
+	private final byte[] contents;
+
+
+	/**
+	 * Create an unknown block.
+	 *
+	 * @param typeValue The actual block type value.
+	 * @param typeSpecific The type-specific header byte.
+	 * @param contents The raw block contents.
+	 */
+	private UnknownXrBlock(final int typeValue, final int typeSpecific, final byte[] contents)
+	{
+		super(BlockType.UNKNOWN);
+
+		this.typeValue = typeValue;
+		this.typeSpecific = typeSpecific;
+		this.contents = contents;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int typeValue()
+	{
+		return typeValue;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int typeSpecific()
+	{
+		return typeSpecific;
+	}
+
+
+	/**
+	 * Gets the block contents (everything after the 4 byte header) as a byte[].
+	 *
+	 * @return a copy of the block contents.
+	 */
+	public byte[] contentsAsByteArray()
+	{
+		return Arrays.copyOf(contents, contents.length);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected int contentsLength()
+	{
+		return contents.length;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void writeContents(final ByteBuffer bb)
+	{
+		bb.put(contents);
+	}
+
+
+	/**
+	 * Decode an unknown block.
+	 *
+	 * @param typeValue The actual block type value.
+	 * @param typeSpecific The type-specific header byte.
+	 * @param contents The block contents.
+	 * @return The block instance.
+	 */
+	static UnknownXrBlock decode(final int typeValue, final int typeSpecific, final ByteBuffer contents)
+	{
+		final byte[] data = new byte[contents.remaining()];
+		contents.get(data);
+
+		return new UnknownXrBlock(typeValue, typeSpecific, data);
+	}
+
+}
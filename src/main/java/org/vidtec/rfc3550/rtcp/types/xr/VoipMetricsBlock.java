@@ -0,0 +1,609 @@
+package org.vidtec.rfc3550.rtcp.types.xr;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An XR VoIP Metrics report block, as per RFC 3611 section 4.7.
+ *
+ * The loss and burst/gap metrics can be calculated by {@link org.vidtec.rfc3550.rtcp.stats.ExtendedReportStatistics},
+ * the remaining metrics depend on the media (delay, signal levels, call quality, jitter buffer) and are supplied
+ * by the application. Metrics that are not supplied are reported as unavailable.
+ */
+public final class VoipMetricsBlock extends XrBlock
+{
+
+	// VoIP Metrics block format is defined as: (per RFC 3611, section 4.7)
+	//
+	//    0                   1                   2                   3
+	//    0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   |     BT=7      |   reserved    |       block length = 8        |
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   |                        SSRC of source                         |
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   |   loss rate   | discard rate  | burst density |  gap density  |
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   |       burst duration          |         gap duration          |
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   |     round trip delay          |       end system delay        |
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   | signal level  |  noise level  |     RERL      |     Gmin      |
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   |   R factor    | ext. R factor |    MOS-LQ     |    MOS-CQ     |
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   |   RX config   |   reserved    |          JB nominal           |
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   |          JB maximum           |          JB abs max           |
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+
+
+	/** The block contents length. */
+	private static final int CONTENTS_LENGTH = 32;
+
+	/** The value used for signal, noise, RERL, R factor and MOS metrics that are unavailable. */
+	public static final int UNAVAILABLE = 127;
+
+
+	/** The SSRC of the source. */
+	private final long ssrc;
+
+	/** The 8 bit metrics. */
+	private final int lossRate, discardRate, burstDensity, gapDensity, signalLevel, noiseLevel, rerl, gmin, rFactor, extRFactor, mosLq, mosCq, rxConfig;
+
+	/** The 16 bit metrics. */
+	private final int burstDuration, gapDuration, roundTripDelay, endSystemDelay, jbNominal, jbMaximum, jbAbsMaximum;
+
+
+	/**
+	 * Create a VoIP metrics block from a builder.
+	 *
+	 * @param builder The builder instance to construct a block from.
+	 *
+	 * @throws IllegalArgumentException If there is a problem with the validity of the block.
+	 */
+	private VoipMetricsBlock(final Builder builder)
+	{
+		super(BlockType.VOIP_METRICS);
+
+		if (builder.ssrc < 0 || builder.ssrc > 0xFFFFFFFFL)
+		{
+			throw new IllegalArgumentException("Expected valid ssrc not " + builder.ssrc);
+		}
+		for (final int value : new int[] { builder.lossRate, builder.discardRate, builder.burstDensity, builder.gapDensity, builder.rerl, builder.gmin,
+				                           builder.rFactor, builder.extRFactor, builder.mosLq, builder.mosCq, builder.rxConfig })
+		{
+			if ((value & ~0xFF) != 0)
+			{
+				throw new IllegalArgumentException("Expected valid VoIP metrics values.");
+			}
+		}
+		for (final int value : new int[] { builder.burstDuration, builder.gapDuration, builder.roundTripDelay, builder.endSystemDelay,
+				                           builder.jbNominal, builder.jbMaximum, builder.jbAbsMaximum })
+		{
+			if ((value & ~0xFFFF) != 0)
+			{
+				throw new IllegalArgumentException("Expected valid VoIP metrics values.");
+			}
+		}
+		if (builder.signalLevel < -128 || builder.signalLevel > 127 || builder.noiseLevel < -128 || builder.noiseLevel > 127)
+		{
+			throw new IllegalArgumentException("Expected valid VoIP metrics values.");
+		}
+
+		ssrc = builder.ssrc;
+		lossRate = builder.lossRate;
+		discardRate = builder.discardRate;
+		burstDensity = builder.burstDensity;
+		gapDensity = builder.gapDensity;
+		burstDuration = builder.burstDuration;
+		gapDuration = builder.gapDuration;
+		roundTripDelay = builder.roundTripDelay;
+		endSystemDelay = builder.endSystemDelay;
+		signalLevel = builder.signalLevel;
+		noiseLevel = builder.noiseLevel;
+		rerl = builder.rerl;
+		gmin = builder.gmin;
+		rFactor = builder.rFactor;
+		extRFactor = builder.extRFactor;
+		mosLq = builder.mosLq;
+		mosCq = builder.mosCq;
+		rxConfig = builder.rxConfig;
+		jbNominal = builder.jbNominal;
+		jbMaximum = builder.jbMaximum;
+		jbAbsMaximum = builder.jbAbsMaximum;
+	}
+
+
+	/**
+	 * Gets the SSRC of the source this block reports on.
+	 *
+	 * @return The ssrc identifier as a 32 bit unsigned integer.
+	 */
+	public long ssrc()
+	{
+		return ssrc;
+	}
+
+
+	/**
+	 * Gets the fraction of packets lost, as a fixed point number with the binary point at the left edge.
+	 *
+	 * @return The loss rate from 0 - 255.
+	 */
+	public int lossRate()
+	{
+		return lossRate;
+	}
+
+
+	/**
+	 * Gets the fraction of packets discarded (e.g. arriving too late to play out), as a fixed point number.
+	 *
+	 * @return The discard rate from 0 - 255.
+	 */
+	public int discardRate()
+	{
+		return discardRate;
+	}
+
+
+	/**
+	 * Gets the fraction of packets lost or discarded within bursts, as a fixed point number.
+	 *
+	 * @return The burst density from 0 - 255.
+	 */
+	public int burstDensity()
+	{
+		return burstDensity;
+	}
+
+
+	/**
+	 * Gets the fraction of packets lost or discarded within gaps, as a fixed point number.
+	 *
+	 * @return The gap density from 0 - 255.
+	 */
+	public int gapDensity()
+	{
+		return gapDensity;
+	}
+
+
+	/**
+	 * Gets the mean duration of the bursts.
+	 *
+	 * @return The burst duration in milliseconds.
+	 */
+	public int burstDuration()
+	{
+		return burstDuration;
+	}
+
+
+	/**
+	 * Gets the mean duration of the gaps.
+	 *
+	 * @return The gap duration in milliseconds.
+	 */
+	public int gapDuration()
+	{
+		return gapDuration;
+	}
+
+
+	/**
+	 * Gets the most recently measured round trip delay.
+	 *
+	 * @return The round trip delay in milliseconds.
+	 */
+	public int roundTripDelay()
+	{
+		return roundTripDelay;
+	}
+
+
+	/**
+	 * Gets the most recently estimated end system delay.
+	 *
+	 * @return The end system delay in milliseconds.
+	 */
+	public int endSystemDelay()
+	{
+		return endSystemDelay;
+	}
+
+
+	/**
+	 * Gets the signal level.
+	 *
+	 * @return The signal level in dBm, or UNAVAILABLE.
+	 */
+	public int signalLevel()
+	{
+		return signalLevel;
+	}
+
+
+	/**
+	 * Gets the noise level.
+	 *
+	 * @return The noise level in dBm, or UNAVAILABLE.
+	 */
+	public int noiseLevel()
+	{
+		return noiseLevel;
+	}
+
+
+	/**
+	 * Gets the residual echo return loss.
+	 *
+	 * @return The RERL in dB, or UNAVAILABLE.
+	 */
+	public int residualEchoReturnLoss()
+	{
+		return rerl;
+	}
+
+
+	/**
+	 * Gets the gap threshold used to separate bursts from gaps.
+	 *
+	 * @return The minimum number of received packets between losses in a gap.
+	 */
+	public int gmin()
+	{
+		return gmin;
+	}
+
+
+	/**
+	 * Gets the R factor (ITU-T G.107) for this call.
+	 *
+	 * @return The R factor from 0 - 100, or UNAVAILABLE.
+	 */
+	public int rFactor()
+	{
+		return rFactor;
+	}
+
+
+	/**
+	 * Gets the external R factor, for the segment of the call outside this network.
+	 *
+	 * @return The R factor from 0 - 100, or UNAVAILABLE.
+	 */
+	public int externalRFactor()
+	{
+		return extRFactor;
+	}
+
+
+	/**
+	 * Gets the estimated listening quality mean opinion score, multiplied by 10.
+	 *
+	 * @return The MOS-LQ from 10 - 50, or UNAVAILABLE.
+	 */
+	public int mosLq()
+	{
+		return mosLq;
+	}
+
+
+	/**
+	 * Gets the estimated conversational quality mean opinion score, multiplied by 10.
+	 *
+	 * @return The MOS-CQ from 10 - 50, or UNAVAILABLE.
+	 */
+	public int mosCq()
+	{
+		return mosCq;
+	}
+
+
+	/**
+	 * Gets the receiver configuration byte (packet loss concealment and jitter buffer flags).
+	 *
+	 * @return The RX config from 0 - 255.
+	 */
+	public int rxConfig()
+	{
+		return rxConfig;
+	}
+
+
+	/**
+	 * Gets the nominal jitter buffer delay.
+	 *
+	 * @return The delay in milliseconds.
+	 */
+	public int jitterBufferNominal()
+	{
+		return jbNominal;
+	}
+
+
+	/**
+	 * Gets the current maximum jitter buffer delay.
+	 *
+	 * @return The delay in milliseconds.
+	 */
+	public int jitterBufferMaximum()
+	{
+		return jbMaximum;
+	}
+
+
+	/**
+	 * Gets the absolute maximum jitter buffer delay.
+	 *
+	 * @return The delay in milliseconds.
+	 */
+	public int jitterBufferAbsoluteMaximum()
+	{
+		return jbAbsMaximum;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int typeSpecific()
+	{
+		return 0;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected int contentsLength()
+	{
+		return CONTENTS_LENGTH;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void writeContents(final ByteBuffer bb)
+	{
+		bb.putInt((int)ssrc);
+		bb.put((byte)lossRate);
+		bb.put((byte)discardRate);
+		bb.put((byte)burstDensity);
+		bb.put((byte)gapDensity);
+		bb.putShort((short)burstDuration);
+		bb.putShort((short)gapDuration);
+		bb.putShort((short)roundTripDelay);
+		bb.putShort((short)endSystemDelay);
+		bb.put((byte)signalLevel);
+		bb.put((byte)noiseLevel);
+		bb.put((byte)rerl);
+		bb.put((byte)gmin);
+		bb.put((byte)rFactor);
+		bb.put((byte)extRFactor);
+		bb.put((byte)mosLq);
+		bb.put((byte)mosCq);
+		bb.put((byte)rxConfig);
+		bb.put((byte)0);
+		bb.putShort((short)jbNominal);
+		bb.putShort((short)jbMaximum);
+		bb.putShort((short)jbAbsMaximum);
+	}
+
+
+	/**
+	 * Decode a VoIP metrics block.
+	 *
+	 * @param contents The block contents.
+	 * @return The block instance.
+	 *
+	 * @throws IllegalArgumentException If there is a problem with the validity of the block.
+	 */
+	static VoipMetricsBlock decode(final ByteBuffer contents)
+	{
+		checkLength(BlockType.VOIP_METRICS, contents, CONTENTS_LENGTH);
+
+		final Builder builder = builder().withSsrc(0xFFFFFFFFL & contents.getInt());
+		builder.lossRate = 0xFF & contents.get();
+		builder.discardRate = 0xFF & contents.get();
+		builder.burstDensity = 0xFF & contents.get();
+		builder.gapDensity = 0xFF & contents.get();
+		builder.burstDuration = 0xFFFF & contents.getShort();
+		builder.gapDuration = 0xFFFF & contents.getShort();
+		builder.roundTripDelay = 0xFFFF & contents.getShort();
+		builder.endSystemDelay = 0xFFFF & contents.getShort();
+		builder.signalLevel = contents.get();
+		builder.noiseLevel = contents.get();
+		builder.rerl = 0xFF & contents.get();
+		builder.gmin = 0xFF & contents.get();
+		builder.rFactor = 0xFF & contents.get();
+		builder.extRFactor = 0xFF & contents.get();
+		builder.mosLq = 0xFF & contents.get();
+		builder.mosCq = 0xFF & contents.get();
+		builder.rxConfig = 0xFF & contents.get();
+		contents.get();
+		builder.jbNominal = 0xFFFF & contents.getShort();
+		builder.jbMaximum = 0xFFFF & contents.getShort();
+		builder.jbAbsMaximum = 0xFFFF & contents.getShort();
+
+		return builder.build();
+	}
+
+
+	/**
+	 * Creates a builder to manually build a {@link VoipMetricsBlock}.
+	 *
+	 * @return The builder instance.
+	 */
+	public static Builder builder()
+	{
+		return new Builder();
+	}
+
+
+	/**
+	 * A Builder class to build {@link VoipMetricsBlock} instances.
+	 * NB: The signal, noise, RERL, R factor and MOS metrics default to UNAVAILABLE, all others default to 0.
+	 */
+	public static final class Builder
+	{
+		/** The SSRC of the source. */
+		private long ssrc = -1;
+
+		/** The 8 bit metrics that default to 0. */
+		private int lossRate, discardRate, burstDensity, gapDensity, gmin, rxConfig;
+
+		/** The signal and noise metrics. */
+		private int signalLevel = UNAVAILABLE, noiseLevel = UNAVAILABLE, rerl = UNAVAILABLE;
+
+		/** The call quality metrics. */
+		private int rFactor = UNAVAILABLE, extRFactor = UNAVAILABLE, mosLq = UNAVAILABLE, mosCq = UNAVAILABLE;
+
+		/** The 16 bit metrics. */
+		private int burstDuration, gapDuration, roundTripDelay, endSystemDelay, jbNominal, jbMaximum, jbAbsMaximum;
+
+
+		/**
+		 * Private constructor.
+		 */
+		private Builder() { /* Empty Constructor */ }
+
+
+		/**
+		 * This block should have an ssrc identifier.
+		 *
+		 * @param ssrc The SSRC of the source.
+		 * @return The builder instance.
+		 */
+		public Builder withSsrc(final long ssrc)
+		{
+			this.ssrc = ssrc;
+			return this;
+		}
+
+
+		/**
+		 * This block should report loss and discard rates.
+		 *
+		 * @param lossRate The fraction of packets lost, from 0 - 255.
+		 * @param discardRate The fraction of packets discarded, from 0 - 255.
+		 * @return The builder instance.
+		 */
+		public Builder withLoss(final int lossRate, final int discardRate)
+		{
+			this.lossRate = lossRate;
+			this.discardRate = discardRate;
+			return this;
+		}
+
+
+		/**
+		 * This block should report burst and gap metrics.
+		 *
+		 * @param burstDensity The fraction of packets lost or discarded in bursts, from 0 - 255.
+		 * @param gapDensity The fraction of packets lost or discarded in gaps, from 0 - 255.
+		 * @param burstDuration The mean burst duration in milliseconds.
+		 * @param gapDuration The mean gap duration in milliseconds.
+		 * @param gmin The gap threshold used.
+		 * @return The builder instance.
+		 */
+		public Builder withBurstGap(final int burstDensity, final int gapDensity, final int burstDuration, final int gapDuration, final int gmin)
+		{
+			this.burstDensity = burstDensity;
+			this.gapDensity = gapDensity;
+			this.burstDuration = burstDuration;
+			this.gapDuration = gapDuration;
+			this.gmin = gmin;
+			return this;
+		}
+
+
+		/**
+		 * This block should report delay metrics.
+		 *
+		 * @param roundTripDelay The round trip delay in milliseconds.
+		 * @param endSystemDelay The end system delay in milliseconds.
+		 * @return The builder instance.
+		 */
+		public Builder withDelay(final int roundTripDelay, final int endSystemDelay)
+		{
+			this.roundTripDelay = roundTripDelay;
+			this.endSystemDelay = endSystemDelay;
+			return this;
+		}
+
+
+		/**
+		 * This block should report signal metrics.
+		 *
+		 * @param signalLevel The signal level in dBm.
+		 * @param noiseLevel The noise level in dBm.
+		 * @param rerl The residual echo return loss in dB.
+		 * @return The builder instance.
+		 */
+		public Builder withSignal(final int signalLevel, final int noiseLevel, final int rerl)
+		{
+			this.signalLevel = signalLevel;
+			this.noiseLevel = noiseLevel;
+			this.rerl = rerl;
+			return this;
+		}
+
+
+		/**
+		 * This block should report call quality metrics.
+		 *
+		 * @param rFactor The R factor.
+		 * @param extRFactor The external R factor.
+		 * @param mosLq The listening quality MOS, multiplied by 10.
+		 * @param mosCq The conversational quality MOS, multiplied by 10.
+		 * @return The builder instance.
+		 */
+		public Builder withQuality(final int rFactor, final int extRFactor, final int mosLq, final int mosCq)
+		{
+			this.rFactor = rFactor;
+			this.extRFactor = extRFactor;
+			this.mosLq = mosLq;
+			this.mosCq = mosCq;
+			return this;
+		}
+
+
+		/**
+		 * This block should report jitter buffer metrics.
+		 *
+		 * @param rxConfig The receiver configuration byte.
+		 * @param nominal The nominal jitter buffer delay in milliseconds.
+		 * @param maximum The current maximum jitter buffer delay in milliseconds.
+		 * @param absMaximum The absolute maximum jitter buffer delay in milliseconds.
+		 * @return The builder instance.
+		 */
+		public Builder withJitterBuffer(final int rxConfig, final int nominal, final int maximum, final int absMaximum)
+		{
+			this.rxConfig = rxConfig;
+			this.jbNominal = nominal;
+			this.jbMaximum = maximum;
+			this.jbAbsMaximum = absMaximum;
+			return this;
+		}
+
+
+		/**
+		 * Build the block.
+		 *
+		 * @return The block instance.
+		 *
+		 * @throws IllegalArgumentException If there is a problem with the supplied block data.
+		 */
+		public VoipMetricsBlock build()
+		{
+			return new VoipMetricsBlock(this);
+		}
+	}
+
+}
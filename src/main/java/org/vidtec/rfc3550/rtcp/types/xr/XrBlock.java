@@ -0,0 +1,309 @@
+package org.vidtec.rfc3550.rtcp.types.xr;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Common functionality for all XR report blocks, as per RFC 3611 section 3.
+ * https://tools.ietf.org/html/rfc3611
+ *
+ * Blocks of a type that is not known are kept as {@link UnknownXrBlock}s, so that they can be passed through.
+ */
+public abstract class XrBlock
+{
+
+	// XR report block header format is defined as: (per RFC 3611, section 3)
+	//
+	//    0                   1                   2                   3
+	//    0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   |      BT       | type-specific |         block length          |
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   :             type-specific block contents                      :
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//
+	// The block length is the number of 32-bit words in the block, minus one (i.e. excluding the header).
+
+
+	/** The block header length. */
+	public static final int HEADER_LENGTH = 4;
+
+
+	/** The block type. */
+	private final BlockType type;
+
+
+	/**
+	 * Create an XR block.
+	 *
+	 * @param type The block type.
+	 */
+	protected XrBlock(final BlockType type)
+	{
+		this.type = type;
+	}
+
+
+	/**
+	 * Get the block type.
+	 *
+	 * @return The block type.
+	 */
+	public BlockType blockType()
+	{
+		return type;
+	}
+
+
+	/**
+	 * Get the block length, including the header.
+	 *
+	 * @return The length of this block in bytes.
+	 */
+	public int length()
+	{
+		return HEADER_LENGTH + contentsLength();
+	}
+
+
+	/**
+	 * Gets the block as a byte[].
+	 *
+	 * @return The block represented as raw bytes.
+	 */
+	public byte[] asByteArray()
+	{
+		final byte[] data = new byte[length()];
+		final ByteBuffer bb = ByteBuffer.wrap(data);
+
+		bb.put((byte)typeValue());
+		bb.put((byte)typeSpecific());
+		bb.putShort((short)(contentsLength() / 4));
+		writeContents(bb);
+
+		return data;
+	}
+
+
+	/**
+	 * Get the block type value as written to the block header.
+	 *
+	 * @return The block type value, from 0 - 255.
+	 */
+	public int typeValue()
+	{
+		return type.bt;
+	}
+
+
+	/**
+	 * Get the type-specific header byte.
+	 *
+	 * @return The type-specific value, from 0 - 255.
+	 */
+	public abstract int typeSpecific();
+
+
+	/**
+	 * Get the length of the block contents.
+	 *
+	 * @return The contents length in bytes, a multiple of 4.
+	 */
+	protected abstract int contentsLength();
+
+
+	/**
+	 * Write the block contents.
+	 *
+	 * @param bb The buffer to write to, positioned after the block header.
+	 */
+	protected abstract void writeContents(ByteBuffer bb);
+
+
+	/**
+	 * Returns an XrBlock derived from a given bytebuffer.
+	 * NB: The buffer position is moved to the end of the block.
+	 *
+	 * @param bb The bytebuffer to construct a block from.
+	 * @return The generated block.
+	 *
+	 * @throws IllegalArgumentException If there is a problem with the validity of the block.
+	 */
+	public static XrBlock fromByteBuffer(final ByteBuffer bb)
+	{
+		if (bb == null)
+		{
+			throw new IllegalArgumentException("data cannot be null");
+		}
+		if (bb.remaining() < HEADER_LENGTH)
+		{
+			// As per RFC 3611 - block must be at least 4 bytes.
+			throw new IllegalArgumentException("block was wrong size, expecting at least " + HEADER_LENGTH + " bytes, but found " + bb.remaining());
+		}
+
+		final int typeValue = 0xFF & bb.get();
+		final int typeSpecific = 0xFF & bb.get();
+		final int length = (0xFFFF & bb.getShort()) * 4;
+		if (bb.remaining() < length)
+		{
+			throw new IllegalArgumentException("Block states " + (length + HEADER_LENGTH) + " bytes length, but only " + (bb.remaining() + HEADER_LENGTH) + " bytes remain");
+		}
+
+		final ByteBuffer contents = bb.slice();
+		contents.limit(length);
+		bb.position(bb.position() + length);
+
+		final BlockType type = BlockType.fromTypeValue(typeValue, BlockType.UNKNOWN);
+		switch (type)
+		{
+			case LOSS_RLE:
+			case DUPLICATE_RLE:
+			{
+				return RunLengthBlock.decode(type, typeSpecific, contents);
+			}
+			case PACKET_RECEIPT_TIMES:
+			{
+				return PacketReceiptTimesBlock.decode(typeSpecific, contents);
+			}
+			case RECEIVER_REFERENCE_TIME:
+			{
+				return ReceiverReferenceTimeBlock.decode(contents);
+			}
+			case DLRR:
+			{
+				return DlrrBlock.decode(contents);
+			}
+			case STATISTICS_SUMMARY:
+			{
+				return StatisticsSummaryBlock.decode(typeSpecific, contents);
+			}
+			case VOIP_METRICS:
+			{
+				return VoipMetricsBlock.decode(contents);
+			}
+			default:
+			{
+				return UnknownXrBlock.decode(typeValue, typeSpecific, contents);
+			}
+		}
+	}
+
+
+	/**
+	 * Check that block contents are the expected size.
+	 *
+	 * @param type The block type.
+	 * @param contents The block contents.
+	 * @param expected The expected contents length in bytes.
+	 *
+	 * @throws IllegalArgumentException If the contents are not the expected size.
+	 */
+	static void checkLength(final BlockType type, final ByteBuffer contents, final int expected)
+	{
+		if (contents.remaining() != expected)
+		{
+			throw new IllegalArgumentException(type + " block was wrong size, expecting " + (expected + HEADER_LENGTH) + " bytes, but found " + (contents.remaining() + HEADER_LENGTH));
+		}
+	}
+
+
+	/**
+	 * An enumeration of XR block types.
+	 *
+	 * 	 name                     BT  description
+	 * 	 ------------------------ --  ----------------------------
+	 * 	 LOSS_RLE                 1   loss run length encoding
+	 * 	 DUPLICATE_RLE            2   duplicate run length encoding
+	 * 	 PACKET_RECEIPT_TIMES     3   packet receipt times
+	 * 	 RECEIVER_REFERENCE_TIME  4   receiver reference time
+	 * 	 DLRR                     5   delay since last receiver reference time
+	 * 	 STATISTICS_SUMMARY       6   statistics summary
+	 * 	 VOIP_METRICS             7   VoIP metrics
+	 *
+	 * 	 UNKNOWN is used for blocks of any other type, it is never returned by fromTypeValue(int).
+	 */
+	public static enum BlockType
+	{
+		/** Loss run length encoding. */
+		LOSS_RLE(1),
+
+		/** Duplicate run length encoding. */
+		DUPLICATE_RLE(2),
+
+		/** Packet receipt times. */
+		PACKET_RECEIPT_TIMES(3),
+
+		/** Receiver reference time. */
+		RECEIVER_REFERENCE_TIME(4),
+
+		/** Delay since last receiver reference time. */
+		DLRR(5),
+
+		/** Statistics summary. */
+		STATISTICS_SUMMARY(6),
+
+		/** VoIP metrics. */
+		VOIP_METRICS(7),
+
+		/** Any other block type. */
+		UNKNOWN(0);
+
+		/** The numeric placeholder. */
+		public final short bt;
+
+		/** internal cache of values to enumerations, indexed by value. */
+		private static final BlockType[] TYPES = new BlockType[256];
+
+
+		static
+		{
+			Arrays.stream(BlockType.values()).filter(t -> t != UNKNOWN).forEach(t -> TYPES[t.bt] = t);
+		}
+
+
+		/**
+		 * Create an enumeration with a numeric value.
+		 *
+		 * @param value The block type value as per RFC 3611.
+		 */
+		private BlockType(final int value)
+		{
+			bt = (short)(0xFF & value);
+		}
+
+
+		/**
+		 * Get a block type enumeration from a block value.
+		 *
+		 * @param value The block type value.
+		 * @return The corresponding enumeration instance.
+		 *
+		 * @throws IllegalArgumentException If the value given is not valid.
+		 */
+		public static BlockType fromTypeValue(final int value)
+		{
+			final BlockType type = fromTypeValue(value, null);
+			if (type == null)
+			{
+				throw new IllegalArgumentException("Unknown type - " + String.valueOf(value));
+			}
+
+			return type;
+		}
+
+
+		/**
+		 * Get a block type enumeration from a block value, without failing for unknown values.
+		 *
+		 * @param value The block type value.
+		 * @param defaultType The value to return if the value is not known.
+		 * @return The corresponding enumeration instance, or the default type.
+		 */
+		public static BlockType fromTypeValue(final int value, final BlockType defaultType)
+		{
+			final BlockType type = (value & ~0xFF) == 0 ? TYPES[value] : null;
+			return type == null ? defaultType : type;
+		}
+	}
+
+}
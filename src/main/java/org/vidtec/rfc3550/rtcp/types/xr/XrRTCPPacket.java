@@ -0,0 +1,302 @@
+package org.vidtec.rfc3550.rtcp.types.xr;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.vidtec.rfc3550.rtcp.types.RTCPPacket;
+
+/**
+ * An implementation of an RTCP extended report packet (XR) according to RFC 3611 section 2.
+ * https://tools.ietf.org/html/rfc3611
+ *
+ * The packet holds zero or more report blocks, see {@link XrBlock} for the supported block types.
+ */
+public class XrRTCPPacket extends RTCPPacket<XrRTCPPacket>
+{
+
+	// RTCP Extended Report Packet (XR) format is defined as: (per RFC 3611, section 2)
+	//
+	//    0                   1                   2                   3
+	//    0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   |V=2|P|reserved |   PT=XR=207   |             length            |
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   |                              SSRC                             |
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+	//   :                         report blocks                         :
+	//   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+
+
+	/** The minimum header length. */
+	private static final int MIN_HEAD_LENGTH = 8;
+
+
+	/** The SSRC of the packet sender. */
+	private final long ssrcSenderIdentifier;
+
+	/** The report blocks. */
+	private final List<XrBlock> blocks;
+
+
+	/**
+	 * Create an (XR) extended report RTCP packet.
+	 *
+	 * @param ssrcSenderIdentifier The SSRC of the packet sender.
+	 * @param blocks The report blocks.
+	 *
+	 * @throws IllegalArgumentException If there is a problem with the validity of the packet.
+	 */
+	private XrRTCPPacket(final long ssrcSenderIdentifier, final List<XrBlock> blocks)
+	{
+		super(PayloadType.XR);
+
+		if (ssrcSenderIdentifier < 0 || ssrcSenderIdentifier > 0xFFFFFFFFL)
+		{
+			throw new IllegalArgumentException("Expected valid sender ssrc not " + ssrcSenderIdentifier);
+		}
+
+		this.ssrcSenderIdentifier = ssrcSenderIdentifier;
+		this.blocks = Collections.unmodifiableList(new ArrayList<>(blocks));
+
+		if (packetLength() > 0x40000)
+		{
+			throw new IllegalArgumentException("Expected packet length of at most 262144 bytes, but found " + packetLength());
+		}
+	}
+
+
+	/**
+	 * Gets the SSRC of the packet sender.
+	 *
+	 * @return The ssrc identifier as a 32 bit unsigned integer.
+	 */
+	public long ssrcSenderIdentifier()
+	{
+		return ssrcSenderIdentifier;
+	}
+
+
+	/**
+	 * Gets the report blocks.
+	 *
+	 * @return An unmodifiable list of the blocks, in packet order.
+	 */
+	public List<XrBlock> blocks()
+	{
+		return blocks;
+	}
+
+
+	/**
+	 * Gets the first report block of a given class.
+	 *
+	 * @param <B> The block class.
+	 * @param type The block class.
+	 * @return The first block of this class, or null if there is none.
+	 */
+	public <B extends XrBlock> B block(final Class<B> type)
+	{
+		for (final XrBlock block : blocks)
+		{
+			if (type.isInstance(block))
+			{
+				return type.cast(block);
+			}
+		}
+
+		return null;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int packetLength()
+	{
+		return MIN_HEAD_LENGTH + blocks.stream().mapToInt(XrBlock::length).sum();
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public byte[] asByteArray()
+	{
+		final byte[] data = new byte[packetLength()];
+		final ByteBuffer bb = ByteBuffer.wrap(data);
+
+		bb.put((byte)(VERSION << 6));
+		bb.put((byte)(0xFF & payloadType().pt));
+		bb.putShort((short)((data.length / 4) - 1));
+		bb.putInt((int)ssrcSenderIdentifier);
+
+		blocks.forEach(block -> bb.put(block.asByteArray()));
+
+		return data;
+	}
+
+
+	/**
+	 * Returns an RTCP packet derived from a given byte array.
+	 *
+	 * @param data The byte[] to construct a packet from.
+	 * @return The packet instance.
+	 *
+	 * @throws IllegalArgumentException If there is a problem with the validity of the packet.
+	 */
+	public static XrRTCPPacket fromByteArray(final byte[] data)
+	{
+		if (data == null)
+		{
+			throw new IllegalArgumentException("packet data cannot be null");
+		}
+		if (data.length < MIN_HEAD_LENGTH)
+		{
+			// As per RFC 3611 - the header is 8 bytes, anything less is a bad packet.
+			throw new IllegalArgumentException("Packet too short, expecting at least " + MIN_HEAD_LENGTH + " bytes, but found " + data.length);
+		}
+
+		final ByteBuffer bb = ByteBuffer.wrap(data);
+		final short firstByte = (short)(0xFF & bb.get());
+		if ((firstByte & 0xC0) != VERSION << 6)
+		{
+			throw new IllegalArgumentException("Invalid version number found, expecting " + VERSION);
+		}
+
+		if ((0xFF & bb.get()) != PayloadType.XR.pt)
+		{
+			// Wrong payload type.
+			throw new IllegalArgumentException("Invalid or unexpected packet type - should be " + PayloadType.XR.pt);
+		}
+
+		// Get the length, and validate.
+		final int length = (0xFFFF & bb.getShort()) * 4;
+		if (bb.remaining() != length)
+		{
+			// Invalid packet length
+			throw new IllegalArgumentException("Packet states " + (length + 4) + " bytes length, but actual length is " + (bb.remaining() + 4));
+		}
+
+		if ((0x20 & firstByte) == 0x20)
+		{
+			// Padding count is in the last byte, and must leave the fixed header intact.
+			final int padding = 0xFF & data[data.length - 1];
+			if (padding == 0 || data.length - padding < MIN_HEAD_LENGTH || (data.length - padding) % 4 != 0)
+			{
+				throw new IllegalArgumentException("Invalid padding length - " + padding);
+			}
+			bb.limit(data.length - padding);
+		}
+
+		final long ssrc = 0xFFFFFFFFL & bb.getInt();
+
+		final List<XrBlock> blocks = new ArrayList<>();
+		while (bb.hasRemaining())
+		{
+			blocks.add(XrBlock.fromByteBuffer(bb));
+		}
+
+		return new XrRTCPPacket(ssrc, blocks);
+	}
+
+
+	/**
+	 * Creates a builder to manually build an {@link XrRTCPPacket}.
+	 *
+	 * @return The builder instance.
+	 */
+	public static XrBuilder builder()
+	{
+		return new XrBuilder();
+	}
+
+
+	/**
+	 * A XrBuilder class to build {@link XrRTCPPacket} instances.
+	 */
+	public static final class XrBuilder
+	{
+		/** The SSRC of the packet originator. */
+		private long ssrcIdentifier = -1;
+
+		/** The report blocks. */
+		private List<XrBlock> blocks = new ArrayList<>();
+
+
+		/**
+		 * Private constructor.
+		 */
+		private XrBuilder() { /* Empty Constructor */ }
+
+
+		/**
+		 * This packet should have an ssrc identifier.
+		 *
+		 * @param ssrc The ssrc identifier of the packet sender.
+		 * @return The builder instance.
+		 */
+		public XrBuilder withSsrc(final long ssrc)
+		{
+			this.ssrcIdentifier = ssrc;
+			return this;
+		}
+
+
+		/**
+		 * This packet should have report blocks.
+		 *
+		 * @param blocks A variable args set of report blocks.
+		 * @return The builder instance.
+		 */
+		public XrBuilder withBlocks(final XrBlock ...blocks)
+		{
+			if (blocks != null)
+			{
+				this.blocks.addAll(Arrays.asList(blocks));
+			}
+
+			return this;
+		}
+
+
+		/**
+		 * This packet should have report blocks.
+		 *
+		 * @param blocks A list of report blocks.
+		 * @return The builder instance.
+		 */
+		public XrBuilder withBlocks(final List<XrBlock> blocks)
+		{
+			if (blocks != null)
+			{
+				this.blocks.addAll(blocks);
+			}
+
+			return this;
+		}
+
+
+		/**
+		 * Build the packet.
+		 *
+		 * @return The packet instance.
+		 *
+		 * @throws IllegalArgumentException If there is a problem with the supplied packet data.
+		 */
+		public XrRTCPPacket build()
+		{
+			if (blocks.contains(null))
+			{
+				throw new IllegalArgumentException("blocks cannot contain null");
+			}
+
+			return new XrRTCPPacket(ssrcIdentifier, blocks);
+		}
+	}
+
+}
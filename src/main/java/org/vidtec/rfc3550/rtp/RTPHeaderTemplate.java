@@ -0,0 +1,361 @@
+package org.vidtec.rfc3550.rtp;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.vidtec.rfc3550.memory.PacketHeaders;
+
+/**
+ * A pre-serialized RTP header for a single sending stream.
+ *
+ * For a sender almost every header field is constant (V, P, X, CC, PT, SSRC, CSRCs
+ * and the extension) - only the marker, sequence number and timestamp change per packet.
+ * This template serializes the header once, and then stamps it into an output buffer
+ * patching in the marker, sequence number and timestamp.
+ *
+ * The sequence number is advanced on every stamp (wrapping at 16 bits), and the
+ * timestamp is advanced explicitly (wrapping at 32 bits) via advanceTimestamp().
+ *
+ * NB: This class is NOT thread-safe, it is expected to be owned by a single sending thread.
+ */
+public final class RTPHeaderTemplate
+{
+
+	/** The serialized header, with no marker, sequence number or timestamp set. */
+	private final byte[] header;
+
+	/** The payload type for this stream. */
+	private final short payloadType;
+
+	/** The synchronisation source identifier (SSRC). */
+	private final long ssrcIdentifier;
+
+	/** The next sequence number to be stamped (16-bit). */
+	private int sequenceNumber;
+
+	/** The current timestamp (32-bit). */
+	private long timestamp;
+
+
+	/**
+	 * Create a header template from a validated prototype packet.
+	 *
+	 * @param prototype The packet to take the constant header fields from.
+	 */
+	private RTPHeaderTemplate(final RTPPacket prototype)
+	{
+		final byte[] data = prototype.asByteArray();
+
+		// Only keep the header, the payload (and padding) is supplied per packet.
+		header = Arrays.copyOf(data, prototype.packetLength() - prototype.payloadLengthRaw());
+
+		// Clear the padding and marker bits, the padding is never templated, the marker is stamped.
+		header[0] = (byte)(header[0] & ~0x20);
+		header[1] = (byte)(header[1] & 0x7F);
+
+		payloadType = prototype.payloadType();
+		ssrcIdentifier = prototype.ssrcIdentifier();
+		sequenceNumber = prototype.sequenceNumber();
+		timestamp = prototype.timestamp();
+	}
+
+
+	/**
+	 * Get the length of the templated header.
+	 *
+	 * @return The header length in bytes (12 - 76 + extension length).
+	 */
+	public int headerLength()
+	{
+		return header.length;
+	}
+
+
+	/**
+	 * Gets the payload type.
+	 *
+	 * @return The payload type from 0 - 127.
+	 */
+	public short payloadType()
+	{
+		return payloadType;
+	}
+
+
+	/**
+	 * Gets the sync. source identifier.
+	 *
+	 * @return The ssrc identifier as a 32 bit unsigned integer.
+	 */
+	public long ssrcIdentifier()
+	{
+		return ssrcIdentifier;
+	}
+
+
+	/**
+	 * Gets the sequence number that will be used for the next stamped header.
+	 *
+	 * @return The next sequence number ranging from 0 - 65,535 (16-bit integer).
+	 */
+	public int sequenceNumber()
+	{
+		return sequenceNumber;
+	}
+
+
+	/**
+	 * Gets the timestamp that will be used for the next stamped header.
+	 *
+	 * @return The timestamp as a 32-bit unsigned integer.
+	 */
+	public long timestamp()
+	{
+		return timestamp;
+	}
+
+
+	/**
+	 * Advance the timestamp by a number of clock ticks, wrapping at 32 bits.
+	 *
+	 * @param increment The number of clock ticks to advance by.
+	 *
+	 * @throws IllegalArgumentException If the increment is not a valid 32-bit unsigned value.
+	 */
+	public void advanceTimestamp(final long increment)
+	{
+		if (increment > 0xFFFFFFFFL || increment < 0)
+		{
+			throw new IllegalArgumentException("Expected valid timestamp increment not " + increment);
+		}
+
+		timestamp = 0xFFFFFFFFL & (timestamp + increment);
+	}
+
+
+	/**
+	 * Stamp the header into the buffer at its current position, advancing the position by headerLength().
+	 * NB: The sequence number is advanced (with wraparound) after stamping.
+	 *
+	 * @param bb The buffer to write the header to.
+	 * @param marker true if the marker should be set on this packet, false otherwise.
+	 * @return The sequence number that was stamped into the header.
+	 *
+	 * @throws BufferOverflowException If there is not enough space remaining in the buffer.
+	 */
+	public int stamp(final ByteBuffer bb, final boolean marker)
+	{
+		final int position = bb.position();
+		bb.put(header);
+
+		bb.put(position + 1, (byte)(marker ? 0x80 | payloadType : payloadType));
+		PacketHeaders.putShort(bb, position + 2, sequenceNumber);
+		PacketHeaders.putInt(bb, position + 4, timestamp);
+
+		return nextSequenceNumber();
+	}
+
+
+	/**
+	 * Stamp the header into the byte[] at a given offset.
+	 * NB: The sequence number is advanced (with wraparound) after stamping.
+	 *
+	 * @param data The byte[] to write the header to.
+	 * @param offset The offset in the byte[] to start writing at.
+	 * @param marker true if the marker should be set on this packet, false otherwise.
+	 * @return The sequence number that was stamped into the header.
+	 *
+	 * @throws IndexOutOfBoundsException If there is not enough space in the byte[].
+	 */
+	public int stamp(final byte[] data, final int offset, final boolean marker)
+	{
+		System.arraycopy(header, 0, data, offset, header.length);
+
+		data[offset + 1] = (byte)(marker ? 0x80 | payloadType : payloadType);
+		data[offset + 2] = (byte)(sequenceNumber >> 8);
+		data[offset + 3] = (byte)sequenceNumber;
+		data[offset + 4] = (byte)(timestamp >> 24);
+		data[offset + 5] = (byte)(timestamp >> 16);
+		data[offset + 6] = (byte)(timestamp >> 8);
+		data[offset + 7] = (byte)timestamp;
+
+		return nextSequenceNumber();
+	}
+
+
+	/**
+	 * Write a full packet (header and payload) into the buffer at its current position.
+	 * NB: The sequence number is advanced (with wraparound) after writing.
+	 *
+	 * @param bb The buffer to write the packet to.
+	 * @param payload The payload data.
+	 * @param offset The offset of the payload within the payload array.
+	 * @param length The length of the payload.
+	 * @param marker true if the marker should be set on this packet, false otherwise.
+	 * @return The number of bytes written.
+	 *
+	 * @throws IllegalArgumentException If the payload is null or empty.
+	 * @throws BufferOverflowException If there is not enough space remaining in the buffer.
+	 */
+	public int write(final ByteBuffer bb, final byte[] payload, final int offset, final int length, final boolean marker)
+	{
+		if (payload == null || length <= 0)
+		{
+			throw new IllegalArgumentException("Expected valid payload not null or empty");
+		}
+		if (bb.remaining() < header.length + length)
+		{
+			throw new BufferOverflowException();
+		}
+
+		stamp(bb, marker);
+		bb.put(payload, offset, length);
+
+		return header.length + length;
+	}
+
+
+	/**
+	 * Create the next packet in the stream from this template.
+	 * NB: The sequence number is advanced (with wraparound) after creation.
+	 *
+	 * @param payload The payload data.
+	 * @param marker true if the marker should be set on this packet, false otherwise.
+	 * @return The packet instance.
+	 *
+	 * @throws IllegalArgumentException If the payload is null or empty.
+	 */
+	public RTPPacket nextPacket(final byte[] payload, final boolean marker)
+	{
+		if (payload == null || payload.length == 0)
+		{
+			throw new IllegalArgumentException("Expected valid payload not null or empty");
+		}
+
+		final byte[] data = new byte[header.length + payload.length];
+		stamp(data, 0, marker);
+		System.arraycopy(payload, 0, data, header.length, payload.length);
+
+		return RTPPacket.fromByteArray(data);
+	}
+
+
+	/**
+	 * Advance the sequence number, wrapping at 16 bits.
+	 *
+	 * @return The sequence number prior to advancing.
+	 */
+	private int nextSequenceNumber()
+	{
+		final int current = sequenceNumber;
+		sequenceNumber = 0xFFFF & (sequenceNumber + 1);
+		return current;
+	}
+
+
+	/**
+	 * Create a header template from an existing packet.
+	 * NB: The first stamped header will use the sequence number and timestamp of the given packet.
+	 * NB: The marker and padding of the given packet are not templated.
+	 *
+	 * @param packet The packet to take the header fields from.
+	 * @return The template instance.
+	 *
+	 * @throws IllegalArgumentException If the packet is null.
+	 */
+	public static RTPHeaderTemplate fromPacket(final RTPPacket packet)
+	{
+		if (packet == null)
+		{
+			throw new IllegalArgumentException("packet cannot be null");
+		}
+
+		return new RTPHeaderTemplate(packet);
+	}
+
+
+	/**
+	 * Creates a builder to manually build an {@link RTPHeaderTemplate}.
+	 *
+	 * @return The builder instance.
+	 */
+	public static Builder builder()
+	{
+		return new Builder();
+	}
+
+
+	/**
+	 * A Builder class to build {@link RTPHeaderTemplate} instances.
+	 */
+	public static final class Builder
+	{
+		/** The prototype packet builder, used so that the header fields are validated as per RFC 3550. */
+		private final RTPPacket.Builder prototype = RTPPacket.builder();
+
+
+		/**
+		 * Private constructor.
+		 */
+		private Builder() { /* Empty Constructor */ }
+
+
+		/**
+		 * This template should have required header fields set.
+		 *
+		 * @param payloadType The payload type.
+		 * @param sequenceNumber The initial sequence number.
+		 * @param timestamp The initial timestamp.
+		 * @param ssrc The ssrc identifier.
+		 * @return The builder instance.
+		 */
+		public Builder withRequiredHeaderFields(final int payloadType, final int sequenceNumber, final long timestamp, final long ssrc)
+		{
+			prototype.withRequiredHeaderFields(payloadType, sequenceNumber, timestamp, ssrc);
+			return this;
+		}
+
+
+		/**
+		 * This template should have csrc identifiers set.
+		 *
+		 * @param csrcIdentifiers The csrc identifiers to set.
+		 * @return The builder instance.
+		 */
+		public Builder withCsrcIdentifiers(final long ... csrcIdentifiers)
+		{
+			prototype.withCsrcIdentifiers(csrcIdentifiers);
+			return this;
+		}
+
+
+		/**
+		 * This template should have a header extension set.
+		 *
+		 * @param extensionProfile The profile.
+		 * @param header The header data.
+		 * @return The builder instance.
+		 */
+		public Builder withHeaderExtension(final int extensionProfile, final byte[] header)
+		{
+			prototype.withHeaderExtension(extensionProfile, header);
+			return this;
+		}
+
+
+		/**
+		 * Build the template.
+		 *
+		 * @return The template instance.
+		 *
+		 * @throws IllegalArgumentException If there is a problem with the supplied header data.
+		 */
+		public RTPHeaderTemplate build()
+		{
+			// A single byte placeholder payload is used, as a packet cannot be built without one.
+			return new RTPHeaderTemplate(prototype.withPayload(new byte[1]).build());
+		}
+	}
+
+}
@@ -2,7 +2,9 @@ package org.vidtec.rfc3550.rtp;
 
 import java.net.DatagramPacket;
 import java.net.InetAddress;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
 import java.util.Objects;
 
@@ -588,31 +590,70 @@ public class RTPPacket implements Comparable<RTPPacket>
 	public byte[] asByteArray()
 	{
 		final byte[] data = new byte[packetLength()];
-		final ByteBuffer bb = ByteBuffer.wrap(data);
+		writeTo(ByteBuffer.wrap(data));
 		
-		bb.put((byte)(VERSION << 6 | (isPadded() ? 0x20 : 0x00) | (hasExtension() ? 0x10 : 0x00) | csrcCount() ));
-		bb.put((byte)(hasMarker() ? 0x80 | payloadType : 0x00 | payloadType));
-		bb.putShort((short)sequenceNumber);
-		bb.putInt((int)timestamp);
-		bb.putInt((int)ssrcIdentifier);
-		
-		Arrays.stream(csrcIdentifiers).forEach(c -> bb.putInt((int)c));
-
-		if (hasExtension())
+		return data;
+	}
+	
+	
+	/**
+	 * Writes the packet data into a buffer at its current position, advancing the position by packetLength().
+	 * NB: No intermediate copies are made, so this is suitable for encoding into large (direct) send buffers.
+	 * 
+	 * @param bb The buffer to write the packet data to.
+	 * @return The number of bytes written.
+	 * 
+	 * @throws BufferOverflowException If there is not enough space remaining in the buffer.
+	 */
+	public int writeTo(final ByteBuffer bb)
+	{
+		final int length = packetLength();
+		if (bb.remaining() < length)
 		{
-			bb.putShort((short)extensionProfile);
-			bb.putShort((short)(0xFFFF & extensionHeader.length));
-			bb.put(extensionHeader);
+			throw new BufferOverflowException();
 		}
 		
-		bb.put(payload);
+		// Packet data is always written in network order, regardless of the buffer's order.
+		final ByteOrder order = bb.order();
+		bb.order(ByteOrder.BIG_ENDIAN);
+		try
+		{
+			bb.put((byte)(VERSION << 6 | (isPadded() ? 0x20 : 0x00) | (hasExtension() ? 0x10 : 0x00) | csrcCount() ));
+			bb.put((byte)(hasMarker() ? 0x80 | payloadType : 0x00 | payloadType));
+			bb.putShort((short)sequenceNumber);
+			bb.putInt((int)timestamp);
+			bb.putInt((int)ssrcIdentifier);
 		
-		if (isPadded()) 
+			for (final long csrc : csrcIdentifiers)
+			{
+				bb.putInt((int)csrc);
+			}
+
+			if (hasExtension())
+			{
+				bb.putShort((short)extensionProfile);
+				bb.putShort((short)(0xFFFF & extensionHeader.length));
+				bb.put(extensionHeader);
+			}
+		
+			bb.put(payload);
+		
+			if (isPadded()) 
+			{
+				// Padding is nulls, with the final byte as the padding count.
+				for (int i = 0 ; i < paddingBytes - 1 ; i++)
+				{
+					bb.put((byte)0x00);
+				}
+				bb.put((byte)paddingBytes);
+			}
+		}
+		finally
 		{
-			data[data.length - 1] = (byte)paddingBytes;
+			bb.order(order);
 		}
 		
-		return data;
+		return length;
 	}
 	
 	
@@ -0,0 +1,380 @@
+package org.vidtec.rfc3550.rtp;
+
+import java.nio.ByteBuffer;
+
+import org.vidtec.rfc3550.memory.PacketHeaders;
+
+/**
+ * A re-usable, read-only view of an RTP packet held in a ByteBuffer.
+ *
+ * Unlike {@link RTPPacket}, a view does not copy any of the packet data, the header fields are
+ * read directly from the underlying buffer when requested. A single view instance can be
+ * re-pointed at many packets (e.g. slots in a receive ring, or records in a capture file)
+ * so that no objects are created per packet.
+ *
+ * The header is validated as per RFC 3550 when the view is wrapped, using the same rules as
+ * {@link RTPPacket#fromByteArray(byte[])}. Use toPacket() to create an immutable packet from the view.
+ *
+ * Fields are read in network order regardless of the byte order set on the buffer.
+ *
+ * NB: The view is only valid while the underlying buffer region is not modified.
+ * NB: This class is NOT thread-safe.
+ */
+public final class RTPPacketView
+{
+
+	/** The buffer holding the packet. */
+	private ByteBuffer buffer;
+
+	/** The offset of the packet in the buffer. */
+	private int offset;
+
+	/** The length of the packet in the buffer. */
+	private int length;
+
+	/** The length of the header (including csrcs and extension). */
+	private int headerLength;
+
+	/** The number of padding bytes. */
+	private int paddingBytes;
+
+
+	/**
+	 * Point this view at a packet in a buffer.
+	 * NB: The buffer position and limit are not used or modified.
+	 *
+	 * @param bb The buffer holding the packet.
+	 * @param offset The offset of the packet in the buffer.
+	 * @param length The length of the packet.
+	 * @return This view instance.
+	 *
+	 * @throws IllegalArgumentException If there is a problem with the validity of the packet.
+	 */
+	public RTPPacketView wrap(final ByteBuffer bb, final int offset, final int length)
+	{
+		if (bb == null)
+		{
+			throw new IllegalArgumentException("packet data cannot be null");
+		}
+		if (offset < 0 || length < 0 || offset + length > bb.capacity())
+		{
+			throw new IllegalArgumentException("Invalid packet region, offset " + offset + " and length " + length);
+		}
+		if (length < 13)
+		{
+			// As per RFC 3550 - the header is 12 bytes, there must be data - anything less is a bad packet.
+			throw new IllegalArgumentException("Packet too short, expecting at least 13 bytes, but found " + length);
+		}
+
+		final int firstByte = bb.get(offset);
+		if ((firstByte & 0xC0) != RTPPacket.VERSION << 6)
+		{
+			// This is not a valid version number.
+			throw new IllegalArgumentException("Invalid version number found, expecting " + RTPPacket.VERSION);
+		}
+
+		int header = 12 + 4 * (firstByte & 0x0F);
+		if (length < header + 1)
+		{
+			// As per RFC 3550 - each csrc is 4 bytes, there must be data - anything less is a bad packet.
+			throw new IllegalArgumentException("Packet too short, expecting at least " + (header + 1) + " bytes, but found " + length);
+		}
+
+		if ((firstByte & 0x10) == 0x10)
+		{
+			if (length < header + 4 + 1)
+			{
+				// As per RFC 3550 - extn desc is 4 min bytes, there must be data - anything less is a bad packet.
+				throw new IllegalArgumentException("Packet too short, expecting at least " + (header + 4 + 1) + " bytes, but found " + length);
+			}
+
+			// NB: The extension length is in bytes, as per RTPPacket.
+			header += 4 + PacketHeaders.getUnsignedShort(bb, offset + header + 2);
+			if (length < header + 1)
+			{
+				throw new IllegalArgumentException("Packet too short, expecting at least " + (header + 1) + " bytes, but found " + length);
+			}
+		}
+
+		final int padding = ((firstByte & 0x20) == 0x20) ? PacketHeaders.getUnsignedByte(bb, offset + length - 1) : 0;
+		if (length - header - padding < 0)
+		{
+			throw new IllegalArgumentException("Packet too short, expecting at least " + (header + padding) + " bytes, but found " + length);
+		}
+
+		this.buffer = bb;
+		this.offset = offset;
+		this.length = length;
+		this.headerLength = header;
+		this.paddingBytes = padding;
+
+		return this;
+	}
+
+
+	/**
+	 * Get the RTP protocol version - should be 2 as per RFC 3550.
+	 *
+	 * @return The RTP protocol version.
+	 */
+	public short version()
+	{
+		return RTPPacket.VERSION;
+	}
+
+
+	/**
+	 * Indicates if this packet is padded.
+	 *
+	 * @return true if padded, false otherwise.
+	 */
+	public boolean isPadded()
+	{
+		return paddingBytes > 0;
+	}
+
+
+	/**
+	 * Gets the number of padding bytes.
+	 *
+	 * @return The number of padding bytes used, 0 indicates no padding.
+	 */
+	public short paddedBytesCount()
+	{
+		return (short)paddingBytes;
+	}
+
+
+	/**
+	 * Indicates if this packet has an extension header.
+	 *
+	 * @return true if extended, false otherwise.
+	 */
+	public boolean hasExtension()
+	{
+		return (buffer.get(offset) & 0x10) == 0x10;
+	}
+
+
+	/**
+	 * Gets the number of contributing source elements.
+	 *
+	 * @return An integer count from 0 - 15.
+	 */
+	public short csrcCount()
+	{
+		return (short)(buffer.get(offset) & 0x0F);
+	}
+
+
+	/**
+	 * Gets a contributing source identifier.
+	 *
+	 * @param index The csrc index, from 0 to csrcCount() - 1.
+	 * @return The csrc identifier as a 32 bit unsigned integer.
+	 *
+	 * @throws IndexOutOfBoundsException If the index is not valid.
+	 */
+	public long csrcIdentifier(final int index)
+	{
+		if (index < 0 || index >= csrcCount())
+		{
+			throw new IndexOutOfBoundsException("Invalid csrc index " + index);
+		}
+
+		return PacketHeaders.getUnsignedInt(buffer, offset + 12 + 4 * index);
+	}
+
+
+	/**
+	 * Indicates if the packets has a marker set.
+	 *
+	 * @return true if marker set, false otherwise.
+	 */
+	public boolean hasMarker()
+	{
+		return PacketHeaders.rtpMarker(buffer, offset);
+	}
+
+
+	/**
+	 * Gets the payload type.
+	 *
+	 * @return The payload type from 0 - 127.
+	 */
+	public short payloadType()
+	{
+		return (short)PacketHeaders.rtpPayloadType(buffer, offset);
+	}
+
+
+	/**
+	 * Gets the packet sequence number.
+	 *
+	 * @return The packet sequence number ranging from 0 - 65,535 (16-bit integer).
+	 */
+	public int sequenceNumber()
+	{
+		return PacketHeaders.rtpSequenceNumber(buffer, offset);
+	}
+
+
+	/**
+	 * Gets the packet timestamp.
+	 *
+	 * @return The packet timestamp as a 32-bit unsigned integer.
+	 */
+	public long timestamp()
+	{
+		return PacketHeaders.rtpTimestamp(buffer, offset);
+	}
+
+
+	/**
+	 * Gets the sync. source identifier.
+	 *
+	 * @return The ssrc identifier as a 32 bit unsigned integer.
+	 */
+	public long ssrcIdentifier()
+	{
+		return PacketHeaders.rtpSsrc(buffer, offset);
+	}
+
+
+	/**
+	 * Get the header extension profile (if extension is present).
+	 *
+	 * @return The extension profile, or -1 if no extension is present.
+	 */
+	public int extensionProfile()
+	{
+		return hasExtension() ? PacketHeaders.getUnsignedShort(buffer, offset + 12 + 4 * csrcCount()) : -1;
+	}
+
+
+	/**
+	 * Get the header extension length (if extension is present).
+	 *
+	 * @return The extension length, or -1 if no extension is present.
+	 */
+	public int extensionLength()
+	{
+		return hasExtension() ? PacketHeaders.getUnsignedShort(buffer, offset + 14 + 4 * csrcCount()) : -1;
+	}
+
+
+	/**
+	 * Get the length of the header, including csrcs and extension.
+	 *
+	 * @return The header length in bytes.
+	 */
+	public int headerLength()
+	{
+		return headerLength;
+	}
+
+
+	/**
+	 * Get the offset of the payload in the underlying buffer.
+	 *
+	 * @return The payload offset.
+	 */
+	public int payloadOffset()
+	{
+		return offset + headerLength;
+	}
+
+
+	/**
+	 * Gets the payload length WITHOUT PADDING.
+	 *
+	 * @return The payload length - padding byte count.
+	 */
+	public int payloadLength()
+	{
+		return length - headerLength - paddingBytes;
+	}
+
+
+	/**
+	 * Return the full length of the packet in bytes.
+	 *
+	 * @return The number of bytes in this packet.
+	 */
+	public int packetLength()
+	{
+		return length;
+	}
+
+
+	/**
+	 * Get the buffer that this view is reading from.
+	 *
+	 * @return The underlying buffer.
+	 */
+	public ByteBuffer buffer()
+	{
+		return buffer;
+	}
+
+
+	/**
+	 * Get the offset of the packet in the underlying buffer.
+	 *
+	 * @return The packet offset.
+	 */
+	public int offset()
+	{
+		return offset;
+	}
+
+
+	/**
+	 * Copy the payload (with padding REMOVED) into a byte[].
+	 *
+	 * @param data The byte[] to copy to.
+	 * @param dataOffset The offset in the byte[] to copy to.
+	 * @return The number of bytes copied.
+	 *
+	 * @throws IndexOutOfBoundsException If the byte[] is too small.
+	 */
+	public int copyPayload(final byte[] data, final int dataOffset)
+	{
+		final int payloadLength = payloadLength();
+		final ByteBuffer bb = buffer.duplicate();
+		bb.limit(payloadOffset() + payloadLength).position(payloadOffset());
+		bb.get(data, dataOffset, payloadLength);
+
+		return payloadLength;
+	}
+
+
+	/**
+	 * Gets the packet data as a byte[].
+	 *
+	 * @return a copy of the RTP packet data.
+	 */
+	public byte[] asByteArray()
+	{
+		final byte[] data = new byte[length];
+		final ByteBuffer bb = buffer.duplicate();
+		bb.limit(offset + length).position(offset);
+		bb.get(data);
+
+		return data;
+	}
+
+
+	/**
+	 * Create an immutable packet from the data in this view.
+	 *
+	 * @return The RTPPacket instance.
+	 *
+	 * @throws IllegalArgumentException If there is a problem with the validity of the packet.
+	 */
+	public RTPPacket toPacket()
+	{
+		return RTPPacket.fromByteArray(asByteArray());
+	}
+
+}
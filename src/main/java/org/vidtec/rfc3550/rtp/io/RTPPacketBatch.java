@@ -0,0 +1,312 @@
+package org.vidtec.rfc3550.rtp.io;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+import org.vidtec.rfc3550.rtp.RTPHeaderTemplate;
+import org.vidtec.rfc3550.rtp.RTPPacket;
+
+/**
+ * A batch of RTP packets encoded contiguously into a single direct buffer, with
+ * an offset/length table describing each packet.
+ *
+ * This is intended for bursts of packets (e.g. a video frame split into many packets)
+ * that are sent back to back. Packets are encoded once into the batch buffer, and the
+ * batch is then flushed to a DatagramChannel with one send per packet and no per-packet
+ * allocation or copying.
+ *
+ * The batch can be re-used by calling clear() once it has been flushed.
+ *
+ * NB: This class is NOT thread-safe, it is expected to be owned by a single sending thread.
+ */
+public final class RTPPacketBatch
+{
+
+	/** The buffer that packets are encoded into. */
+	private final ByteBuffer buffer;
+
+	/** A view of the buffer used when sending, so the encode position is not disturbed. */
+	private final ByteBuffer sendView;
+
+	/** The offset of each packet in the buffer. */
+	private final int[] offsets;
+
+	/** The length of each packet in the buffer. */
+	private final int[] lengths;
+
+	/** The number of packets in the batch. */
+	private int count;
+
+	/** The number of packets in the batch already sent. */
+	private int sent;
+
+
+	/**
+	 * Create a packet batch.
+	 *
+	 * @param capacity The capacity of the batch buffer in bytes.
+	 * @param maxPackets The maximum number of packets the batch can hold.
+	 *
+	 * @throws IllegalArgumentException If the capacity or packet count is invalid.
+	 */
+	private RTPPacketBatch(final int capacity, final int maxPackets)
+	{
+		if (capacity <= 0)
+		{
+			throw new IllegalArgumentException("Expected valid capacity not " + capacity);
+		}
+		if (maxPackets <= 0)
+		{
+			throw new IllegalArgumentException("Expected valid max packets not " + maxPackets);
+		}
+
+		buffer = ByteBuffer.allocateDirect(capacity);
+		sendView = buffer.duplicate();
+		offsets = new int[maxPackets];
+		lengths = new int[maxPackets];
+	}
+
+
+	/**
+	 * Add a packet to the batch.
+	 *
+	 * @param packet The packet to encode into the batch.
+	 * @return true if the packet was added, false if the batch does not have room for it.
+	 *
+	 * @throws IllegalArgumentException If the packet is null.
+	 */
+	public boolean add(final RTPPacket packet)
+	{
+		if (packet == null)
+		{
+			throw new IllegalArgumentException("packet cannot be null");
+		}
+		if (count == offsets.length || buffer.remaining() < packet.packetLength())
+		{
+			return false;
+		}
+
+		offsets[count] = buffer.position();
+		lengths[count] = packet.writeTo(buffer);
+		count++;
+
+		return true;
+	}
+
+
+	/**
+	 * Add a packet to the batch from a header template and a payload slice.
+	 * NB: The template sequence number is only advanced if the packet is added.
+	 *
+	 * @param template The header template for the stream.
+	 * @param payload The payload data.
+	 * @param offset The offset of the payload within the payload array.
+	 * @param length The length of the payload.
+	 * @param marker true if the marker should be set on this packet, false otherwise.
+	 * @return true if the packet was added, false if the batch does not have room for it.
+	 *
+	 * @throws IllegalArgumentException If the template is null, or the payload is null or empty.
+	 */
+	public boolean add(final RTPHeaderTemplate template, final byte[] payload, final int offset, final int length, final boolean marker)
+	{
+		if (template == null)
+		{
+			throw new IllegalArgumentException("template cannot be null");
+		}
+		if (count == offsets.length || buffer.remaining() < template.headerLength() + length)
+		{
+			return false;
+		}
+
+		offsets[count] = buffer.position();
+		lengths[count] = template.write(buffer, payload, offset, length, marker);
+		count++;
+
+		return true;
+	}
+
+
+	/**
+	 * Get the number of packets in the batch.
+	 *
+	 * @return The packet count.
+	 */
+	public int size()
+	{
+		return count;
+	}
+
+
+	/**
+	 * Determine if the batch has any packets.
+	 *
+	 * @return true if the batch is empty, false otherwise.
+	 */
+	public boolean isEmpty()
+	{
+		return count == 0;
+	}
+
+
+	/**
+	 * Get the number of packets in the batch that have not yet been sent.
+	 *
+	 * @return The pending packet count.
+	 */
+	public int pending()
+	{
+		return count - sent;
+	}
+
+
+	/**
+	 * Get the number of bytes used by the encoded packets.
+	 *
+	 * @return The number of bytes in the batch.
+	 */
+	public int byteLength()
+	{
+		return buffer.position();
+	}
+
+
+	/**
+	 * Get the number of bytes still available in the batch buffer.
+	 *
+	 * @return The remaining capacity in bytes.
+	 */
+	public int remaining()
+	{
+		return buffer.remaining();
+	}
+
+
+	/**
+	 * Get the offset of a packet in the batch buffer.
+	 *
+	 * @param index The packet index.
+	 * @return The offset in bytes.
+	 *
+	 * @throws IndexOutOfBoundsException If the index is not valid.
+	 */
+	public int offset(final int index)
+	{
+		checkIndex(index);
+		return offsets[index];
+	}
+
+
+	/**
+	 * Get the length of a packet in the batch buffer.
+	 *
+	 * @param index The packet index.
+	 * @return The length in bytes.
+	 *
+	 * @throws IndexOutOfBoundsException If the index is not valid.
+	 */
+	public int length(final int index)
+	{
+		checkIndex(index);
+		return lengths[index];
+	}
+
+
+	/**
+	 * Get a read-only view of the batch buffer.
+	 * NB: Use offset() and length() to locate packets within the buffer.
+	 *
+	 * @return The read-only buffer, positioned at 0 and limited to byteLength().
+	 */
+	public ByteBuffer buffer()
+	{
+		final ByteBuffer view = buffer.asReadOnlyBuffer();
+		view.flip();
+		return view;
+	}
+
+
+	/**
+	 * Send the pending packets in the batch to a given address.
+	 *
+	 * If the channel is non-blocking and the socket send buffer fills up, sending stops
+	 * and the remaining packets are left pending, so this can be called again once the
+	 * channel is writable.
+	 *
+	 * @param channel The channel to send with.
+	 * @param target The address to send to, or null to write to a connected channel.
+	 * @return The number of packets sent by this call.
+	 *
+	 * @throws IOException If there is an I/O error sending the packets.
+	 * @throws IllegalArgumentException If the channel is null.
+	 */
+	public int sendTo(final DatagramChannel channel, final SocketAddress target) throws IOException
+	{
+		if (channel == null)
+		{
+			throw new IllegalArgumentException("channel cannot be null");
+		}
+
+		final int start = sent;
+		while (sent < count)
+		{
+			sendView.limit(offsets[sent] + lengths[sent]).position(offsets[sent]);
+
+			final int written = target == null ? channel.write(sendView) : channel.send(sendView, target);
+			if (written == 0)
+			{
+				// No room in the socket buffer, try again later.
+				break;
+			}
+
+			sent++;
+		}
+
+		return sent - start;
+	}
+
+
+	/**
+	 * Clear the batch so that it can be re-used.
+	 * NB: Any pending packets are discarded.
+	 */
+	public void clear()
+	{
+		buffer.clear();
+		count = 0;
+		sent = 0;
+	}
+
+
+	/**
+	 * Validate a packet index.
+	 *
+	 * @param index The index to check.
+	 *
+	 * @throws IndexOutOfBoundsException If the index is not valid.
+	 */
+	private void checkIndex(final int index)
+	{
+		if (index < 0 || index >= count)
+		{
+			throw new IndexOutOfBoundsException("Invalid packet index " + index + ", batch has " + count + " packets");
+		}
+	}
+
+
+	/**
+	 * Create a batch with a given capacity.
+	 *
+	 * @param capacity The capacity of the batch buffer in bytes.
+	 * @param maxPackets The maximum number of packets the batch can hold.
+	 * @return The batch instance.
+	 *
+	 * @throws IllegalArgumentException If the capacity or packet count is invalid.
+	 */
+	public static RTPPacketBatch allocate(final int capacity, final int maxPackets)
+	{
+		return new RTPPacketBatch(capacity, maxPackets);
+	}
+
+}
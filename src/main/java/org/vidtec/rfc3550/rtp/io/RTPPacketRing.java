@@ -0,0 +1,322 @@
+package org.vidtec.rfc3550.rtp.io;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+import org.vidtec.rfc3550.rtp.RTPPacketView;
+
+/**
+ * A preallocated ring of fixed-size datagram slots in direct memory, used to drain
+ * many datagrams from a DatagramChannel per selector wakeup.
+ *
+ * Each receive() call fills free slots until the channel has no more datagrams (or the ring
+ * is full), recording the length and source address of each. The received datagrams are then
+ * exposed as {@link RTPPacketView}s over the slot memory, and released in arrival order once processed.
+ *
+ * Source addresses are recorded without creating any new objects in this class: for a connected
+ * channel the remote address is shared across all slots, otherwise the address returned by
+ * the channel is held (the JDK re-uses this instance while the sender is unchanged).
+ *
+ * NB: Datagrams larger than the slot size are truncated by the channel, so the slot size should be
+ *     at least the path MTU.
+ * NB: This class is NOT thread-safe, it is expected to be owned by a single receiving thread.
+ */
+public final class RTPPacketRing
+{
+
+	/** The slot memory. */
+	private final ByteBuffer buffer;
+
+	/** A pre-sliced view of each slot, used as the channel read target. */
+	private final ByteBuffer[] slots;
+
+	/** The length of the datagram held in each slot. */
+	private final int[] lengths;
+
+	/** The source address of the datagram held in each slot. */
+	private final SocketAddress[] sources;
+
+	/** The size of each slot in bytes. */
+	private final int slotSize;
+
+	/** The index of the oldest occupied slot. */
+	private int head;
+
+	/** The number of occupied slots. */
+	private int size;
+
+
+	/**
+	 * Create a packet ring.
+	 *
+	 * @param slotCount The number of slots in the ring.
+	 * @param slotSize The size of each slot in bytes.
+	 *
+	 * @throws IllegalArgumentException If the slot count or size is invalid.
+	 */
+	private RTPPacketRing(final int slotCount, final int slotSize)
+	{
+		if (slotCount <= 0)
+		{
+			throw new IllegalArgumentException("Expected valid slot count not " + slotCount);
+		}
+		if (slotSize < 13 || (long)slotCount * slotSize > Integer.MAX_VALUE)
+		{
+			throw new IllegalArgumentException("Expected valid slot size not " + slotSize);
+		}
+
+		this.slotSize = slotSize;
+		this.buffer = ByteBuffer.allocateDirect(slotCount * slotSize);
+		this.slots = new ByteBuffer[slotCount];
+		this.lengths = new int[slotCount];
+		this.sources = new SocketAddress[slotCount];
+
+		for (int i = 0 ; i < slotCount ; i++)
+		{
+			final ByteBuffer bb = buffer.duplicate();
+			bb.limit((i + 1) * slotSize).position(i * slotSize);
+			slots[i] = bb.slice();
+		}
+	}
+
+
+	/**
+	 * Drain as many datagrams as there are free slots from the channel.
+	 *
+	 * @param channel The channel to receive from.
+	 * @return The number of datagrams received.
+	 *
+	 * @throws IOException If there is an I/O error receiving.
+	 * @throws IllegalArgumentException If the channel is null.
+	 */
+	public int receive(final DatagramChannel channel) throws IOException
+	{
+		return receive(channel, slots.length);
+	}
+
+
+	/**
+	 * Drain up to a given number of datagrams from the channel.
+	 * NB: The channel should be non-blocking (as it is when used with a selector),
+	 *     a blocking channel will only receive a single datagram per call.
+	 *
+	 * @param channel The channel to receive from.
+	 * @param max The maximum number of datagrams to receive.
+	 * @return The number of datagrams received.
+	 *
+	 * @throws IOException If there is an I/O error receiving.
+	 * @throws IllegalArgumentException If the channel is null.
+	 */
+	public int receive(final DatagramChannel channel, final int max) throws IOException
+	{
+		if (channel == null)
+		{
+			throw new IllegalArgumentException("channel cannot be null");
+		}
+
+		final int limit = Math.min(channel.isBlocking() ? 1 : max, slots.length - size);
+		final SocketAddress remote = channel.isConnected() ? channel.getRemoteAddress() : null;
+
+		int received = 0;
+		while (received < limit)
+		{
+			final int index = (head + size) % slots.length;
+			final ByteBuffer slot = slots[index];
+			slot.clear();
+
+			final SocketAddress source;
+			if (remote != null)
+			{
+				source = channel.read(slot) > 0 ? remote : null;
+			}
+			else
+			{
+				source = channel.receive(slot);
+			}
+
+			if (source == null)
+			{
+				// No more datagrams waiting.
+				break;
+			}
+
+			lengths[index] = slot.position();
+			sources[index] = source;
+			size++;
+			received++;
+		}
+
+		return received;
+	}
+
+
+	/**
+	 * Get the number of received datagrams held in the ring.
+	 *
+	 * @return The number of occupied slots.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+
+	/**
+	 * Get the number of slots in the ring.
+	 *
+	 * @return The slot count.
+	 */
+	public int capacity()
+	{
+		return slots.length;
+	}
+
+
+	/**
+	 * Get the size of each slot.
+	 *
+	 * @return The slot size in bytes.
+	 */
+	public int slotSize()
+	{
+		return slotSize;
+	}
+
+
+	/**
+	 * Determine if the ring holds any datagrams.
+	 *
+	 * @return true if the ring is empty, false otherwise.
+	 */
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+
+	/**
+	 * Determine if the ring has no free slots.
+	 *
+	 * @return true if the ring is full, false otherwise.
+	 */
+	public boolean isFull()
+	{
+		return size == slots.length;
+	}
+
+
+	/**
+	 * Get the length of a received datagram.
+	 *
+	 * @param index The index of the datagram, 0 is the oldest.
+	 * @return The datagram length in bytes.
+	 *
+	 * @throws IndexOutOfBoundsException If the index is not valid.
+	 */
+	public int length(final int index)
+	{
+		return lengths[slotIndex(index)];
+	}
+
+
+	/**
+	 * Get the source address of a received datagram.
+	 *
+	 * @param index The index of the datagram, 0 is the oldest.
+	 * @return The source address.
+	 *
+	 * @throws IndexOutOfBoundsException If the index is not valid.
+	 */
+	public SocketAddress source(final int index)
+	{
+		return sources[slotIndex(index)];
+	}
+
+
+	/**
+	 * Point a view at a received datagram as an RTP packet.
+	 *
+	 * @param index The index of the datagram, 0 is the oldest.
+	 * @param view The view instance to re-use.
+	 * @return The given view.
+	 *
+	 * @throws IndexOutOfBoundsException If the index is not valid.
+	 * @throws IllegalArgumentException If the datagram is not a valid RTP packet.
+	 */
+	public RTPPacketView view(final int index, final RTPPacketView view)
+	{
+		final int slot = slotIndex(index);
+		return view.wrap(buffer, slot * slotSize, lengths[slot]);
+	}
+
+
+	/**
+	 * Release the oldest datagrams, freeing their slots for re-use.
+	 *
+	 * @param count The number of datagrams to release.
+	 *
+	 * @throws IllegalArgumentException If the count is more than the number of datagrams held.
+	 */
+	public void release(final int count)
+	{
+		if (count < 0 || count > size)
+		{
+			throw new IllegalArgumentException("Cannot release " + count + " datagrams, ring holds " + size);
+		}
+
+		for (int i = 0 ; i < count ; i++)
+		{
+			sources[(head + i) % slots.length] = null;
+		}
+
+		head = (head + count) % slots.length;
+		size -= count;
+	}
+
+
+	/**
+	 * Release all of the datagrams held.
+	 */
+	public void clear()
+	{
+		release(size);
+		head = 0;
+	}
+
+
+	/**
+	 * Map a datagram index to a slot index.
+	 *
+	 * @param index The index of the datagram, 0 is the oldest.
+	 * @return The slot index.
+	 *
+	 * @throws IndexOutOfBoundsException If the index is not valid.
+	 */
+	private int slotIndex(final int index)
+	{
+		if (index < 0 || index >= size)
+		{
+			throw new IndexOutOfBoundsException("Invalid datagram index " + index + ", ring holds " + size);
+		}
+
+		return (head + index) % slots.length;
+	}
+
+
+	/**
+	 * Create a ring with a given number of slots.
+	 *
+	 * @param slotCount The number of slots in the ring.
+	 * @param slotSize The size of each slot in bytes.
+	 * @return The ring instance.
+	 *
+	 * @throws IllegalArgumentException If the slot count or size is invalid.
+	 */
+	public static RTPPacketRing allocate(final int slotCount, final int slotSize)
+	{
+		return new RTPPacketRing(slotCount, slotSize);
+	}
+
+}
@@ -0,0 +1,503 @@
+package org.vidtec.rfc3550.rtp.recovery;
+
+import org.vidtec.rfc3550.rtp.RTPPacket;
+
+/**
+ * A receive-side loss detector for a single RTP stream (ssrc), that decides which missing packets
+ * to request retransmission of (e.g. via RFC 4585 Generic NACK).
+ *
+ * The detector keeps a sliding window of the most recent extended sequence numbers (allowing for
+ * 16-bit wraparound) as a bitmap of missing packets, with a retry count and retry timer per slot.
+ * When a packet arrives beyond the highest sequence number seen, the gap is marked as missing.
+ * When a missing packet arrives (late or retransmitted) it is cleared.
+ *
+ * As in RFC 3550 appendix A.1, a packet far beyond the highest sequence number (more than the window, or
+ * MAX_DROPOUT), or far behind it (more than the window, or MAX_MISORDER), is not trusted to be part of the
+ * stream, e.g. the sender may have restarted. It is ignored, unless the next packet follows it in sequence,
+ * in which case the detector resynchronizes to the new sequence, giving up on any missing packets, without
+ * marking a gap for packets that never existed.
+ *
+ * poll() collects the missing packets whose retry timer has expired into a {@link NackBatch}. A packet
+ * is first requested once the reorder delay has passed, and then re-requested every round trip time
+ * until it arrives, it falls out of the window, or the maximum number of retries is reached.
+ *
+ * All state is held in fixed-size arrays, so no objects are created per packet, and poll() only visits
+ * missing packets, so many detectors can be serviced by a single thread.
+ *
+ * NB: Times are supplied by the caller in milliseconds, from any monotonic clock.
+ * NB: This class is NOT thread-safe.
+ */
+public final class LossDetector
+{
+
+	/** The largest forward jump in sequence numbers treated as loss, rather than a possible restart (RFC 3550 A.1). */
+	private static final int MAX_DROPOUT = 3000;
+
+	/** The largest backward jump in sequence numbers treated as reordering, rather than a possible restart (RFC 3550 A.1). */
+	private static final int MAX_MISORDER = 100;
+
+	/** The value of badSeq when no restart is suspected. */
+	private static final int NONE = -1;
+
+
+	/** The missing packet bitmap, indexed by extended sequence number modulo the window size. */
+	private final long[] missing;
+
+	/** The number of NACKs sent for each slot. */
+	private final byte[] retries;
+
+	/** The time at which each slot may next be NACKed. */
+	private final long[] retryTimes;
+
+	/** The window mask. */
+	private final int mask;
+
+	/** The largest forward jump treated as loss. */
+	private final int maxDropout;
+
+	/** The largest backward jump treated as reordering. */
+	private final int maxMisorder;
+
+	/** The maximum number of times a packet is NACKed. */
+	private final int maxRetries;
+
+	/** The time to wait for reordered packets before the first NACK. */
+	private final long reorderDelayMillis;
+
+	/** The time between NACKs for a packet. */
+	private long rttMillis;
+
+	/** The highest extended sequence number received, or -1 if none. */
+	private long highest = -1;
+
+	/** The sequence number that would confirm a suspected restart, or NONE. */
+	private int badSeq = NONE;
+
+	/** The number of packets currently missing. */
+	private int missingCount;
+
+	/** The number of missing packets that later arrived. */
+	private long recovered;
+
+	/** The number of missing packets that were given up on. */
+	private long abandoned;
+
+
+	/**
+	 * Create a loss detector.
+	 *
+	 * @param builder The builder instance to construct a detector from.
+	 *
+	 * @throws IllegalArgumentException If any of the values are invalid.
+	 */
+	private LossDetector(final Builder builder)
+	{
+		if (builder.windowSize < 64 || builder.windowSize > 0x8000 || Integer.bitCount(builder.windowSize) != 1)
+		{
+			throw new IllegalArgumentException("Expected valid window size not " + builder.windowSize);
+		}
+		if (builder.maxRetries <= 0 || builder.maxRetries > 127)
+		{
+			throw new IllegalArgumentException("Expected valid max retries not " + builder.maxRetries);
+		}
+		if (builder.reorderDelayMillis < 0)
+		{
+			throw new IllegalArgumentException("Expected valid reorder delay not " + builder.reorderDelayMillis);
+		}
+		if (builder.rttMillis <= 0)
+		{
+			throw new IllegalArgumentException("Expected valid rtt not " + builder.rttMillis);
+		}
+
+		this.missing = new long[builder.windowSize >>> 6];
+		this.retries = new byte[builder.windowSize];
+		this.retryTimes = new long[builder.windowSize];
+		this.mask = builder.windowSize - 1;
+		this.maxDropout = Math.min(mask, MAX_DROPOUT);
+		this.maxMisorder = Math.max(mask, MAX_MISORDER);
+		this.maxRetries = builder.maxRetries;
+		this.reorderDelayMillis = builder.reorderDelayMillis;
+		this.rttMillis = builder.rttMillis;
+	}
+
+
+	/**
+	 * Record a received packet.
+	 *
+	 * @param packet The packet received.
+	 * @param nowMillis The time the packet was received.
+	 * @return true if the packet was previously detected as missing, false otherwise.
+	 *
+	 * @throws IllegalArgumentException If the packet is null.
+	 */
+	public boolean received(final RTPPacket packet, final long nowMillis)
+	{
+		if (packet == null)
+		{
+			throw new IllegalArgumentException("packet cannot be null");
+		}
+
+		return received(packet.sequenceNumber(), nowMillis);
+	}
+
+
+	/**
+	 * Record a received sequence number.
+	 * NB: A packet that jumps far from the highest sequence number is ignored, unless it is the second packet in
+	 *     sequence after such a jump, in which case the detector resynchronizes to it.
+	 *
+	 * @param sequenceNumber The sequence number of the packet received.
+	 * @param nowMillis The time the packet was received.
+	 * @return true if the packet was previously detected as missing, false otherwise.
+	 */
+	public boolean received(final int sequenceNumber, final long nowMillis)
+	{
+		if (highest < 0)
+		{
+			highest = 0x10000L + (0xFFFF & sequenceNumber);
+			return false;
+		}
+
+		// Signed distance from the highest, allowing for wraparound.
+		final int delta = (short)(sequenceNumber - (int)highest);
+		final long ext = highest + delta;
+
+		if (delta > 0 && delta <= maxDropout)
+		{
+			// Mark the gap as missing, it is no wider than the window.
+			for (long e = highest + 1 ; e < ext ; e++)
+			{
+				advanceInto((int)e & mask);
+				setMissing((int)e & mask, nowMillis + reorderDelayMillis);
+			}
+
+			advanceInto((int)ext & mask);
+			highest = ext;
+			return false;
+		}
+
+		if (delta <= 0 && -delta <= maxMisorder)
+		{
+			// A duplicate, or a late or retransmitted packet, only those within the window are tracked.
+			final int slot = (int)ext & mask;
+			if (delta < 0 && -delta <= mask && isMissing(slot))
+			{
+				clearMissing(slot);
+				recovered++;
+				return true;
+			}
+			return false;
+		}
+
+		if ((0xFFFF & sequenceNumber) != badSeq)
+		{
+			// A very large jump, ignored until the next packet confirms the sender restarted.
+			badSeq = 0xFFFF & (sequenceNumber + 1);
+			return false;
+		}
+
+		// Two packets in sequence, so resynchronize without marking a gap.
+		// NB: The extended sequence number only moves forward, so it never goes negative.
+		abandonAll();
+		highest += 0xFFFF & (sequenceNumber - (int)highest);
+		badSeq = NONE;
+		return false;
+	}
+
+
+	/**
+	 * Collect the missing packets that are due to be NACKed.
+	 *
+	 * @param nowMillis The current time.
+	 * @param batch The batch to fill (any previous contents are cleared).
+	 * @return The number of sequence numbers added to the batch.
+	 *
+	 * @throws IllegalArgumentException If the batch is null or too small for this detector.
+	 */
+	public int poll(final long nowMillis, final NackBatch batch)
+	{
+		if (batch == null || batch.capacity() < retries.length)
+		{
+			throw new IllegalArgumentException("Expected batch covering at least " + retries.length + " packets");
+		}
+
+		final long base = highest - mask;
+		batch.reset((int)base);
+		if (missingCount == 0)
+		{
+			return 0;
+		}
+
+		for (int w = 0 ; w < missing.length ; w++)
+		{
+			long bits = missing[w];
+			while (bits != 0)
+			{
+				final int slot = (w << 6) + Long.numberOfTrailingZeros(bits);
+				bits &= bits - 1;
+
+				if (retryTimes[slot] > nowMillis)
+				{
+					continue;
+				}
+				if (retries[slot] >= maxRetries)
+				{
+					clearMissing(slot);
+					abandoned++;
+					continue;
+				}
+
+				retries[slot]++;
+				retryTimes[slot] = nowMillis + rttMillis;
+
+				// Offset from the base, the slot for the base is the one after the highest.
+				batch.add((slot - (int)base) & mask);
+			}
+		}
+
+		return batch.size();
+	}
+
+
+	/**
+	 * Create a batch sized for this detector.
+	 *
+	 * @return The batch instance, which can be re-used for every poll.
+	 */
+	public NackBatch newBatch()
+	{
+		return new NackBatch(retries.length);
+	}
+
+
+	/**
+	 * Update the round trip time, used as the interval between NACKs for a packet.
+	 *
+	 * @param rttMillis The round trip time in milliseconds.
+	 *
+	 * @throws IllegalArgumentException If the rtt is not valid.
+	 */
+	public void updateRtt(final long rttMillis)
+	{
+		if (rttMillis <= 0)
+		{
+			throw new IllegalArgumentException("Expected valid rtt not " + rttMillis);
+		}
+
+		this.rttMillis = rttMillis;
+	}
+
+
+	/**
+	 * Gets the highest extended sequence number received.
+	 * NB: The extended sequence number starts at 65536 + the first sequence number, so it never goes negative.
+	 *
+	 * @return The highest extended sequence number, or -1 if no packets have been received.
+	 */
+	public long highestSequenceNumber()
+	{
+		return highest;
+	}
+
+
+	/**
+	 * Gets the number of packets currently missing.
+	 *
+	 * @return The missing packet count.
+	 */
+	public int missingCount()
+	{
+		return missingCount;
+	}
+
+
+	/**
+	 * Gets the number of missing packets that later arrived.
+	 *
+	 * @return The recovered packet count.
+	 */
+	public long recoveredCount()
+	{
+		return recovered;
+	}
+
+
+	/**
+	 * Gets the number of missing packets that were given up on (max retries, or fell out of the window).
+	 *
+	 * @return The abandoned packet count.
+	 */
+	public long abandonedCount()
+	{
+		return abandoned;
+	}
+
+
+	/**
+	 * Re-use a slot for a new sequence number, giving up on any missing packet it held.
+	 *
+	 * @param slot The slot index.
+	 */
+	private void advanceInto(final int slot)
+	{
+		if (isMissing(slot))
+		{
+			clearMissing(slot);
+			abandoned++;
+		}
+	}
+
+
+	/**
+	 * Give up on all missing packets.
+	 */
+	private void abandonAll()
+	{
+		abandoned += missingCount;
+		missingCount = 0;
+		for (int w = 0 ; w < missing.length ; w++)
+		{
+			missing[w] = 0;
+		}
+	}
+
+
+	/**
+	 * Determine if a slot is missing.
+	 *
+	 * @param slot The slot index.
+	 * @return true if missing, false otherwise.
+	 */
+	private boolean isMissing(final int slot)
+	{
+		return (missing[slot >>> 6] & (1L << (slot & 0x3F))) != 0;
+	}
+
+
+	/**
+	 * Mark a slot as missing.
+	 *
+	 * @param slot The slot index.
+	 * @param retryTime The time of the first NACK.
+	 */
+	private void setMissing(final int slot, final long retryTime)
+	{
+		missing[slot >>> 6] |= 1L << (slot & 0x3F);
+		retries[slot] = 0;
+		retryTimes[slot] = retryTime;
+		missingCount++;
+	}
+
+
+	/**
+	 * Clear a missing slot.
+	 *
+	 * @param slot The slot index.
+	 */
+	private void clearMissing(final int slot)
+	{
+		missing[slot >>> 6] &= ~(1L << (slot & 0x3F));
+		missingCount--;
+	}
+
+
+	/**
+	 * Obtain a builder for the detector.
+	 *
+	 * @return The builder instance.
+	 */
+	public static Builder builder()
+	{
+		return new Builder();
+	}
+
+
+	/**
+	 * A builder for the loss detector.
+	 */
+	public static final class Builder
+	{
+		/** The number of packets tracked. */
+		private int windowSize = 512;
+
+		/** The maximum number of times a packet is NACKed. */
+		private int maxRetries = 3;
+
+		/** The time to wait for reordered packets before the first NACK. */
+		private long reorderDelayMillis = 10;
+
+		/** The initial round trip time. */
+		private long rttMillis = 100;
+
+		/**
+		 * Private constructor.
+		 */
+		private Builder() { /* Empty Constructor */ }
+
+
+		/**
+		 * Set the number of packets tracked.
+		 *
+		 * @param windowSize The window size, a power of two from 64 - 32768 (default 512).
+		 * @return The builder instance.
+		 */
+		public Builder withWindow(final int windowSize)
+		{
+			this.windowSize = windowSize;
+			return this;
+		}
+
+
+		/**
+		 * Set the number of times a missing packet is NACKed before giving up.
+		 *
+		 * @param maxRetries The maximum retries (default 3).
+		 * @return The builder instance.
+		 */
+		public Builder withMaxRetries(final int maxRetries)
+		{
+			this.maxRetries = maxRetries;
+			return this;
+		}
+
+
+		/**
+		 * Set how long to wait for a reordered packet before it is first NACKed.
+		 *
+		 * @param reorderDelayMillis The reorder delay in milliseconds (default 10).
+		 * @return The builder instance.
+		 */
+		public Builder withReorderDelay(final long reorderDelayMillis)
+		{
+			this.reorderDelayMillis = reorderDelayMillis;
+			return this;
+		}
+
+
+		/**
+		 * Set the initial round trip time, used until updateRtt() is called.
+		 *
+		 * @param rttMillis The round trip time in milliseconds (default 100).
+		 * @return The builder instance.
+		 */
+		public Builder withInitialRtt(final long rttMillis)
+		{
+			this.rttMillis = rttMillis;
+			return this;
+		}
+
+
+		/**
+		 * Build the detector.
+		 *
+		 * @return The detector instance.
+		 *
+		 * @throws IllegalArgumentException If any of the values are invalid.
+		 */
+		public LossDetector build()
+		{
+			return new LossDetector(this);
+		}
+	}
+
+}
@@ -0,0 +1,160 @@
+package org.vidtec.rfc3550.rtp.recovery;
+
+import java.util.Arrays;
+
+import org.vidtec.rfc3550.rtcp.types.feedback.TransportFeedbackRTCPPacket;
+
+/**
+ * A re-usable batch of lost sequence numbers to request retransmission of, as produced by a {@link LossDetector}.
+ *
+ * The lost packets are held as a bitmap relative to a base sequence number, which is the form used to
+ * build a Generic NACK via {@link TransportFeedbackRTCPPacket.TransportFeedbackBuilder#withGenericNack(int, long[])}.
+ *
+ * NB: This class is NOT thread-safe.
+ */
+public final class NackBatch
+{
+
+	/** The loss bitmap, bit i is set if baseSequenceNumber + i is lost. */
+	private final long[] bitmap;
+
+	/** The sequence number represented by bit 0 of the bitmap. */
+	private int baseSequenceNumber;
+
+	/** The number of sequence numbers in the batch. */
+	private int size;
+
+
+	/**
+	 * Create a batch.
+	 *
+	 * @param windowSize The number of sequence numbers the batch can cover.
+	 */
+	NackBatch(final int windowSize)
+	{
+		this.bitmap = new long[(windowSize + 63) >>> 6];
+	}
+
+
+	/**
+	 * Clear the batch and set a new base sequence number.
+	 *
+	 * @param baseSequenceNumber The sequence number represented by bit 0 of the bitmap.
+	 */
+	void reset(final int baseSequenceNumber)
+	{
+		Arrays.fill(bitmap, 0);
+		this.baseSequenceNumber = 0xFFFF & baseSequenceNumber;
+		this.size = 0;
+	}
+
+
+	/**
+	 * Add a sequence number to the batch.
+	 *
+	 * @param offset The offset of the sequence number from the base sequence number.
+	 */
+	void add(final int offset)
+	{
+		bitmap[offset >>> 6] |= 1L << (offset & 0x3F);
+		size++;
+	}
+
+
+	/**
+	 * Get the number of bits in the batch bitmap.
+	 *
+	 * @return The number of sequence numbers the batch can cover.
+	 */
+	int capacity()
+	{
+		return bitmap.length * 64;
+	}
+
+
+	/**
+	 * Gets the sequence number represented by bit 0 of the bitmap.
+	 *
+	 * @return The base sequence number from 0 - 65,535.
+	 */
+	public int baseSequenceNumber()
+	{
+		return baseSequenceNumber;
+	}
+
+
+	/**
+	 * Gets the loss bitmap.
+	 * NB: This is the batch's own array (not a copy), so it is only valid until the batch is next re-used.
+	 *
+	 * @return The loss bitmap, bit i (of word i / 64) is set if baseSequenceNumber + i is lost.
+	 */
+	public long[] bitmap()
+	{
+		return bitmap;
+	}
+
+
+	/**
+	 * Gets the number of sequence numbers in the batch.
+	 *
+	 * @return The lost packet count.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+
+	/**
+	 * Determine if the batch has any sequence numbers.
+	 *
+	 * @return true if the batch is empty, false otherwise.
+	 */
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+
+	/**
+	 * Gets the sequence numbers in the batch.
+	 *
+	 * @return The lost sequence numbers in order.
+	 */
+	public int[] sequenceNumbers()
+	{
+		final int[] seqs = new int[size];
+		int n = 0;
+		for (int w = 0 ; w < bitmap.length ; w++)
+		{
+			long bits = bitmap[w];
+			while (bits != 0)
+			{
+				seqs[n++] = (baseSequenceNumber + w * 64 + Long.numberOfTrailingZeros(bits)) & 0xFFFF;
+				bits &= bits - 1;
+			}
+		}
+
+		return seqs;
+	}
+
+
+	/**
+	 * Create a Generic NACK packet for this batch.
+	 *
+	 * @param ssrcSender The ssrc of the packet sender.
+	 * @param ssrcMediaSource The ssrc of the media source that packets were lost from.
+	 * @return The feedback packet.
+	 *
+	 * @throws IllegalArgumentException If the batch is empty, or the ssrcs are invalid.
+	 */
+	public TransportFeedbackRTCPPacket toGenericNack(final long ssrcSender, final long ssrcMediaSource)
+	{
+		return TransportFeedbackRTCPPacket.builder()
+					.withSsrcs(ssrcSender, ssrcMediaSource)
+					.withGenericNack(baseSequenceNumber, bitmap)
+					.build();
+	}
+
+}
@@ -0,0 +1,285 @@
+package org.vidtec.rfc3550.rtp.recovery;
+
+import org.vidtec.rfc3550.rtp.RTPPacket;
+
+/**
+ * A sliding window of recently received sequence numbers for a single RTP stream (ssrc), used to drop
+ * duplicate packets (e.g. from retransmission or multipath) immediately after the header is parsed.
+ *
+ * This is the classic anti-replay window shape (as used by SRTP, RFC 3711 section 3.3.2): a bitmap of
+ * 64 or 128 packets behind the highest sequence number received, held in two longs. Each packet is
+ * classified in constant time as new, a duplicate, or too old to tell (behind the window).
+ *
+ * NB: Sequence numbers are compared allowing for 16-bit wraparound, so a packet more than 32,767
+ *     sequence numbers ahead is treated as being behind.
+ * NB: This class is NOT thread-safe.
+ */
+public final class ReplayWindow
+{
+
+	/** The window size. */
+	private final int size;
+
+	/** Bits for offsets 0 - 63 behind the highest, bit 0 is the highest. */
+	private long low;
+
+	/** Bits for offsets 64 - 127 behind the highest. */
+	private long high;
+
+	/** The highest sequence number received, or -1 if none. */
+	private int highest = -1;
+
+	/** The number of duplicates seen. */
+	private long duplicates;
+
+	/** The number of packets behind the window seen. */
+	private long tooOld;
+
+
+	/**
+	 * Create a replay window.
+	 *
+	 * @param size The window size, 64 or 128.
+	 *
+	 * @throws IllegalArgumentException If the size is invalid.
+	 */
+	private ReplayWindow(final int size)
+	{
+		if (size != 64 && size != 128)
+		{
+			throw new IllegalArgumentException("Expected valid window size (64 or 128) not " + size);
+		}
+
+		this.size = size;
+	}
+
+
+	/**
+	 * Classify a packet without recording it.
+	 *
+	 * @param sequenceNumber The sequence number of the packet.
+	 * @return The classification of the packet.
+	 */
+	public Verdict check(final int sequenceNumber)
+	{
+		if (highest < 0)
+		{
+			return Verdict.NEW;
+		}
+
+		final int delta = (short)(sequenceNumber - highest);
+		if (delta > 0)
+		{
+			return Verdict.NEW;
+		}
+
+		final int offset = -delta;
+		if (offset >= size)
+		{
+			return Verdict.TOO_OLD;
+		}
+
+		return isSet(offset) ? Verdict.DUPLICATE : Verdict.NEW;
+	}
+
+
+	/**
+	 * Classify a packet, and record it if it is new.
+	 *
+	 * @param packet The packet received.
+	 * @return The classification of the packet.
+	 *
+	 * @throws IllegalArgumentException If the packet is null.
+	 */
+	public Verdict accept(final RTPPacket packet)
+	{
+		if (packet == null)
+		{
+			throw new IllegalArgumentException("packet cannot be null");
+		}
+
+		return accept(packet.sequenceNumber());
+	}
+
+
+	/**
+	 * Classify a packet, and record it if it is new.
+	 *
+	 * @param sequenceNumber The sequence number of the packet.
+	 * @return The classification of the packet.
+	 */
+	public Verdict accept(final int sequenceNumber)
+	{
+		final Verdict verdict = check(sequenceNumber);
+		switch (verdict)
+		{
+			case NEW:
+			{
+				record(0xFFFF & sequenceNumber);
+				break;
+			}
+			case DUPLICATE:
+			{
+				duplicates++;
+				break;
+			}
+			case TOO_OLD:
+			{
+				tooOld++;
+				break;
+			}
+		}
+
+		return verdict;
+	}
+
+
+	/**
+	 * Gets the highest sequence number received.
+	 *
+	 * @return The highest sequence number, or -1 if no packets have been received.
+	 */
+	public int highestSequenceNumber()
+	{
+		return highest;
+	}
+
+
+	/**
+	 * Gets the window size.
+	 *
+	 * @return The number of packets tracked behind the highest.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+
+	/**
+	 * Gets the number of duplicate packets seen.
+	 *
+	 * @return The duplicate count.
+	 */
+	public long duplicateCount()
+	{
+		return duplicates;
+	}
+
+
+	/**
+	 * Gets the number of packets seen that were behind the window.
+	 *
+	 * @return The too old count.
+	 */
+	public long tooOldCount()
+	{
+		return tooOld;
+	}
+
+
+	/**
+	 * Clear the window, e.g. on a stream restart.
+	 */
+	public void reset()
+	{
+		low = 0;
+		high = 0;
+		highest = -1;
+	}
+
+
+	/**
+	 * Record a new sequence number.
+	 *
+	 * @param sequenceNumber The sequence number.
+	 */
+	private void record(final int sequenceNumber)
+	{
+		if (highest < 0)
+		{
+			highest = sequenceNumber;
+			low = 1;
+			return;
+		}
+
+		final int delta = (short)(sequenceNumber - highest);
+		if (delta <= 0)
+		{
+			// Within the window.
+			final int offset = -delta;
+			if (offset < 64)
+			{
+				low |= 1L << offset;
+			}
+			else
+			{
+				high |= 1L << (offset - 64);
+			}
+			return;
+		}
+
+		// Slide the 128-bit window forward.
+		if (delta >= 128)
+		{
+			high = 0;
+			low = 0;
+		}
+		else if (delta >= 64)
+		{
+			high = low << (delta - 64);
+			low = 0;
+		}
+		else
+		{
+			high = (high << delta) | (low >>> (64 - delta));
+			low = low << delta;
+		}
+
+		low |= 1;
+		highest = sequenceNumber;
+	}
+
+
+	/**
+	 * Determine if an offset behind the highest has been received.
+	 *
+	 * @param offset The offset, less than the window size.
+	 * @return true if received, false otherwise.
+	 */
+	private boolean isSet(final int offset)
+	{
+		return offset < 64 ? (low & (1L << offset)) != 0 : (high & (1L << (offset - 64))) != 0;
+	}
+
+
+	/**
+	 * Create a replay window.
+	 *
+	 * @param size The window size, 64 or 128.
+	 * @return The window instance.
+	 *
+	 * @throws IllegalArgumentException If the size is invalid.
+	 */
+	public static ReplayWindow ofSize(final int size)
+	{
+		return new ReplayWindow(size);
+	}
+
+
+	/**
+	 * An enumeration of packet classifications.
+	 */
+	public static enum Verdict
+	{
+		/** The packet has not been seen before. */
+		NEW,
+
+		/** The packet has already been received. */
+		DUPLICATE,
+
+		/** The packet is too far behind the highest received to tell, and should be dropped. */
+		TOO_OLD;
+	}
+
+}
@@ -0,0 +1,608 @@
+package org.vidtec.rfc3550.rtp.recovery;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.vidtec.rfc3550.memory.PacketArena;
+import org.vidtec.rfc3550.memory.SsrcIndex;
+import org.vidtec.rfc3550.rtp.RTPPacket;
+import org.vidtec.rfc3550.rtp.RTPPacketView;
+
+/**
+ * A sender-side store of recently sent RTP packets, used to answer retransmission requests
+ * (e.g. RFC 4585 Generic NACK) by (ssrc, sequence number).
+ *
+ * Each ssrc has a fixed-size ring of packets indexed directly by the low bits of the sequence number,
+ * backed by an off-heap {@link PacketArena}. Storing and looking up a packet is O(1) and creates no
+ * per-packet objects or map entries. A packet is retained until its ring slot is re-used by a later
+ * sequence number, or until it is older than the maximum age.
+ *
+ * Packets are keyed explicitly by ssrc and sequence number rather than through RTPPacket equality
+ * (which only compares sequence numbers), so streams never collide. Streams are found through an
+ * {@link SsrcIndex}, so a lookup does not box the ssrc.
+ *
+ * The number of streams is bounded, as each holds its own arena. When a stream is removed its arena is
+ * emptied and kept, to be re-used by the next new stream, so off-heap memory is only allocated while
+ * the stream count grows, and never exceeds the maximum stream count times the per-stream history.
+ *
+ * NB: Times are supplied by the caller in milliseconds, from any monotonic clock.
+ * NB: This class is NOT thread-safe, it is expected to be owned by a single sending thread.
+ */
+public final class RetransmissionCache
+{
+
+	/** The entry of each stream being cached. */
+	private final SsrcIndex index = new SsrcIndex(16);
+
+	/** The stream of each entry, kept for re-use once its ssrc is removed. */
+	private Stream[] streams = new Stream[16];
+
+	/** The maximum number of streams held. */
+	private final int maxStreams;
+
+	/** The number of packets held per stream (a power of two). */
+	private final int packetsPerStream;
+
+	/** The maximum age of a cached packet in milliseconds. */
+	private final long maxAgeMillis;
+
+	/** The maximum size of a cached packet in bytes. */
+	private final int slotSize;
+
+
+	/**
+	 * Create a retransmission cache.
+	 *
+	 * @param packets The minimum number of packets to hold per stream.
+	 * @param maxAgeMillis The maximum age of a cached packet in milliseconds.
+	 * @param slotSize The maximum size of a cached packet in bytes.
+	 * @param maxStreams The maximum number of streams held.
+	 *
+	 * @throws IllegalArgumentException If any of the values are invalid.
+	 */
+	private RetransmissionCache(final int packets, final long maxAgeMillis, final int slotSize, final int maxStreams)
+	{
+		if (packets <= 0 || packets > 0x8000)
+		{
+			throw new IllegalArgumentException("Expected valid packet count not " + packets);
+		}
+		if (maxAgeMillis <= 0)
+		{
+			throw new IllegalArgumentException("Expected valid max age not " + maxAgeMillis);
+		}
+		if (slotSize < 13)
+		{
+			throw new IllegalArgumentException("Expected valid max packet size not " + slotSize);
+		}
+		if (maxStreams <= 0 || maxStreams > 0x10000)
+		{
+			throw new IllegalArgumentException("Expected valid stream count not " + maxStreams);
+		}
+
+		// Round up to a power of two, so the slot is a mask of the sequence number.
+		this.packetsPerStream = packets == 1 ? 1 : Integer.highestOneBit(packets - 1) << 1;
+		this.maxAgeMillis = maxAgeMillis;
+		this.slotSize = slotSize;
+		this.maxStreams = maxStreams;
+	}
+
+
+	/**
+	 * Cache a sent packet.
+	 * NB: Any older packet in the same slot for this ssrc is evicted.
+	 *
+	 * @param packet The packet that was sent.
+	 * @param timeMillis The time the packet was sent.
+	 * @return true if the packet was cached, false if it is larger than the slot size, or is of a new ssrc
+	 *         when the maximum number of streams are held.
+	 *
+	 * @throws IllegalArgumentException If the packet is null.
+	 */
+	public boolean put(final RTPPacket packet, final long timeMillis)
+	{
+		if (packet == null)
+		{
+			throw new IllegalArgumentException("packet cannot be null");
+		}
+		if (packet.packetLength() > slotSize)
+		{
+			return false;
+		}
+
+		final Stream stream = stream(packet.ssrcIdentifier());
+		if (stream == null)
+		{
+			return false;
+		}
+
+		final int slot = stream.evict(packet.sequenceNumber());
+		stream.store(slot, stream.arena.store(packet), packet.sequenceNumber(), timeMillis);
+
+		return true;
+	}
+
+
+	/**
+	 * Cache a sent packet from a view (e.g. of a slot in a send batch).
+	 * NB: Any older packet in the same slot for this ssrc is evicted.
+	 *
+	 * @param view The view of the packet that was sent.
+	 * @param timeMillis The time the packet was sent.
+	 * @return true if the packet was cached, false if it is larger than the slot size, or is of a new ssrc
+	 *         when the maximum number of streams are held.
+	 *
+	 * @throws IllegalArgumentException If the view is null.
+	 */
+	public boolean put(final RTPPacketView view, final long timeMillis)
+	{
+		if (view == null)
+		{
+			throw new IllegalArgumentException("packet cannot be null");
+		}
+		if (view.packetLength() > slotSize)
+		{
+			return false;
+		}
+
+		final Stream stream = stream(view.ssrcIdentifier());
+		if (stream == null)
+		{
+			return false;
+		}
+
+		final int slot = stream.evict(view.sequenceNumber());
+		stream.store(slot, stream.arena.store(view), view.sequenceNumber(), timeMillis);
+
+		return true;
+	}
+
+
+	/**
+	 * Determine if a packet is held in the cache.
+	 *
+	 * @param ssrc The ssrc of the stream.
+	 * @param sequenceNumber The sequence number of the packet.
+	 * @param nowMillis The current time, used to expire old packets.
+	 * @return true if the packet is cached, false otherwise.
+	 */
+	public boolean contains(final long ssrc, final int sequenceNumber, final long nowMillis)
+	{
+		final Stream stream = find(ssrc);
+		return stream != null && stream.find(sequenceNumber, nowMillis) >= 0;
+	}
+
+
+	/**
+	 * Copy a cached packet into a buffer (e.g. for retransmission).
+	 *
+	 * @param ssrc The ssrc of the stream.
+	 * @param sequenceNumber The sequence number of the packet.
+	 * @param nowMillis The current time, used to expire old packets.
+	 * @param dst The buffer to copy the packet into, from its current position.
+	 * @return The number of bytes copied, or -1 if the packet is not cached.
+	 *
+	 * @throws java.nio.BufferOverflowException If the buffer does not have enough space.
+	 */
+	public int copyTo(final long ssrc, final int sequenceNumber, final long nowMillis, final ByteBuffer dst)
+	{
+		final Stream stream = find(ssrc);
+		final int handle = stream == null ? -1 : stream.find(sequenceNumber, nowMillis);
+
+		return handle < 0 ? -1 : stream.arena.copyTo(handle, dst);
+	}
+
+
+	/**
+	 * Point a view at a cached packet.
+	 * NB: The view is only valid until the packet is evicted.
+	 *
+	 * @param ssrc The ssrc of the stream.
+	 * @param sequenceNumber The sequence number of the packet.
+	 * @param nowMillis The current time, used to expire old packets.
+	 * @param view The view instance to re-use.
+	 * @return The given view, or null if the packet is not cached.
+	 */
+	public RTPPacketView view(final long ssrc, final int sequenceNumber, final long nowMillis, final RTPPacketView view)
+	{
+		final Stream stream = find(ssrc);
+		final int handle = stream == null ? -1 : stream.find(sequenceNumber, nowMillis);
+
+		return handle < 0 ? null : stream.arena.view(handle, view);
+	}
+
+
+	/**
+	 * Get a copy of a cached packet.
+	 *
+	 * @param ssrc The ssrc of the stream.
+	 * @param sequenceNumber The sequence number of the packet.
+	 * @param nowMillis The current time, used to expire old packets.
+	 * @return The packet, or null if the packet is not cached.
+	 */
+	public RTPPacket get(final long ssrc, final int sequenceNumber, final long nowMillis)
+	{
+		final Stream stream = find(ssrc);
+		final int handle = stream == null ? -1 : stream.find(sequenceNumber, nowMillis);
+
+		return handle < 0 ? null : RTPPacket.fromByteArray(stream.arena.asByteArray(handle));
+	}
+
+
+	/**
+	 * Evict all packets older than the maximum age.
+	 *
+	 * @param nowMillis The current time.
+	 * @return The number of packets evicted.
+	 */
+	public int expire(final long nowMillis)
+	{
+		int evicted = 0;
+		for (int entry = 0 ; entry < index.capacity() ; entry++)
+		{
+			if (index.ssrc(entry) >= 0)
+			{
+				evicted += streams[entry].expire(nowMillis);
+			}
+		}
+
+		return evicted;
+	}
+
+
+	/**
+	 * Remove a stream from the cache (e.g. once it has sent a BYE), releasing its packets.
+	 * NB: The memory of the stream is kept for re-use by the next new stream.
+	 *
+	 * @param ssrc The ssrc of the stream.
+	 * @return true if the stream was cached, false otherwise.
+	 */
+	public boolean remove(final long ssrc)
+	{
+		final int entry = index.remove(ssrc);
+		if (entry == SsrcIndex.NIL)
+		{
+			return false;
+		}
+
+		streams[entry].clear();
+		return true;
+	}
+
+
+	/**
+	 * Get the number of packets held in the cache.
+	 *
+	 * @return The cached packet count across all streams.
+	 */
+	public int size()
+	{
+		int size = 0;
+		for (int entry = 0 ; entry < index.capacity() ; entry++)
+		{
+			if (index.ssrc(entry) >= 0)
+			{
+				size += streams[entry].arena.size();
+			}
+		}
+
+		return size;
+	}
+
+
+	/**
+	 * Get the number of streams held in the cache.
+	 *
+	 * @return The stream count.
+	 */
+	public int streamCount()
+	{
+		return index.size();
+	}
+
+
+	/**
+	 * Get the number of packets held per stream.
+	 *
+	 * @return The per-stream packet count (the requested count rounded up to a power of two).
+	 */
+	public int packetsPerStream()
+	{
+		return packetsPerStream;
+	}
+
+
+	/**
+	 * Get the maximum number of streams held.
+	 *
+	 * @return The maximum stream count.
+	 */
+	public int maxStreams()
+	{
+		return maxStreams;
+	}
+
+
+	/**
+	 * Get the cached stream for an ssrc.
+	 *
+	 * @param ssrc The ssrc of the stream.
+	 * @return The stream instance, or null if not cached.
+	 */
+	private Stream find(final long ssrc)
+	{
+		final int entry = index.find(ssrc);
+		return entry == SsrcIndex.NIL ? null : streams[entry];
+	}
+
+
+	/**
+	 * Get the cached stream for an ssrc, creating it (or re-using a removed stream) if needed.
+	 *
+	 * @param ssrc The ssrc of the stream.
+	 * @return The stream instance, or null if the maximum number of streams are held.
+	 */
+	private Stream stream(final long ssrc)
+	{
+		int entry = index.find(ssrc);
+		if (entry != SsrcIndex.NIL)
+		{
+			return streams[entry];
+		}
+		if (index.size() >= maxStreams)
+		{
+			return null;
+		}
+
+		entry = index.add(ssrc);
+		if (index.capacity() > streams.length)
+		{
+			streams = Arrays.copyOf(streams, index.capacity());
+		}
+		if (streams[entry] == null)
+		{
+			streams[entry] = new Stream(packetsPerStream, slotSize, maxAgeMillis);
+		}
+
+		return streams[entry];
+	}
+
+
+	/**
+	 * Obtain a builder for the cache.
+	 *
+	 * @return The builder instance.
+	 */
+	public static Builder builder()
+	{
+		return new Builder();
+	}
+
+
+	/**
+	 * The packet ring for a single stream.
+	 */
+	private static final class Stream
+	{
+
+		/** The packet memory, with one arena slot per ring slot. */
+		private final PacketArena arena;
+
+		/** The arena handle in each ring slot, or -1 if empty. */
+		private final int[] handles;
+
+		/** The sequence number in each ring slot. */
+		private final int[] sequenceNumbers;
+
+		/** The time each ring slot was stored. */
+		private final long[] times;
+
+		/** The maximum age of a packet in milliseconds. */
+		private final long maxAgeMillis;
+
+
+		/**
+		 * Create a stream ring.
+		 *
+		 * @param size The number of slots in the ring (a power of two).
+		 * @param slotSize The maximum size of a packet in bytes.
+		 * @param maxAgeMillis The maximum age of a packet in milliseconds.
+		 */
+		private Stream(final int size, final int slotSize, final long maxAgeMillis)
+		{
+			this.arena = PacketArena.allocate(size, slotSize);
+			this.handles = new int[size];
+			this.sequenceNumbers = new int[size];
+			this.times = new long[size];
+			this.maxAgeMillis = maxAgeMillis;
+
+			Arrays.fill(handles, -1);
+		}
+
+
+		/**
+		 * Evict the packet (if any) from the slot for a sequence number.
+		 *
+		 * @param sequenceNumber The sequence number.
+		 * @return The slot index.
+		 */
+		private int evict(final int sequenceNumber)
+		{
+			final int slot = sequenceNumber & (handles.length - 1);
+			release(slot);
+			return slot;
+		}
+
+
+		/**
+		 * Record a stored packet in a slot.
+		 *
+		 * @param slot The slot index.
+		 * @param handle The arena handle.
+		 * @param sequenceNumber The sequence number.
+		 * @param timeMillis The time stored.
+		 */
+		private void store(final int slot, final int handle, final int sequenceNumber, final long timeMillis)
+		{
+			handles[slot] = handle;
+			sequenceNumbers[slot] = sequenceNumber;
+			times[slot] = timeMillis;
+		}
+
+
+		/**
+		 * Find a packet by sequence number.
+		 *
+		 * @param sequenceNumber The sequence number.
+		 * @param nowMillis The current time.
+		 * @return The arena handle, or -1 if not held.
+		 */
+		private int find(final int sequenceNumber, final long nowMillis)
+		{
+			final int slot = sequenceNumber & (handles.length - 1);
+			if (handles[slot] < 0 || sequenceNumbers[slot] != sequenceNumber)
+			{
+				return -1;
+			}
+			if (nowMillis - times[slot] > maxAgeMillis)
+			{
+				release(slot);
+				return -1;
+			}
+
+			return handles[slot];
+		}
+
+
+		/**
+		 * Evict all expired packets.
+		 *
+		 * @param nowMillis The current time.
+		 * @return The number of packets evicted.
+		 */
+		private int expire(final long nowMillis)
+		{
+			int evicted = 0;
+			for (int slot = 0 ; slot < handles.length ; slot++)
+			{
+				if (handles[slot] >= 0 && nowMillis - times[slot] > maxAgeMillis)
+				{
+					release(slot);
+					evicted++;
+				}
+			}
+
+			return evicted;
+		}
+
+
+		/**
+		 * Release all slots, so that the stream can be re-used.
+		 */
+		private void clear()
+		{
+			for (int slot = 0 ; slot < handles.length ; slot++)
+			{
+				release(slot);
+			}
+		}
+
+
+		/**
+		 * Release a slot.
+		 *
+		 * @param slot The slot index.
+		 */
+		private void release(final int slot)
+		{
+			if (handles[slot] >= 0)
+			{
+				arena.free(handles[slot]);
+				handles[slot] = -1;
+			}
+		}
+
+	}
+
+
+	/**
+	 * A builder for the retransmission cache.
+	 */
+	public static final class Builder
+	{
+		/** The number of packets held per stream. */
+		private int packets = 1024;
+
+		/** The time after which a packet is no longer retransmitted. */
+		private long maxAgeMillis = 1000;
+
+		/** The largest packet held. */
+		private int slotSize = 1500;
+
+		/** The maximum number of streams held. */
+		private int maxStreams = 16;
+
+		/**
+		 * Private constructor.
+		 */
+		private Builder() { /* Empty Constructor */ }
+
+
+		/**
+		 * Set how much history is held per stream.
+		 * NB: The packet count is rounded up to a power of two.
+		 *
+		 * @param packets The minimum number of packets to hold per stream (default 1024).
+		 * @param maxAgeMillis The maximum age of a packet in milliseconds (default 1000).
+		 * @return The builder instance.
+		 */
+		public Builder withHistory(final int packets, final long maxAgeMillis)
+		{
+			this.packets = packets;
+			this.maxAgeMillis = maxAgeMillis;
+			return this;
+		}
+
+
+		/**
+		 * Set the maximum packet size that can be cached.
+		 *
+		 * @param slotSize The maximum packet size in bytes (default 1500).
+		 * @return The builder instance.
+		 */
+		public Builder withMaxPacketSize(final int slotSize)
+		{
+			this.slotSize = slotSize;
+			return this;
+		}
+
+
+		/**
+		 * Set the maximum number of streams held, packets of further streams are not cached until a
+		 * stream is removed.
+		 * NB: Each stream holds its own arena of (packet count x max packet size) bytes.
+		 *
+		 * @param maxStreams The maximum stream count (default 16).
+		 * @return The builder instance.
+		 */
+		public Builder withMaxStreams(final int maxStreams)
+		{
+			this.maxStreams = maxStreams;
+			return this;
+		}
+
+
+		/**
+		 * Build the cache.
+		 *
+		 * @return The cache instance.
+		 *
+		 * @throws IllegalArgumentException If any of the values are invalid.
+		 */
+		public RetransmissionCache build()
+		{
+			return new RetransmissionCache(packets, maxAgeMillis, slotSize, maxStreams);
+		}
+
+	}
+
+}
@@ -0,0 +1,662 @@
+package org.vidtec.rfc3550.session;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+
+import org.vidtec.rfc3550.memory.SsrcIndex;
+import org.vidtec.rfc3550.rtcp.types.sdes.Chunk;
+import org.vidtec.rfc3550.rtcp.types.sdes.SdesItem;
+import org.vidtec.rfc3550.rtcp.types.sdes.SdesItem.ItemType;
+import org.vidtec.rfc3550.rtp.RTPPacket;
+import org.vidtec.rfc3550.rtp.RTPPacketView;
+
+/**
+ * Detects SSRC collisions and forwarding loops, using the source transport address tracking algorithm of
+ * RFC 3550 section 8.2.
+ *
+ * The source of each SSRC is recorded with the transport address its data (RTP) and control (RTCP) packets
+ * arrive from. A packet whose SSRC arrives from a different address is either a collision (two participants
+ * chose the same SSRC) or a loop (packets are being forwarded back into the session), and should be dropped.
+ * When the SSRC is one of the local sources, the local source must send a BYE and choose a new SSRC, unless
+ * the address is already known to be looping its own packets back.
+ *
+ * Sources are held in primitive arrays indexed by an {@link SsrcIndex}, and transport addresses are
+ * 64 bit keys (see transportAddress()), so checking a packet is a hash, a short probe and a comparison, with no
+ * boxing and no objects created per packet. Times are supplied by the caller in milliseconds, and are only
+ * used to expire the list of addresses that have conflicted with a local source.
+ *
+ * NB: Sources that leave (e.g. on a BYE, or a timeout) should be removed, to free their SSRC.
+ * NB: Local packets received back from the local host (e.g. by multicast loopback) should be discarded before
+ *     they are checked, as they would otherwise be seen as a collision.
+ * NB: This class is NOT thread-safe.
+ */
+public final class CollisionDetector
+{
+
+	/** The value of a transport address not yet known. */
+	private static final long NONE = 0;
+
+	/** The maximum number of conflicting addresses held. */
+	private static final int MAX_CONFLICTS = 16;
+
+
+	/** The entry of each SSRC. */
+	private final SsrcIndex index;
+
+	/** The data transport address of each entry, or NONE. */
+	private long[] dataAddresses;
+
+	/** The control transport address of each entry, or NONE. */
+	private long[] controlAddresses;
+
+	/** The CNAME of each entry, or null if not known. */
+	private String[] cnames;
+
+	/** Whether each entry is a local source. */
+	private boolean[] locals;
+
+	/** The addresses that have conflicted with a local source. */
+	private final long[] conflicts = new long[MAX_CONFLICTS];
+
+	/** The time each conflicting address was last seen. */
+	private final long[] conflictTimes = new long[MAX_CONFLICTS];
+
+	/** The number of conflicting addresses held. */
+	private int conflictCount;
+
+	/** The time after which a conflicting address is forgotten, in milliseconds. */
+	private final long conflictTimeout;
+
+	/** The number of packets of each verdict. */
+	private final long[] counts = new long[Verdict.values().length];
+
+
+	/**
+	 * Create a detector.
+	 *
+	 * @param builder The builder instance to construct a detector from.
+	 *
+	 * @throws IllegalArgumentException If any of the values are invalid.
+	 */
+	private CollisionDetector(final Builder builder)
+	{
+		if (builder.capacity < 16 || builder.capacity > 0x40000000 || Integer.bitCount(builder.capacity) != 1)
+		{
+			throw new IllegalArgumentException("Expected valid capacity not " + builder.capacity);
+		}
+		if (builder.conflictTimeout <= 0)
+		{
+			throw new IllegalArgumentException("Expected valid conflict timeout not " + builder.conflictTimeout);
+		}
+
+		this.conflictTimeout = builder.conflictTimeout;
+		this.index = new SsrcIndex(builder.capacity >>> 1);
+		this.dataAddresses = new long[index.capacity()];
+		this.controlAddresses = new long[index.capacity()];
+		this.cnames = new String[index.capacity()];
+		this.locals = new boolean[index.capacity()];
+	}
+
+
+	/**
+	 * Add a local source, i.e. an SSRC used by this participant to send.
+	 *
+	 * @param ssrc The ssrc of the local source.
+	 * @param cname The CNAME of this participant, or null if not used for loop detection.
+	 *
+	 * @throws IllegalArgumentException If the ssrc is already held.
+	 */
+	public void addLocal(final long ssrc, final String cname)
+	{
+		if (index.find(ssrc) != SsrcIndex.NIL)
+		{
+			throw new IllegalArgumentException("ssrc is already in use " + ssrc);
+		}
+
+		final int entry = insert(ssrc);
+		locals[entry] = true;
+		cnames[entry] = cname;
+	}
+
+
+	/**
+	 * Check the SSRC of a received data (RTP) packet.
+	 *
+	 * @param ssrc The ssrc of the packet.
+	 * @param address The transport address the packet arrived from, see transportAddress().
+	 * @param now The current time, in milliseconds.
+	 * @return The verdict, the packet should be dropped unless it is accepted.
+	 */
+	public Verdict data(final long ssrc, final long address, final long now)
+	{
+		return record(check(ssrc, address, true, null, now));
+	}
+
+
+	/**
+	 * Check the SSRC and CSRCs of a received data (RTP) packet.
+	 *
+	 * NB: A local SSRC in the CSRC list means a mixer is looping the local media back.
+	 *
+	 * @param packet The packet received.
+	 * @param address The transport address the packet arrived from, see transportAddress().
+	 * @param now The current time, in milliseconds.
+	 * @return The verdict, the packet should be dropped unless it is accepted.
+	 *
+	 * @throws IllegalArgumentException If the packet is null.
+	 */
+	public Verdict data(final RTPPacketView packet, final long address, final long now)
+	{
+		if (packet == null)
+		{
+			throw new IllegalArgumentException("packet cannot be null");
+		}
+
+		final Verdict verdict = check(packet.ssrcIdentifier(), address, true, null, now);
+		if (verdict.isAccepted())
+		{
+			for (int i = 0 ; i < packet.csrcCount() ; i++)
+			{
+				if (isLocal(packet.csrcIdentifier(i)))
+				{
+					return record(Verdict.OWN_LOOP);
+				}
+			}
+		}
+
+		return record(verdict);
+	}
+
+
+	/**
+	 * Check the SSRC and CSRCs of a received data (RTP) packet.
+	 *
+	 * NB: A local SSRC in the CSRC list means a mixer is looping the local media back.
+	 *
+	 * @param packet The packet received.
+	 * @param address The transport address the packet arrived from, see transportAddress().
+	 * @param now The current time, in milliseconds.
+	 * @return The verdict, the packet should be dropped unless it is accepted.
+	 *
+	 * @throws IllegalArgumentException If the packet is null.
+	 */
+	public Verdict data(final RTPPacket packet, final long address, final long now)
+	{
+		if (packet == null)
+		{
+			throw new IllegalArgumentException("packet cannot be null");
+		}
+
+		final Verdict verdict = check(packet.ssrcIdentifier(), address, true, null, now);
+		if (verdict.isAccepted() && packet.hasCsrcs())
+		{
+			for (final long csrc : packet.csrcIdentifiers())
+			{
+				if (isLocal(csrc))
+				{
+					return record(Verdict.OWN_LOOP);
+				}
+			}
+		}
+
+		return record(verdict);
+	}
+
+
+	/**
+	 * Check an SSRC of a received control (RTCP) packet.
+	 *
+	 * @param ssrc The ssrc in the packet (e.g. the sender of a report, or an SDES chunk).
+	 * @param address The transport address the packet arrived from, see transportAddress().
+	 * @param cname The CNAME given for the ssrc (in an SDES chunk), or null if none.
+	 * @param now The current time, in milliseconds.
+	 * @return The verdict, the packet (or chunk) should be ignored unless it is accepted.
+	 */
+	public Verdict control(final long ssrc, final long address, final String cname, final long now)
+	{
+		return record(check(ssrc, address, false, cname, now));
+	}
+
+
+	/**
+	 * Check the SSRC of a received SDES chunk, using its CNAME to tell collisions from loops.
+	 *
+	 * @param chunk The chunk received.
+	 * @param address The transport address the packet arrived from, see transportAddress().
+	 * @param now The current time, in milliseconds.
+	 * @return The verdict, the chunk should be ignored unless it is accepted.
+	 *
+	 * @throws IllegalArgumentException If the chunk is null.
+	 */
+	public Verdict control(final Chunk chunk, final long address, final long now)
+	{
+		if (chunk == null)
+		{
+			throw new IllegalArgumentException("chunk cannot be null");
+		}
+
+		final SdesItem cname = chunk.item(ItemType.CNAME);
+		return record(check(chunk.ssrcIdentifier(), address, false, cname == null ? null : cname.value(), now));
+	}
+
+
+	/**
+	 * Determine if an SSRC is held.
+	 *
+	 * @param ssrc The ssrc.
+	 * @return true if the ssrc is in use, false otherwise.
+	 */
+	public boolean contains(final long ssrc)
+	{
+		return index.find(ssrc) != SsrcIndex.NIL;
+	}
+
+
+	/**
+	 * Determine if an SSRC is a local source.
+	 *
+	 * @param ssrc The ssrc.
+	 * @return true if the ssrc is a local source, false otherwise.
+	 */
+	public boolean isLocal(final long ssrc)
+	{
+		final int entry = index.find(ssrc);
+		return entry != SsrcIndex.NIL && locals[entry];
+	}
+
+
+	/**
+	 * Remove a source.
+	 *
+	 * @param ssrc The ssrc of the source.
+	 * @return true if the source was held, false otherwise.
+	 */
+	public boolean remove(final long ssrc)
+	{
+		final int entry = index.remove(ssrc);
+		if (entry == SsrcIndex.NIL)
+		{
+			return false;
+		}
+
+		cnames[entry] = null;
+		return true;
+	}
+
+
+	/**
+	 * Gets the number of SSRCs held.
+	 *
+	 * @return The ssrc count.
+	 */
+	public int size()
+	{
+		return index.size();
+	}
+
+
+	/**
+	 * Gets the number of packets checked with a verdict.
+	 *
+	 * @param verdict The verdict.
+	 * @return The packet count.
+	 */
+	public long count(final Verdict verdict)
+	{
+		return counts[verdict.ordinal()];
+	}
+
+
+	/**
+	 * Gets a transport address key for a socket address.
+	 *
+	 * NB: This allocates a copy of the address, so should be called once per remote socket address rather
+	 *     than per packet where possible.
+	 *
+	 * @param address The socket address.
+	 * @return The transport address key.
+	 *
+	 * @throws IllegalArgumentException If the address is null or unresolved.
+	 */
+	public static long transportAddress(final InetSocketAddress address)
+	{
+		if (address == null || address.getAddress() == null)
+		{
+			throw new IllegalArgumentException("address cannot be null");
+		}
+
+		final InetAddress ip = address.getAddress();
+		final byte[] bytes = ip.getAddress();
+		if (bytes.length == 4)
+		{
+			return transportAddress(((0xFF & bytes[0]) << 24) | ((0xFF & bytes[1]) << 16) | ((0xFF & bytes[2]) << 8) | (0xFF & bytes[3]), address.getPort());
+		}
+
+		return transportAddress(bytes, address.getPort());
+	}
+
+
+	/**
+	 * Gets a transport address key for an IPv4 address and port.
+	 *
+	 * @param ipv4 The IPv4 address, in network order.
+	 * @param port The port.
+	 * @return The transport address key.
+	 */
+	public static long transportAddress(final int ipv4, final int port)
+	{
+		return 1L << 48 | (0xFFFFFFFFL & ipv4) << 16 | (0xFFFF & port);
+	}
+
+
+	/**
+	 * Gets a transport address key for an IPv6 address and port.
+	 *
+	 * NB: IPv6 addresses are folded to 64 bits, so there is a negligible chance that two addresses share a key.
+	 *
+	 * @param ipv6 The 16 byte IPv6 address.
+	 * @param port The port.
+	 * @return The transport address key.
+	 *
+	 * @throws IllegalArgumentException If the address is not 16 bytes.
+	 */
+	public static long transportAddress(final byte[] ipv6, final int port)
+	{
+		if (ipv6 == null || ipv6.length != 16)
+		{
+			throw new IllegalArgumentException("Expected valid IPv6 address");
+		}
+
+		long h = 0xFFFF & port;
+		for (final byte b : ipv6)
+		{
+			h = (h ^ (0xFF & b)) * 0x100000001B3L;
+		}
+
+		// NB: The top bit marks IPv6 keys, which are never equal to IPv4 keys or NONE.
+		return Long.MIN_VALUE | (h ^ (h >>> 29));
+	}
+
+
+	/**
+	 * Apply the algorithm of RFC 3550 section 8.2 to an SSRC.
+	 *
+	 * @param ssrc The ssrc of the packet.
+	 * @param address The transport address the packet arrived from.
+	 * @param isData true for a data packet, false for a control packet.
+	 * @param cname The CNAME given for the ssrc, or null if none.
+	 * @param now The current time, in milliseconds.
+	 * @return The verdict.
+	 */
+	private Verdict check(final long ssrc, final long address, final boolean isData, final String cname, final long now)
+	{
+		int entry = index.find(ssrc);
+		if (entry == SsrcIndex.NIL)
+		{
+			entry = insert(ssrc);
+			setAddress(entry, isData, address);
+			cnames[entry] = cname;
+			return Verdict.NEW;
+		}
+
+		if (!locals[entry])
+		{
+			final long known = isData ? dataAddresses[entry] : controlAddresses[entry];
+			if (known == NONE || known == address)
+			{
+				// The first packet of this kind (data or control) gives the address.
+				setAddress(entry, isData, address);
+				if (cname != null)
+				{
+					cnames[entry] = cname;
+				}
+				return Verdict.VALID;
+			}
+
+			return cname != null && cnames[entry] != null && !cname.equals(cnames[entry]) ? Verdict.THIRD_PARTY_COLLISION
+																					   : Verdict.THIRD_PARTY_LOOP;
+		}
+
+		final int conflict = findConflict(address, now);
+		if (conflict >= 0 && (cname == null || cname.equals(cnames[entry])))
+		{
+			conflictTimes[conflict] = now;
+			return Verdict.OWN_LOOP;
+		}
+
+		// A new collision with a local source, which must now choose a new SSRC, the old SSRC now belongs
+		// to the remote source.
+		addConflict(address, now);
+		locals[entry] = false;
+		dataAddresses[entry] = controlAddresses[entry] = NONE;
+		setAddress(entry, isData, address);
+		cnames[entry] = cname;
+		return Verdict.OWN_COLLISION;
+	}
+
+
+	/**
+	 * Set the address of an entry.
+	 *
+	 * @param entry The entry index.
+	 * @param isData true to set the data address, false to set the control address.
+	 * @param address The transport address.
+	 */
+	private void setAddress(final int entry, final boolean isData, final long address)
+	{
+		if (isData)
+		{
+			dataAddresses[entry] = address;
+		}
+		else
+		{
+			controlAddresses[entry] = address;
+		}
+	}
+
+
+	/**
+	 * Find a conflicting address, forgetting any that have expired.
+	 *
+	 * @param address The transport address.
+	 * @param now The current time, in milliseconds.
+	 * @return The index, or -1 if not held.
+	 */
+	private int findConflict(final long address, final long now)
+	{
+		int found = -1;
+		for (int i = conflictCount - 1 ; i >= 0 ; i--)
+		{
+			if (now - conflictTimes[i] > conflictTimeout)
+			{
+				conflictCount--;
+				conflicts[i] = conflicts[conflictCount];
+				conflictTimes[i] = conflictTimes[conflictCount];
+				if (found == conflictCount)
+				{
+					found = i;
+				}
+			}
+			else if (conflicts[i] == address)
+			{
+				found = i;
+			}
+		}
+
+		return found;
+	}
+
+
+	/**
+	 * Add a conflicting address, replacing the least recently seen if the list is full.
+	 *
+	 * @param address The transport address.
+	 * @param now The current time, in milliseconds.
+	 */
+	private void addConflict(final long address, final long now)
+	{
+		int index = conflictCount;
+		if (conflictCount == MAX_CONFLICTS)
+		{
+			index = 0;
+			for (int i = 1 ; i < conflictCount ; i++)
+			{
+				if (conflictTimes[i] < conflictTimes[index])
+				{
+					index = i;
+				}
+			}
+		}
+		else
+		{
+			conflictCount++;
+		}
+
+		conflicts[index] = address;
+		conflictTimes[index] = now;
+	}
+
+
+	/**
+	 * Record a verdict.
+	 *
+	 * @param verdict The verdict.
+	 * @return The verdict.
+	 */
+	private Verdict record(final Verdict verdict)
+	{
+		counts[verdict.ordinal()]++;
+		return verdict;
+	}
+
+
+	/**
+	 * Add an SSRC that is not held.
+	 *
+	 * @param ssrc The ssrc.
+	 * @return The entry index.
+	 */
+	private int insert(final long ssrc)
+	{
+		final int entry = index.add(ssrc);
+		if (index.capacity() > locals.length)
+		{
+			dataAddresses = Arrays.copyOf(dataAddresses, index.capacity());
+			controlAddresses = Arrays.copyOf(controlAddresses, index.capacity());
+			cnames = Arrays.copyOf(cnames, index.capacity());
+			locals = Arrays.copyOf(locals, index.capacity());
+		}
+
+		dataAddresses[entry] = controlAddresses[entry] = NONE;
+		cnames[entry] = null;
+		locals[entry] = false;
+		return entry;
+	}
+
+
+	/**
+	 * Obtain a builder for the detector.
+	 *
+	 * @return The builder instance.
+	 */
+	public static Builder builder()
+	{
+		return new Builder();
+	}
+
+
+	/**
+	 * An enumeration of packet verdicts.
+	 */
+	public static enum Verdict
+	{
+		/** The SSRC has not been seen before, and is now held. */
+		NEW,
+
+		/** The SSRC arrived from its known transport address. */
+		VALID,
+
+		/** The SSRC of a remote source arrived from another address, with a different CNAME. */
+		THIRD_PARTY_COLLISION,
+
+		/** The SSRC of a remote source arrived from another address, e.g. forwarded by a loop. */
+		THIRD_PARTY_LOOP,
+
+		/** A local SSRC arrived from an address known to loop local packets back. */
+		OWN_LOOP,
+
+		/** A local SSRC arrived from a new address, the local source should send a BYE and choose a new SSRC. */
+		OWN_COLLISION;
+
+
+		/**
+		 * Determine if a packet with this verdict should be processed.
+		 *
+		 * @return true if the packet should be processed, false if it should be dropped.
+		 */
+		public boolean isAccepted()
+		{
+			return this == NEW || this == VALID;
+		}
+	}
+
+
+	/**
+	 * A builder for the collision detector.
+	 */
+	public static final class Builder
+	{
+		/** The initial table capacity. */
+		private int capacity = 64;
+
+		/** The time after which an address that conflicted with a local source is forgotten. */
+		private long conflictTimeout = 50000;
+
+		/**
+		 * Private constructor.
+		 */
+		private Builder() { /* Empty Constructor */ }
+
+
+		/**
+		 * Set the initial table capacity, the table grows when more than half full.
+		 *
+		 * @param capacity The capacity, a power of two of at least 16 (default 64).
+		 * @return The builder instance.
+		 */
+		public Builder withCapacity(final int capacity)
+		{
+			this.capacity = capacity;
+			return this;
+		}
+
+
+		/**
+		 * Set the time after which an address that conflicted with a local source is forgotten, RFC 3550
+		 * suggests 10 RTCP report intervals.
+		 *
+		 * @param millis The timeout in milliseconds (default 50000, i.e. 10 minimum intervals of 5 seconds).
+		 * @return The builder instance.
+		 */
+		public Builder withConflictTimeout(final long millis)
+		{
+			this.conflictTimeout = millis;
+			return this;
+		}
+
+
+		/**
+		 * Build the detector.
+		 *
+		 * @return The detector instance.
+		 *
+		 * @throws IllegalArgumentException If any of the values are invalid.
+		 */
+		public CollisionDetector build()
+		{
+			return new CollisionDetector(this);
+		}
+	}
+
+}
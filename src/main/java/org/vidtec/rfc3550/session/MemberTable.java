@@ -0,0 +1,562 @@
+package org.vidtec.rfc3550.session;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+import org.vidtec.rfc3550.memory.SsrcIndex;
+import org.vidtec.rfc3550.rtcp.types.bye.ByeRTCPPacket;
+import org.vidtec.rfc3550.rtp.RTPPacket;
+
+/**
+ * The member and sender table of an RTP session, as per RFC 3550 section 6.3, giving the member and sender
+ * counts used to compute the RTCP transmission interval.
+ *
+ * A source becomes a member when any packet is received from it, and a sender when an RTP packet is
+ * received from it. At each RTCP interval, expire() removes the members that have sent nothing for 5 deterministic
+ * intervals (Td), and clears the sender status of those that have sent no RTP for 2 transmission intervals (T),
+ * as per section 6.3.5. A BYE packet removes its sources at once (section 6.3.4).
+ *
+ * Members are held in primitive arrays, indexed by an {@link SsrcIndex}. Each member
+ * is also linked into a list ordered by its last activity, and each sender into a list ordered by its last RTP
+ * packet, so that activity moves an entry to the tail of its list, and expiry only visits the entries at the
+ * head of each list that have expired, rather than scanning the whole table.
+ *
+ * NB: Times are supplied by the caller in milliseconds, and must not go backwards.
+ * NB: This class is NOT thread-safe.
+ */
+public final class MemberTable
+{
+
+	/** The value of a null link. */
+	private static final int NIL = SsrcIndex.NIL;
+
+	/** The number of intervals after which a silent member times out. */
+	private static final int MEMBER_TIMEOUT_INTERVALS = 5;
+
+	/** The number of intervals after which a silent sender is no longer a sender. */
+	private static final int SENDER_TIMEOUT_INTERVALS = 2;
+
+
+	/** The entry of each SSRC. */
+	private final SsrcIndex index;
+
+	/** The time of the last packet of each entry. */
+	private long[] lastActivity;
+
+	/** The time of the last RTP packet of each entry, or -1 if not a sender. */
+	private long[] lastSent;
+
+	/** The previous entry in the member list. */
+	private int[] memberPrev;
+
+	/** The next entry in the member list. */
+	private int[] memberNext;
+
+	/** The previous entry in the sender list. */
+	private int[] senderPrev;
+
+	/** The next entry in the sender list. */
+	private int[] senderNext;
+
+	/** The least and most recently active members. */
+	private int memberHead = NIL, memberTail = NIL;
+
+	/** The least and most recently sending senders. */
+	private int senderHead = NIL, senderTail = NIL;
+
+	/** The number of members. */
+	private int members;
+
+	/** The number of senders. */
+	private int senders;
+
+
+	/**
+	 * Create a member table.
+	 *
+	 * @param builder The builder instance to construct a table from.
+	 *
+	 * @throws IllegalArgumentException If any of the values are invalid.
+	 */
+	private MemberTable(final Builder builder)
+	{
+		if (builder.capacity < 16 || builder.capacity > 0x40000000 || Integer.bitCount(builder.capacity) != 1)
+		{
+			throw new IllegalArgumentException("Expected valid capacity not " + builder.capacity);
+		}
+
+		this.index = new SsrcIndex(builder.capacity >>> 1);
+		this.lastActivity = new long[index.capacity()];
+		this.lastSent = new long[index.capacity()];
+		this.memberPrev = new int[index.capacity()];
+		this.memberNext = new int[index.capacity()];
+		this.senderPrev = new int[index.capacity()];
+		this.senderNext = new int[index.capacity()];
+	}
+
+
+	/**
+	 * Record a data (RTP) packet from a source, making it a member and a sender.
+	 *
+	 * @param ssrc The ssrc of the source.
+	 * @param now The current time, in milliseconds.
+	 * @return true if the source is a new member, false otherwise.
+	 */
+	public boolean data(final long ssrc, final long now)
+	{
+		int entry = index.find(ssrc);
+		final boolean added = entry == NIL;
+		if (added)
+		{
+			entry = add(ssrc, now);
+		}
+		else
+		{
+			touch(entry, now);
+		}
+
+		if (lastSent[entry] < 0)
+		{
+			senders++;
+		}
+		else
+		{
+			unlinkSender(entry);
+		}
+		lastSent[entry] = now;
+		linkSender(entry);
+
+		return added;
+	}
+
+
+	/**
+	 * Record a data (RTP) packet, making its source a member and a sender.
+	 *
+	 * @param packet The packet received.
+	 * @param now The current time, in milliseconds.
+	 * @return true if the source is a new member, false otherwise.
+	 *
+	 * @throws IllegalArgumentException If the packet is null.
+	 */
+	public boolean data(final RTPPacket packet, final long now)
+	{
+		if (packet == null)
+		{
+			throw new IllegalArgumentException("packet cannot be null");
+		}
+
+		return data(packet.ssrcIdentifier(), now);
+	}
+
+
+	/**
+	 * Record a control (RTCP) packet from a source, making it a member.
+	 *
+	 * @param ssrc The ssrc of the source.
+	 * @param now The current time, in milliseconds.
+	 * @return true if the source is a new member, false otherwise.
+	 */
+	public boolean control(final long ssrc, final long now)
+	{
+		final int entry = index.find(ssrc);
+		if (entry == NIL)
+		{
+			add(ssrc, now);
+			return true;
+		}
+
+		touch(entry, now);
+		return false;
+	}
+
+
+	/**
+	 * Remove each source leaving in a BYE packet.
+	 *
+	 * @param packet The BYE packet received.
+	 * @return The number of members removed.
+	 *
+	 * @throws IllegalArgumentException If the packet is null.
+	 */
+	public int update(final ByeRTCPPacket packet)
+	{
+		if (packet == null)
+		{
+			throw new IllegalArgumentException("packet cannot be null");
+		}
+
+		int removed = 0;
+		for (final long ssrc : packet.ssrcs())
+		{
+			if (remove(ssrc))
+			{
+				removed++;
+			}
+		}
+
+		return removed;
+	}
+
+
+	/**
+	 * Expire the members and senders that have been silent, to be called at each RTCP interval.
+	 *
+	 * NB: This uses the deterministic interval (Td) for the sender timeout too, whereas RFC 3550 section 6.3.5
+	 *     uses the computed transmission interval (T), i.e. Td randomised and divided by e-3/2, so senders are
+	 *     kept for somewhat longer than the RFC suggests. Use the overload taking T where it is known.
+	 *
+	 * @param now The current time, in milliseconds.
+	 * @param interval The deterministic RTCP interval (Td), in milliseconds.
+	 * @param onTimeout Called with the ssrc of each member removed, or null.
+	 * @return The number of members removed.
+	 *
+	 * @throws IllegalArgumentException If the interval is not valid.
+	 */
+	public int expire(final long now, final long interval, final LongConsumer onTimeout)
+	{
+		return expire(now, interval, interval, onTimeout);
+	}
+
+
+	/**
+	 * Expire the members and senders that have been silent, to be called at each RTCP interval, as per
+	 * RFC 3550 section 6.3.5.
+	 *
+	 * @param now The current time, in milliseconds.
+	 * @param interval The deterministic RTCP interval (Td), in milliseconds, members time out after 5 of these.
+	 * @param transmissionInterval The computed RTCP transmission interval (T), in milliseconds, senders time out
+	 *                             after 2 of these.
+	 * @param onTimeout Called with the ssrc of each member removed, or null.
+	 * @return The number of members removed.
+	 *
+	 * @throws IllegalArgumentException If either interval is not valid.
+	 */
+	public int expire(final long now, final long interval, final long transmissionInterval, final LongConsumer onTimeout)
+	{
+		if (interval <= 0)
+		{
+			throw new IllegalArgumentException("Expected valid interval not " + interval);
+		}
+		if (transmissionInterval <= 0)
+		{
+			throw new IllegalArgumentException("Expected valid transmission interval not " + transmissionInterval);
+		}
+
+		final long senderCutoff = now - SENDER_TIMEOUT_INTERVALS * transmissionInterval;
+		while (senderHead != NIL && lastSent[senderHead] < senderCutoff)
+		{
+			final int entry = senderHead;
+			unlinkSender(entry);
+			lastSent[entry] = -1;
+			senders--;
+		}
+
+		int removed = 0;
+		final long memberCutoff = now - MEMBER_TIMEOUT_INTERVALS * interval;
+		while (memberHead != NIL && lastActivity[memberHead] < memberCutoff)
+		{
+			final long ssrc = index.ssrc(memberHead);
+			remove(ssrc);
+			removed++;
+			if (onTimeout != null)
+			{
+				onTimeout.accept(ssrc);
+			}
+		}
+
+		return removed;
+	}
+
+
+	/**
+	 * Remove a member.
+	 *
+	 * @param ssrc The ssrc of the member.
+	 * @return true if the member was held, false otherwise.
+	 */
+	public boolean remove(final long ssrc)
+	{
+		final int entry = index.remove(ssrc);
+		if (entry == NIL)
+		{
+			return false;
+		}
+
+		unlinkMember(entry);
+		if (lastSent[entry] >= 0)
+		{
+			unlinkSender(entry);
+			senders--;
+		}
+		members--;
+		return true;
+	}
+
+
+	/**
+	 * Determine if a source is a member.
+	 *
+	 * @param ssrc The ssrc.
+	 * @return true if the source is a member, false otherwise.
+	 */
+	public boolean isMember(final long ssrc)
+	{
+		return index.find(ssrc) != NIL;
+	}
+
+
+	/**
+	 * Determine if a source is a sender.
+	 *
+	 * @param ssrc The ssrc.
+	 * @return true if the source is a sender, false otherwise.
+	 */
+	public boolean isSender(final long ssrc)
+	{
+		final int entry = index.find(ssrc);
+		return entry != NIL && lastSent[entry] >= 0;
+	}
+
+
+	/**
+	 * Gets the time of the last packet from a member.
+	 *
+	 * @param ssrc The ssrc.
+	 * @return The time in milliseconds, or -1 if the source is not a member.
+	 */
+	public long lastActivity(final long ssrc)
+	{
+		final int entry = index.find(ssrc);
+		return entry == NIL ? -1 : lastActivity[entry];
+	}
+
+
+	/**
+	 * Gets the number of members.
+	 *
+	 * @return The member count.
+	 */
+	public int members()
+	{
+		return members;
+	}
+
+
+	/**
+	 * Gets the number of senders.
+	 *
+	 * @return The sender count.
+	 */
+	public int senders()
+	{
+		return senders;
+	}
+
+
+	/**
+	 * Add a new member.
+	 *
+	 * @param ssrc The ssrc of the member.
+	 * @param now The current time, in milliseconds.
+	 * @return The entry index.
+	 */
+	private int add(final long ssrc, final long now)
+	{
+		final int entry = index.add(ssrc);
+		if (index.capacity() > lastActivity.length)
+		{
+			grow();
+		}
+
+		lastActivity[entry] = now;
+		lastSent[entry] = -1;
+		linkMember(entry);
+		members++;
+		return entry;
+	}
+
+
+	/**
+	 * Record activity of a member, moving it to the tail of the member list.
+	 *
+	 * @param entry The entry index.
+	 * @param now The current time, in milliseconds.
+	 */
+	private void touch(final int entry, final long now)
+	{
+		lastActivity[entry] = now;
+		if (entry != memberTail)
+		{
+			unlinkMember(entry);
+			linkMember(entry);
+		}
+	}
+
+
+	/**
+	 * Link an entry at the tail of the member list.
+	 *
+	 * @param entry The entry index.
+	 */
+	private void linkMember(final int entry)
+	{
+		memberPrev[entry] = memberTail;
+		memberNext[entry] = NIL;
+		if (memberTail == NIL)
+		{
+			memberHead = entry;
+		}
+		else
+		{
+			memberNext[memberTail] = entry;
+		}
+		memberTail = entry;
+	}
+
+
+	/**
+	 * Unlink an entry from the member list.
+	 *
+	 * @param entry The entry index.
+	 */
+	private void unlinkMember(final int entry)
+	{
+		final int prev = memberPrev[entry];
+		final int next = memberNext[entry];
+		if (prev == NIL)
+		{
+			memberHead = next;
+		}
+		else
+		{
+			memberNext[prev] = next;
+		}
+		if (next == NIL)
+		{
+			memberTail = prev;
+		}
+		else
+		{
+			memberPrev[next] = prev;
+		}
+	}
+
+
+	/**
+	 * Link an entry at the tail of the sender list.
+	 *
+	 * @param entry The entry index.
+	 */
+	private void linkSender(final int entry)
+	{
+		senderPrev[entry] = senderTail;
+		senderNext[entry] = NIL;
+		if (senderTail == NIL)
+		{
+			senderHead = entry;
+		}
+		else
+		{
+			senderNext[senderTail] = entry;
+		}
+		senderTail = entry;
+	}
+
+
+	/**
+	 * Unlink an entry from the sender list.
+	 *
+	 * @param entry The entry index.
+	 */
+	private void unlinkSender(final int entry)
+	{
+		final int prev = senderPrev[entry];
+		final int next = senderNext[entry];
+		if (prev == NIL)
+		{
+			senderHead = next;
+		}
+		else
+		{
+			senderNext[prev] = next;
+		}
+		if (next == NIL)
+		{
+			senderTail = prev;
+		}
+		else
+		{
+			senderPrev[next] = prev;
+		}
+	}
+
+
+	/**
+	 * Grow the entry arrays to the capacity of the index.
+	 * NB: Entries keep their index, so the member and sender lists are unchanged.
+	 */
+	private void grow()
+	{
+		final int entries = index.capacity();
+		lastActivity = Arrays.copyOf(lastActivity, entries);
+		lastSent = Arrays.copyOf(lastSent, entries);
+		memberPrev = Arrays.copyOf(memberPrev, entries);
+		memberNext = Arrays.copyOf(memberNext, entries);
+		senderPrev = Arrays.copyOf(senderPrev, entries);
+		senderNext = Arrays.copyOf(senderNext, entries);
+	}
+
+
+	/**
+	 * Obtain a builder for the member table.
+	 *
+	 * @return The builder instance.
+	 */
+	public static Builder builder()
+	{
+		return new Builder();
+	}
+
+
+	/**
+	 * A builder for the member table.
+	 */
+	public static final class Builder
+	{
+		/** The initial table capacity. */
+		private int capacity = 64;
+
+		/**
+		 * Private constructor.
+		 */
+		private Builder() { /* Empty Constructor */ }
+
+
+		/**
+		 * Set the initial table capacity, the table grows when more than half full.
+		 *
+		 * @param capacity The capacity, a power of two of at least 16 (default 64).
+		 * @return The builder instance.
+		 */
+		public Builder withCapacity(final int capacity)
+		{
+			this.capacity = capacity;
+			return this;
+		}
+
+
+		/**
+		 * Build the member table.
+		 *
+		 * @return The member table instance.
+		 *
+		 * @throws IllegalArgumentException If any of the values are invalid.
+		 */
+		public MemberTable build()
+		{
+			return new MemberTable(this);
+		}
+	}
+
+}
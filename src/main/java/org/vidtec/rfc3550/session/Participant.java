@@ -0,0 +1,100 @@
+package org.vidtec.rfc3550.session;
+
+import org.vidtec.rfc3550.rtcp.types.sdes.SdesItem;
+import org.vidtec.rfc3550.rtcp.types.sdes.SdesItem.ItemType;
+
+/**
+ * The SDES description of a source (ssrc) in a session, as held by a {@link ParticipantDirectory}.
+ *
+ * The CNAME is shared (interned) between all the sources of the same participant, so it may be compared by
+ * identity as well as by value. The other items are the latest received of each type, as SDES packets may
+ * carry only a subset of the items each time (RFC 3550 section 6.3.9).
+ *
+ * NB: This class is immutable, and so is thread-safe. A new instance replaces it when any item changes.
+ */
+public final class Participant
+{
+
+	/** The ssrc of the source. */
+	private final long ssrc;
+
+	/** The interned CNAME, or null if not yet known. */
+	private final String cname;
+
+	/** The latest item of each type, indexed by type code. */
+	private final SdesItem[] items;
+
+
+	/**
+	 * Create a participant.
+	 *
+	 * @param ssrc The ssrc of the source.
+	 * @param cname The interned CNAME, or null if not yet known.
+	 * @param items The latest item of each type, indexed by type code, NB: not copied.
+	 */
+	Participant(final long ssrc, final String cname, final SdesItem[] items)
+	{
+		this.ssrc = ssrc;
+		this.cname = cname;
+		this.items = items;
+	}
+
+
+	/**
+	 * Gets the ssrc of the source.
+	 *
+	 * @return The ssrc.
+	 */
+	public long ssrc()
+	{
+		return ssrc;
+	}
+
+
+	/**
+	 * Gets the CNAME of the source.
+	 *
+	 * @return The CNAME, or null if not yet known.
+	 */
+	public String cname()
+	{
+		return cname;
+	}
+
+
+	/**
+	 * Gets the latest item of a type.
+	 *
+	 * @param type The item type.
+	 * @return The item, or null if none has been received.
+	 */
+	public SdesItem item(final ItemType type)
+	{
+		return type == null ? null : items[type.type];
+	}
+
+
+	/**
+	 * Gets the value of the latest item of a type.
+	 *
+	 * @param type The item type.
+	 * @return The value, or null if none has been received.
+	 */
+	public String value(final ItemType type)
+	{
+		final SdesItem item = item(type);
+		return item == null ? null : item.value();
+	}
+
+
+	/**
+	 * Gets the items array, for the directory to update.
+	 *
+	 * @return The items array, NB: not copied.
+	 */
+	SdesItem[] items()
+	{
+		return items;
+	}
+
+}
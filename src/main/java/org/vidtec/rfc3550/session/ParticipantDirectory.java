@@ -0,0 +1,396 @@
+package org.vidtec.rfc3550.session;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.vidtec.rfc3550.memory.SsrcIndex;
+import org.vidtec.rfc3550.rtcp.types.bye.ByeRTCPPacket;
+import org.vidtec.rfc3550.rtcp.types.sdes.Chunk;
+import org.vidtec.rfc3550.rtcp.types.sdes.SdesItem;
+import org.vidtec.rfc3550.rtcp.types.sdes.SdesItem.ItemType;
+import org.vidtec.rfc3550.rtcp.types.sdes.SdesRTCPPacket;
+
+/**
+ * A directory of the sources (ssrcs) in a session and their SDES descriptions, fed by the chunks of
+ * received SDES packets, so that the RTP path can resolve the {@link Participant} of a packet in one lookup.
+ *
+ * Sources are held in an array indexed by an {@link SsrcIndex}, so a lookup is a hash and a short probe with no
+ * boxing. When a chunk repeats the description already held (the usual case, as SDES is sent every interval),
+ * the items are compared in their encoded form, and nothing is decoded or allocated. CNAMEs are interned, so
+ * all the sources of a participant share a single String instance, however many packets carry it.
+ *
+ * A change of CNAME for a known source is counted, as it indicates either an SSRC collision or a participant
+ * restarting with the same SSRC (RFC 3550 section 8.2).
+ *
+ * NB: This class is NOT thread-safe, the participants it returns are immutable and may be shared.
+ */
+public final class ParticipantDirectory
+{
+
+	/** The item types that may be described. */
+	private static final ItemType[] TYPES = ItemType.values();
+
+
+	/** The entry of each SSRC. */
+	private final SsrcIndex index;
+
+	/** The participant of each entry. */
+	private Participant[] participants;
+
+	/** The interned CNAMEs, and the number of sources using each. */
+	private final HashMap<String, Interned> cnames = new HashMap<>();
+
+	/** The number of CNAME changes seen. */
+	private long cnameChanges;
+
+
+	/**
+	 * Create a directory.
+	 *
+	 * @param builder The builder instance to construct a directory from.
+	 *
+	 * @throws IllegalArgumentException If any of the values are invalid.
+	 */
+	private ParticipantDirectory(final Builder builder)
+	{
+		if (builder.capacity < 16 || builder.capacity > 0x40000000 || Integer.bitCount(builder.capacity) != 1)
+		{
+			throw new IllegalArgumentException("Expected valid capacity not " + builder.capacity);
+		}
+
+		this.index = new SsrcIndex(builder.capacity >>> 1);
+		this.participants = new Participant[index.capacity()];
+	}
+
+
+	/**
+	 * Update the description of each source in an SDES packet.
+	 *
+	 * @param packet The SDES packet received.
+	 * @return The number of known sources whose CNAME changed.
+	 *
+	 * @throws IllegalArgumentException If the packet is null.
+	 */
+	public int update(final SdesRTCPPacket packet)
+	{
+		if (packet == null)
+		{
+			throw new IllegalArgumentException("packet cannot be null");
+		}
+
+		int changes = 0;
+		for (final Chunk chunk : packet.chunks())
+		{
+			if (update(chunk))
+			{
+				changes++;
+			}
+		}
+
+		return changes;
+	}
+
+
+	/**
+	 * Update the description of a source from an SDES chunk.
+	 *
+	 * NB: Items of the types not present in the chunk are left unchanged.
+	 *
+	 * @param chunk The SDES chunk received.
+	 * @return true if the source was known and its CNAME changed, false otherwise.
+	 *
+	 * @throws IllegalArgumentException If the chunk is null.
+	 */
+	public boolean update(final Chunk chunk)
+	{
+		if (chunk == null)
+		{
+			throw new IllegalArgumentException("chunk cannot be null");
+		}
+
+		final long ssrc = chunk.ssrcIdentifier();
+		final int entry = index.find(ssrc);
+		final Participant existing = entry == SsrcIndex.NIL ? null : participants[entry];
+
+		// Only copy the items when one differs, comparing their encoded values.
+		SdesItem[] items = existing == null ? null : existing.items();
+		boolean modified = false;
+		for (final ItemType type : TYPES)
+		{
+			final SdesItem item = chunk.item(type);
+			if (item != null && (items == null || !item.equals(items[type.type])))
+			{
+				if (!modified)
+				{
+					items = items == null ? new SdesItem[TYPES.length] : items.clone();
+					modified = true;
+				}
+				items[type.type] = item;
+			}
+		}
+
+		if (!modified)
+		{
+			return false;
+		}
+
+		String cname = existing == null ? null : existing.cname();
+		boolean changed = false;
+		final SdesItem cnameItem = chunk.item(ItemType.CNAME);
+		if (cnameItem != null && (existing == null || !cnameItem.equals(existing.item(ItemType.CNAME))))
+		{
+			if (cname != null)
+			{
+				release(cname);
+				changed = true;
+				cnameChanges++;
+			}
+			cname = intern(cnameItem.value());
+		}
+
+		final int target = entry == SsrcIndex.NIL ? insert(ssrc) : entry;
+		participants[target] = new Participant(ssrc, cname, items);
+
+		return changed;
+	}
+
+
+	/**
+	 * Remove each source leaving in a BYE packet.
+	 *
+	 * @param packet The BYE packet received.
+	 * @return The number of sources removed.
+	 *
+	 * @throws IllegalArgumentException If the packet is null.
+	 */
+	public int update(final ByeRTCPPacket packet)
+	{
+		if (packet == null)
+		{
+			throw new IllegalArgumentException("packet cannot be null");
+		}
+
+		int removed = 0;
+		for (final long ssrc : packet.ssrcs())
+		{
+			if (remove(ssrc))
+			{
+				removed++;
+			}
+		}
+
+		return removed;
+	}
+
+
+	/**
+	 * Gets the participant of a source.
+	 *
+	 * @param ssrc The ssrc of the source.
+	 * @return The participant, or null if no description has been received for the source.
+	 */
+	public Participant participant(final long ssrc)
+	{
+		final int entry = index.find(ssrc);
+		return entry == SsrcIndex.NIL ? null : participants[entry];
+	}
+
+
+	/**
+	 * Gets the CNAME of a source.
+	 *
+	 * @param ssrc The ssrc of the source.
+	 * @return The interned CNAME, or null if not known.
+	 */
+	public String cname(final long ssrc)
+	{
+		final int entry = index.find(ssrc);
+		return entry == SsrcIndex.NIL ? null : participants[entry].cname();
+	}
+
+
+	/**
+	 * Remove a source.
+	 *
+	 * @param ssrc The ssrc of the source.
+	 * @return true if the source was held, false otherwise.
+	 */
+	public boolean remove(final long ssrc)
+	{
+		final int entry = index.remove(ssrc);
+		if (entry == SsrcIndex.NIL)
+		{
+			return false;
+		}
+
+		if (participants[entry].cname() != null)
+		{
+			release(participants[entry].cname());
+		}
+
+		participants[entry] = null;
+		return true;
+	}
+
+
+	/**
+	 * Gets the number of sources held.
+	 *
+	 * @return The ssrc count.
+	 */
+	public int size()
+	{
+		return index.size();
+	}
+
+
+	/**
+	 * Gets the number of distinct CNAMEs held, i.e. the number of participants.
+	 *
+	 * @return The CNAME count.
+	 */
+	public int cnameCount()
+	{
+		return cnames.size();
+	}
+
+
+	/**
+	 * Gets the number of times a known source has changed its CNAME.
+	 *
+	 * @return The change count.
+	 */
+	public long cnameChanges()
+	{
+		return cnameChanges;
+	}
+
+
+	/**
+	 * Intern a CNAME, adding a reference to it.
+	 *
+	 * @param cname The CNAME.
+	 * @return The shared instance.
+	 */
+	private String intern(final String cname)
+	{
+		Interned interned = cnames.get(cname);
+		if (interned == null)
+		{
+			interned = new Interned(cname);
+			cnames.put(cname, interned);
+		}
+
+		interned.references++;
+		return interned.value;
+	}
+
+
+	/**
+	 * Release a reference to an interned CNAME, removing it when no longer used.
+	 *
+	 * @param cname The CNAME.
+	 */
+	private void release(final String cname)
+	{
+		final Interned interned = cnames.get(cname);
+		if (--interned.references == 0)
+		{
+			cnames.remove(cname);
+		}
+	}
+
+
+	/**
+	 * Add an SSRC that is not held.
+	 *
+	 * @param ssrc The ssrc.
+	 * @return The entry index.
+	 */
+	private int insert(final long ssrc)
+	{
+		final int entry = index.add(ssrc);
+		if (index.capacity() > participants.length)
+		{
+			participants = Arrays.copyOf(participants, index.capacity());
+		}
+
+		return entry;
+	}
+
+
+	/**
+	 * Obtain a builder for the directory.
+	 *
+	 * @return The builder instance.
+	 */
+	public static Builder builder()
+	{
+		return new Builder();
+	}
+
+
+	/**
+	 * An interned CNAME.
+	 */
+	private static final class Interned
+	{
+		/** The shared instance. */
+		private final String value;
+
+		/** The number of sources using the CNAME. */
+		private int references;
+
+		/**
+		 * Create an interned CNAME.
+		 *
+		 * @param value The shared instance.
+		 */
+		private Interned(final String value)
+		{
+			this.value = value;
+		}
+	}
+
+
+	/**
+	 * A builder for the participant directory.
+	 */
+	public static final class Builder
+	{
+		/** The initial table capacity. */
+		private int capacity = 64;
+
+		/**
+		 * Private constructor.
+		 */
+		private Builder() { /* Empty Constructor */ }
+
+
+		/**
+		 * Set the initial table capacity, the table grows when more than half full.
+		 *
+		 * @param capacity The capacity, a power of two of at least 16 (default 64).
+		 * @return The builder instance.
+		 */
+		public Builder withCapacity(final int capacity)
+		{
+			this.capacity = capacity;
+			return this;
+		}
+
+
+		/**
+		 * Build the directory.
+		 *
+		 * @return The directory instance.
+		 *
+		 * @throws IllegalArgumentException If any of the values are invalid.
+		 */
+		public ParticipantDirectory build()
+		{
+			return new ParticipantDirectory(this);
+		}
+	}
+
+}
@@ -0,0 +1,180 @@
+package org.vidtec.rfc3550.capture;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.testng.annotations.Test;
+import org.vidtec.rfc3550.rtcp.RTCPPackets;
+import org.vidtec.rfc3550.rtcp.types.report.ReceiverReportRTCPPacket;
+import org.vidtec.rfc3550.rtp.RTPPacket;
+
+@Test
+public class CaptureAnalyzerTest
+{
+
+	private static final int COUNT = 2000;
+
+
+	public void testCanAnalyzeRtpDump() throws Exception
+	{
+		final Path path = Files.createTempFile("rtpdump", ".rtp");
+		final StreamSummary[] expected = { new StreamSummary(1, 8000), new StreamSummary(2, 8000) };
+		try
+		{
+			try (RTPDumpWriter w = RTPDumpWriter.create(path, 0x0A000001, 5004, 1000))
+			{
+				for (int i = 0 ; i < COUNT ; i++)
+				{
+					final RTPPacket p = packet(i);
+					if (p != null)
+					{
+						final long arrival = 1000 + i * 10 + (i * 7) % 5;
+						w.write(p, arrival);
+						expected[(int)p.ssrcIdentifier() - 1].add(p.sequenceNumber(), p.timestamp(), arrival * 1000000L, p.packetLength());
+					}
+					if (i % 100 == 0)
+					{
+						w.write(RTCPPackets.buildWithPackets(ReceiverReportRTCPPacket.builder().withSsrc(1).build()), 1000 + i * 10);
+					}
+				}
+			}
+
+			assertSummaries(CaptureAnalyzer.builder().withClockRate(8000).build().analyze(path), expected);
+			assertSummaries(CaptureAnalyzer.builder().withClockRate(8000).withRangeSize(1).build().analyze(path), expected);
+			assertSummaries(CaptureAnalyzer.builder().withClockRate(8000).withRangeSize(1000).withPool(new ForkJoinPool(3)).build().analyze(path), expected);
+		}
+		finally
+		{
+			Files.delete(path);
+		}
+	}
+
+
+	public void testCanAnalyzePcap() throws Exception
+	{
+		final byte[][] frames = new byte[COUNT + 1][];
+		final StreamSummary[] expected = { new StreamSummary(1, 8000), new StreamSummary(2, 8000) };
+		for (int i = 0 ; i < COUNT ; i++)
+		{
+			final RTPPacket p = packet(i);
+			if (p != null)
+			{
+				frames[i] = PcapReaderTest.ethernet(0x0800, PcapReaderTest.ipv4(17, 0, PcapReaderTest.udp(4000, 5004, p.asByteArray())));
+				expected[(int)p.ssrcIdentifier() - 1].add(p.sequenceNumber(), p.timestamp(), 1000000000L + i * 20000000L, p.packetLength());
+			}
+			else
+			{
+				// Another stream on another port.
+				frames[i] = PcapReaderTest.ethernet(0x0800, PcapReaderTest.ipv4(17, 0, PcapReaderTest.udp(4000, 6004, PcapReaderTest.rtp(3, i))));
+			}
+		}
+		frames[COUNT] = PcapReaderTest.ethernet(0x0800, PcapReaderTest.ipv4(17, 0, PcapReaderTest.udp(4000, 5004, new byte[2])));
+
+		final Path path = PcapReaderTest.pcap(ByteOrder.LITTLE_ENDIAN, false, 1, frames);
+		try
+		{
+			assertSummaries(CaptureAnalyzer.builder().withClockRate(8000).withPorts(5004).build().analyze(path), expected);
+			assertSummaries(CaptureAnalyzer.builder().withClockRate(8000).withPorts(5004).withRangeSize(1).build().analyze(path), expected);
+			assertSummaries(CaptureAnalyzer.builder().withClockRate(8000).withPorts(5004).withRangeSize(4096).build().analyze(path), expected);
+
+			assertEquals(CaptureAnalyzer.builder().build().analyze(path).size(), 3, "incorrect stream count");
+		}
+		finally
+		{
+			Files.delete(path);
+		}
+	}
+
+
+	public void testValidation() throws Exception
+	{
+		try
+		{
+			CaptureAnalyzer.builder().withClockRate(0).build();
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid clock rate not 0", "wrong validation message");
+		}
+
+		try
+		{
+			CaptureAnalyzer.builder().withRangeSize(0).build();
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid range size not 0", "wrong validation message");
+		}
+
+		try
+		{
+			CaptureAnalyzer.builder().withPool(null).build();
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "pool cannot be null", "wrong validation message");
+		}
+
+		try
+		{
+			CaptureAnalyzer.builder().withPorts(-1).build();
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid port not -1", "wrong validation message");
+		}
+
+		try
+		{
+			CaptureAnalyzer.builder().build().analyze(null);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "path cannot be null", "wrong validation message");
+		}
+	}
+
+
+	private static RTPPacket packet(final int i)
+	{
+		// Two interleaved streams, with some loss and reordering, and some packets of neither.
+		if (i % 97 == 0)
+		{
+			return null;
+		}
+
+		final int ssrc = 1 + (i & 1);
+		final int n = i >>> 1;
+		final int sequence = (n % 50 == 10 ? n + 1 : n % 50 == 11 ? n - 1 : n) + 65000;
+		return RTPPacket.builder().withRequiredHeaderFields(0, sequence & 0xFFFF, sequence * 160L, ssrc).withPayload(new byte[20 + n % 3]).build();
+	}
+
+
+	private static void assertSummaries(final Map<Long, StreamSummary> streams, final StreamSummary[] expected)
+	{
+		assertEquals(streams.size(), expected.length, "incorrect stream count");
+		for (final StreamSummary e : expected)
+		{
+			final StreamSummary s = streams.get(e.ssrc());
+			assertEquals(s.packets(), e.packets(), "incorrect packets");
+			assertEquals(s.bytes(), e.bytes(), "incorrect bytes");
+			assertEquals(s.expected(), e.expected(), "incorrect expected");
+			assertEquals(s.lost(), e.lost(), "incorrect lost");
+			assertEquals(s.reordered(), e.reordered(), "incorrect reordered");
+			assertEquals(s.jitter(), e.jitter(), "incorrect jitter");
+			assertEquals(s.bitrate(), e.bitrate(), 1e-6, "incorrect bitrate");
+		}
+	}
+
+}
@@ -0,0 +1,372 @@
+package org.vidtec.rfc3550.capture;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.testng.annotations.Test;
+import org.vidtec.rfc3550.rtcp.RTCPPackets;
+import org.vidtec.rfc3550.rtcp.types.report.ReceiverReportRTCPPacket;
+import org.vidtec.rfc3550.rtp.RTPPacket;
+import org.vidtec.rfc3550.rtp.RTPPacketView;
+
+@Test
+public class PcapReaderTest
+{
+
+	private static final byte[] V4_SOURCE = { 10, 0, 0, 1 };
+	private static final byte[] V4_DESTINATION = { 10, 0, 0, 2 };
+	private static final byte[] V6_SOURCE = { 0x20, 0x01, 0x0d, (byte)0xb8, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1 };
+	private static final byte[] V6_DESTINATION = { 0x20, 0x01, 0x0d, (byte)0xb8, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 2 };
+
+
+	public void testCanReadPcapEthernet() throws Exception
+	{
+		final byte[][] frames =
+		{
+			ethernet(0x0800, ipv4(17, 0, udp(4000, 5004, rtp(1, 100)))),
+			ethernet(0x0800, ipv4(6, 0, udp(4000, 5004, rtp(1, 101)))),
+			ethernet(0x0800, ipv4(17, 0x2000, udp(4000, 5004, rtp(1, 102)))),
+			ethernet(0x0806, new byte[28]),
+			vlan(ipv4(17, 0, udp(4000, 5004, rtp(1, 103)))),
+			ethernet(0x86DD, ipv6(udp(4002, 5006, rtp(2, 104)))),
+			ethernet(0x0800, ipv4(17, 0, udp(4001, 5005, rtcp(1)))),
+		};
+		final Path path = pcap(ByteOrder.LITTLE_ENDIAN, false, 1, frames);
+		try (PcapReader r = PcapReader.builder().open(path))
+		{
+			assertTrue(r.next(), "should have a datagram");
+			assertEquals(r.timestampNanos(), 1000000000L, "incorrect timestamp");
+			assertEquals(r.timestampMillis(), 1000, "incorrect timestamp");
+			assertEquals(r.ipVersion(), 4, "incorrect version");
+			assertEquals(r.sourcePort(), 4000, "incorrect port");
+			assertEquals(r.destinationPort(), 5004, "incorrect port");
+			assertEquals(r.payloadLength(), 16, "incorrect length");
+			assertTrue(!r.isRtcp(), "should be RTP");
+			assertTrue(r.isRtp(), "should look like RTP");
+
+			final byte[] address = new byte[16];
+			assertEquals(r.sourceAddress(address), 4, "incorrect address length");
+			assertEquals(Arrays.copyOf(address, 4), V4_SOURCE, "incorrect address");
+			assertEquals(r.destinationAddress(address), 4, "incorrect address length");
+			assertEquals(Arrays.copyOf(address, 4), V4_DESTINATION, "incorrect address");
+
+			final RTPPacketView v = r.rtp();
+			assertEquals(v.ssrcIdentifier(), 1, "incorrect ssrc");
+			assertEquals(v.sequenceNumber(), 100, "incorrect sequence number");
+			assertEquals(v.payloadLength(), 4, "incorrect payload");
+
+			// The TCP, fragment and ARP frames are skipped.
+			assertTrue(r.next(), "should have a datagram");
+			assertEquals(r.rtp().sequenceNumber(), 103, "incorrect sequence number");
+			assertEquals(r.timestampNanos(), 1000000000L + 4 * 20000000L, "incorrect timestamp");
+
+			assertTrue(r.next(), "should have a datagram");
+			assertEquals(r.ipVersion(), 6, "incorrect version");
+			assertEquals(r.sourceAddress(address), 16, "incorrect address length");
+			assertEquals(address, V6_SOURCE, "incorrect address");
+			assertEquals(r.destinationAddress(address), 16, "incorrect address length");
+			assertEquals(address, V6_DESTINATION, "incorrect address");
+			assertEquals(r.rtp().sequenceNumber(), 104, "incorrect sequence number");
+
+			assertTrue(r.next(), "should have a datagram");
+			assertTrue(r.isRtcp(), "should be RTCP");
+			assertTrue(!r.isRtp(), "should not look like RTP");
+			assertEquals(r.rtcp().packets().get(0).packetLength(), 8, "incorrect packet");
+
+			assertTrue(!r.next(), "should be at the end");
+			assertEquals(r.frames(), 7, "incorrect frame count");
+
+			r.rewind();
+			assertTrue(r.next(), "should have a datagram");
+			assertEquals(r.rtp().sequenceNumber(), 100, "incorrect sequence number");
+		}
+		finally
+		{
+			Files.delete(path);
+		}
+	}
+
+
+	public void testCanReadPcapRawNanos() throws Exception
+	{
+		final Path path = pcap(ByteOrder.BIG_ENDIAN, true, 101, ipv4(17, 0, udp(4000, 5004, rtp(7, 1))), ipv6(udp(4000, 5004, rtp(7, 2))));
+		try (PcapReader r = PcapReader.builder().open(path))
+		{
+			assertTrue(r.next(), "should have a datagram");
+			assertEquals(r.timestampNanos(), 1000000000L, "incorrect timestamp");
+			assertEquals(r.rtp().sequenceNumber(), 1, "incorrect sequence number");
+
+			assertTrue(r.next(), "should have a datagram");
+			assertEquals(r.timestampNanos(), 1000000000L + 20000000L, "incorrect timestamp");
+			assertEquals(r.rtp().sequenceNumber(), 2, "incorrect sequence number");
+
+			assertTrue(!r.next(), "should be at the end");
+		}
+		finally
+		{
+			Files.delete(path);
+		}
+	}
+
+
+	public void testCanReadPcapng() throws Exception
+	{
+		final ByteBuffer bb = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+
+		// Section header.
+		bb.putInt(0x0A0D0D0A).putInt(28).putInt(0x1A2B3C4D).putShort((short)1).putShort((short)0).putLong(-1).putInt(28);
+
+		// Interface with nanosecond timestamps.
+		bb.putInt(1).putInt(28).putShort((short)1).putShort((short)0).putInt(0xFFFF);
+		bb.putShort((short)9).putShort((short)1).put((byte)9).put(new byte[3]).putInt(28);
+
+		// Name resolution block, skipped.
+		bb.putInt(4).putInt(16).putInt(0).putInt(16);
+
+		enhancedPacket(bb, 1500000000123L, ethernet(0x0800, ipv4(17, 0, udp(4000, 5004, rtp(3, 9)))));
+		enhancedPacket(bb, 1500000000456L, ethernet(0x0800, ipv4(17, 0, udp(4001, 5005, rtcp(3)))));
+
+		final Path path = write(bb);
+		try (PcapReader r = PcapReader.builder().open(path))
+		{
+			assertTrue(r.next(), "should have a datagram");
+			assertEquals(r.timestampNanos(), 1500000000123L, "incorrect timestamp");
+			assertEquals(r.rtp().sequenceNumber(), 9, "incorrect sequence number");
+
+			assertTrue(r.next(), "should have a datagram");
+			assertEquals(r.timestampNanos(), 1500000000456L, "incorrect timestamp");
+			assertTrue(r.isRtcp(), "should be RTCP");
+
+			assertTrue(!r.next(), "should be at the end");
+			assertEquals(r.frames(), 2, "incorrect frame count");
+		}
+		finally
+		{
+			Files.delete(path);
+		}
+	}
+
+
+	public void testCanFilter() throws Exception
+	{
+		final Path path = pcap(ByteOrder.LITTLE_ENDIAN, false, 1,
+				ethernet(0x0800, ipv4(17, 0, udp(4000, 5004, rtp(1, 1)))),
+				ethernet(0x0800, ipv4(17, 0, udp(4000, 6004, rtp(2, 2)))),
+				ethernet(0x0800, ipv4(17, 0, udp(4000, 5004, rtp(3, 3)))),
+				ethernet(0x0800, ipv4(17, 0, udp(5005, 4001, rtcp(3)))),
+				ethernet(0x0800, ipv4(17, 0, udp(4000, 5004, new byte[4]))));
+		try
+		{
+			try (PcapReader r = PcapReader.builder().withPorts(5004, 5005).open(path))
+			{
+				assertTrue(r.next(), "should have a datagram");
+				assertEquals(r.rtp().ssrcIdentifier(), 1, "incorrect ssrc");
+				assertTrue(r.next(), "should have a datagram");
+				assertEquals(r.rtp().ssrcIdentifier(), 3, "incorrect ssrc");
+				assertTrue(r.next(), "should have a datagram");
+				assertTrue(r.isRtcp(), "should be RTCP");
+				assertTrue(r.next(), "should have a datagram");
+				assertEquals(r.payloadLength(), 4, "incorrect length");
+				assertTrue(!r.next(), "should be at the end");
+			}
+
+			try (PcapReader r = PcapReader.builder().withSsrcs(3).withSsrcs(2).open(path))
+			{
+				assertTrue(r.next(), "should have a datagram");
+				assertEquals(r.rtp().ssrcIdentifier(), 2, "incorrect ssrc");
+				assertTrue(r.next(), "should have a datagram");
+				assertEquals(r.rtp().ssrcIdentifier(), 3, "incorrect ssrc");
+				assertTrue(r.next(), "should have a datagram");
+				assertTrue(r.isRtcp(), "should be RTCP");
+				assertTrue(!r.next(), "should be at the end");
+			}
+
+			try (PcapReader r = PcapReader.builder().withPorts(6004).withSsrcs(1).open(path))
+			{
+				assertTrue(!r.next(), "should be at the end");
+				assertEquals(r.frames(), 5, "incorrect frame count");
+			}
+		}
+		finally
+		{
+			Files.delete(path);
+		}
+	}
+
+
+	public void testTruncatedRecordEndsFile() throws Exception
+	{
+		final Path path = pcap(ByteOrder.LITTLE_ENDIAN, false, 1,
+				ethernet(0x0800, ipv4(17, 0, udp(4000, 5004, rtp(1, 1)))),
+				ethernet(0x0800, ipv4(17, 0, udp(4000, 5004, rtp(1, 2)))));
+		try
+		{
+			final byte[] data = Files.readAllBytes(path);
+			Files.write(path, Arrays.copyOf(data, data.length - 10));
+
+			try (PcapReader r = PcapReader.builder().open(path))
+			{
+				assertTrue(r.next(), "should have a datagram");
+				assertTrue(!r.next(), "should be at the end");
+			}
+		}
+		finally
+		{
+			Files.delete(path);
+		}
+	}
+
+
+	public void testValidation() throws Exception
+	{
+		try
+		{
+			PcapReader.builder().open(null);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "path cannot be null", "wrong validation message");
+		}
+
+		try
+		{
+			PcapReader.builder().withPorts(65536);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid port not 65536", "wrong validation message");
+		}
+
+		try
+		{
+			PcapReader.builder().withSsrcs(-1);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid ssrc not -1", "wrong validation message");
+		}
+
+		final Path path = write(ByteBuffer.wrap(new byte[32]));
+		try
+		{
+			PcapReader.builder().open(path);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Invalid capture file header", "wrong validation message");
+		}
+		finally
+		{
+			Files.delete(path);
+		}
+
+		final Path empty = pcap(ByteOrder.LITTLE_ENDIAN, false, 1);
+		try (PcapReader r = PcapReader.builder().open(empty))
+		{
+			assertTrue(!r.next(), "should be at the end");
+			r.rtp();
+			fail("Expected error");
+		}
+		catch (IllegalStateException e)
+		{
+			assertEquals(e.getMessage(), "no current datagram", "wrong validation message");
+		}
+		finally
+		{
+			Files.delete(empty);
+		}
+	}
+
+
+	static byte[] rtp(final long ssrc, final int sequence)
+	{
+		return RTPPacket.builder().withRequiredHeaderFields(0, sequence, 0, ssrc).withPayload(new byte[4]).build().asByteArray();
+	}
+
+
+	static byte[] rtcp(final long ssrc)
+	{
+		return RTCPPackets.buildWithPackets(ReceiverReportRTCPPacket.builder().withSsrc(ssrc).build()).asByteArray();
+	}
+
+
+	static byte[] udp(final int source, final int destination, final byte[] payload)
+	{
+		return ByteBuffer.allocate(8 + payload.length).putShort((short)source).putShort((short)destination)
+						 .putShort((short)(8 + payload.length)).putShort((short)0).put(payload).array();
+	}
+
+
+	static byte[] ipv4(final int protocol, final int fragment, final byte[] payload)
+	{
+		return ByteBuffer.allocate(20 + payload.length).put((byte)0x45).put((byte)0).putShort((short)(20 + payload.length))
+						 .putShort((short)0).putShort((short)fragment).put((byte)64).put((byte)protocol).putShort((short)0)
+						 .put(V4_SOURCE).put(V4_DESTINATION).put(payload).array();
+	}
+
+
+	static byte[] ipv6(final byte[] payload)
+	{
+		// With a destination options header before the UDP header.
+		return ByteBuffer.allocate(48 + payload.length).putInt(0x60000000).putShort((short)(8 + payload.length))
+						 .put((byte)60).put((byte)64).put(V6_SOURCE).put(V6_DESTINATION)
+						 .put((byte)17).put((byte)0).put(new byte[6]).put(payload).array();
+	}
+
+
+	static byte[] ethernet(final int etherType, final byte[] payload)
+	{
+		return ByteBuffer.allocate(14 + payload.length).put(new byte[12]).putShort((short)etherType).put(payload).array();
+	}
+
+
+	static byte[] vlan(final byte[] payload)
+	{
+		return ByteBuffer.allocate(18 + payload.length).put(new byte[12]).putShort((short)0x8100).putShort((short)42)
+						 .putShort((short)0x0800).put(payload).array();
+	}
+
+
+	static void enhancedPacket(final ByteBuffer bb, final long timestamp, final byte[] frame)
+	{
+		final int padded = (frame.length + 3) & ~3;
+		bb.putInt(6).putInt(32 + padded).putInt(0).putInt((int)(timestamp >>> 32)).putInt((int)timestamp)
+		  .putInt(frame.length).putInt(frame.length).put(frame).put(new byte[padded - frame.length]).putInt(32 + padded);
+	}
+
+
+	static Path pcap(final ByteOrder order, final boolean nanos, final int linkType, final byte[] ... frames) throws Exception
+	{
+		final ByteBuffer bb = ByteBuffer.allocate(1 << 20).order(order);
+		bb.putInt(nanos ? 0xA1B23C4D : 0xA1B2C3D4).putShort((short)2).putShort((short)4).putInt(0).putInt(0).putInt(0xFFFF).putInt(linkType);
+
+		for (int i = 0 ; i < frames.length ; i++)
+		{
+			final long fraction = i * (nanos ? 20000000L : 20000L);
+			bb.putInt(1).putInt((int)fraction).putInt(frames[i].length).putInt(frames[i].length).put(frames[i]);
+		}
+
+		return write(bb);
+	}
+
+
+	static Path write(final ByteBuffer bb) throws Exception
+	{
+		final Path path = Files.createTempFile("capture", ".pcap");
+		Files.write(path, Arrays.copyOf(bb.array(), bb.position() == 0 ? bb.limit() : bb.position()));
+
+		return path;
+	}
+
+}
@@ -0,0 +1,155 @@
+package org.vidtec.rfc3550.capture;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.testng.annotations.Test;
+import org.vidtec.rfc3550.rtcp.RTCPPackets;
+import org.vidtec.rfc3550.rtcp.types.report.ReceiverReportRTCPPacket;
+import org.vidtec.rfc3550.rtp.RTPPacket;
+import org.vidtec.rfc3550.rtp.RTPPacketView;
+
+@Test
+public class RTPDumpReaderTest
+{
+
+	public void testCanReadWrittenPackets() throws Exception
+	{
+		final Path path = Files.createTempFile("rtpdump", ".rtp");
+		try
+		{
+			try (RTPDumpWriter w = RTPDumpWriter.create(path, 0x0A000001, 5004, 1000))
+			{
+				for (int i = 0 ; i < 5000 ; i++)
+				{
+					w.write(RTPPacket.builder().withRequiredHeaderFields(0, i, i * 160, 20).withPayload(new byte[160]).build(), 1000 + i * 20);
+				}
+				w.write(RTCPPackets.buildWithPackets(ReceiverReportRTCPPacket.builder().withSsrc(30).build()), 200000);
+
+				final RTPPacket p = RTPPacket.builder().withRequiredHeaderFields(0, 9, 0, 21).withPayload(new byte[4]).build();
+				w.write(new RTPPacketView().wrap(ByteBuffer.wrap(p.asByteArray()), 0, p.packetLength()), 200001);
+			}
+
+			try (RTPDumpReader r = RTPDumpReader.open(path))
+			{
+				assertEquals(r.startMillis(), 1000, "incorrect start time");
+				assertEquals(r.address(), 0x0A000001, "incorrect address");
+				assertEquals(r.port(), 5004, "incorrect port");
+
+				for (int i = 0 ; i < 5000 ; i++)
+				{
+					assertTrue(r.next(), "should have a record");
+					assertTrue(!r.isRtcp(), "should be RTP");
+					assertTrue(r.isRtp(), "should look like RTP");
+					assertEquals(r.arrivalMillis(), 1000 + i * 20, "incorrect arrival");
+					final RTPPacketView v = r.rtp();
+					assertEquals(v.sequenceNumber(), i, "incorrect sequence number");
+					assertEquals(v.payloadLength(), 160, "incorrect payload");
+				}
+
+				assertTrue(r.next(), "should have a record");
+				assertTrue(r.isRtcp(), "should be RTCP");
+				assertTrue(!r.isRtp(), "should not look like RTP");
+				assertEquals(r.rtcp().packets().get(0).packetLength(), 8, "incorrect packet");
+				try
+				{
+					r.rtp();
+					fail("Expected error");
+				}
+				catch (IllegalStateException e)
+				{
+					assertEquals(e.getMessage(), "current record is not an RTP packet", "wrong validation message");
+				}
+
+				assertTrue(r.next(), "should have a record");
+				assertEquals(r.rtp().ssrcIdentifier(), 21, "incorrect packet");
+				assertTrue(!r.next(), "should be at the end");
+
+				r.rewind();
+				assertTrue(r.next(), "should have a record");
+				assertEquals(r.rtp().sequenceNumber(), 0, "incorrect sequence number");
+			}
+		}
+		finally
+		{
+			Files.delete(path);
+		}
+	}
+
+
+	public void testStopsAtTruncatedRecord() throws Exception
+	{
+		final Path path = Files.createTempFile("rtpdump", ".rtp");
+		try
+		{
+			try (RTPDumpWriter w = RTPDumpWriter.create(path, 0, 5004, 0))
+			{
+				w.write(RTPPacket.builder().withRequiredHeaderFields(0, 1, 0, 20).withPayload(new byte[4]).build(), 0);
+				w.write(RTPPacket.builder().withRequiredHeaderFields(0, 2, 0, 20).withPayload(new byte[4]).build(), 0);
+			}
+			try (FileChannel c = FileChannel.open(path, StandardOpenOption.WRITE))
+			{
+				c.truncate(c.size() - 3);
+			}
+
+			try (RTPDumpReader r = RTPDumpReader.open(path))
+			{
+				assertTrue(r.next(), "should have a record");
+				assertTrue(!r.next(), "truncated record should end the file");
+				try
+				{
+					r.packetLength();
+					fail("Expected error");
+				}
+				catch (IllegalStateException e)
+				{
+					assertEquals(e.getMessage(), "no current record", "wrong validation message");
+				}
+			}
+		}
+		finally
+		{
+			Files.delete(path);
+		}
+	}
+
+
+	public void testCorrectlyValidatesData() throws Exception
+	{
+		final Path path = Files.createTempFile("rtpdump", ".rtp");
+		try
+		{
+			Files.write(path, "#!rtpplay2.0 0.0.0.0/0\n0123456789abcdef".getBytes("US-ASCII"));
+			try
+			{
+				RTPDumpReader.open(path);
+				fail("Expected error");
+			}
+			catch (IllegalArgumentException e)
+			{
+				assertEquals(e.getMessage(), "Invalid rtpdump file header", "wrong validation message");
+			}
+		}
+		finally
+		{
+			Files.delete(path);
+		}
+		try
+		{
+			RTPDumpReader.open(null);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "path cannot be null", "wrong validation message");
+		}
+	}
+
+}
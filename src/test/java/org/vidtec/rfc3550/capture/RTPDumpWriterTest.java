@@ -0,0 +1,94 @@
+package org.vidtec.rfc3550.capture;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.testng.annotations.Test;
+import org.vidtec.rfc3550.rtp.RTPPacket;
+
+@Test
+public class RTPDumpWriterTest
+{
+
+	public void testWritesRtpDumpFormat() throws Exception
+	{
+		final Path path = Files.createTempFile("rtpdump", ".rtp");
+		try
+		{
+			final RTPPacket p = RTPPacket.builder().withRequiredHeaderFields(0, 1, 160, 20).withPayload(new byte[] { 1, 2, 3, 4 }).build();
+			try (RTPDumpWriter w = RTPDumpWriter.create(path, 0x0A000001, 5004, 1691011200250L))
+			{
+				w.write(p, 1691011200270L);
+			}
+
+			final byte[] header = "#!rtpplay1.0 10.0.0.1/5004\n".getBytes(StandardCharsets.US_ASCII);
+			final ByteBuffer bb = ByteBuffer.wrap(Files.readAllBytes(path));
+			assertEquals(bb.remaining(), header.length + 16 + 8 + 16, "incorrect file length");
+
+			bb.position(header.length);
+			assertEquals(bb.getInt(), 1691011200, "incorrect start seconds");
+			assertEquals(bb.getInt(), 250000, "incorrect start micros");
+			assertEquals(bb.getInt(), 0x0A000001, "incorrect address");
+			assertEquals(bb.getShort(), 5004, "incorrect port");
+			assertEquals(bb.getShort(), 0, "incorrect padding");
+
+			assertEquals(bb.getShort(), 24, "incorrect record length");
+			assertEquals(bb.getShort(), 16, "incorrect packet length");
+			assertEquals(bb.getInt(), 20, "incorrect offset");
+			final byte[] data = new byte[16];
+			bb.get(data);
+			assertEquals(data, p.asByteArray(), "incorrect packet data");
+		}
+		finally
+		{
+			Files.delete(path);
+		}
+	}
+
+
+	public void testCorrectlyValidatesData() throws Exception
+	{
+		final Path path = Files.createTempFile("rtpdump", ".rtp");
+		try (RTPDumpWriter w = RTPDumpWriter.create(path, 0, 5004, 1000))
+		{
+			try
+			{
+				w.write(RTPPacket.builder().withRequiredHeaderFields(0, 1, 160, 20).withPayload(new byte[4]).build(), 999);
+				fail("Expected error");
+			}
+			catch (IllegalArgumentException e)
+			{
+				assertEquals(e.getMessage(), "Expected valid arrival time not 999", "wrong validation message");
+			}
+			try
+			{
+				w.write((RTPPacket)null, 1000);
+				fail("Expected error");
+			}
+			catch (IllegalArgumentException e)
+			{
+				assertEquals(e.getMessage(), "packet cannot be null", "wrong validation message");
+			}
+		}
+		finally
+		{
+			Files.delete(path);
+		}
+
+		try
+		{
+			RTPDumpWriter.create(path, 0, 70000, 0);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid port not 70000", "wrong validation message");
+		}
+	}
+
+}
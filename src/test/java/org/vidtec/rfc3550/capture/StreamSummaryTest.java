@@ -0,0 +1,144 @@
+package org.vidtec.rfc3550.capture;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+@Test
+public class StreamSummaryTest
+{
+
+	public void testCountsLossAndReordering()
+	{
+		final StreamSummary s = new StreamSummary(5, 8000);
+		final int[] sequence = { 65530, 65531, 65532, 65533, 65534, 65535, 0, 1, 4, 3, 5 };
+		for (int i = 0 ; i < sequence.length ; i++)
+		{
+			s.add(sequence[i], i * 160, 1000000000L + i * 20000000L, 172);
+		}
+
+		assertEquals(s.ssrc(), 5, "incorrect ssrc");
+		assertEquals(s.packets(), 11, "incorrect packets");
+		assertEquals(s.bytes(), 11 * 172, "incorrect bytes");
+		assertEquals(s.expected(), 12, "incorrect expected");
+		assertEquals(s.lost(), 1, "incorrect lost");
+		assertEquals(s.reordered(), 1, "incorrect reordered");
+		assertEquals(s.jitter(), 0, "incorrect jitter");
+		assertEquals(s.firstArrivalNanos(), 1000000000L, "incorrect first arrival");
+		assertEquals(s.lastArrivalNanos(), 1200000000L, "incorrect last arrival");
+		assertEquals(s.bitrate(), 11 * 172 * 8 / 0.2, 1e-6, "incorrect bitrate");
+	}
+
+
+	public void testJitter()
+	{
+		final StreamSummary s = new StreamSummary(5, 8000);
+		s.add(0, 0, 0, 100);
+
+		// Arrives 80 units (10ms) late.
+		s.add(1, 160, 30000000L, 100);
+		assertEquals(s.jitter(), 5, "incorrect jitter");
+	}
+
+
+	public void testMergeMatchesWhole()
+	{
+		final Random random = new Random(7);
+		final int count = 300;
+		final int[] sequence = new int[count];
+		final long[] arrival = new long[count];
+		for (int i = 0 ; i < count ; i++)
+		{
+			sequence[i] = (65400 + i) & 0xFFFF;
+			arrival[i] = 1000000000L + i * 20000000L + random.nextInt(5000000);
+		}
+		for (int i = 10 ; i < count ; i += 37)
+		{
+			// Swap some neighbours, and drop some packets.
+			final int t = sequence[i];
+			sequence[i] = sequence[i + 1];
+			sequence[i + 1] = t;
+			sequence[i + 5] = -1;
+		}
+
+		final StreamSummary whole = summary(sequence, arrival, 0, count);
+		for (int split = 0 ; split <= count ; split += 7)
+		{
+			final StreamSummary merged = summary(sequence, arrival, 0, split);
+			merged.merge(summary(sequence, arrival, split, Math.min(count, split + 50)));
+			merged.merge(summary(sequence, arrival, Math.min(count, split + 50), count));
+
+			assertEquals(merged.packets(), whole.packets(), "incorrect packets at " + split);
+			assertEquals(merged.bytes(), whole.bytes(), "incorrect bytes at " + split);
+			assertEquals(merged.expected(), whole.expected(), "incorrect expected at " + split);
+			assertEquals(merged.lost(), whole.lost(), "incorrect lost at " + split);
+			assertEquals(merged.reordered(), whole.reordered(), "incorrect reordered at " + split);
+			assertEquals(merged.jitter(), whole.jitter(), "incorrect jitter at " + split);
+			assertEquals(merged.firstArrivalNanos(), whole.firstArrivalNanos(), "incorrect first arrival at " + split);
+			assertEquals(merged.lastArrivalNanos(), whole.lastArrivalNanos(), "incorrect last arrival at " + split);
+		}
+	}
+
+
+	public void testValidation()
+	{
+		try
+		{
+			new StreamSummary(-1, 8000);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid ssrc not -1", "wrong validation message");
+		}
+
+		try
+		{
+			new StreamSummary(1, 0);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid clock rate not 0", "wrong validation message");
+		}
+
+		try
+		{
+			new StreamSummary(1, 8000).merge(null);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "summary cannot be null", "wrong validation message");
+		}
+
+		try
+		{
+			new StreamSummary(1, 8000).merge(new StreamSummary(2, 8000));
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected summary of ssrc 1 not 2", "wrong validation message");
+		}
+	}
+
+
+	private static StreamSummary summary(final int[] sequence, final long[] arrival, final int from, final int to)
+	{
+		final StreamSummary s = new StreamSummary(9, 8000);
+		for (int i = from ; i < to ; i++)
+		{
+			if (sequence[i] >= 0)
+			{
+				s.add(sequence[i], sequence[i] * 160L, arrival[i], 100 + i);
+			}
+		}
+
+		return s;
+	}
+
+}
@@ -0,0 +1,149 @@
+package org.vidtec.rfc3550.memory;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+import java.nio.ByteBuffer;
+
+import org.testng.annotations.Test;
+import org.vidtec.rfc3550.rtp.RTPPacket;
+import org.vidtec.rfc3550.rtp.RTPPacketView;
+
+@Test
+public class PacketArenaTest
+{
+
+	public void testCanStoreAndReadPackets()
+	{
+		final PacketArena arena = PacketArena.allocate(4, 64);
+		assertEquals(arena.capacity(), 4, "incorrect capacity");
+		assertEquals(arena.slotSize(), 64, "incorrect slot size");
+		assertEquals(arena.available(), 4, "incorrect available count");
+
+		final RTPPacket p1 = RTPPacket.builder().withRequiredHeaderFields(0, 10, 160, 5).withPayload(new byte[] { 0x01, 0x02 }).build();
+		final RTPPacket p2 = RTPPacket.builder().withRequiredHeaderFields(0, 11, 320, 5).withPayload(new byte[] { 0x03 }, 4).build();
+
+		final int h1 = arena.store(p1);
+		final int h2 = arena.store(p2);
+		assertEquals(h1, 0, "incorrect handle");
+		assertEquals(h2, 1, "incorrect handle");
+		assertEquals(arena.size(), 2, "incorrect size");
+		assertEquals(arena.length(h1), p1.packetLength(), "incorrect length");
+		assertEquals(arena.length(h2), p2.packetLength(), "incorrect length");
+		assertEquals(arena.offset(h2), 64, "incorrect offset");
+
+		assertEquals(arena.asByteArray(h1), p1.asByteArray(), "incorrect data");
+		assertEquals(arena.asByteArray(h2), p2.asByteArray(), "incorrect data");
+		assertEquals(PacketHeaders.rtpSequenceNumber(arena.buffer(), arena.offset(h2)), 11, "incorrect seq. no");
+
+		final RTPPacketView v = new RTPPacketView();
+		assertEquals(arena.view(h2, v).timestamp(), 320, "incorrect timestamp");
+		assertEquals(v.payloadLength(), 1, "incorrect payload length");
+
+		final ByteBuffer dst = ByteBuffer.allocate(64);
+		assertEquals(arena.copyTo(h1, dst), p1.packetLength(), "incorrect copy length");
+		assertEquals(dst.position(), p1.packetLength(), "incorrect position");
+	}
+
+
+	public void testCanStoreBufferRegionsAndViews()
+	{
+		final RTPPacket p = RTPPacket.builder().withRequiredHeaderFields(8, 99, 0, 5).withPayload(new byte[] { 0x01 }).build();
+		final ByteBuffer bb = ByteBuffer.allocate(32);
+		bb.position(5);
+		p.writeTo(bb);
+
+		final PacketArena arena = PacketArena.allocate(2, 1500);
+		final int h1 = arena.store(bb, 5, p.packetLength());
+		assertEquals(arena.asByteArray(h1), p.asByteArray(), "incorrect data");
+		assertEquals(bb.position(), 5 + p.packetLength(), "source position should not change");
+
+		final int h2 = arena.store(new RTPPacketView().wrap(bb, 5, p.packetLength()));
+		assertEquals(arena.asByteArray(h2), p.asByteArray(), "incorrect data");
+	}
+
+
+	public void testCorrectlyRecyclesSlots()
+	{
+		final RTPPacket p = RTPPacket.builder().withRequiredHeaderFields(0, 1, 0, 5).withPayload(new byte[] { 0x01 }).build();
+		final PacketArena arena = PacketArena.allocate(2, 13);
+
+		final int h1 = arena.store(p);
+		final int h2 = arena.store(p);
+		assertEquals(arena.store(p), -1, "arena should be full");
+		assertEquals(arena.available(), 0, "incorrect available count");
+
+		arena.free(h1);
+		assertEquals(arena.size(), 1, "incorrect size");
+		assertEquals(arena.store(p), h1, "slot should be re-used");
+
+		arena.free(h2);
+		arena.free(h1);
+		assertEquals(arena.size(), 0, "incorrect size");
+
+		final RTPPacket big = RTPPacket.builder().withRequiredHeaderFields(0, 1, 0, 5).withPayload(new byte[] { 0x01, 0x02 }).build();
+		assertEquals(arena.store(big), -1, "packet should not fit slot");
+	}
+
+
+	public void testCorrectlyValidatesArenaData()
+	{
+		try
+		{
+			PacketArena.allocate(0, 10);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid slot count not 0", "wrong validation message");
+		}
+		try
+		{
+			PacketArena.allocate(65536, 65536);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid slot size not 65536", "wrong validation message");
+		}
+
+		final PacketArena arena = PacketArena.allocate(2, 64);
+		try
+		{
+			arena.store((RTPPacket)null);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "packet cannot be null", "wrong validation message");
+		}
+		try
+		{
+			arena.store(ByteBuffer.allocate(10), 5, 6);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Invalid packet region, offset 5 and length 6", "wrong validation message");
+		}
+		try
+		{
+			arena.length(0);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Invalid packet handle 0", "wrong validation message");
+		}
+		try
+		{
+			arena.free(2);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Invalid packet handle 2", "wrong validation message");
+		}
+	}
+
+}
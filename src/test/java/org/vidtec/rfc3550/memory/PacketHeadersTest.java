@@ -0,0 +1,67 @@
+package org.vidtec.rfc3550.memory;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.testng.annotations.Test;
+import org.vidtec.rfc3550.rtcp.types.bye.ByeRTCPPacket;
+import org.vidtec.rfc3550.rtp.RTPPacket;
+
+@Test
+public class PacketHeadersTest
+{
+
+	public void testCanReadRtpHeaderFields()
+	{
+		final RTPPacket p = RTPPacket.builder()
+				.withMarker()
+				.withRequiredHeaderFields(96, 0xFFFE, 0xFFFFFFF0L, 0x80000001L)
+				.withPayload(new byte[] { 0x01 })
+				.build();
+
+		// Put the packet at an offset in a direct buffer with the wrong byte order, which should not matter.
+		final ByteBuffer bb = ByteBuffer.allocateDirect(32).order(ByteOrder.LITTLE_ENDIAN);
+		bb.position(3);
+		p.writeTo(bb);
+
+		assertEquals(PacketHeaders.version(bb, 3), 2, "incorrect version");
+		assertTrue(!PacketHeaders.isRtcp(bb, 3), "should be rtp");
+		assertTrue(PacketHeaders.rtpMarker(bb, 3), "should have marker");
+		assertEquals(PacketHeaders.rtpPayloadType(bb, 3), 96, "incorrect payload type");
+		assertEquals(PacketHeaders.rtpSequenceNumber(bb, 3), 0xFFFE, "incorrect seq. no");
+		assertEquals(PacketHeaders.rtpTimestamp(bb, 3), 0xFFFFFFF0L, "incorrect timestamp");
+		assertEquals(PacketHeaders.rtpSsrc(bb, 3), 0x80000001L, "incorrect ssrc");
+		assertEquals(bb.position(), 16, "position should not change");
+	}
+
+
+	public void testCanReadRtcpHeaderFields()
+	{
+		final ByeRTCPPacket p = ByeRTCPPacket.builder().withSsrcs(0xF0000001L, 2).build();
+		final ByteBuffer bb = ByteBuffer.wrap(p.asByteArray()).asReadOnlyBuffer();
+
+		assertEquals(PacketHeaders.version(bb, 0), 2, "incorrect version");
+		assertTrue(PacketHeaders.isRtcp(bb, 0), "should be rtcp");
+		assertEquals(PacketHeaders.rtcpCount(bb, 0), 2, "incorrect count");
+		assertEquals(PacketHeaders.rtcpPayloadType(bb, 0), 203, "incorrect payload type");
+		assertEquals(PacketHeaders.rtcpPacketLength(bb, 0), p.packetLength(), "incorrect length");
+		assertEquals(PacketHeaders.rtcpSsrc(bb, 0), 0xF0000001L, "incorrect ssrc");
+	}
+
+
+	public void testCanWriteBigEndianValues()
+	{
+		final ByteBuffer bb = ByteBuffer.allocate(6).order(ByteOrder.LITTLE_ENDIAN);
+		PacketHeaders.putShort(bb, 0, 0xABCD);
+		PacketHeaders.putInt(bb, 2, 0xFEDCBA98L);
+
+		assertEquals(bb.array(), new byte[] { (byte)0xAB, (byte)0xCD, (byte)0xFE, (byte)0xDC, (byte)0xBA, (byte)0x98 }, "incorrect data");
+		assertEquals(PacketHeaders.getUnsignedShort(bb, 0), 0xABCD, "incorrect value");
+		assertEquals(PacketHeaders.getUnsignedInt(bb, 2), 0xFEDCBA98L, "incorrect value");
+		assertEquals(PacketHeaders.getUnsignedByte(bb, 5), 0x98, "incorrect value");
+	}
+
+}
@@ -0,0 +1,118 @@
+package org.vidtec.rfc3550.memory;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import org.testng.annotations.Test;
+
+@Test
+public class SsrcIndexTest
+{
+
+	public void testCanAddAndFind()
+	{
+		final SsrcIndex index = new SsrcIndex(4);
+		assertEquals(index.find(7), SsrcIndex.NIL, "should not be held");
+
+		final int a = index.add(7);
+		final int b = index.add(0xFFFFFFFFL);
+		assertEquals(index.add(7), a, "should find existing entry");
+		assertEquals(index.find(7), a, "incorrect entry");
+		assertEquals(index.find(0xFFFFFFFFL), b, "incorrect entry");
+		assertEquals(index.ssrc(a), 7, "incorrect ssrc");
+		assertEquals(index.size(), 2, "incorrect size");
+		assertEquals(index.capacity(), 4, "incorrect capacity");
+	}
+
+
+	public void testEntriesAreStableWhenGrowing()
+	{
+		final SsrcIndex index = new SsrcIndex(1);
+		final int[] entries = new int[1000];
+		for (int i = 0 ; i < entries.length ; i++)
+		{
+			entries[i] = index.add(i * 0x10000L);
+		}
+
+		assertEquals(index.size(), 1000, "incorrect size");
+		assertEquals(index.capacity(), 1024, "incorrect capacity");
+		for (int i = 0 ; i < entries.length ; i++)
+		{
+			assertEquals(index.find(i * 0x10000L), entries[i], "entry should not move");
+			assertTrue(entries[i] < index.capacity(), "entry out of range");
+		}
+	}
+
+
+	public void testCanRemoveAndReuse()
+	{
+		final SsrcIndex index = new SsrcIndex(16);
+		for (long ssrc = 0 ; ssrc < 16 ; ssrc++)
+		{
+			index.add(ssrc << 16);
+		}
+
+		// Removal must keep the other ssrcs reachable, whatever their probe sequence.
+		final int entry = index.remove(5 << 16);
+		assertEquals(index.remove(5 << 16), SsrcIndex.NIL, "should not be held");
+		assertEquals(index.ssrc(entry), -1, "entry should be free");
+		for (long ssrc = 0 ; ssrc < 16 ; ssrc++)
+		{
+			assertEquals(index.find(ssrc << 16) == SsrcIndex.NIL, ssrc == 5, "incorrect find of " + ssrc);
+		}
+
+		assertEquals(index.add(99), entry, "should re-use free entry");
+		assertEquals(index.capacity(), 16, "should not grow");
+	}
+
+
+	public void testCanCopy()
+	{
+		final SsrcIndex index = new SsrcIndex(16);
+		final int entry = index.add(1);
+
+		final SsrcIndex copy = new SsrcIndex(index);
+		copy.add(2);
+		index.remove(1);
+
+		assertEquals(copy.find(1), entry, "copy should be independent");
+		assertEquals(copy.size(), 2, "incorrect size");
+		assertEquals(index.find(2), SsrcIndex.NIL, "copy should be independent");
+	}
+
+
+	public void testValidation()
+	{
+		try
+		{
+			new SsrcIndex(3);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid capacity not 3", "wrong validation message");
+		}
+
+		try
+		{
+			new SsrcIndex(null);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "index cannot be null", "wrong validation message");
+		}
+
+		try
+		{
+			new SsrcIndex(16).add(-1);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid ssrc not -1", "wrong validation message");
+		}
+	}
+
+}
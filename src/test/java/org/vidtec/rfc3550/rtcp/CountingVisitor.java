@@ -2,9 +2,13 @@ package org.vidtec.rfc3550.rtcp;
 
 import org.vidtec.rfc3550.rtcp.types.app.AppRTCPPacket;
 import org.vidtec.rfc3550.rtcp.types.bye.ByeRTCPPacket;
+import org.vidtec.rfc3550.rtcp.types.feedback.PayloadFeedbackRTCPPacket;
+import org.vidtec.rfc3550.rtcp.types.feedback.TransportFeedbackRTCPPacket;
 import org.vidtec.rfc3550.rtcp.types.report.ReceiverReportRTCPPacket;
 import org.vidtec.rfc3550.rtcp.types.report.SenderReportRTCPPacket;
 import org.vidtec.rfc3550.rtcp.types.sdes.SdesRTCPPacket;
+import org.vidtec.rfc3550.rtcp.types.unknown.UnknownRTCPPacket;
+import org.vidtec.rfc3550.rtcp.types.xr.XrRTCPPacket;
 
 public class CountingVisitor implements RTCPPacketsVisitor
 {
@@ -14,6 +18,10 @@ public class CountingVisitor implements RTCPPacketsVisitor
 	public int sdes = 0;
 	public int app = 0;
 	public int bye = 0;
+	public int rtpfb = 0;
+	public int psfb = 0;
+	public int xr = 0;
+	public int unknown = 0;
 
 	
 	@Override
@@ -64,5 +72,45 @@ public class CountingVisitor implements RTCPPacketsVisitor
 		bye++;
 		total++;
 	}
+	
+	
+	@Override
+	public void visit(TransportFeedbackRTCPPacket packet) 
+	{
+		RTCPPacketsVisitor.super.visit(packet);
+
+		rtpfb++;
+		total++;
+	}
+	
+	
+	@Override
+	public void visit(PayloadFeedbackRTCPPacket packet) 
+	{
+		RTCPPacketsVisitor.super.visit(packet);
+
+		psfb++;
+		total++;
+	}
+	
+	
+	@Override
+	public void visit(XrRTCPPacket packet) 
+	{
+		RTCPPacketsVisitor.super.visit(packet);
+
+		xr++;
+		total++;
+	}
+	
+	
+	@Override
+	public void visit(UnknownRTCPPacket packet) 
+	{
+		RTCPPacketsVisitor.super.visit(packet);
+
+		unknown++;
+		total++;
+	}
 
 }
@@ -0,0 +1,205 @@
+package org.vidtec.rfc3550.rtcp;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.Test;
+import org.vidtec.rfc3550.rtcp.types.RTCPPacket;
+import org.vidtec.rfc3550.rtcp.types.RTCPPacket.PayloadType;
+import org.vidtec.rfc3550.rtcp.types.unknown.UnknownRTCPPacket;
+
+@Test
+public class RTCPPacketRegistryTest
+{
+
+	public void testStandardRegistryDecodesSupportedTypes()
+	{
+		final RTCPPacketRegistry r = RTCPPacketRegistry.standard();
+		for (int i = 0 ; i < 256 ; i++)
+		{
+			assertEquals(r.isRegistered(i), i >= 200 && i <= 207, "incorrect registration for " + i);
+		}
+		assertTrue(!r.isRegistered(-1), "invalid value should not be registered");
+		assertTrue(!r.isRegistered(256), "invalid value should not be registered");
+
+		final byte[] data = { (byte)0x80, (byte)0xC9, 0x00, 0x01, 0x00, 0x00, 0x00, 0x14 };
+		assertEquals(r.decoder(201).decode(data).payloadType(), PayloadType.RR, "incorrect decoder");
+
+		try
+		{
+			r.decoder(249);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Unknown type - 249", "wrong validation message");
+		}
+		try
+		{
+			r.decoder(456);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Unknown type - 456", "wrong validation message");
+		}
+
+		assertTrue(RTCPPacketRegistry.standard() == r, "registry should be shared");
+	}
+
+
+	public void testLenientRegistryDecodesAllTypes()
+	{
+		final RTCPPacketRegistry r = RTCPPacketRegistry.lenient();
+		for (int i = 0 ; i < 256 ; i++)
+		{
+			assertTrue(r.isRegistered(i), "all types should be registered");
+		}
+
+		final byte[] data = { (byte)0x80, (byte)0xF9, 0x00, 0x00 };
+		assertEquals(r.decoder(249).decode(data).payloadType(), PayloadType.UNKNOWN, "incorrect decoder");
+	}
+
+
+	public void testCanRegisterDecoderForOtherTypes()
+	{
+		final RTCPPacketRegistry r = RTCPPacketRegistry.builder()
+				.withStandardTypes()
+				.withDecoder(0xF9, ProprietaryPacket::new)
+				.build();
+
+		assertTrue(r.isRegistered(0xF9), "type should be registered");
+		assertTrue(!r.isRegistered(0xFA), "type should not be registered");
+
+		final byte[] data = { (byte)0x80, (byte)0xC9, 0x00, 0x01, 0x00, 0x00, 0x00, 0x14,
+				              (byte)0x80, (byte)0xF9, 0x00, 0x01, 0x01, 0x02, 0x03, 0x04,
+				              (byte)0x80, (byte)0xCB, 0x00, 0x00 };
+
+		final RTCPPackets packets = RTCPPackets.fromByteArray(data, RTCPPackets.Mode.COMPOUND, r);
+		assertEquals(packets.packets().size(), 3, "incorrect packet count");
+		assertTrue(packets.packets().get(1) instanceof ProprietaryPacket, "incorrect decoder");
+		assertEquals(packets.asByteArray(), data, "packet not reassembled correctly.");
+
+		final List<RTCPPacket<?>> others = new ArrayList<>();
+		final CountingVisitor v = new CountingVisitor()
+		{
+			@Override
+			public void visitOther(final RTCPPacket<?> packet)
+			{
+				others.add(packet);
+			}
+		};
+		packets.visit(v);
+
+		assertEquals(v.total, 2, "visitor not correct");
+		assertEquals(v.rr, 1, "visitor not correct");
+		assertEquals(v.bye, 1, "visitor not correct");
+		assertEquals(v.unknown, 0, "visitor not correct");
+		assertEquals(others.size(), 1, "visitor not correct");
+		assertTrue(others.get(0) == packets.packets().get(1), "visitor not correct");
+
+		// Unregistered types are still rejected.
+		data[9] = (byte)0xFA;
+		try
+		{
+			RTCPPackets.fromByteArray(data, RTCPPackets.Mode.COMPOUND, r);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Unknown type - 250", "wrong validation message");
+		}
+
+		// ... unless passed through.
+		final RTCPPacketRegistry r2 = RTCPPacketRegistry.builder()
+				.withStandardTypes()
+				.withDecoder(0xF9, ProprietaryPacket::new)
+				.withUnknownTypes()
+				.build();
+		assertTrue(RTCPPackets.fromByteArray(data, RTCPPackets.Mode.COMPOUND, r2).packets().get(1) instanceof UnknownRTCPPacket, "incorrect decoder");
+	}
+
+
+	public void testCorrectlyValidatesRegistryData()
+	{
+		try
+		{
+			RTCPPacketRegistry.builder().withDecoder(256, ProprietaryPacket::new);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid payload type not 256", "wrong validation message");
+		}
+		try
+		{
+			RTCPPacketRegistry.builder().withDecoder(-1, ProprietaryPacket::new);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid payload type not -1", "wrong validation message");
+		}
+		try
+		{
+			RTCPPacketRegistry.builder().withDecoder(200, null);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "decoder cannot be null", "wrong validation message");
+		}
+		try
+		{
+			RTCPPackets.fromByteArray(new byte[] { (byte)0x80, (byte)0xCB, 0x00, 0x00 }, RTCPPackets.Mode.COMPOUND, (RTCPPacketRegistry)null);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "registry cannot be null", "wrong validation message");
+		}
+
+		// An empty registry decodes nothing.
+		try
+		{
+			RTCPPackets.fromByteArray(new byte[] { (byte)0x80, (byte)0xCB, 0x00, 0x00 }, RTCPPackets.Mode.COMPOUND, RTCPPacketRegistry.builder().build());
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Unknown type - 203", "wrong validation message");
+		}
+	}
+
+
+	/**
+	 * A packet type that is not known to the library.
+	 */
+	private static final class ProprietaryPacket extends RTCPPacket<ProprietaryPacket>
+	{
+		private final byte[] data;
+
+		private ProprietaryPacket(final byte[] data)
+		{
+			super(PayloadType.UNKNOWN);
+			this.data = data;
+		}
+
+		@Override
+		public int packetLength()
+		{
+			return data.length;
+		}
+
+		@Override
+		public byte[] asByteArray()
+		{
+			return data.clone();
+		}
+	}
+
+}
@@ -15,9 +15,11 @@ import org.vidtec.rfc3550.rtcp.types.RTCPPacket;
 import org.vidtec.rfc3550.rtcp.types.RTCPPacket.PayloadType;
 import org.vidtec.rfc3550.rtcp.types.app.AppRTCPPacket;
 import org.vidtec.rfc3550.rtcp.types.bye.ByeRTCPPacket;
+import org.vidtec.rfc3550.rtcp.types.feedback.PayloadFeedbackRTCPPacket;
 import org.vidtec.rfc3550.rtcp.types.report.ReceiverReportRTCPPacket;
 import org.vidtec.rfc3550.rtcp.types.report.SenderReportRTCPPacket;
 import org.vidtec.rfc3550.rtcp.types.sdes.SdesRTCPPacket;
+import org.vidtec.rfc3550.rtcp.types.unknown.UnknownRTCPPacket;
 
 @Test
 public class RTCPPacketsTest 
@@ -254,6 +256,164 @@ public class RTCPPacketsTest
 	}
 
 	
+	public void testCanCreatePacketsContainerWithFeedbackPacketsAsByteArray()
+	{
+		byte[] data = { (byte)0x80, (byte)0xC9, 0x00, 0x01, 0x00, 0x00, 0x00, 0x01,
+				        (byte)0x81, (byte)0xCD, 0x00, 0x03, 0x00, 0x00, 0x00, 0x01, 0x00, 0x00, 0x00, 0x02, 0x00, 0x0A, 0x00, 0x05,
+				        (byte)0x81, (byte)0xCE, 0x00, 0x02, 0x00, 0x00, 0x00, 0x01, 0x00, 0x00, 0x00, 0x02 };
+
+		RTCPPackets packets = RTCPPackets.fromByteArray( data );
+
+		assertEquals(packets.lengthAsPacket(), 36, "incorrect sizing");
+		assertEquals(packets.packets().size(), 3, "container should be compound");
+		assertEquals(packets.packets().get(1).payloadType(), PayloadType.RTPFB, "container have valid order");
+		assertEquals(packets.packets().get(2).payloadType(), PayloadType.PSFB, "container have valid order");
+
+		assertEquals(packets.asByteArray(), data, "packet not reassembled correctly.");
+
+		CountingVisitor v = new CountingVisitor();
+		packets.visit(v);
+
+		assertEquals(v.total, 3, "visitor not correct");
+		assertEquals(v.rr, 1, "visitor not correct");
+		assertEquals(v.rtpfb, 1, "visitor not correct");
+		assertEquals(v.psfb, 1, "visitor not correct");
+	}
+	
+	
+	public void testCanParseAndBuildReducedSizePackets()
+	{
+		// PLI followed by BYE - not valid as compound, but valid as reduced-size.
+		byte[] data = { (byte)0x81, (byte)0xCE, 0x00, 0x02, 0x00, 0x00, 0x00, 0x01, 0x00, 0x00, 0x00, 0x02,
+				        (byte)0x80, (byte)0xCB, 0x00, 0x00 };
+
+		try
+		{
+			RTCPPackets.fromByteArray( data );
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "This looks like a compound packet, but first entry is NOT SR or RR.");
+		}
+		
+		RTCPPackets packets = RTCPPackets.fromByteArray( data, RTCPPackets.Mode.REDUCED_SIZE );
+		assertEquals(packets.mode(), RTCPPackets.Mode.REDUCED_SIZE, "incorrect mode");
+		assertTrue(packets.isReducedSize(), "should be reduced-size");
+		assertEquals(packets.packets().size(), 2, "incorrect packet count");
+		assertEquals(packets.packets().get(0).payloadType(), PayloadType.PSFB, "container have valid order");
+		assertEquals(packets.asByteArray(), data, "packet not reassembled correctly.");
+
+		packets = RTCPPackets.fromDatagramPacket( new DatagramPacket(data, data.length), RTCPPackets.Mode.REDUCED_SIZE );
+		assertEquals(packets.packets().size(), 2, "incorrect packet count");
+		
+		// Standard compound packets are still valid in reduced-size mode.
+		byte[] data2 = { (byte)0x80, (byte)0xC9, 0x00, 0x01, 0x00, 0x00, 0x00, 0x00,
+		                 (byte)0x80, (byte)0xCB, 0x00, 0x00 };
+		packets = RTCPPackets.fromByteArray( data2, RTCPPackets.Mode.REDUCED_SIZE );
+		assertTrue(!packets.isReducedSize(), "should not be reduced-size");
+		assertEquals(RTCPPackets.fromByteArray( data2 ).mode(), RTCPPackets.Mode.COMPOUND, "incorrect mode");
+		
+		final PayloadFeedbackRTCPPacket pli = PayloadFeedbackRTCPPacket.builder().withSsrcs(1, 2).withPictureLossIndication().build();
+		final ByeRTCPPacket bye = ByeRTCPPacket.builder().build();
+		try
+		{
+			RTCPPackets.builder().withPackets(pli, bye).build();
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "This looks like a compound packet, but first entry is NOT SR or RR.");
+		}
+		
+		packets = RTCPPackets.builder().withReducedSize().withPackets(pli, bye).build();
+		assertTrue(packets.isReducedSize(), "should be reduced-size");
+		assertEquals(packets.asByteArray(), data, "packet not built correctly.");
+		
+		try
+		{
+			RTCPPackets.fromByteArray( data, null );
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "mode cannot be null", "wrong validation message");
+		}
+	}
+	
+	
+	public void testCanParseUnknownPacketTypesLeniently()
+	{
+		// RR, an unknown type (249) with 4 bytes of body, then BYE.
+		byte[] data = { (byte)0x80, (byte)0xC9, 0x00, 0x01, 0x00, 0x00, 0x00, 0x14,
+				        (byte)0x83, (byte)0xF9, 0x00, 0x01, 0x01, 0x02, 0x03, 0x04,
+				        (byte)0x80, (byte)0xCB, 0x00, 0x00 };
+
+		try
+		{
+			RTCPPackets.fromByteArray( data );
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Unknown type - 249");
+		}
+		
+		RTCPPackets packets = RTCPPackets.fromByteArray( data, RTCPPackets.Mode.COMPOUND, true );
+		assertEquals(packets.packets().size(), 3, "incorrect packet count");
+		assertEquals(packets.packets().get(0).payloadType(), PayloadType.RR, "container have valid order");
+		assertEquals(packets.packets().get(1).payloadType(), PayloadType.UNKNOWN, "container have valid order");
+		assertEquals(packets.packets().get(2).payloadType(), PayloadType.BYE, "container have valid order");
+		
+		final UnknownRTCPPacket unknown = (UnknownRTCPPacket)packets.packets().get(1);
+		assertEquals(unknown.typeValue(), 249, "incorrect type value");
+		assertEquals(unknown.count(), 3, "incorrect count");
+		assertEquals(unknown.bodyAsByteArray(), new byte[] { 0x01, 0x02, 0x03, 0x04 }, "incorrect body");
+
+		assertEquals(packets.asByteArray(), data, "packet not passed through correctly.");
+
+		CountingVisitor v = new CountingVisitor();
+		packets.visit(v);
+
+		assertEquals(v.total, 3, "visitor not correct");
+		assertEquals(v.rr, 1, "visitor not correct");
+		assertEquals(v.bye, 1, "visitor not correct");
+		assertEquals(v.unknown, 1, "visitor not correct");
+		
+		packets = RTCPPackets.fromDatagramPacket( new DatagramPacket(data, data.length), RTCPPackets.Mode.COMPOUND, true );
+		assertEquals(packets.packets().size(), 3, "incorrect packet count");
+
+		// Compound rules still apply to the first packet.
+		final byte[] data2 = Arrays.copyOfRange(data, 8, data.length);
+		try
+		{
+			RTCPPackets.fromByteArray( data2, RTCPPackets.Mode.COMPOUND, true );
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "This looks like a compound packet, but first entry is NOT SR or RR.");
+		}
+		
+		packets = RTCPPackets.fromByteArray( data2, RTCPPackets.Mode.REDUCED_SIZE, true );
+		assertEquals(packets.packets().size(), 2, "incorrect packet count");
+		assertEquals(packets.asByteArray(), data2, "packet not passed through correctly.");
+		
+		// The body of unknown packets is not checked, but the common header is.
+		final byte[] data3 = { (byte)0x80, (byte)0xC9, 0x00, 0x01, 0x00, 0x00, 0x00, 0x14,
+		                       (byte)0x40, (byte)0xF9, 0x00, 0x00 };
+		try
+		{
+			RTCPPackets.fromByteArray( data3, RTCPPackets.Mode.COMPOUND, true );
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Invalid version number found, expecting 2");
+		}
+	}
+	
+	
 	public void testCanCreatePacketsContainerFromBuilder()
 	{
 		RTCPPackets p = RTCPPackets.builder()
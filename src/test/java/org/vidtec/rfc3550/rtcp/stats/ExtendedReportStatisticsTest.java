@@ -0,0 +1,193 @@
+package org.vidtec.rfc3550.rtcp.stats;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import org.testng.annotations.Test;
+import org.vidtec.rfc3550.rtcp.types.xr.PacketReceiptTimesBlock;
+import org.vidtec.rfc3550.rtcp.types.xr.RunLengthBlock;
+import org.vidtec.rfc3550.rtcp.types.xr.StatisticsSummaryBlock;
+import org.vidtec.rfc3550.rtcp.types.xr.VoipMetricsBlock;
+
+@Test
+public class ExtendedReportStatisticsTest
+{
+
+	public void testCanCollectStatistics()
+	{
+		final ExtendedReportStatistics s = ExtendedReportStatistics.builder().withSsrc(0x1234).withWindow(64).build();
+
+		// 100 - 124 with 120 lost, 122 duplicated, and 124 delayed by 20.
+		for (int seq = 100 ; seq < 125 ; seq++)
+		{
+			if (seq == 120)
+			{
+				continue;
+			}
+			final long ts = 160L * seq;
+			assertTrue(!s.received(seq, ts, ts + 1000 + (seq == 124 ? 20 : 0), 64), "should not be duplicate");
+		}
+		assertTrue(s.received(122, 160L * 122, 160L * 122 + 1000, 64), "should be duplicate");
+
+		assertEquals(s.lostCount(), 1, "incorrect lost count");
+		assertEquals(s.duplicateCount(), 1, "incorrect duplicate count");
+
+		final RunLengthBlock loss = s.lossRle();
+		assertEquals(loss.ssrc(), 0x1234, "incorrect ssrc");
+		assertEquals(loss.beginSequence(), 100, "incorrect begin");
+		assertEquals(loss.endSequence(), 125, "incorrect end");
+		assertEquals(loss.markedCount(), 24, "incorrect received count");
+		assertEquals(loss.bitmap(), new long[] { 0x1FFFFFFL & ~(1L << 20) }, "incorrect bitmap");
+
+		final RunLengthBlock dup = s.duplicateRle();
+		assertEquals(dup.bitmap(), new long[] { 1L << 22 }, "incorrect bitmap");
+
+		final long[] times = s.packetReceiptTimes().receiptTimes();
+		assertEquals(times.length, 25, "incorrect time count");
+		assertEquals(times[0], 160L * 100 + 1000, "incorrect time");
+		assertEquals(times[20], 0, "lost packet should have no time");
+		assertEquals(times[24], 160L * 124 + 1020, "incorrect time");
+
+		final StatisticsSummaryBlock summary = s.statisticsSummary();
+		assertEquals(summary.beginSequence(), 100, "incorrect begin");
+		assertEquals(summary.endSequence(), 125, "incorrect end");
+		assertEquals(summary.lostPackets(), 1, "incorrect lost count");
+		assertEquals(summary.duplicatePackets(), 1, "incorrect duplicate count");
+		assertEquals(summary.minJitter(), 0, "incorrect jitter");
+		assertEquals(summary.maxJitter(), 20, "incorrect jitter");
+		assertEquals(summary.meanJitter(), 1, "incorrect jitter");
+		assertEquals(summary.ttlOrHopLimit(), StatisticsSummaryBlock.TOH_IPV4_TTL, "incorrect ToH");
+		assertEquals(summary.minTtl(), 64, "incorrect ttl");
+		assertEquals(summary.devTtl(), 0, "incorrect ttl");
+
+		// One loss after 20 received packets, so a 1 packet burst and a 24 packet gap.
+		s.discarded();
+		final VoipMetricsBlock voip = s.voipMetrics().build();
+		assertEquals(voip.lossRate(), 10, "incorrect loss rate");
+		assertEquals(voip.discardRate(), 10, "incorrect discard rate");
+		assertEquals(voip.burstDensity(), 255, "incorrect burst density");
+		assertEquals(voip.gapDensity(), 0, "incorrect gap density");
+		assertEquals(voip.burstDuration(), 20, "incorrect burst duration");
+		assertEquals(voip.gapDuration(), 500, "incorrect gap duration");
+		assertEquals(voip.gmin(), 16, "incorrect gmin");
+		assertEquals(voip.rFactor(), VoipMetricsBlock.UNAVAILABLE, "should be unavailable");
+	}
+
+
+	public void testCanStartNewInterval()
+	{
+		final ExtendedReportStatistics s = ExtendedReportStatistics.builder().withSsrc(1).build();
+		s.received(10, 0, 0, -1);
+		s.received(12, 0, 0, -1);
+		assertEquals(s.lostCount(), 1, "incorrect lost count");
+
+		s.reset();
+		assertEquals(s.lostCount(), 0, "incorrect lost count");
+		assertEquals(s.lossRle().count(), 0, "incorrect count");
+		assertEquals(s.lossRle().beginSequence(), 13, "incorrect begin");
+
+		s.received(11, 0, 0, -1);
+		s.received(13, 0, 0, -1);
+		s.received(14, 0, 0, -1);
+
+		final StatisticsSummaryBlock summary = s.statisticsSummary();
+		assertEquals(summary.beginSequence(), 13, "incorrect begin");
+		assertEquals(summary.endSequence(), 15, "incorrect end");
+		assertEquals(summary.lostPackets(), 0, "incorrect lost count");
+		assertTrue(summary.ttlOrHopLimit() == StatisticsSummaryBlock.TOH_NONE, "should have no ttl");
+		assertEquals(s.voipMetrics().build().gapDuration(), 40, "incorrect gap duration");
+	}
+
+
+	public void testCanTrackAcrossWraparound()
+	{
+		final ExtendedReportStatistics s = ExtendedReportStatistics.builder().withSsrc(1).withWindow(64).build();
+		s.received(0xFFFE, 0, 0, -1);
+		s.received(0xFFFF, 0, 0, -1);
+		s.received(1, 0, 0, -1);
+		s.received(0, 0, 0, -1);
+
+		assertEquals(s.lostCount(), 0, "incorrect lost count");
+		final RunLengthBlock loss = s.lossRle();
+		assertEquals(loss.beginSequence(), 0xFFFE, "incorrect begin");
+		assertEquals(loss.endSequence(), 2, "incorrect end");
+		assertEquals(loss.markedCount(), 4, "incorrect received count");
+
+		// Jump beyond the window.
+		s.received(200, 0, 0, -1);
+		assertEquals(s.lostCount(), 198, "incorrect lost count");
+		final PacketReceiptTimesBlock times = s.packetReceiptTimes();
+		assertEquals(times.beginSequence(), 137, "incorrect begin");
+		assertEquals(times.receiptTimes().length, 64, "incorrect time count");
+	}
+
+
+	public void testCorrectlyValidatesData()
+	{
+		try
+		{
+			ExtendedReportStatistics.builder().build();
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid ssrc not -1", "wrong validation message");
+		}
+		try
+		{
+			ExtendedReportStatistics.builder().withSsrc(1).withWindow(100).build();
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid window size not 100", "wrong validation message");
+		}
+		try
+		{
+			ExtendedReportStatistics.builder().withSsrc(1).withGmin(0).build();
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid gmin not 0", "wrong validation message");
+		}
+		try
+		{
+			ExtendedReportStatistics.builder().withSsrc(1).withPacketDuration(0).build();
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid packet duration not 0", "wrong validation message");
+		}
+		try
+		{
+			ExtendedReportStatistics.builder().withSsrc(1).withTtlKind(0).build();
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid ToH value not 0", "wrong validation message");
+		}
+		try
+		{
+			ExtendedReportStatistics.builder().withSsrc(1).build().received(1, 0, 0, 256);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid ttl not 256", "wrong validation message");
+		}
+		try
+		{
+			ExtendedReportStatistics.builder().withSsrc(1).build().received(null, 0, -1);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "packet cannot be null", "wrong validation message");
+		}
+	}
+
+}
@@ -0,0 +1,222 @@
+package org.vidtec.rfc3550.rtcp.stats;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+import java.nio.ByteBuffer;
+
+import org.testng.annotations.Test;
+import org.vidtec.rfc3550.rtp.RTPPacket;
+import org.vidtec.rfc3550.rtp.RTPPacketView;
+
+@Test
+public class RateEstimatorTest
+{
+
+	public void testWindowRates()
+	{
+		final RateEstimator r = RateEstimator.builder().withSsrc(3).build();
+		assertEquals(r.ssrc(), 3, "incorrect ssrc");
+		assertEquals(r.packetRate(1000), 0.0, "should have no rate");
+
+		for (long t = 1000 ; t < 1500 ; t += 10)
+		{
+			r.record(100, 88, t);
+		}
+
+		// Only the 5 completed buckets since the first packet.
+		assertEquals(r.packetRate(1500), 100.0, 1e-9, "incorrect packet rate");
+		assertEquals(r.byteRate(1500), 10000.0, 1e-9, "incorrect byte rate");
+
+		for (long t = 1500 ; t < 3000 ; t += 10)
+		{
+			r.record(100, 88, t);
+		}
+
+		assertEquals(r.packetRate(3000), 100.0, 1e-9, "incorrect packet rate");
+		assertEquals(r.byteRate(3000), 10000.0, 1e-9, "incorrect byte rate");
+		assertEquals(r.bitrate(3000), 80000.0, 1e-9, "incorrect bitrate");
+
+		// Half the window idle.
+		assertEquals(r.packetRate(3500), 50.0, 1e-9, "incorrect packet rate");
+		assertEquals(r.packetRate(5000), 0.0, "should have no rate");
+
+		assertEquals(r.packetCount(), 200, "incorrect packet count");
+		assertEquals(r.octetCount(), 200 * 88, "incorrect octet count");
+		assertEquals(r.byteCount(), 200 * 100, "incorrect byte count");
+
+		// Too late for the window, but still counted.
+		r.record(100, 88, 1000);
+		assertEquals(r.packetCount(), 201, "incorrect packet count");
+		assertEquals(r.packetRate(3000), 100.0, 1e-9, "incorrect packet rate");
+	}
+
+
+	public void testNegativeTimes()
+	{
+		// e.g. System.nanoTime() / 1000000, which may be negative.
+		final RateEstimator r = RateEstimator.builder().withSsrc(3).build();
+		for (long t = -1250 ; t < 750 ; t += 10)
+		{
+			r.record(100, 88, t);
+		}
+
+		assertEquals(r.packetCount(), 200, "incorrect packet count");
+		assertEquals(r.packetRate(750), 100.0, 1e-9, "incorrect packet rate");
+		// The first bucket only holds half a bucket of packets.
+		final double decay = Math.pow(1 - 0.125, 19);
+		assertEquals(r.averagePacketRate(750), 50 * 0.125 * decay + 100 * (1 - decay), 1e-9, "incorrect average packet rate");
+	}
+
+
+	public void testCanRecordPackets()
+	{
+		final RateEstimator r = RateEstimator.builder().withSsrc(3).build();
+		final RTPPacket p = RTPPacket.builder().withRequiredHeaderFields(0, 1, 0, 3).withPayload(new byte[20]).build();
+		r.record(p, 1000);
+		r.record(new RTPPacketView().wrap(ByteBuffer.wrap(p.asByteArray()), 0, p.packetLength()), 1000);
+
+		assertEquals(r.packetCount(), 2, "incorrect packet count");
+		assertEquals(r.octetCount(), 40, "incorrect octet count");
+		assertEquals(r.byteCount(), 2 * p.packetLength(), "incorrect byte count");
+	}
+
+
+	public void testAverage()
+	{
+		final RateEstimator r = RateEstimator.builder().withSsrc(3).withSmoothing(0.5).build();
+		assertEquals(r.averagePacketRate(1000), 0.0, "should have no rate");
+
+		for (long t = 1000 ; t < 2000 ; t += 10)
+		{
+			r.record(100, 88, t);
+		}
+
+		assertEquals(r.averagePacketRate(2000), 100 * (1 - 1.0 / 1024), 1e-9, "incorrect average packet rate");
+		assertEquals(r.averageByteRate(2000), 10000 * (1 - 1.0 / 1024), 1e-9, "incorrect average byte rate");
+
+		// Idle for two buckets, then for longer than the window.
+		assertEquals(r.averagePacketRate(2200), 100 * (1 - 1.0 / 1024) / 4, 1e-9, "incorrect average packet rate");
+		assertEquals(r.averagePacketRate(102200), 0.0, 1e-9, "incorrect average packet rate");
+	}
+
+
+	public void testAverageDoesNotDependOnReads()
+	{
+		// 50 packets per second, read every bucket, every 5 seconds (longer than the window) and only at the end.
+		final RateEstimator often = RateEstimator.builder().withSsrc(3).build();
+		final RateEstimator rarely = RateEstimator.builder().withSsrc(3).build();
+		final RateEstimator never = RateEstimator.builder().withSsrc(3).build();
+		for (long t = 0 ; t < 20000 ; t += 20)
+		{
+			often.record(100, 88, t);
+			rarely.record(100, 88, t);
+			never.record(100, 88, t);
+			if (t % 100 == 0)
+			{
+				often.averagePacketRate(t);
+			}
+			if (t % 5000 == 0)
+			{
+				rarely.averagePacketRate(t);
+			}
+		}
+
+		assertEquals(often.averagePacketRate(20000), 50.0, 1e-6, "incorrect average packet rate");
+		assertEquals(rarely.averagePacketRate(20000), 50.0, 1e-6, "incorrect average packet rate");
+		assertEquals(never.averagePacketRate(20000), 50.0, 1e-6, "incorrect average packet rate");
+		assertEquals(never.averageByteRate(20000), 5000.0, 1e-4, "incorrect average byte rate");
+	}
+
+
+	public void testConcurrentRecording() throws Exception
+	{
+		final RateEstimator r = RateEstimator.builder().withSsrc(3).build();
+		final Thread[] threads = new Thread[4];
+		for (int i = 0 ; i < threads.length ; i++)
+		{
+			threads[i] = new Thread(() ->
+			{
+				for (int n = 0 ; n < 25000 ; n++)
+				{
+					r.record(100, 88, 1000 + n % 1000);
+				}
+			});
+			threads[i].start();
+		}
+		for (final Thread t : threads)
+		{
+			t.join();
+		}
+
+		assertEquals(r.packetCount(), 100000, "incorrect packet count");
+		assertEquals(r.packetRate(2000), 100000.0, 1e-9, "incorrect packet rate");
+		assertEquals(r.byteRate(2000), 10000000.0, 1e-9, "incorrect byte rate");
+	}
+
+
+	public void testValidation()
+	{
+		try
+		{
+			RateEstimator.builder().build();
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid ssrc not -1", "wrong validation message");
+		}
+
+		try
+		{
+			RateEstimator.builder().withSsrc(1).withBuckets(1).build();
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid bucket count not 1", "wrong validation message");
+		}
+
+		try
+		{
+			RateEstimator.builder().withSsrc(1).withWindow(1001).build();
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid window not 1001", "wrong validation message");
+		}
+
+		try
+		{
+			RateEstimator.builder().withSsrc(1).withSmoothing(0).build();
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid smoothing not 0.0", "wrong validation message");
+		}
+
+		final RateEstimator r = RateEstimator.builder().withSsrc(1).build();
+		try
+		{
+			r.record((RTPPacket)null, 0);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "packet cannot be null", "wrong validation message");
+		}
+
+		try
+		{
+			r.record(10, 11, 0);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid payload length not 11", "wrong validation message");
+		}
+	}
+
+}
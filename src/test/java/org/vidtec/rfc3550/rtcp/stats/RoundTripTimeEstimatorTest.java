@@ -0,0 +1,138 @@
+package org.vidtec.rfc3550.rtcp.stats;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import org.testng.annotations.Test;
+import org.vidtec.rfc3550.rtcp.types.report.ReceiverReportRTCPPacket;
+import org.vidtec.rfc3550.rtcp.types.report.ReportBlock;
+import org.vidtec.rfc3550.rtcp.types.report.SenderReportRTCPPacket;
+
+@Test
+public class RoundTripTimeEstimatorTest
+{
+
+	public void testCanComputeRoundTripTime()
+	{
+		final RoundTripTimeEstimator e = RoundTripTimeEstimator.builder().build();
+
+		e.sent(sr(100, 0x10000000L << 16));
+		assertEquals(e.smoothedRtt(200), -1, "rtt should not be known");
+
+		// Held for 0.5s by the receiver, and 1/16s in the network.
+		assertEquals(e.received(rr(200, block(100, 0x10000000L, 0x8000)), (0x10000000L + 0x8000 + 0x1000) << 16), 1, "expected rtt");
+		assertEquals(e.lastRtt(200), 0x1000, "incorrect rtt");
+		assertEquals(e.smoothedRtt(200), 0x1000, "incorrect rtt");
+		assertEquals(e.smoothedRttMillis(200), 62, "incorrect rtt");
+
+		assertEquals(e.received(rr(200, block(100, 0x10000000L, 0x8000)), (0x10000000L + 0x8000 + 0x2000) << 16), 1, "expected rtt");
+		assertEquals(e.lastRtt(200), 0x2000, "incorrect rtt");
+		assertEquals(e.smoothedRtt(200), 0x1200, "incorrect rtt");
+
+		// Blocks about other sources, without an LSR, or with an LSR after the last SR sent are ignored.
+		assertEquals(e.received(rr(200, block(101, 0x10000000L, 0x8000)), 0x20000000L << 16), 0, "expected no rtt");
+		assertEquals(e.received(rr(200, block(100, 0, 0)), 0x20000000L << 16), 0, "expected no rtt");
+		assertEquals(e.received(rr(200, block(100, 0x10000001L, 0)), 0x20000000L << 16), 0, "expected no rtt");
+		assertEquals(e.lastRtt(200), 0x2000, "incorrect rtt");
+
+		assertTrue(e.remove(200), "should remove");
+		assertTrue(!e.remove(200), "should already be removed");
+		assertEquals(e.smoothedRtt(200), -1, "rtt should not be known");
+		assertEquals(e.size(), 1, "incorrect size");
+	}
+
+
+	public void testCanSupplyReportBlockValues()
+	{
+		final RoundTripTimeEstimator e = RoundTripTimeEstimator.builder().build();
+		assertEquals(e.lastSR(300), 0, "expected no lsr");
+		assertEquals(e.dlSR(300, 0), 0, "expected no dlsr");
+
+		// An SR received at compact time 0x20000000.
+		final SenderReportRTCPPacket sr = sr(300, 0x0102030405060708L);
+		assertEquals(e.received(sr, 0x20000000L << 16), 0, "expected no rtt");
+
+		assertEquals(e.lastSR(300), 0x03040506L, "incorrect lsr");
+		assertEquals(e.dlSR(300, 0x20018000L << 16), 0x18000, "incorrect dlsr");
+	}
+
+
+	public void testCanHoldManyStreams()
+	{
+		final RoundTripTimeEstimator e = RoundTripTimeEstimator.builder().withCapacity(16).build();
+		e.sent(sr(1, 0x10000000L << 16));
+		for (long ssrc = 1000 ; ssrc < 3000 ; ssrc++)
+		{
+			e.received(rr(ssrc, block(1, 0x10000000L, 0)), (0x10000000L + ssrc) << 16);
+		}
+		assertEquals(e.size(), 2001, "incorrect size");
+
+		for (long ssrc = 1000 ; ssrc < 3000 ; ssrc += 2)
+		{
+			assertTrue(e.remove(ssrc), "should remove");
+		}
+		assertEquals(e.size(), 1001, "incorrect size");
+
+		for (long ssrc = 1000 ; ssrc < 3000 ; ssrc++)
+		{
+			assertEquals(e.smoothedRtt(ssrc), ssrc % 2 == 0 ? -1 : ssrc, "incorrect rtt");
+		}
+	}
+
+
+	public void testCorrectlyValidatesData()
+	{
+		try
+		{
+			RoundTripTimeEstimator.builder().withCapacity(100).build();
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid capacity not 100", "wrong validation message");
+		}
+		try
+		{
+			RoundTripTimeEstimator.builder().build().sent(null);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "packet cannot be null", "wrong validation message");
+		}
+		try
+		{
+			RoundTripTimeEstimator.builder().build().received(null, 0);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "packet cannot be null", "wrong validation message");
+		}
+	}
+
+
+	private static SenderReportRTCPPacket sr(final long ssrc, final long ntp)
+	{
+		return SenderReportRTCPPacket.builder().withSsrc(ssrc).withTimestamps(ntp, 0).withCounts(0, 0).build();
+	}
+
+
+	private static ReceiverReportRTCPPacket rr(final long ssrc, final ReportBlock block)
+	{
+		return ReceiverReportRTCPPacket.builder().withSsrc(ssrc).withReportBlocks(block).build();
+	}
+
+
+	private static ReportBlock block(final long ssrc, final long lastSR, final long dlSR)
+	{
+		return ReportBlock.builder()
+				.withSsrc(ssrc)
+				.withExtendedSequenceNumber(0)
+				.withStatistics(0, 0, 0)
+				.withSenderReportData(lastSR, dlSR)
+				.build();
+	}
+
+}
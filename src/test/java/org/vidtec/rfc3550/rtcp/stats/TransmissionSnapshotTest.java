@@ -0,0 +1,174 @@
+package org.vidtec.rfc3550.rtcp.stats;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.testng.annotations.Test;
+
+@Test
+public class TransmissionSnapshotTest
+{
+
+	public void testCanComputeDelta()
+	{
+		final TransmissionSnapshot earlier = TransmissionSnapshot.of(9, 1000, 1000, 100, 4, 70000);
+		final TransmissionSnapshot later = TransmissionSnapshot.of(9, 2000, 2000, 150, 14, 70060);
+
+		final TransmissionSnapshot delta = later.delta(earlier);
+		assertEquals(delta.ssrcIdentifier(), 9, "incorrect ssrc");
+		assertEquals(delta.startMillis(), 1000, "incorrect start");
+		assertEquals(delta.endMillis(), 2000, "incorrect end");
+		assertEquals(delta.intervalMillis(), 1000, "incorrect interval");
+		assertEquals(delta.received(), 50, "incorrect received");
+		assertEquals(delta.lost(), 10, "incorrect lost");
+		assertEquals(delta.expected(), 60, "incorrect expected");
+		assertEquals(delta.extendedHighestSequenceNumber(), 70060, "incorrect highest");
+		assertEquals(delta.fractionLost(), (10 << 8) / 60, "incorrect fraction lost");
+	}
+
+
+	public void testFractionLostWithDuplicates()
+	{
+		assertEquals(TransmissionSnapshot.of(9, 0, 0, 100, -2, 0).fractionLost(), 0, "incorrect fraction lost");
+		assertEquals(TransmissionSnapshot.of(9, 0, 0, 0, 0, 0).fractionLost(), 0, "incorrect fraction lost");
+		assertEquals(TransmissionSnapshot.of(9, 0, 0, 0, 5, 0).fractionLost(), 0xFF, "incorrect fraction lost");
+	}
+
+
+	public void testCanMerge()
+	{
+		final TransmissionSnapshot a = TransmissionSnapshot.of(9, 1000, 2000, 50, 2, 70060);
+		final TransmissionSnapshot b = TransmissionSnapshot.of(9, 1500, 2500, 30, 1, 70050);
+
+		final TransmissionSnapshot merged = a.merge(b);
+		assertEquals(merged.startMillis(), 1000, "incorrect start");
+		assertEquals(merged.endMillis(), 2500, "incorrect end");
+		assertEquals(merged.received(), 80, "incorrect received");
+		assertEquals(merged.lost(), 3, "incorrect lost");
+		assertEquals(merged.extendedHighestSequenceNumber(), 70060, "incorrect highest");
+		assertEquals(b.merge(a), merged, "merge should be symmetric");
+	}
+
+
+	public void testCanEncodeAndDecode()
+	{
+		final TransmissionSnapshot a = TransmissionSnapshot.of(0xFFFFFFFFL, 1000, 2000, 50, -2, 0xFFFFFFFFL);
+		final TransmissionSnapshot b = TransmissionSnapshot.of(1, 5, 6, 7, 8, 9);
+
+		final byte[] data = a.asByteArray();
+		assertEquals(data.length, TransmissionSnapshot.ENCODED_LENGTH, "incorrect length");
+		assertEquals(TransmissionSnapshot.fromByteArray(data), a, "incorrect decode");
+
+		// Several packed into one buffer.
+		final ByteBuffer bb = ByteBuffer.allocate(2 * TransmissionSnapshot.ENCODED_LENGTH);
+		a.writeTo(bb);
+		b.writeTo(bb);
+		bb.flip();
+		assertEquals(TransmissionSnapshot.fromByteBuffer(bb), a, "incorrect decode");
+		assertEquals(TransmissionSnapshot.fromByteBuffer(bb), b, "incorrect decode");
+		assertTrue(!bb.hasRemaining(), "should have read all");
+	}
+
+
+	public void testEncodingIgnoresBufferOrder()
+	{
+		final TransmissionSnapshot a = TransmissionSnapshot.of(0x01020304L, 1000, 2000, 50, 3, 0x10002L);
+
+		// Always big-endian, and the buffer's order is left as it was.
+		final ByteBuffer bb = ByteBuffer.allocateDirect(TransmissionSnapshot.ENCODED_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+		a.writeTo(bb);
+		assertEquals(bb.order(), ByteOrder.LITTLE_ENDIAN, "buffer order should be restored");
+		bb.flip();
+
+		final byte[] data = new byte[TransmissionSnapshot.ENCODED_LENGTH];
+		bb.duplicate().get(data);
+		assertEquals(data, a.asByteArray(), "incorrect encoding");
+		assertEquals(data[0], 0x01, "should be big-endian");
+
+		assertEquals(TransmissionSnapshot.fromByteBuffer(bb), a, "incorrect decode");
+		assertEquals(bb.order(), ByteOrder.LITTLE_ENDIAN, "buffer order should be restored");
+	}
+
+
+	public void testValidation()
+	{
+		final TransmissionSnapshot a = TransmissionSnapshot.of(9, 1000, 1000, 100, 4, 70000);
+
+		try
+		{
+			a.delta(TransmissionSnapshot.of(8, 0, 0, 0, 0, 0));
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected snapshot of ssrc 9 not 8", "wrong validation message");
+		}
+
+		try
+		{
+			a.delta(TransmissionSnapshot.of(9, 2000, 2000, 100, 4, 70000));
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected earlier snapshot ending before 1000 not 2000", "wrong validation message");
+		}
+
+		try
+		{
+			a.merge(null);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "snapshot cannot be null", "wrong validation message");
+		}
+
+		try
+		{
+			TransmissionSnapshot.of(9, 2, 1, 0, 0, 0);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid end time not 1", "wrong validation message");
+		}
+
+		try
+		{
+			TransmissionSnapshot.fromByteArray(new byte[39]);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "snapshot was wrong size, expecting 40 bytes, but found 39", "wrong validation message");
+		}
+
+		try
+		{
+			TransmissionSnapshot.fromByteBuffer(ByteBuffer.allocate(10));
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "snapshot too short, expecting 40 bytes, but found 10", "wrong validation message");
+		}
+
+		try
+		{
+			final byte[] data = a.asByteArray();
+			data[24] = (byte)0x80;
+			TransmissionSnapshot.fromByteArray(data);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertTrue(e.getMessage().startsWith("Expected valid received count not -"), "wrong validation message");
+		}
+	}
+
+}
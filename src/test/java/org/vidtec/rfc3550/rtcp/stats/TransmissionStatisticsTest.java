@@ -31,6 +31,27 @@ public class TransmissionStatisticsTest
 	}
 	
 	
+	public void testCanSnapshotStats()
+	{
+		final TransmissionStatistics s = TransmissionStatistics.fromStartSequence(2);
+		s.update(3);
+		final TransmissionSnapshot first = s.snapshot(7, 1000);
+		s.update(4);
+		s.update(5);
+		final TransmissionSnapshot second = s.snapshot(7, 2000);
+
+		assertEquals(first.ssrcIdentifier(), 7, "expected ssrc.");
+		assertEquals(first.intervalMillis(), 0, "expected point in time.");
+		assertEquals(first.received(), 1, "expected 1 packet.");
+		assertEquals(second.extendedHighestSequenceNumber(), 5, "expected max seq no.");
+
+		final TransmissionSnapshot delta = second.delta(first);
+		assertEquals(delta.startMillis(), 1000, "expected interval start.");
+		assertEquals(delta.endMillis(), 2000, "expected interval end.");
+		assertEquals(delta.received(), 2, "expected 2 packets.");
+	}
+	
+	
 	public void testCorrectlyRejectsInvalidStartSequence()
 	{
 		// > 0xFFFF && < 0
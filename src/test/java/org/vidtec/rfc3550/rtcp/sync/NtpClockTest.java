@@ -0,0 +1,54 @@
+package org.vidtec.rfc3550.rtcp.sync;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+@Test
+public class NtpClockTest
+{
+
+	public void testCanConvertUnixTimes()
+	{
+		// 2023-08-02T21:20:00Z
+		final long ntp = NtpClock.fromUnixMillis(1691011200250L);
+		assertEquals(ntp >>> 32, 3900000000L, "incorrect seconds");
+		assertEquals(ntp & 0xFFFFFFFFL, 0x40000000L, "incorrect fraction");
+		assertEquals(NtpClock.toUnixMillis(ntp), 1691011200250L, "incorrect conversion");
+		assertEquals(NtpClock.toUnixMicros(ntp), 1691011200250000L, "incorrect conversion");
+		assertEquals(NtpClock.fromUnixMicros(1691011200250000L), ntp, "incorrect conversion");
+		assertEquals(NtpClock.compact(ntp), ((3900000000L & 0xFFFF) << 16) | 0x4000, "incorrect compact conversion");
+
+		assertEquals(NtpClock.fromUnixMillis(0), NtpClock.NTP_UNIX_OFFSET_SECONDS << 32, "incorrect epoch");
+		assertEquals(NtpClock.toUnixMillis(NtpClock.fromUnixMillis(-1)), -1, "incorrect conversion");
+	}
+
+
+	public void testCanConvertDurations()
+	{
+		assertEquals(NtpClock.nanosToNtp(1500000000L), 0x180000000L, "incorrect conversion");
+		assertEquals(NtpClock.nanosToNtp(-500000000L), -0x80000000L, "incorrect conversion");
+
+		assertEquals(NtpClock.compactToMillis(0x18000), 1500, "incorrect conversion");
+		assertEquals(NtpClock.compactToMicros(0x4000), 250000, "incorrect conversion");
+		assertEquals(NtpClock.millisToCompact(1500), 0x18000, "incorrect conversion");
+		assertEquals(NtpClock.microsToCompact(250000), 0x4000, "incorrect conversion");
+	}
+
+
+	public void testCanReadClock()
+	{
+		final NtpClock clock = NtpClock.anchored(1691011200000L, 1000);
+		assertEquals(clock.ntpAt(1000), 3900000000L << 32, "incorrect anchor");
+		assertEquals(clock.ntpAt(1000 + 250000000L), (3900000000L << 32) | 0x40000000L, "incorrect time");
+		assertEquals(clock.ntpAt(1000 - 1000000000L), 3899999999L << 32, "incorrect time");
+		assertEquals(clock.compactAt(1000 + 250000000L), NtpClock.compact((3900000000L << 32) | 0x40000000L), "incorrect time");
+
+		final long before = System.currentTimeMillis();
+		final long now = NtpClock.toUnixMillis(NtpClock.system().now());
+		assertTrue(Math.abs(now - before) < 5000, "system clock should be close to wallclock");
+		assertTrue(NtpClock.system().compactNow() >= 0, "compact time should be unsigned");
+	}
+
+}
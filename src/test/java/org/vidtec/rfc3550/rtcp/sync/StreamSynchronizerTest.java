@@ -0,0 +1,164 @@
+package org.vidtec.rfc3550.rtcp.sync;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import org.testng.annotations.Test;
+import org.vidtec.rfc3550.rtcp.types.bye.ByeRTCPPacket;
+import org.vidtec.rfc3550.rtcp.types.report.SenderReportRTCPPacket;
+import org.vidtec.rfc3550.rtcp.types.sdes.Chunk;
+import org.vidtec.rfc3550.rtcp.types.sdes.SdesItem;
+import org.vidtec.rfc3550.rtcp.types.sdes.SdesRTCPPacket;
+
+@Test
+public class StreamSynchronizerTest
+{
+
+	private static final long T = 3900000000L << 32;
+
+
+	public void testCanMapTimestampsWithDrift()
+	{
+		final StreamSynchronizer s = new StreamSynchronizer();
+		assertEquals(s.mapping(1), null, "should have no mapping");
+
+		final WallclockMapping m1 = s.update(sr(1, T, 1000), 90000);
+		assertEquals(m1.driftPpm(), 0.0, "should have no drift");
+		assertEquals(m1.measurements(), 0, "should have no measurements");
+		assertEquals(m1.toNtp(1000), T, "incorrect conversion");
+		assertEquals(m1.toNtp(1000 + 90000), T + (1L << 32), "incorrect conversion");
+		assertEquals(m1.toNtp(1000 - 45000), T - (1L << 31), "incorrect conversion");
+		assertEquals(m1.toUnixMillis(1000 + 9000), 1691011200100L, "incorrect conversion");
+		assertEquals(m1.toRtp(T + (1L << 32)), 91000, "incorrect conversion");
+
+		// The media clock runs 100ppm fast.
+		final WallclockMapping m2 = s.update(sr(1, T + (5L << 32), 1000 + 450045), 90000);
+		assertTrue(s.mapping(1) == m2, "mapping should be replaced");
+		assertEquals(m2.measurements(), 1, "incorrect measurements");
+		assertEquals(m2.driftPpm(), 100.0, 0.01, "incorrect drift");
+		assertEquals(m2.toNtp(1000 + 450045 + 90009), T + (6L << 32), 1 << 10, "incorrect conversion");
+
+		// A timestamp jump does not change the drift.
+		final WallclockMapping m3 = s.update(sr(1, T + (10L << 32), 0x80000000L), 90000);
+		assertEquals(m3.driftPpm(), 100.0, 0.01, "incorrect drift");
+		assertEquals(m3.toNtp(0x80000000L), T + (10L << 32), "incorrect conversion");
+
+		// Across the RTP timestamp wrap.
+		final WallclockMapping m4 = WallclockMapping.next(null, 2, 8000, T, 0xFFFFFFF0L);
+		assertEquals(m4.toNtp(0x10), T + ((32L << 32) / 8000), "incorrect conversion");
+		assertEquals(m4.toRtp(T + ((32L << 32) / 8000)), 0x10, "incorrect conversion");
+	}
+
+
+	public void testCanSynchronizeStreamsByCname()
+	{
+		final StreamSynchronizer s = new StreamSynchronizer();
+		s.update(sr(1, T, 5000), 48000);
+		s.update(sr(2, T, 7000), 90000);
+		s.update(sr(3, T, 0), 90000);
+
+		assertEquals(s.toRtp(1, 5000 + 48000, 2), -1, "streams should not be synchronized without a CNAME");
+
+		s.update(SdesRTCPPacket.builder()
+				.withChunks(Chunk.builder().withSsrc(1).withItems(SdesItem.name("a"), SdesItem.cname("user@host")).build(),
+						    Chunk.builder().withSsrc(2).withItems(SdesItem.cname("user@host")).build(),
+						    Chunk.builder().withSsrc(3).withItems(SdesItem.cname("other@host")).build())
+				.build());
+
+		assertEquals(s.cname(1), "user@host", "incorrect cname");
+		assertEquals(s.group("user@host").size(), 2, "incorrect group");
+		assertEquals(s.group("none").size(), 0, "incorrect group");
+		assertEquals(s.toRtp(1, 5000 + 48000, 2), 7000 + 90000, "incorrect conversion");
+		assertEquals(s.toRtp(2, 7000 - 45000, 1), 0xFFFFFFFFL & (5000 - 24000), "incorrect conversion");
+		assertEquals(s.toRtp(1, 5000, 3), -1, "streams should not be synchronized with different CNAMEs");
+
+		// Moving a stream to another group.
+		s.update(SdesRTCPPacket.builder().withChunks(Chunk.builder().withSsrc(3).withItems(SdesItem.cname("user@host")).build()).build());
+		assertEquals(s.group("user@host").size(), 3, "incorrect group");
+		assertEquals(s.group("other@host").size(), 0, "incorrect group");
+
+		s.update(ByeRTCPPacket.builder().withSsrcs(2, 3).build());
+		assertEquals(s.mapping(2), null, "should have no mapping");
+		assertEquals(s.cname(2), null, "should have no cname");
+		assertEquals(s.group("user@host").size(), 1, "incorrect group");
+		assertEquals(s.toRtp(1, 5000, 2), -1, "stream should be removed");
+	}
+
+
+	public void testCanHoldManyStreams()
+	{
+		final StreamSynchronizer s = new StreamSynchronizer();
+		for (long ssrc = 1 ; ssrc <= 100 ; ssrc++)
+		{
+			s.update(sr(ssrc, T, ssrc), 90000);
+			s.update(SdesRTCPPacket.builder().withChunks(Chunk.builder().withSsrc(ssrc).withItems(SdesItem.cname("user@host")).build()).build());
+		}
+
+		assertEquals(s.group("user@host").size(), 100, "incorrect group");
+
+		// CNAMEs may arrive before any sender report.
+		for (long ssrc = 1000 ; ssrc < 1100 ; ssrc++)
+		{
+			s.update(SdesRTCPPacket.builder().withChunks(Chunk.builder().withSsrc(ssrc).withItems(SdesItem.cname("other@host")).build()).build());
+		}
+		assertEquals(s.cname(1099), "other@host", "incorrect cname");
+		for (long ssrc = 1 ; ssrc <= 100 ; ssrc += 3)
+		{
+			s.remove(ssrc);
+		}
+
+		assertEquals(s.group("user@host").size(), 66, "incorrect group");
+		s.update(ByeRTCPPacket.builder().withSsrcs(1000).build());
+		assertEquals(s.group("user@host").size(), 66, "unknown stream should be ignored");
+
+		// Known streams are updated in place.
+		s.update(sr(2, T + (1L << 32), 2 + 90000), 90000);
+		assertEquals(s.mapping(2).measurements(), 1, "mapping should be replaced");
+		assertEquals(s.toRtp(2, 2 + 90000, 99), 99 + 90000, "incorrect conversion");
+		assertEquals(s.mapping(1), null, "should have no mapping");
+		assertEquals(s.mapping(2).toNtp(2), T, "incorrect mapping");
+		assertEquals(s.toRtp(2, 2, 100), -1, "stream should be removed");
+		assertEquals(s.toRtp(2, 2, 99), 99, "incorrect conversion");
+	}
+
+
+	public void testCorrectlyValidatesData()
+	{
+		final StreamSynchronizer s = new StreamSynchronizer();
+		try
+		{
+			s.update(null, 90000);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "packet cannot be null", "wrong validation message");
+		}
+		try
+		{
+			s.update(sr(1, T, 0), 0);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid clock rate not 0", "wrong validation message");
+		}
+		try
+		{
+			s.update((SdesRTCPPacket)null);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "packet cannot be null", "wrong validation message");
+		}
+	}
+
+
+	private static SenderReportRTCPPacket sr(final long ssrc, final long ntp, final long rtp)
+	{
+		return SenderReportRTCPPacket.builder().withSsrc(ssrc).withTimestamps(ntp, rtp).withCounts(0, 0).build();
+	}
+
+}
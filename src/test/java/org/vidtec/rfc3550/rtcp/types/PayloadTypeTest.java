@@ -13,18 +13,25 @@ public class PayloadTypeTest
 	public void testHasValidTypes()
 	{
 		final PayloadType[] types = PayloadType.values();
-		assertEquals(types.length, 5, "expected 5 types");
+		assertEquals(types.length, 9, "expected 9 types");
 		assertEquals(types[0], PayloadType.SR, "expected SR type");
 		assertEquals(types[1], PayloadType.RR, "expected RR type");
 		assertEquals(types[2], PayloadType.SDES, "expected SDES type");
 		assertEquals(types[3], PayloadType.BYE, "expected BYE type");
 		assertEquals(types[4], PayloadType.APP, "expected APP type");
+		assertEquals(types[5], PayloadType.RTPFB, "expected RTPFB type");
+		assertEquals(types[6], PayloadType.PSFB, "expected PSFB type");
+		assertEquals(types[7], PayloadType.XR, "expected XR type");
+		assertEquals(types[8], PayloadType.UNKNOWN, "expected UNKNOWN type");
 
 		assertEquals(types[0].pt, 200, "expected 200");
 		assertEquals(types[1].pt, 201, "expected 201");
 		assertEquals(types[2].pt, 202, "expected 202");
 		assertEquals(types[3].pt, 203, "expected 203");
 		assertEquals(types[4].pt, 204, "expected 204");
+		assertEquals(types[5].pt, 205, "expected 205");
+		assertEquals(types[6].pt, 206, "expected 206");
+		assertEquals(types[7].pt, 207, "expected 207");
 	}
 
 	
@@ -49,11 +56,28 @@ public class PayloadTypeTest
 		{
 			assertEquals(e.getMessage(), "Unknown type - -1", "incorrect message");
 		}
+		try
+		{
+			PayloadType.fromTypeValue(0);
+			fail("expected to fail with exception");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Unknown type - 0", "incorrect message");
+		}
 		
 		assertEquals(PayloadType.fromTypeValue(200), PayloadType.SR, "expected SR type");
 		assertEquals(PayloadType.fromTypeValue(201), PayloadType.RR, "expected RR type");
 		assertEquals(PayloadType.fromTypeValue(202), PayloadType.SDES, "expected SDES type");
 		assertEquals(PayloadType.fromTypeValue(203), PayloadType.BYE, "expected BYE type");
 		assertEquals(PayloadType.fromTypeValue(204), PayloadType.APP, "expected APP type");
+		assertEquals(PayloadType.fromTypeValue(205), PayloadType.RTPFB, "expected RTPFB type");
+		assertEquals(PayloadType.fromTypeValue(206), PayloadType.PSFB, "expected PSFB type");
+		assertEquals(PayloadType.fromTypeValue(207), PayloadType.XR, "expected XR type");
+		
+		// Lenient lookup.
+		assertEquals(PayloadType.fromTypeValue(200, PayloadType.UNKNOWN), PayloadType.SR, "expected SR type");
+		assertEquals(PayloadType.fromTypeValue(208, PayloadType.UNKNOWN), PayloadType.UNKNOWN, "expected UNKNOWN type");
+		assertEquals(PayloadType.fromTypeValue(0, PayloadType.UNKNOWN), PayloadType.UNKNOWN, "expected UNKNOWN type");
 	}
 }
@@ -0,0 +1,113 @@
+package org.vidtec.rfc3550.rtcp.types.feedback;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import org.testng.annotations.Test;
+import org.vidtec.rfc3550.rtcp.types.RTCPPacket.PayloadType;
+
+@Test
+public class PayloadFeedbackRTCPPacketTest
+{
+
+	public void testCanCastSelfToConcreteType()
+	{
+		final PayloadFeedbackRTCPPacket p = PayloadFeedbackRTCPPacket.builder().withSsrcs(1, 2).withPictureLossIndication().build();
+		assertTrue(p.asConcreteType() instanceof PayloadFeedbackRTCPPacket, "should be concrete type");
+	}
+
+
+	public void testCanCreatePictureLossIndication()
+	{
+		final PayloadFeedbackRTCPPacket p = PayloadFeedbackRTCPPacket.builder().withSsrcs(1, 2).withPictureLossIndication().build();
+
+		assertTrue(p.is(PayloadType.PSFB), "incorrect payload type");
+		assertTrue(p.isPictureLossIndication(), "should be a PLI");
+		assertTrue(!p.isFullIntraRequest(), "should not be a FIR");
+		assertEquals(p.firCount(), 0, "should have no FIR entries");
+		assertEquals(p.packetLength(), 12, "incorrect length");
+
+		final byte[] expected = { (byte)0x81, (byte)0xCE, 0x00, 0x02, 0x00, 0x00, 0x00, 0x01, 0x00, 0x00, 0x00, 0x02 };
+		assertEquals(p.asByteArray(), expected, "incorrect packet data");
+
+		final PayloadFeedbackRTCPPacket p2 = PayloadFeedbackRTCPPacket.fromByteArray(expected);
+		assertTrue(p2.isPictureLossIndication(), "should be a PLI");
+		assertEquals(p2.ssrcMediaSourceIdentifier(), 2, "incorrect media ssrc");
+	}
+
+
+	public void testCanCreateFullIntraRequest()
+	{
+		final PayloadFeedbackRTCPPacket p = PayloadFeedbackRTCPPacket.builder()
+				.withSsrcs(1, 0)
+				.withFullIntraRequest(0xF0000002L, 7)
+				.withFullIntraRequest(3, 255)
+				.build();
+
+		assertTrue(p.isFullIntraRequest(), "should be a FIR");
+		assertEquals(p.feedbackMessageType(), 4, "incorrect fmt");
+		assertEquals(p.firCount(), 2, "incorrect FIR count");
+		assertEquals(p.packetLength(), 28, "incorrect length");
+
+		final byte[] expected = { (byte)0x84, (byte)0xCE, 0x00, 0x06, 0x00, 0x00, 0x00, 0x01, 0x00, 0x00, 0x00, 0x00,
+								  (byte)0xF0, 0x00, 0x00, 0x02, 0x07, 0x00, 0x00, 0x00,
+								  0x00, 0x00, 0x00, 0x03, (byte)0xFF, 0x00, 0x00, 0x00 };
+		assertEquals(p.asByteArray(), expected, "incorrect packet data");
+
+		final PayloadFeedbackRTCPPacket p2 = PayloadFeedbackRTCPPacket.fromByteArray(expected);
+		assertEquals(p2.firSsrcs(), new long[] { 0xF0000002L, 3 }, "incorrect FIR ssrcs");
+		assertEquals(p2.firSequenceNumbers(), new short[] { 7, 255 }, "incorrect FIR seq. nos");
+	}
+
+
+	public void testCanValidatesCorrectly()
+	{
+		try
+		{
+			PayloadFeedbackRTCPPacket.fromByteArray(new byte[] { (byte)0x81, (byte)0xCE, 0x00, 0x03, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00 });
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "PLI must not have FCI data, but found 4 bytes", "wrong validation message");
+		}
+		try
+		{
+			PayloadFeedbackRTCPPacket.fromByteArray(new byte[] { (byte)0x84, (byte)0xCE, 0x00, 0x03, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00 });
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "FIR must have one or more 8 byte FCI entries, but found 4 bytes", "wrong validation message");
+		}
+		try
+		{
+			PayloadFeedbackRTCPPacket.fromByteArray(new byte[] { (byte)0x41, (byte)0xCE, 0x00, 0x02, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00 });
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Invalid version number found, expecting 2", "wrong validation message");
+		}
+		try
+		{
+			PayloadFeedbackRTCPPacket.builder().withSsrcs(1, 0x100000000L).withPictureLossIndication().build();
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid media source ssrc not 4294967296", "wrong validation message");
+		}
+		try
+		{
+			PayloadFeedbackRTCPPacket.builder().withSsrcs(1, 2).withFeedback(32, null).build();
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid feedback message type not 32", "wrong validation message");
+		}
+	}
+
+}
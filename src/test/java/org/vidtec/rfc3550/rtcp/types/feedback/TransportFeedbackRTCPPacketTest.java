@@ -0,0 +1,192 @@
+package org.vidtec.rfc3550.rtcp.types.feedback;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import org.testng.annotations.Test;
+import org.vidtec.rfc3550.rtcp.types.RTCPPacket.PayloadType;
+
+@Test
+public class TransportFeedbackRTCPPacketTest
+{
+
+	public void testCanCastSelfToConcreteType()
+	{
+		final TransportFeedbackRTCPPacket p = TransportFeedbackRTCPPacket.builder().withSsrcs(1, 2).withGenericNack(5).build();
+		assertTrue(p.asConcreteType() instanceof TransportFeedbackRTCPPacket, "should be concrete type");
+	}
+
+
+	public void testCanCreateGenericNackFromSequenceNumbers()
+	{
+		// 0xFFFF wraps before 10, and covers 10 and 11; 26 starts a new entry covering 27.
+		final TransportFeedbackRTCPPacket p = TransportFeedbackRTCPPacket.builder()
+				.withSsrcs(0xF0000001L, 2)
+				.withGenericNack(26, 10, 27, 11, 0xFFFF)
+				.build();
+
+		assertTrue(p.is(PayloadType.RTPFB), "incorrect payload type");
+		assertTrue(p.isGenericNack(), "should be a generic nack");
+		assertEquals(p.feedbackMessageType(), 1, "incorrect fmt");
+		assertEquals(p.ssrcSenderIdentifier(), 0xF0000001L, "incorrect sender ssrc");
+		assertEquals(p.ssrcMediaSourceIdentifier(), 2, "incorrect media ssrc");
+		assertEquals(p.nackCount(), 2, "incorrect entry count");
+		assertEquals(p.packetLength(), 20, "incorrect length");
+
+		final byte[] expected = { (byte)0x81, (byte)0xCD, 0x00, 0x04, (byte)0xF0, 0x00, 0x00, 0x01, 0x00, 0x00, 0x00, 0x02,
+								  (byte)0xFF, (byte)0xFF, 0x0C, 0x00, 0x00, 0x1A, 0x00, 0x01 };
+		assertEquals(p.asByteArray(), expected, "incorrect packet data");
+		assertEquals(p.lostSequenceNumbers(), new int[] { 0xFFFF, 10, 11, 26, 27 }, "incorrect lost sequence numbers");
+	}
+
+
+	public void testCanCreateGenericNackFromLossBitmap()
+	{
+		// Lost: base+0, base+3, base+16, base+17, base+64, base+130
+		final long[] bitmap = { (1L << 0) | (1L << 3) | (1L << 16) | (1L << 17), 1L, 1L << 2 };
+		final TransportFeedbackRTCPPacket p = TransportFeedbackRTCPPacket.builder()
+				.withSsrcs(1, 2)
+				.withGenericNack(0xFFF0, bitmap)
+				.build();
+
+		assertEquals(p.nackCount(), 4, "incorrect entry count");
+		assertEquals(p.fciAsByteArray(), new byte[] { (byte)0xFF, (byte)0xF0, (byte)0x80, 0x04,
+													   0x00, 0x01, 0x00, 0x00,
+													   0x00, 0x30, 0x00, 0x00,
+													   0x00, 0x72, 0x00, 0x00 }, "incorrect fci data");
+		assertEquals(p.lostSequenceNumbers(), new int[] { 0xFFF0, 0xFFF3, 0x0000, 0x0001, 0x0030, 0x0072 }, "incorrect lost sequence numbers");
+	}
+
+
+	public void testCanRoundTripFromByteArray()
+	{
+		final TransportFeedbackRTCPPacket p = TransportFeedbackRTCPPacket.builder().withSsrcs(3, 4).withGenericNack(100, 101, 200).build();
+		final TransportFeedbackRTCPPacket p2 = TransportFeedbackRTCPPacket.fromByteArray(p.asByteArray());
+
+		assertEquals(p2.ssrcSenderIdentifier(), 3, "incorrect sender ssrc");
+		assertEquals(p2.ssrcMediaSourceIdentifier(), 4, "incorrect media ssrc");
+		assertEquals(p2.lostSequenceNumbers(), new int[] { 100, 101, 200 }, "incorrect lost sequence numbers");
+		assertEquals(p2.asByteArray(), p.asByteArray(), "incorrect packet data");
+
+		// Other FMTs are kept as raw FCI, padding is removed.
+		final byte[] data = { (byte)0xA3, (byte)0xCD, 0x00, 0x04, 0x00, 0x00, 0x00, 0x01, 0x00, 0x00, 0x00, 0x02,
+							  0x01, 0x02, 0x03, 0x04, 0x00, 0x00, 0x00, 0x04 };
+		final TransportFeedbackRTCPPacket p3 = TransportFeedbackRTCPPacket.fromByteArray(data);
+		assertTrue(!p3.isGenericNack(), "should not be generic nack");
+		assertEquals(p3.feedbackMessageType(), 3, "incorrect fmt");
+		assertEquals(p3.fciAsByteArray(), new byte[] { 0x01, 0x02, 0x03, 0x04 }, "incorrect fci data");
+		assertEquals(p3.lostSequenceNumbers(), new int[0], "should have no lost sequence numbers");
+		assertEquals(p3.nackCount(), 0, "should have no nack entries");
+	}
+
+
+	public void testCanValidatesCorrectlyFromByteArray()
+	{
+		try
+		{
+			TransportFeedbackRTCPPacket.fromByteArray(null);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "packet data cannot be null", "wrong validation message");
+		}
+		try
+		{
+			TransportFeedbackRTCPPacket.fromByteArray(new byte[] { (byte)0x81, (byte)0xCD, 0x00, 0x01, 0x00, 0x00, 0x00, 0x00 });
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Packet too short, expecting at least 12 bytes, but found 8", "wrong validation message");
+		}
+		try
+		{
+			TransportFeedbackRTCPPacket.fromByteArray(new byte[] { (byte)0x81, (byte)0xCE, 0x00, 0x02, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00 });
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Invalid or unexpected packet type - should be 205", "wrong validation message");
+		}
+		try
+		{
+			TransportFeedbackRTCPPacket.fromByteArray(new byte[] { (byte)0x81, (byte)0xCD, 0x00, 0x03, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00 });
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Packet states 16 bytes length, but actual length is 12", "wrong validation message");
+		}
+		try
+		{
+			TransportFeedbackRTCPPacket.fromByteArray(new byte[] { (byte)0x81, (byte)0xCD, 0x00, 0x02, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00 });
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Generic NACK must have at least one FCI entry", "wrong validation message");
+		}
+		try
+		{
+			TransportFeedbackRTCPPacket.fromByteArray(new byte[] { (byte)0xA1, (byte)0xCD, 0x00, 0x03, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x02 });
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Invalid padding length - 2", "wrong validation message");
+		}
+	}
+
+
+	public void testCanValidatesCorrectlyFromBuilder()
+	{
+		try
+		{
+			TransportFeedbackRTCPPacket.builder().withSsrcs(1, 2).build();
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid feedback message type not -1", "wrong validation message");
+		}
+		try
+		{
+			TransportFeedbackRTCPPacket.builder().withSsrcs(-1, 2).withGenericNack(1).build();
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid sender ssrc not -1", "wrong validation message");
+		}
+		try
+		{
+			TransportFeedbackRTCPPacket.builder().withSsrcs(1, 2).withGenericNack().build();
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid sequence numbers not null or empty", "wrong validation message");
+		}
+		try
+		{
+			TransportFeedbackRTCPPacket.builder().withSsrcs(1, 2).withGenericNack(0, new long[1]).build();
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Generic NACK must have at least one FCI entry", "wrong validation message");
+		}
+		try
+		{
+			TransportFeedbackRTCPPacket.builder().withSsrcs(1, 2).withFeedback(3, new byte[3]).build();
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected FCI length to be a multiple of 4 and at most 262132 bytes, but found 3", "wrong validation message");
+		}
+	}
+
+}
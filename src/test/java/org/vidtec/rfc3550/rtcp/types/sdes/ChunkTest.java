@@ -193,5 +193,49 @@ public class ChunkTest
 		
 	}
 	
-}
+	
+	public void testVisitorVisitsItemsInOrder()
+	{
+		Chunk c = Chunk.builder()
+			       .withSsrc(20)
+			       .withItems(SdesItem.note("n"), SdesItem.priv("a", "p"), SdesItem.cname("c"), SdesItem.priv("b", "p"))
+			       .build();
+
+		final StringBuilder order = new StringBuilder();
+		c.visit(new SdesItemsVisitor()
+		{
+			@Override
+			public void visitCname(final SdesItem item) { order.append(item.value()); }
+
+			@Override
+			public void visitNote(final SdesItem item) { order.append(item.value()); }
+
+			@Override
+			public void visitPriv(final SdesItem item) { order.append(item.value()); }
+		});
+
+		assertEquals(order.toString(), "nacb", "items should be visited in chunk order");
+	}
+	
+	
+	public void testCanLookupItemsByType()
+	{
+		Chunk c = Chunk.builder()
+			       .withSsrc(20)
+			       .withItems(SdesItem.name("n"), SdesItem.priv("a", "p"), SdesItem.cname("c"), SdesItem.priv("b", "p"))
+			       .build();
+
+		assertEquals(c.item(ItemType.CNAME).value(), "c", "wrong item");
+		assertEquals(c.item(ItemType.PRIV).value(), "a", "should be first item of type");
+		assertEquals(c.item(ItemType.EMAIL), null, "should have no item");
+		assertEquals(c.item(null), null, "should have no item");
+		assertEquals(c.items(ItemType.PRIV).size(), 2, "bad items list");
+		assertEquals(c.items(ItemType.PRIV).get(1).value(), "b", "bad items list");
+		assertEquals(c.items(ItemType.EMAIL).size(), 0, "bad items list");
 
+		c = Chunk.fromByteArray(c.asByteArray());
+		assertEquals(c.item(ItemType.CNAME).value(), "c", "wrong item");
+		assertEquals(c.item(ItemType.NAME).value(), "n", "wrong item");
+	}
+
+}
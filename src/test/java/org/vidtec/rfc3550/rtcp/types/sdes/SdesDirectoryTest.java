@@ -0,0 +1,67 @@
+package org.vidtec.rfc3550.rtcp.types.sdes;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import org.testng.annotations.Test;
+import org.vidtec.rfc3550.rtcp.types.sdes.SdesItem.ItemType;
+
+@Test
+public class SdesDirectoryTest
+{
+
+	public void testCanLookupChunksBySsrc()
+	{
+		final Chunk[] chunks = new Chunk[31];
+		for (int i = 0 ; i < chunks.length ; i++)
+		{
+			chunks[i] = Chunk.builder().withSsrc(0xFFFFFFF0L + i * 0x10000L & 0xFFFFFFFFL).withItems(SdesItem.cname("user" + i + "@host"), SdesItem.tool("t")).build();
+		}
+		final SdesRTCPPacket p = SdesRTCPPacket.fromByteArray(SdesRTCPPacket.builder().withChunks(chunks).build().asByteArray());
+
+		final SdesDirectory d = p.directory();
+		assertTrue(d == p.directory(), "directory should be cached");
+		assertEquals(d.size(), 31, "incorrect size");
+		for (int i = 0 ; i < chunks.length ; i++)
+		{
+			final long ssrc = chunks[i].ssrcIdentifier();
+			assertEquals(d.chunk(ssrc).ssrcIdentifier(), ssrc, "wrong chunk");
+			assertEquals(d.cname(ssrc), "user" + i + "@host", "wrong cname");
+			assertEquals(d.item(ssrc, ItemType.TOOL).value(), "t", "wrong item");
+			assertEquals(d.item(ssrc, ItemType.NOTE), null, "should have no item");
+		}
+		assertEquals(d.chunk(12345), null, "should have no chunk");
+		assertEquals(d.cname(12345), null, "should have no cname");
+	}
+
+
+	public void testIndexesFirstChunkOfSsrc()
+	{
+		final SdesDirectory d = SdesDirectory.of(SdesRTCPPacket.builder()
+				.withChunks(Chunk.builder().withSsrc(1).withItems(SdesItem.name("n")).build(),
+						    Chunk.builder().withSsrc(1).withItems(SdesItem.cname("c")).build())
+				.build());
+
+		assertEquals(d.size(), 1, "incorrect size");
+		assertEquals(d.cname(1), null, "should index the first chunk");
+		assertEquals(d.item(1, ItemType.NAME).value(), "n", "wrong item");
+
+		assertEquals(SdesDirectory.of(SdesRTCPPacket.builder().build()).size(), 0, "incorrect size");
+	}
+
+
+	public void testCorrectlyValidatesData()
+	{
+		try
+		{
+			SdesDirectory.of(null);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "packet cannot be null", "wrong validation message");
+		}
+	}
+
+}
@@ -340,10 +340,52 @@ public class SdesItemTest
 		{
 			assertEquals(e.getMessage(), "data too short for stated length.");
 		}
+		try
+		{
+			SdesItem.fromByteBuffer(ByteBuffer.wrap(new byte[] { 0x08, 0x02, 0x02, 0x30 }));
+			fail("should fail");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "prefix length exceeds stated length.", "wrong validation message");
+		}
+		try
+		{
+			SdesItem.fromByteBuffer(ByteBuffer.wrap(new byte[] { 0x08, 0x00 }));
+			fail("should fail");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "prefix length exceeds stated length.", "wrong validation message");
+		}
 	}
 	
 	
+	public void testCanRoundTripMultiByteValues()
+	{
+		final SdesItem i = SdesItem.priv("caf\u00e9", "\u00fc");
+		assertEquals(i.itemLength(), 3 + 5 + 2, "wrong length");
+		
+		final byte[] data = i.asByteArray();
+		assertEquals(data.length, i.itemLength(), "wrong length");
+		
+		final SdesItem decoded = SdesItem.fromByteArray(data);
+		assertEquals(decoded.itemLength(), i.itemLength(), "wrong length");
+		assertEquals(decoded.value(), "caf\u00e9", "wrong value");
+		assertEquals(decoded.prefix(), "\u00fc", "wrong prefix");
+		assertTrue(decoded.value() == decoded.value(), "decoded value should be cached");
+		assertEquals(decoded.asByteArray(), data, "wrong reassembly");
+	}
 	
 	
+	public void testComparesEncodedValues()
+	{
+		final SdesItem i = SdesItem.fromByteArray(SdesItem.priv("v", "p").asByteArray());
+		assertEquals(i, SdesItem.priv("v", "p"), "items should be equal");
+		assertEquals(i.hashCode(), SdesItem.priv("v", "p").hashCode(), "hash codes should be equal");
+		assertTrue(!i.equals(SdesItem.priv("v", "q")), "items should not be equal");
+		assertTrue(!SdesItem.cname("v").equals(SdesItem.name("v")), "items should not be equal");
+		assertTrue(!SdesItem.cname("v").equals(null), "items should not be equal");
+	}
 
 }
@@ -0,0 +1,82 @@
+package org.vidtec.rfc3550.rtcp.types.unknown;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import org.testng.annotations.Test;
+import org.vidtec.rfc3550.rtcp.types.RTCPPacket.PayloadType;
+
+@Test
+public class UnknownRTCPPacketTest
+{
+
+	public void testCanParseUnknownPacket()
+	{
+		final byte[] data = { (byte)0xA5, (byte)0xD0, 0x00, 0x02, 0x01, 0x02, 0x03, 0x04, 0x05, 0x00, 0x00, 0x03 };
+
+		final UnknownRTCPPacket p = UnknownRTCPPacket.fromByteArray(data);
+
+		assertEquals(p.payloadType(), PayloadType.UNKNOWN, "incorrect payload type");
+		assertTrue(p.is(PayloadType.UNKNOWN), "incorrect payload type");
+		assertEquals(p.typeValue(), 208, "incorrect type value");
+		assertEquals(p.count(), 5, "incorrect count");
+		assertTrue(p.isPadded(), "should be padded");
+		assertEquals(p.packetLength(), 12, "incorrect packet length");
+		assertEquals(p.bodyAsByteArray(), new byte[] { 0x01, 0x02, 0x03, 0x04, 0x05, 0x00, 0x00, 0x03 }, "incorrect body");
+		assertEquals(p.asByteArray(), data, "packet data not reformed correctly.");
+		assertEquals(p.asConcreteType(), p, "incorrect concrete type");
+
+		// Check data is copied.
+		data[4] = 0x10;
+		assertEquals(p.bodyAsByteArray()[0], 0x01, "data should be copied");
+
+		final UnknownRTCPPacket p2 = UnknownRTCPPacket.fromByteArray(new byte[] { (byte)0x80, (byte)0xFF, 0x00, 0x00 });
+		assertEquals(p2.typeValue(), 255, "incorrect type value");
+		assertEquals(p2.count(), 0, "incorrect count");
+		assertTrue(!p2.isPadded(), "should not be padded");
+		assertEquals(p2.bodyAsByteArray(), new byte[] { }, "incorrect body");
+	}
+
+
+	public void testCorrectlyValidatesPacketData()
+	{
+		try
+		{
+			UnknownRTCPPacket.fromByteArray(null);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "packet data cannot be null", "wrong validation message");
+		}
+		try
+		{
+			UnknownRTCPPacket.fromByteArray(new byte[] { (byte)0x80, (byte)0xFF, 0x00 });
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Packet too short, expecting at least 4 bytes, but found 3", "wrong validation message");
+		}
+		try
+		{
+			UnknownRTCPPacket.fromByteArray(new byte[] { (byte)0x40, (byte)0xFF, 0x00, 0x00 });
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Invalid version number found, expecting 2", "wrong validation message");
+		}
+		try
+		{
+			UnknownRTCPPacket.fromByteArray(new byte[] { (byte)0x80, (byte)0xFF, 0x00, 0x01 });
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Packet states 8 bytes length, but actual length is 4", "wrong validation message");
+		}
+	}
+
+}
@@ -0,0 +1,272 @@
+package org.vidtec.rfc3550.rtcp.types.xr;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.nio.ByteBuffer;
+
+import org.testng.annotations.Test;
+import org.vidtec.rfc3550.rtcp.types.xr.XrBlock.BlockType;
+
+@Test
+public class XrBlockTest
+{
+
+	public void testBlockTypes()
+	{
+		final BlockType[] types = BlockType.values();
+		assertEquals(types.length, 8, "expected 8 types");
+		for (int i = 0 ; i < 7 ; i++)
+		{
+			assertEquals(types[i].bt, i + 1, "incorrect type value");
+			assertEquals(BlockType.fromTypeValue(i + 1), types[i], "incorrect type lookup");
+		}
+		assertEquals(BlockType.fromTypeValue(8, BlockType.UNKNOWN), BlockType.UNKNOWN, "incorrect default");
+
+		try
+		{
+			BlockType.fromTypeValue(0);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Unknown type - 0", "wrong validation message");
+		}
+	}
+
+
+	public void testCanEncodeLossRle()
+	{
+		// Packet 15 is lost.
+		final long[] received = { 0xFFFFFL & ~(1L << 5) };
+		final RunLengthBlock b = RunLengthBlock.lossRle(0x01020304L, 10, 20, received);
+
+		assertTrue(b.isLossRle(), "should be loss rle");
+		assertEquals(b.blockType(), BlockType.LOSS_RLE, "incorrect type");
+		assertEquals(b.beginSequence(), 10, "incorrect begin");
+		assertEquals(b.endSequence(), 30, "incorrect end");
+		assertEquals(b.count(), 20, "incorrect count");
+		assertEquals(b.chunkCount(), 2, "incorrect chunk count");
+		assertEquals(b.markedCount(), 19, "incorrect marked count");
+		assertEquals(b.bitmap(), received, "incorrect bitmap");
+
+		final byte[] data = { 0x01, 0x00, 0x00, 0x03, 0x01, 0x02, 0x03, 0x04, 0x00, 0x0A, 0x00, 0x1E,
+				              (byte)0xFD, (byte)0xFF, 0x40, 0x05 };
+		assertEquals(b.asByteArray(), data, "block not encoded correctly");
+
+		final RunLengthBlock b2 = (RunLengthBlock)XrBlock.fromByteBuffer(ByteBuffer.wrap(data));
+		assertEquals(b2.ssrc(), 0x01020304L, "incorrect ssrc");
+		assertEquals(b2.bitmap(), received, "incorrect bitmap");
+	}
+
+
+	public void testCanEncodeLongRuns()
+	{
+		// 100 duplicates, then one that is not, across the 16 bit wrap.
+		final long[] duplicated = { -1L, 0xFFFFFFFFFL };
+		final RunLengthBlock b = RunLengthBlock.duplicateRle(5, 0xFFF0, 101, duplicated);
+
+		assertTrue(!b.isLossRle(), "should be duplicate rle");
+		assertEquals(b.endSequence(), 0x55, "incorrect end");
+		assertEquals(b.chunkCount(), 2, "incorrect chunk count");
+		assertEquals(b.length(), 16, "chunks should be padded");
+		assertEquals(b.markedCount(), 100, "incorrect marked count");
+
+		final RunLengthBlock b2 = (RunLengthBlock)XrBlock.fromByteBuffer(ByteBuffer.wrap(b.asByteArray()));
+		assertEquals(b2.blockType(), BlockType.DUPLICATE_RLE, "incorrect type");
+		assertEquals(b2.chunkCount(), 2, "null chunk should be dropped");
+		assertEquals(b2.bitmap(), new long[] { -1L, 0xFFFFFFFFFL }, "incorrect bitmap");
+	}
+
+
+	public void testCanEncodeReceiptTimes()
+	{
+		final PacketReceiptTimesBlock b = PacketReceiptTimesBlock.receiptTimes(7, 0xFFFF, new long[] { 100, 0, 0xFFFFFFFFL });
+		assertEquals(b.endSequence(), 2, "incorrect end");
+
+		final PacketReceiptTimesBlock b2 = (PacketReceiptTimesBlock)XrBlock.fromByteBuffer(ByteBuffer.wrap(b.asByteArray()));
+		assertEquals(b2.ssrc(), 7, "incorrect ssrc");
+		assertEquals(b2.beginSequence(), 0xFFFF, "incorrect begin");
+		assertEquals(b2.receiptTimes(), new long[] { 100, 0, 0xFFFFFFFFL }, "incorrect times");
+	}
+
+
+	public void testCanEncodeReferenceTimeAndDlrr()
+	{
+		final ReceiverReferenceTimeBlock rrt = ReceiverReferenceTimeBlock.referenceTime(0x0102030405060708L);
+		assertEquals(rrt.compactNtpTimestamp(), 0x03040506L, "incorrect compact timestamp");
+		assertEquals(rrt.asByteArray(), new byte[] { 0x04, 0x00, 0x00, 0x02, 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08 }, "block not encoded correctly");
+
+		final DlrrBlock dlrr = DlrrBlock.builder()
+				.withSubBlock(1, 0x03040506L, 0x10000)
+				.withSubBlock(2, 0, 0)
+				.build();
+		assertEquals(dlrr.length(), 28, "incorrect length");
+
+		final DlrrBlock d2 = (DlrrBlock)XrBlock.fromByteBuffer(ByteBuffer.wrap(dlrr.asByteArray()));
+		assertEquals(d2.subBlockCount(), 2, "incorrect sub-block count");
+		assertEquals(d2.ssrc(0), 1, "incorrect ssrc");
+		assertEquals(d2.lastRR(0), 0x03040506L, "incorrect last rr");
+		assertEquals(d2.delaySinceLastRR(0), 0x10000, "incorrect dlrr");
+		assertEquals(d2.ssrc(1), 2, "incorrect ssrc");
+	}
+
+
+	public void testCanEncodeStatisticsSummary()
+	{
+		final StatisticsSummaryBlock b = StatisticsSummaryBlock.builder()
+				.withSsrc(9)
+				.withSequenceRange(100, 200)
+				.withLoss(3)
+				.withJitter(1, 40, 12, 5)
+				.withTtl(StatisticsSummaryBlock.TOH_IPV6_HOP_LIMIT, 60, 64, 62, 1)
+				.build();
+		assertEquals(b.length(), 40, "incorrect length");
+
+		final StatisticsSummaryBlock b2 = (StatisticsSummaryBlock)XrBlock.fromByteBuffer(ByteBuffer.wrap(b.asByteArray()));
+		assertTrue(b2.hasLoss(), "should have loss");
+		assertTrue(!b2.hasDuplicates(), "should not have duplicates");
+		assertTrue(b2.hasJitter(), "should have jitter");
+		assertEquals(b2.ttlOrHopLimit(), StatisticsSummaryBlock.TOH_IPV6_HOP_LIMIT, "incorrect ToH");
+		assertEquals(b2.endSequence(), 200, "incorrect end");
+		assertEquals(b2.lostPackets(), 3, "incorrect loss");
+		assertEquals(b2.maxJitter(), 40, "incorrect jitter");
+		assertEquals(b2.devJitter(), 5, "incorrect jitter");
+		assertEquals(b2.minTtl(), 60, "incorrect ttl");
+		assertEquals(b2.meanTtl(), 62, "incorrect ttl");
+	}
+
+
+	public void testCanEncodeVoipMetrics()
+	{
+		final VoipMetricsBlock b = VoipMetricsBlock.builder()
+				.withSsrc(3)
+				.withLoss(12, 4)
+				.withBurstGap(200, 2, 60, 5000, 16)
+				.withDelay(150, 40)
+				.withSignal(-20, -70, VoipMetricsBlock.UNAVAILABLE)
+				.build();
+		assertEquals(b.length(), 36, "incorrect length");
+
+		final VoipMetricsBlock b2 = (VoipMetricsBlock)XrBlock.fromByteBuffer(ByteBuffer.wrap(b.asByteArray()));
+		assertEquals(b2.lossRate(), 12, "incorrect loss rate");
+		assertEquals(b2.discardRate(), 4, "incorrect discard rate");
+		assertEquals(b2.burstDensity(), 200, "incorrect burst density");
+		assertEquals(b2.gapDuration(), 5000, "incorrect gap duration");
+		assertEquals(b2.gmin(), 16, "incorrect gmin");
+		assertEquals(b2.roundTripDelay(), 150, "incorrect delay");
+		assertEquals(b2.signalLevel(), -20, "incorrect signal level");
+		assertEquals(b2.noiseLevel(), -70, "incorrect noise level");
+		assertEquals(b2.mosLq(), VoipMetricsBlock.UNAVAILABLE, "should be unavailable");
+	}
+
+
+	public void testCanPassThroughUnknownBlocks()
+	{
+		final byte[] data = { 0x42, 0x07, 0x00, 0x01, 0x01, 0x02, 0x03, 0x04 };
+		final XrBlock b = XrBlock.fromByteBuffer(ByteBuffer.wrap(data));
+
+		assertEquals(b.blockType(), BlockType.UNKNOWN, "incorrect type");
+		assertEquals(b.typeValue(), 0x42, "incorrect type value");
+		assertEquals(b.typeSpecific(), 7, "incorrect type specific");
+		assertEquals(((UnknownXrBlock)b).contentsAsByteArray(), new byte[] { 0x01, 0x02, 0x03, 0x04 }, "incorrect contents");
+		assertEquals(b.asByteArray(), data, "block not encoded correctly");
+	}
+
+
+	public void testCorrectlyValidatesBlockData()
+	{
+		try
+		{
+			XrBlock.fromByteBuffer(ByteBuffer.wrap(new byte[] { 0x04, 0x00, 0x00 }));
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "block was wrong size, expecting at least 4 bytes, but found 3", "wrong validation message");
+		}
+		try
+		{
+			XrBlock.fromByteBuffer(ByteBuffer.wrap(new byte[] { 0x04, 0x00, 0x00, 0x02, 0x01, 0x02, 0x03, 0x04 }));
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Block states 12 bytes length, but only 8 bytes remain", "wrong validation message");
+		}
+		try
+		{
+			XrBlock.fromByteBuffer(ByteBuffer.wrap(new byte[] { 0x04, 0x00, 0x00, 0x01, 0x01, 0x02, 0x03, 0x04 }));
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "RECEIVER_REFERENCE_TIME block was wrong size, expecting 12 bytes, but found 8", "wrong validation message");
+		}
+		try
+		{
+			XrBlock.fromByteBuffer(ByteBuffer.wrap(new byte[] { 0x05, 0x00, 0x00, 0x01, 0x01, 0x02, 0x03, 0x04 }));
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "DLRR block was wrong size, expecting a multiple of 12 bytes of sub-blocks, but found 4", "wrong validation message");
+		}
+		try
+		{
+			RunLengthBlock.lossRle(1, 0, 65, new long[] { 0 });
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected bitmap covering at least 65 packets", "wrong validation message");
+		}
+		try
+		{
+			RunLengthBlock.lossRle(-1, 0, 1, new long[] { 0 });
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid ssrc not -1", "wrong validation message");
+		}
+		try
+		{
+			PacketReceiptTimesBlock.receiptTimes(1, 0, null);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid receipt times not null or more than 65535 entries", "wrong validation message");
+		}
+		try
+		{
+			StatisticsSummaryBlock.builder().withSsrc(1).withTtl(3, 0, 0, 0, 0);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid ToH value not 3", "wrong validation message");
+		}
+		try
+		{
+			VoipMetricsBlock.builder().withSsrc(1).withLoss(256, 0).build();
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid VoIP metrics values.", "wrong validation message");
+		}
+		try
+		{
+			DlrrBlock.builder().withSubBlock(1, -1, 0);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid receiver reference time values.", "wrong validation message");
+		}
+	}
+
+}
@@ -0,0 +1,138 @@
+package org.vidtec.rfc3550.rtcp.types.xr;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import org.testng.annotations.Test;
+import org.vidtec.rfc3550.rtcp.CountingVisitor;
+import org.vidtec.rfc3550.rtcp.RTCPPackets;
+import org.vidtec.rfc3550.rtcp.types.RTCPPacket.PayloadType;
+
+@Test
+public class XrRTCPPacketTest
+{
+
+	public void testCanCreateAndParsePacket()
+	{
+		final XrRTCPPacket p = XrRTCPPacket.builder()
+				.withSsrc(0x11223344L)
+				.withBlocks(ReceiverReferenceTimeBlock.referenceTime(0x0102030405060708L),
+						    DlrrBlock.builder().withSubBlock(1, 2, 3).build())
+				.build();
+
+		assertEquals(p.payloadType(), PayloadType.XR, "incorrect payload type");
+		assertEquals(p.ssrcSenderIdentifier(), 0x11223344L, "incorrect ssrc");
+		assertEquals(p.packetLength(), 36, "incorrect length");
+		assertEquals(p.blocks().size(), 2, "incorrect block count");
+
+		final byte[] data = p.asByteArray();
+		assertEquals(data.length, 36, "incorrect length");
+		assertEquals(data[0], (byte)0x80, "incorrect header");
+		assertEquals(data[1], (byte)0xCF, "incorrect header");
+		assertEquals(data[3], 8, "incorrect header length");
+
+		final XrRTCPPacket p2 = XrRTCPPacket.fromByteArray(data);
+		assertEquals(p2.ssrcSenderIdentifier(), 0x11223344L, "incorrect ssrc");
+		assertEquals(p2.blocks().size(), 2, "incorrect block count");
+		assertEquals(p2.block(ReceiverReferenceTimeBlock.class).ntpTimestamp(), 0x0102030405060708L, "incorrect block");
+		assertEquals(p2.block(DlrrBlock.class).delaySinceLastRR(0), 3, "incorrect block");
+		assertEquals(p2.block(VoipMetricsBlock.class), null, "should not have block");
+		assertEquals(p2.asByteArray(), data, "packet not reassembled correctly.");
+
+		// An empty report is valid.
+		final XrRTCPPacket p3 = XrRTCPPacket.fromByteArray(XrRTCPPacket.builder().withSsrc(1).build().asByteArray());
+		assertTrue(p3.blocks().isEmpty(), "should have no blocks");
+	}
+
+
+	public void testCanVisitPacketInCompound()
+	{
+		final XrRTCPPacket xr = XrRTCPPacket.builder()
+				.withSsrc(1)
+				.withBlocks(ReceiverReferenceTimeBlock.referenceTime(5))
+				.build();
+
+		final byte[] rr = { (byte)0x80, (byte)0xC9, 0x00, 0x01, 0x00, 0x00, 0x00, 0x01 };
+		final byte[] data = new byte[rr.length + xr.packetLength()];
+		System.arraycopy(rr, 0, data, 0, rr.length);
+		System.arraycopy(xr.asByteArray(), 0, data, rr.length, xr.packetLength());
+
+		final RTCPPackets packets = RTCPPackets.fromByteArray(data);
+		assertEquals(packets.packets().size(), 2, "incorrect packet count");
+
+		final CountingVisitor v = new CountingVisitor();
+		packets.visit(v);
+		assertEquals(v.total, 2, "visitor not correct");
+		assertEquals(v.xr, 1, "visitor not correct");
+	}
+
+
+	public void testCorrectlyValidatesPacketData()
+	{
+		try
+		{
+			XrRTCPPacket.fromByteArray(null);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "packet data cannot be null", "wrong validation message");
+		}
+		try
+		{
+			XrRTCPPacket.fromByteArray(new byte[] { (byte)0x80, (byte)0xCF, 0x00, 0x00 });
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Packet too short, expecting at least 8 bytes, but found 4", "wrong validation message");
+		}
+		try
+		{
+			XrRTCPPacket.fromByteArray(new byte[] { (byte)0x40, (byte)0xCF, 0x00, 0x01, 0x00, 0x00, 0x00, 0x01 });
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Invalid version number found, expecting 2", "wrong validation message");
+		}
+		try
+		{
+			XrRTCPPacket.fromByteArray(new byte[] { (byte)0x80, (byte)0xC9, 0x00, 0x01, 0x00, 0x00, 0x00, 0x01 });
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Invalid or unexpected packet type - should be 207", "wrong validation message");
+		}
+		try
+		{
+			XrRTCPPacket.fromByteArray(new byte[] { (byte)0x80, (byte)0xCF, 0x00, 0x02, 0x00, 0x00, 0x00, 0x01 });
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Packet states 12 bytes length, but actual length is 8", "wrong validation message");
+		}
+		try
+		{
+			XrRTCPPacket.builder().withSsrc(-1).build();
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid sender ssrc not -1", "wrong validation message");
+		}
+		try
+		{
+			XrRTCPPacket.builder().withSsrc(1).withBlocks((XrBlock)null).build();
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "blocks cannot contain null", "wrong validation message");
+		}
+	}
+
+}
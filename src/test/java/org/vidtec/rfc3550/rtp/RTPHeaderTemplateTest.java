@@ -0,0 +1,190 @@
+package org.vidtec.rfc3550.rtp;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.testng.annotations.Test;
+
+@Test
+public class RTPHeaderTemplateTest
+{
+
+	public void testCanStampSimpleHeaderIntoBuffer()
+	{
+		final RTPHeaderTemplate t = RTPHeaderTemplate.builder()
+						.withRequiredHeaderFields(1, 0x0101, 0x01020304L, 0x04030201L)
+						.build();
+
+		assertEquals(t.headerLength(), 12, "incorrect header length");
+		assertEquals(t.payloadType(), 1, "incorrect payload type");
+		assertEquals(t.ssrcIdentifier(), 0x04030201L, "incorrect ssrc");
+		assertEquals(t.sequenceNumber(), 0x0101, "incorrect seq. no");
+		assertEquals(t.timestamp(), 0x01020304L, "incorrect timestamp");
+
+		final ByteBuffer bb = ByteBuffer.allocate(32);
+		assertEquals(t.stamp(bb, false), 0x0101, "incorrect stamped seq. no");
+		assertEquals(bb.position(), 12, "incorrect position after stamp");
+		assertEquals(t.sequenceNumber(), 0x0102, "seq. no should advance");
+
+		final byte[] expected = { (byte)0x80, 0x01, 0x01, 0x01, 0x01, 0x02, 0x03, 0x04, 0x04, 0x03, 0x02, 0x01 };
+		assertEquals(Arrays.copyOf(bb.array(), 12), expected, "incorrect header data");
+
+		bb.clear();
+		t.advanceTimestamp(0x10);
+		t.stamp(bb, true);
+
+		final byte[] expected2 = { (byte)0x80, (byte)0x81, 0x01, 0x02, 0x01, 0x02, 0x03, 0x14, 0x04, 0x03, 0x02, 0x01 };
+		assertEquals(Arrays.copyOf(bb.array(), 12), expected2, "incorrect header data");
+	}
+
+
+	public void testCanWritePacketsThatDecodeCorrectly()
+	{
+		final RTPHeaderTemplate t = RTPHeaderTemplate.builder()
+						.withRequiredHeaderFields(96, 10, 1000, 0x11223344L)
+						.withCsrcIdentifiers(1, 2)
+						.withHeaderExtension(0xBEDE, new byte[] { 0x01, 0x02, 0x03, 0x04 })
+						.build();
+
+		assertEquals(t.headerLength(), 12 + 8 + 4 + 4, "incorrect header length");
+
+		final ByteBuffer bb = ByteBuffer.allocate(64);
+		final int written = t.write(bb, new byte[] { 0x00, 0x40, 0x40, 0x00 }, 1, 2, true);
+		assertEquals(written, t.headerLength() + 2, "incorrect written length");
+
+		final RTPPacket p = RTPPacket.fromByteArray(Arrays.copyOf(bb.array(), written));
+		assertTrue(p.hasMarker(), "should have marker");
+		assertEquals(p.payloadType(), 96, "incorrect payload type");
+		assertEquals(p.sequenceNumber(), 10, "incorrect seq. no");
+		assertEquals(p.timestamp(), 1000, "incorrect timestamp");
+		assertEquals(p.ssrcIdentifier(), 0x11223344L, "incorrect ssrc");
+		assertEquals(p.csrcIdentifiers(), new long[] { 1, 2 }, "incorrect csrcs");
+		assertEquals(p.extensionProfile(), 0xBEDE, "incorrect extension profile");
+		assertEquals(p.extensionHeaderAsByteArray(), new byte[] { 0x01, 0x02, 0x03, 0x04 }, "incorrect extension");
+		assertEquals(p.payloadAsByteArray(), new byte[] { 0x40, 0x40 }, "incorrect payload");
+
+		final RTPPacket p2 = t.nextPacket(new byte[] { 0x50 }, false);
+		assertTrue(!p2.hasMarker(), "should not have marker");
+		assertEquals(p2.sequenceNumber(), 11, "incorrect seq. no");
+		assertEquals(p2.payloadAsByteArray(), new byte[] { 0x50 }, "incorrect payload");
+	}
+
+
+	public void testCanStampIntoByteArrayAtOffset()
+	{
+		final RTPHeaderTemplate t = RTPHeaderTemplate.builder()
+						.withRequiredHeaderFields(0, 0xFFFF, 0xFFFFFFFFL, 5)
+						.build();
+
+		final byte[] data = new byte[16];
+		assertEquals(t.stamp(data, 2, true), 0xFFFF, "incorrect stamped seq. no");
+
+		final byte[] expected = { 0x00, 0x00, (byte)0x80, (byte)0x80, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, 0x00, 0x00, 0x00, 0x05, 0x00, 0x00 };
+		assertEquals(data, expected, "incorrect header data");
+	}
+
+
+	public void testCorrectlyWrapsSequenceAndTimestamp()
+	{
+		final RTPHeaderTemplate t = RTPHeaderTemplate.builder()
+						.withRequiredHeaderFields(0, 0xFFFE, 0xFFFFFF00L, 5)
+						.build();
+
+		final ByteBuffer bb = ByteBuffer.allocate(12);
+		assertEquals(t.stamp(bb, false), 0xFFFE, "incorrect seq. no");
+		bb.clear();
+		assertEquals(t.stamp(bb, false), 0xFFFF, "incorrect seq. no");
+		bb.clear();
+		assertEquals(t.stamp(bb, false), 0x0000, "seq. no should wrap");
+		assertEquals(t.sequenceNumber(), 0x0001, "seq. no should wrap");
+
+		t.advanceTimestamp(0x100);
+		assertEquals(t.timestamp(), 0, "timestamp should wrap");
+		t.advanceTimestamp(0xFFFFFFFFL);
+		assertEquals(t.timestamp(), 0xFFFFFFFFL, "timestamp should wrap");
+		t.advanceTimestamp(2);
+		assertEquals(t.timestamp(), 1, "timestamp should wrap");
+	}
+
+
+	public void testCanCreateFromExistingPacket()
+	{
+		final RTPPacket p = RTPPacket.builder()
+				.withMarker()
+				.withRequiredHeaderFields(8, 100, 160, 0xCAFEL)
+				.withPayload(new byte[] { 0x01, 0x02, 0x03 }, 4)
+				.build();
+
+		final RTPHeaderTemplate t = RTPHeaderTemplate.fromPacket(p);
+		assertEquals(t.headerLength(), 12, "incorrect header length");
+		assertEquals(t.sequenceNumber(), 100, "incorrect seq. no");
+		assertEquals(t.timestamp(), 160, "incorrect timestamp");
+
+		final RTPPacket p2 = t.nextPacket(new byte[] { 0x01 }, false);
+		assertTrue(!p2.hasMarker(), "marker should not be templated");
+		assertTrue(!p2.isPadded(), "padding should not be templated");
+		assertEquals(p2.payloadType(), 8, "incorrect payload type");
+		assertEquals(p2.ssrcIdentifier(), 0xCAFEL, "incorrect ssrc");
+	}
+
+
+	public void testCorrectlyValidatesTemplateData()
+	{
+		try
+		{
+			RTPHeaderTemplate.fromPacket(null);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "packet cannot be null", "wrong validation message");
+		}
+
+		try
+		{
+			RTPHeaderTemplate.builder().withRequiredHeaderFields(128, 0, 0, 0).build();
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid payload type not 128", "wrong validation message");
+		}
+
+		final RTPHeaderTemplate t = RTPHeaderTemplate.builder().withRequiredHeaderFields(0, 0, 0, 0).build();
+		try
+		{
+			t.advanceTimestamp(-1);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid timestamp increment not -1", "wrong validation message");
+		}
+
+		try
+		{
+			t.write(ByteBuffer.allocate(64), null, 0, 0, false);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid payload not null or empty", "wrong validation message");
+		}
+
+		try
+		{
+			t.write(ByteBuffer.allocate(12), new byte[] { 0x01 }, 0, 1, false);
+			fail("Expected error");
+		}
+		catch (BufferOverflowException e)
+		{
+			assertEquals(t.sequenceNumber(), 0, "seq. no should not advance on failure");
+		}
+	}
+
+}
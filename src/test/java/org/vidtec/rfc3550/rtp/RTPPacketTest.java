@@ -7,8 +7,10 @@ import static org.testng.Assert.fail;
 import java.net.DatagramPacket;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -860,5 +862,31 @@ public class RTPPacketTest
 	}
 	
 	
+	public void testCanWritePacketToBufferCorrectly()
+	{
+		// PCMU with 1 sample and 3 bytes padding
+		final byte[] data = { (byte)0xA0, 0x00, 0x01, 0x01, 0x01, 0x02, 0x03, 0x04, 0x04, 0x03, 0x02, 0x01, 
+								    0x40, 0x00, 0x00, 0x03 };
+		
+		final RTPPacket p = RTPPacket.fromByteArray(data);
+		
+		final ByteBuffer bb = ByteBuffer.allocate(20);
+		bb.position(2);
+		assertEquals(p.writeTo(bb), 16, "incorrect written length");
+		assertEquals(bb.position(), 18, "incorrect buffer position");
+		assertEquals(Arrays.copyOfRange(bb.array(), 2, 18), data, "packet data not written correctly.");
+		
+		try
+		{
+			p.writeTo(bb);
+			fail("Expected error");
+		}
+		catch (BufferOverflowException e)
+		{
+			assertEquals(bb.position(), 18, "buffer should not be written to");
+		}
+	}
+	
+	
 	
 }
@@ -0,0 +1,172 @@
+package org.vidtec.rfc3550.rtp;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.nio.ByteBuffer;
+
+import org.testng.annotations.Test;
+
+@Test
+public class RTPPacketViewTest
+{
+
+	public void testCanViewSimplePacket()
+	{
+		// PCMU with 4 samples, at an offset in the buffer
+		final byte[] data = { 0x00, 0x00, (byte)0x80, (byte)0x81, 0x01, 0x01, 0x01, 0x02, 0x03, 0x04, 0x04, 0x03, 0x02, 0x01,
+								    0x40, 0x41, 0x42, 0x43, 0x00 };
+
+		final RTPPacketView v = new RTPPacketView().wrap(ByteBuffer.wrap(data), 2, 16);
+
+		assertEquals(v.version(), 2, "incorrect version decode.");
+		assertTrue(!v.isPadded(), "should not be padded");
+		assertTrue(!v.hasExtension(), "should not have extension");
+		assertEquals(v.csrcCount(), 0, "contributing source count should be 0");
+		assertTrue(v.hasMarker(), "should have marker");
+		assertEquals(v.payloadType(), 1, "payload type should be 1");
+		assertEquals(v.sequenceNumber(), 257, "seq. no should be 0x0101");
+		assertEquals(v.timestamp(), 16909060, "timestamp should be 0x01020304");
+		assertEquals(v.ssrcIdentifier(), 67305985, "ssrc should be 0x04030201");
+		assertEquals(v.extensionProfile(), -1, "extn prof should not be set.");
+		assertEquals(v.extensionLength(), -1, "extn length should not be set.");
+		assertEquals(v.headerLength(), 12, "incorrect header length");
+		assertEquals(v.offset(), 2, "incorrect offset");
+		assertEquals(v.payloadOffset(), 14, "incorrect payload offset");
+		assertEquals(v.payloadLength(), 4, "payload should be 4 bytes.");
+		assertEquals(v.packetLength(), 16, "packet length should be 16 bytes.");
+
+		final byte[] payload = new byte[5];
+		assertEquals(v.copyPayload(payload, 1), 4, "incorrect copy length");
+		assertEquals(payload, new byte[] { 0x00, 0x40, 0x41, 0x42, 0x43 }, "invalid payload data");
+
+		final RTPPacket p = v.toPacket();
+		assertEquals(p.sequenceNumber(), 257, "incorrect packet seq. no");
+		assertEquals(p.asByteArray(), v.asByteArray(), "incorrect packet data");
+	}
+
+
+	public void testCanViewPacketWithCsrcsExtensionAndPadding()
+	{
+		final RTPPacket p = RTPPacket.builder()
+				.withRequiredHeaderFields(96, 5, 6, 7)
+				.withCsrcIdentifiers(0xFFFFFFFFL, 2)
+				.withHeaderExtension(0xBEDE, new byte[] { 0x01, 0x02, 0x03, 0x04 })
+				.withPayload(new byte[] { 0x10, 0x11, 0x12 }, 4)
+				.build();
+
+		final RTPPacketView v = new RTPPacketView().wrap(ByteBuffer.wrap(p.asByteArray()), 0, p.packetLength());
+
+		assertEquals(v.csrcCount(), 2, "incorrect csrc count");
+		assertEquals(v.csrcIdentifier(0), 0xFFFFFFFFL, "incorrect csrc");
+		assertEquals(v.csrcIdentifier(1), 2, "incorrect csrc");
+		assertTrue(v.hasExtension(), "should have extension");
+		assertEquals(v.extensionProfile(), 0xBEDE, "incorrect extension profile");
+		assertEquals(v.extensionLength(), 4, "incorrect extension length");
+		assertEquals(v.headerLength(), 12 + 8 + 8, "incorrect header length");
+		assertEquals(v.isPadded(), p.isPadded(), "incorrect padding");
+		assertEquals(v.paddedBytesCount(), p.paddedBytesCount(), "incorrect padding");
+		assertEquals(v.payloadLength(), 3, "incorrect payload length");
+
+		try
+		{
+			v.csrcIdentifier(2);
+			fail("Expected error");
+		}
+		catch (IndexOutOfBoundsException e)
+		{
+			assertEquals(e.getMessage(), "Invalid csrc index 2", "wrong validation message");
+		}
+	}
+
+
+	public void testCanReuseViewAcrossPackets()
+	{
+		final ByteBuffer bb = ByteBuffer.allocateDirect(64);
+		RTPPacket.builder().withRequiredHeaderFields(0, 1, 0, 9).withPayload(new byte[] { 0x01 }).build().writeTo(bb);
+		RTPPacket.builder().withRequiredHeaderFields(0, 2, 0, 9).withPayload(new byte[] { 0x01 }).build().writeTo(bb);
+
+		final RTPPacketView v = new RTPPacketView();
+		assertEquals(v.wrap(bb, 0, 13).sequenceNumber(), 1, "incorrect seq. no");
+		assertEquals(v.wrap(bb, 13, 13).sequenceNumber(), 2, "incorrect seq. no");
+	}
+
+
+	public void testCorrectlyValidatesPacketData()
+	{
+		final RTPPacketView v = new RTPPacketView();
+		try
+		{
+			v.wrap(null, 0, 0);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "packet data cannot be null", "wrong validation message");
+		}
+		try
+		{
+			v.wrap(ByteBuffer.allocate(12), 0, 13);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Invalid packet region, offset 0 and length 13", "wrong validation message");
+		}
+		try
+		{
+			v.wrap(ByteBuffer.allocate(12), 0, 12);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Packet too short, expecting at least 13 bytes, but found 12", "wrong validation message");
+		}
+		try
+		{
+			v.wrap(ByteBuffer.allocate(13), 0, 13);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Invalid version number found, expecting 2", "wrong validation message");
+		}
+		try
+		{
+			final byte[] data = new byte[16];
+			data[0] = (byte)0x81;
+			v.wrap(ByteBuffer.wrap(data), 0, 16);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Packet too short, expecting at least 17 bytes, but found 16", "wrong validation message");
+		}
+		try
+		{
+			final byte[] data = new byte[20];
+			data[0] = (byte)0x90;
+			data[15] = 0x08;
+			v.wrap(ByteBuffer.wrap(data), 0, 20);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Packet too short, expecting at least 25 bytes, but found 20", "wrong validation message");
+		}
+		try
+		{
+			final byte[] data = new byte[16];
+			data[0] = (byte)0xA0;
+			data[15] = 0x08;
+			v.wrap(ByteBuffer.wrap(data), 0, 16);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Packet too short, expecting at least 20 bytes, but found 16", "wrong validation message");
+		}
+	}
+
+}
@@ -0,0 +1,170 @@
+package org.vidtec.rfc3550.rtp.io;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+import org.testng.annotations.Test;
+import org.vidtec.rfc3550.rtp.RTPHeaderTemplate;
+import org.vidtec.rfc3550.rtp.RTPPacket;
+
+@Test
+public class RTPPacketBatchTest
+{
+
+	public void testCanEncodePacketsContiguously()
+	{
+		final RTPPacketBatch batch = RTPPacketBatch.allocate(64, 4);
+		assertTrue(batch.isEmpty(), "batch should be empty");
+
+		final RTPPacket p1 = RTPPacket.builder().withRequiredHeaderFields(0, 1, 160, 5).withPayload(new byte[] { 0x01, 0x02 }).build();
+		final RTPPacket p2 = RTPPacket.builder().withRequiredHeaderFields(0, 2, 320, 5).withPayload(new byte[] { 0x03 }).build();
+
+		assertTrue(batch.add(p1), "packet should be added");
+		assertTrue(batch.add(p2), "packet should be added");
+
+		assertEquals(batch.size(), 2, "incorrect packet count");
+		assertEquals(batch.pending(), 2, "incorrect pending count");
+		assertEquals(batch.offset(0), 0, "incorrect offset");
+		assertEquals(batch.length(0), 14, "incorrect length");
+		assertEquals(batch.offset(1), 14, "incorrect offset");
+		assertEquals(batch.length(1), 13, "incorrect length");
+		assertEquals(batch.byteLength(), 27, "incorrect byte length");
+		assertEquals(batch.remaining(), 64 - 27, "incorrect remaining");
+
+		final ByteBuffer bb = batch.buffer();
+		final byte[] data = new byte[bb.remaining()];
+		bb.get(data);
+
+		final byte[] expected = new byte[27];
+		System.arraycopy(p1.asByteArray(), 0, expected, 0, 14);
+		System.arraycopy(p2.asByteArray(), 0, expected, 14, 13);
+		assertEquals(data, expected, "incorrect batch data");
+	}
+
+
+	public void testCanEncodeTemplatedPayloadSlices()
+	{
+		final RTPHeaderTemplate t = RTPHeaderTemplate.builder().withRequiredHeaderFields(96, 100, 9000, 7).build();
+		final byte[] frame = { 0x01, 0x02, 0x03, 0x04, 0x05 };
+
+		final RTPPacketBatch batch = RTPPacketBatch.allocate(1500, 8);
+		assertTrue(batch.add(t, frame, 0, 3, false), "packet should be added");
+		assertTrue(batch.add(t, frame, 3, 2, true), "packet should be added");
+
+		assertEquals(batch.size(), 2, "incorrect packet count");
+		assertEquals(batch.length(0), 15, "incorrect length");
+		assertEquals(batch.length(1), 14, "incorrect length");
+		assertEquals(t.sequenceNumber(), 102, "template should advance");
+	}
+
+
+	public void testCorrectlyRejectsPacketsWhenFull()
+	{
+		final RTPPacket p = RTPPacket.builder().withRequiredHeaderFields(0, 1, 160, 5).withPayload(new byte[] { 0x01 }).build();
+
+		RTPPacketBatch batch = RTPPacketBatch.allocate(20, 4);
+		assertTrue(batch.add(p), "packet should be added");
+		assertTrue(!batch.add(p), "packet should not fit");
+		assertEquals(batch.size(), 1, "incorrect packet count");
+
+		batch = RTPPacketBatch.allocate(1500, 1);
+		assertTrue(batch.add(p), "packet should be added");
+		assertTrue(!batch.add(p), "table should be full");
+
+		final RTPHeaderTemplate t = RTPHeaderTemplate.builder().withRequiredHeaderFields(0, 0, 0, 5).build();
+		assertTrue(!batch.add(t, new byte[] { 0x01 }, 0, 1, false), "table should be full");
+		assertEquals(t.sequenceNumber(), 0, "template should not advance");
+
+		batch.clear();
+		assertTrue(batch.isEmpty(), "batch should be empty");
+		assertTrue(batch.add(p), "packet should be added");
+	}
+
+
+	public void testCorrectlyValidatesBatchData()
+	{
+		try
+		{
+			RTPPacketBatch.allocate(0, 1);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid capacity not 0", "wrong validation message");
+		}
+		try
+		{
+			RTPPacketBatch.allocate(10, 0);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid max packets not 0", "wrong validation message");
+		}
+
+		final RTPPacketBatch batch = RTPPacketBatch.allocate(100, 1);
+		try
+		{
+			batch.add(null);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "packet cannot be null", "wrong validation message");
+		}
+		try
+		{
+			batch.length(0);
+			fail("Expected error");
+		}
+		catch (IndexOutOfBoundsException e)
+		{
+			assertEquals(e.getMessage(), "Invalid packet index 0, batch has 0 packets", "wrong validation message");
+		}
+	}
+
+
+	public void testCanSendBatchOverChannel() throws IOException
+	{
+		try (DatagramChannel receiver = DatagramChannel.open();
+			 DatagramChannel sender = DatagramChannel.open())
+		{
+			receiver.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+
+			final RTPHeaderTemplate t = RTPHeaderTemplate.builder().withRequiredHeaderFields(96, 1, 9000, 7).build();
+			final RTPPacketBatch batch = RTPPacketBatch.allocate(1500, 8);
+			for (int i = 0 ; i < 3 ; i++)
+			{
+				batch.add(t, new byte[] { (byte)i }, 0, 1, i == 2);
+			}
+
+			assertEquals(batch.sendTo(sender, receiver.getLocalAddress()), 3, "incorrect sent count");
+			assertEquals(batch.pending(), 0, "incorrect pending count");
+			assertEquals(batch.sendTo(sender, receiver.getLocalAddress()), 0, "nothing should be left to send");
+
+			final ByteBuffer bb = ByteBuffer.allocate(1500);
+			for (int i = 0 ; i < 3 ; i++)
+			{
+				bb.clear();
+				receiver.receive(bb);
+				bb.flip();
+
+				final byte[] data = new byte[bb.remaining()];
+				bb.get(data);
+
+				final RTPPacket p = RTPPacket.fromByteArray(data);
+				assertEquals(p.sequenceNumber(), 1 + i, "incorrect seq. no");
+				assertEquals(p.payloadAsByteArray(), new byte[] { (byte)i }, "incorrect payload");
+				assertEquals(p.hasMarker(), i == 2, "incorrect marker");
+			}
+		}
+	}
+
+}
@@ -0,0 +1,156 @@
+package org.vidtec.rfc3550.rtp.io;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+
+import org.testng.annotations.Test;
+import org.vidtec.rfc3550.rtp.RTPPacket;
+import org.vidtec.rfc3550.rtp.RTPPacketView;
+
+@Test
+public class RTPPacketRingTest
+{
+
+	public void testCanDrainChannelIntoRing() throws IOException
+	{
+		try (DatagramChannel receiver = DatagramChannel.open();
+			 DatagramChannel sender = DatagramChannel.open();
+			 Selector selector = Selector.open())
+		{
+			receiver.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+			receiver.configureBlocking(false);
+			receiver.register(selector, SelectionKey.OP_READ);
+			sender.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+
+			for (int i = 0 ; i < 5 ; i++)
+			{
+				final RTPPacket p = RTPPacket.builder().withRequiredHeaderFields(0, 100 + i, 160 * i, 9).withPayload(new byte[] { (byte)i }).build();
+				sender.send(ByteBuffer.wrap(p.asByteArray()), receiver.getLocalAddress());
+			}
+
+			final RTPPacketRing ring = RTPPacketRing.allocate(4, 1500);
+			assertEquals(ring.capacity(), 4, "incorrect capacity");
+			assertEquals(ring.slotSize(), 1500, "incorrect slot size");
+			assertTrue(ring.isEmpty(), "ring should be empty");
+
+			int received = 0;
+			while (received < 4 && selector.select(1000) > 0)
+			{
+				selector.selectedKeys().clear();
+				received += ring.receive(receiver);
+			}
+
+			assertEquals(received, 4, "incorrect received count");
+			assertTrue(ring.isFull(), "ring should be full");
+			assertEquals(ring.receive(receiver), 0, "ring has no free slots");
+
+			final RTPPacketView v = new RTPPacketView();
+			for (int i = 0 ; i < 4 ; i++)
+			{
+				assertEquals(ring.length(i), 13, "incorrect length");
+				assertEquals(ring.source(i), sender.getLocalAddress(), "incorrect source");
+				assertEquals(ring.view(i, v).sequenceNumber(), 100 + i, "incorrect seq. no");
+			}
+
+			ring.release(3);
+			assertEquals(ring.size(), 1, "incorrect size after release");
+			assertEquals(ring.view(0, v).sequenceNumber(), 103, "incorrect seq. no");
+
+			// Wrap around the end of the ring.
+			while (ring.size() < 2 && selector.select(1000) > 0)
+			{
+				selector.selectedKeys().clear();
+				ring.receive(receiver);
+			}
+			assertEquals(ring.size(), 2, "incorrect size after wrap");
+			assertEquals(ring.view(1, v).sequenceNumber(), 104, "incorrect seq. no");
+			assertEquals(ring.view(1, v).toPacket().payloadAsByteArray(), new byte[] { 0x04 }, "incorrect payload");
+
+			ring.clear();
+			assertTrue(ring.isEmpty(), "ring should be empty");
+		}
+	}
+
+
+	public void testCanDrainConnectedChannelIntoRing() throws IOException
+	{
+		try (DatagramChannel receiver = DatagramChannel.open();
+			 DatagramChannel sender = DatagramChannel.open())
+		{
+			receiver.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+			sender.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+			receiver.connect(sender.getLocalAddress());
+
+			final RTPPacket p = RTPPacket.builder().withRequiredHeaderFields(0, 7, 0, 9).withPayload(new byte[] { 0x01 }).build();
+			sender.send(ByteBuffer.wrap(p.asByteArray()), receiver.getLocalAddress());
+
+			// Blocking channels receive one datagram per call.
+			final RTPPacketRing ring = RTPPacketRing.allocate(4, 1500);
+			assertEquals(ring.receive(receiver), 1, "incorrect received count");
+			assertEquals(ring.source(0), sender.getLocalAddress(), "incorrect source");
+			assertEquals(ring.view(0, new RTPPacketView()).sequenceNumber(), 7, "incorrect seq. no");
+		}
+	}
+
+
+	public void testCorrectlyValidatesRingData()
+	{
+		try
+		{
+			RTPPacketRing.allocate(0, 1500);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid slot count not 0", "wrong validation message");
+		}
+		try
+		{
+			RTPPacketRing.allocate(1, 12);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid slot size not 12", "wrong validation message");
+		}
+
+		final RTPPacketRing ring = RTPPacketRing.allocate(2, 100);
+		try
+		{
+			ring.length(0);
+			fail("Expected error");
+		}
+		catch (IndexOutOfBoundsException e)
+		{
+			assertEquals(e.getMessage(), "Invalid datagram index 0, ring holds 0", "wrong validation message");
+		}
+		try
+		{
+			ring.release(1);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Cannot release 1 datagrams, ring holds 0", "wrong validation message");
+		}
+		try
+		{
+			ring.receive(null);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException | IOException e)
+		{
+			assertEquals(e.getMessage(), "channel cannot be null", "wrong validation message");
+		}
+	}
+
+}
@@ -0,0 +1,215 @@
+package org.vidtec.rfc3550.rtp.recovery;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import org.testng.annotations.Test;
+import org.vidtec.rfc3550.rtcp.types.feedback.TransportFeedbackRTCPPacket;
+import org.vidtec.rfc3550.rtp.RTPPacket;
+
+@Test
+public class LossDetectorTest
+{
+
+	public void testCanDetectGapsAndBuildNack()
+	{
+		final LossDetector d = LossDetector.builder().withReorderDelay(0).build();
+		final NackBatch batch = d.newBatch();
+
+		assertTrue(!d.received(RTPPacket.builder().withRequiredHeaderFields(0, 100, 0, 1).withPayload(new byte[] { 0x01 }).build(), 0), "should not be missing");
+		d.received(101, 0);
+		d.received(104, 0);
+		d.received(106, 0);
+
+		assertEquals(d.missingCount(), 3, "incorrect missing count");
+		assertEquals(d.highestSequenceNumber(), 0x10000 + 106, "incorrect highest seq. no");
+
+		assertEquals(d.poll(0, batch), 3, "incorrect nack count");
+		assertEquals(batch.size(), 3, "incorrect batch size");
+		assertEquals(batch.sequenceNumbers(), new int[] { 102, 103, 105 }, "incorrect nack sequence numbers");
+
+		final TransportFeedbackRTCPPacket nack = batch.toGenericNack(9, 1);
+		assertEquals(nack.nackCount(), 1, "should pack into one entry");
+		assertEquals(nack.lostSequenceNumbers(), new int[] { 102, 103, 105 }, "incorrect nack sequence numbers");
+	}
+
+
+	public void testCorrectlyHandlesRetriesAndRecovery()
+	{
+		final LossDetector d = LossDetector.builder().withReorderDelay(20).withInitialRtt(50).withMaxRetries(2).build();
+		final NackBatch batch = d.newBatch();
+
+		d.received(10, 0);
+		d.received(13, 0);
+
+		// Not yet past the reorder delay.
+		assertEquals(d.poll(10, batch), 0, "should wait for reordering");
+		assertTrue(batch.isEmpty(), "batch should be empty");
+
+		assertEquals(d.poll(20, batch), 2, "incorrect nack count");
+
+		// Waits an rtt before asking again.
+		assertEquals(d.poll(60, batch), 0, "should wait for rtt");
+
+		assertTrue(d.received(11, 65), "packet should be recovered");
+		assertTrue(!d.received(11, 65), "duplicate should not be recovered again");
+		assertEquals(d.recoveredCount(), 1, "incorrect recovered count");
+
+		assertEquals(d.poll(70, batch), 1, "incorrect nack count");
+		assertEquals(batch.sequenceNumbers(), new int[] { 12 }, "incorrect nack sequence numbers");
+
+		d.updateRtt(10);
+		assertEquals(d.poll(120, batch), 0, "should give up after max retries");
+		assertEquals(d.abandonedCount(), 1, "incorrect abandoned count");
+		assertEquals(d.missingCount(), 0, "incorrect missing count");
+	}
+
+
+	public void testCorrectlyHandlesWraparound()
+	{
+		final LossDetector d = LossDetector.builder().withReorderDelay(0).build();
+		final NackBatch batch = d.newBatch();
+
+		d.received(0xFFFD, 0);
+		d.received(0x0001, 0);
+
+		assertEquals(d.highestSequenceNumber(), 0x20001, "incorrect highest seq. no");
+		assertEquals(d.poll(0, batch), 3, "incorrect nack count");
+		assertEquals(batch.sequenceNumbers(), new int[] { 0xFFFE, 0xFFFF, 0x0000 }, "incorrect nack sequence numbers");
+
+		// Old packets from before the wrap are still late arrivals.
+		assertTrue(d.received(0xFFFF, 0), "packet should be recovered");
+	}
+
+
+	public void testCorrectlyAbandonsPacketsLeavingTheWindow()
+	{
+		final LossDetector d = LossDetector.builder().withWindow(64).withReorderDelay(0).build();
+		final NackBatch batch = d.newBatch();
+
+		d.received(0, 0);
+		d.received(2, 0);
+		assertEquals(d.missingCount(), 1, "incorrect missing count");
+
+		// Slot for 1 is re-used by 65.
+		d.received(65, 0);
+		assertEquals(d.abandonedCount(), 1, "incorrect abandoned count");
+		assertEquals(d.missingCount(), 62, "incorrect missing count");
+
+		// Jump beyond the window, ignored until confirmed by the next packet, then no gap is marked.
+		d.received(1000, 0);
+		assertEquals(d.highestSequenceNumber(), 0x10000 + 65, "jump should be ignored");
+		assertEquals(d.missingCount(), 62, "incorrect missing count");
+		d.received(1001, 0);
+		assertEquals(d.highestSequenceNumber(), 0x10000 + 1001, "should resynchronize");
+		assertEquals(d.abandonedCount(), 63, "incorrect abandoned count");
+		assertEquals(d.missingCount(), 0, "incorrect missing count");
+		assertEquals(d.poll(0, batch), 0, "incorrect nack count");
+
+		// Too old to track.
+		assertTrue(!d.received(950, 0), "packet should be too old");
+	}
+
+
+	public void testResynchronizesAfterRestart()
+	{
+		final LossDetector d = LossDetector.builder().withReorderDelay(0).build();
+		final NackBatch batch = d.newBatch();
+		d.received(100, 0);
+		d.received(102, 0);
+
+		// A single stray packet does not move the window.
+		assertTrue(!d.received(20000, 0), "packet should be ignored");
+		d.received(103, 0);
+		assertEquals(d.highestSequenceNumber(), 0x10000 + 103, "stray packet should be ignored");
+		assertEquals(d.missingCount(), 1, "incorrect missing count");
+
+		// Forward restart.
+		d.received(30000, 0);
+		d.received(30001, 0);
+		assertEquals(d.highestSequenceNumber(), 0x10000 + 30001, "should resynchronize");
+		assertEquals(d.missingCount(), 0, "no gap should be marked");
+		assertEquals(d.abandonedCount(), 1, "incorrect abandoned count");
+		d.received(30003, 0);
+		assertEquals(d.poll(0, batch), 1, "incorrect nack count");
+		assertEquals(batch.sequenceNumbers(), new int[] { 30002 }, "incorrect nack sequence numbers");
+
+		// Backward restart, more than 32767 behind.
+		d.received(10, 0);
+		assertEquals(d.highestSequenceNumber(), 0x10000 + 30003, "jump should be ignored");
+		d.received(11, 0);
+		assertEquals(d.highestSequenceNumber(), 0x20000 + 11, "should resynchronize");
+		assertEquals(d.missingCount(), 0, "no gap should be marked");
+		d.received(13, 0);
+		assertEquals(d.poll(100, batch), 1, "incorrect nack count");
+		assertEquals(batch.sequenceNumbers(), new int[] { 12 }, "incorrect nack sequence numbers");
+		assertTrue(d.received(12, 100), "packet should be recovered");
+
+		// Backward restart, less than 32768 behind.
+		d.received(0xF000, 0);
+		d.received(0xF001, 0);
+		assertEquals(d.highestSequenceNumber(), 0x20000 + 0xF001, "should resynchronize");
+		assertEquals(d.missingCount(), 0, "no gap should be marked");
+	}
+
+
+	public void testCorrectlyValidatesDetectorData()
+	{
+		try
+		{
+			LossDetector.builder().withWindow(100).build();
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid window size not 100", "wrong validation message");
+		}
+		try
+		{
+			LossDetector.builder().withMaxRetries(0).build();
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid max retries not 0", "wrong validation message");
+		}
+		try
+		{
+			LossDetector.builder().withReorderDelay(-1).build();
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid reorder delay not -1", "wrong validation message");
+		}
+		try
+		{
+			LossDetector.builder().build().updateRtt(0);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid rtt not 0", "wrong validation message");
+		}
+		try
+		{
+			LossDetector.builder().withWindow(1024).build().poll(0, LossDetector.builder().withWindow(512).build().newBatch());
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected batch covering at least 1024 packets", "wrong validation message");
+		}
+		try
+		{
+			LossDetector.builder().build().received(null, 0);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "packet cannot be null", "wrong validation message");
+		}
+	}
+
+}
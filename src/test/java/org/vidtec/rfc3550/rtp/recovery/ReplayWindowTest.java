@@ -0,0 +1,102 @@
+package org.vidtec.rfc3550.rtp.recovery;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+import org.testng.annotations.Test;
+import org.vidtec.rfc3550.rtp.RTPPacket;
+import org.vidtec.rfc3550.rtp.recovery.ReplayWindow.Verdict;
+
+@Test
+public class ReplayWindowTest
+{
+
+	public void testCanClassifyPackets()
+	{
+		final ReplayWindow w = ReplayWindow.ofSize(64);
+		assertEquals(w.size(), 64, "incorrect size");
+		assertEquals(w.highestSequenceNumber(), -1, "incorrect highest");
+
+		assertEquals(w.accept(RTPPacket.builder().withRequiredHeaderFields(0, 100, 0, 1).withPayload(new byte[] { 0x01 }).build()), Verdict.NEW, "should be new");
+		assertEquals(w.accept(100), Verdict.DUPLICATE, "should be duplicate");
+		assertEquals(w.accept(102), Verdict.NEW, "should be new");
+		assertEquals(w.accept(101), Verdict.NEW, "late packet should be new");
+		assertEquals(w.accept(101), Verdict.DUPLICATE, "should be duplicate");
+
+		assertEquals(w.check(39), Verdict.NEW, "edge of window should be new");
+		assertEquals(w.check(38), Verdict.TOO_OLD, "should be too old");
+		assertEquals(w.accept(38), Verdict.TOO_OLD, "should be too old");
+
+		assertEquals(w.highestSequenceNumber(), 102, "incorrect highest");
+		assertEquals(w.duplicateCount(), 2, "incorrect duplicate count");
+		assertEquals(w.tooOldCount(), 1, "incorrect too old count");
+	}
+
+
+	public void testCanSlideLargeWindowAcrossWords()
+	{
+		final ReplayWindow w = ReplayWindow.ofSize(128);
+
+		w.accept(1000);
+		w.accept(1001);
+		w.accept(1070);
+
+		// 1000 and 1001 are now in the upper word.
+		assertEquals(w.check(1000), Verdict.DUPLICATE, "should be duplicate");
+		assertEquals(w.check(1001), Verdict.DUPLICATE, "should be duplicate");
+		assertEquals(w.check(1002), Verdict.NEW, "should be new");
+
+		w.accept(1127);
+		assertEquals(w.check(1000), Verdict.DUPLICATE, "should be duplicate");
+		assertEquals(w.check(1070), Verdict.DUPLICATE, "should be duplicate");
+
+		w.accept(1128);
+		assertEquals(w.check(1000), Verdict.TOO_OLD, "should be too old");
+		assertEquals(w.check(1001), Verdict.DUPLICATE, "should be duplicate");
+
+		w.accept(1300);
+		assertEquals(w.check(1127), Verdict.TOO_OLD, "should be too old");
+		assertEquals(w.check(1299), Verdict.NEW, "should be new");
+		assertEquals(w.check(1300), Verdict.DUPLICATE, "should be duplicate");
+	}
+
+
+	public void testCorrectlyHandlesWraparound()
+	{
+		final ReplayWindow w = ReplayWindow.ofSize(64);
+
+		w.accept(0xFFFE);
+		assertEquals(w.accept(0x0001), Verdict.NEW, "should be new after wrap");
+		assertEquals(w.accept(0xFFFF), Verdict.NEW, "late packet should be new");
+		assertEquals(w.accept(0xFFFE), Verdict.DUPLICATE, "should be duplicate");
+		assertEquals(w.accept(0x0000), Verdict.NEW, "late packet should be new");
+		assertEquals(w.highestSequenceNumber(), 1, "incorrect highest");
+
+		w.reset();
+		assertEquals(w.accept(0x0001), Verdict.NEW, "should be new after reset");
+	}
+
+
+	public void testCorrectlyValidatesWindowData()
+	{
+		try
+		{
+			ReplayWindow.ofSize(32);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid window size (64 or 128) not 32", "wrong validation message");
+		}
+		try
+		{
+			ReplayWindow.ofSize(64).accept(null);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "packet cannot be null", "wrong validation message");
+		}
+	}
+
+}
@@ -0,0 +1,168 @@
+package org.vidtec.rfc3550.rtp.recovery;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.nio.ByteBuffer;
+
+import org.testng.annotations.Test;
+import org.vidtec.rfc3550.rtp.RTPPacket;
+import org.vidtec.rfc3550.rtp.RTPPacketView;
+
+@Test
+public class RetransmissionCacheTest
+{
+
+	private static RTPPacket packet(final long ssrc, final int seq, final int payload)
+	{
+		return RTPPacket.builder().withRequiredHeaderFields(96, seq, 0, ssrc).withPayload(new byte[] { (byte)payload }).build();
+	}
+
+
+	public void testCanRetrievePacketsBySsrcAndSequence()
+	{
+		final RetransmissionCache cache = RetransmissionCache.builder().withHistory(100, 1000).build();
+		assertEquals(cache.packetsPerStream(), 128, "packet count should round up");
+
+		// Same sequence numbers on two streams must not collide.
+		assertTrue(cache.put(packet(1, 10, 0x11), 0), "packet should be cached");
+		assertTrue(cache.put(packet(2, 10, 0x22), 0), "packet should be cached");
+		assertEquals(cache.size(), 2, "incorrect size");
+		assertEquals(cache.streamCount(), 2, "incorrect stream count");
+
+		assertEquals(cache.get(1, 10, 0).payloadAsByteArray(), new byte[] { 0x11 }, "incorrect packet");
+		assertEquals(cache.get(2, 10, 0).payloadAsByteArray(), new byte[] { 0x22 }, "incorrect packet");
+		assertNull(cache.get(3, 10, 0), "unknown ssrc should miss");
+		assertNull(cache.get(1, 11, 0), "unknown seq. no should miss");
+
+		final RTPPacketView v = cache.view(2, 10, 0, new RTPPacketView());
+		assertEquals(v.ssrcIdentifier(), 2, "incorrect view");
+
+		final ByteBuffer bb = ByteBuffer.allocate(1500);
+		assertEquals(cache.copyTo(1, 10, 0, bb), 13, "incorrect copy length");
+		assertEquals(cache.copyTo(1, 11, 0, bb), -1, "unknown seq. no should miss");
+	}
+
+
+	public void testCorrectlyEvictsBySlotReuse()
+	{
+		final RetransmissionCache cache = RetransmissionCache.builder().withHistory(4, 1000).build();
+
+		for (int seq = 0xFFFE ; seq < 0xFFFE + 6 ; seq++)
+		{
+			cache.put(packet(1, seq & 0xFFFF, seq), 0);
+		}
+
+		assertEquals(cache.size(), 4, "incorrect size");
+		assertTrue(!cache.contains(1, 0xFFFE, 0), "packet should have been evicted");
+		assertTrue(!cache.contains(1, 0xFFFF, 0), "packet should have been evicted");
+		assertTrue(cache.contains(1, 0, 0), "packet should be cached");
+		assertTrue(cache.contains(1, 3, 0), "packet should be cached");
+
+		assertTrue(cache.put(new RTPPacketView().wrap(ByteBuffer.wrap(packet(1, 4, 0).asByteArray()), 0, 13), 0), "packet should be cached");
+		assertTrue(!cache.contains(1, 0, 0), "packet should have been evicted");
+		assertTrue(cache.contains(1, 4, 0), "packet should be cached");
+	}
+
+
+	public void testCorrectlyEvictsByAge()
+	{
+		final RetransmissionCache cache = RetransmissionCache.builder().withHistory(16, 100).build();
+		cache.put(packet(1, 1, 0), 0);
+		cache.put(packet(1, 2, 0), 50);
+		cache.put(packet(2, 1, 0), 60);
+
+		assertTrue(cache.contains(1, 1, 100), "packet should be cached");
+		assertTrue(!cache.contains(1, 1, 101), "packet should have expired");
+		assertEquals(cache.size(), 2, "expired packet should be released");
+
+		assertEquals(cache.expire(155), 1, "incorrect expired count");
+		assertEquals(cache.size(), 1, "incorrect size");
+		assertTrue(cache.remove(2), "stream should be removed");
+		assertTrue(!cache.remove(2), "stream should already be removed");
+		assertEquals(cache.size(), 0, "incorrect size");
+	}
+
+
+	public void testBoundsAndReusesStreams()
+	{
+		final RetransmissionCache cache = RetransmissionCache.builder().withHistory(16, 1000).withMaxStreams(2).build();
+		assertEquals(cache.maxStreams(), 2, "incorrect max streams");
+		assertTrue(cache.put(packet(1, 1, 0), 0), "packet should be cached");
+		assertTrue(cache.put(packet(2, 1, 0), 0), "packet should be cached");
+		assertTrue(!cache.put(packet(3, 1, 0), 0), "stream should not be added");
+		assertEquals(cache.streamCount(), 2, "incorrect stream count");
+
+		// A removed stream's packets are released, and its memory re-used by the next stream.
+		assertTrue(cache.remove(1), "stream should be removed");
+		assertEquals(cache.size(), 1, "incorrect size");
+		assertTrue(cache.put(packet(3, 2, 0), 0), "packet should be cached");
+		assertTrue(!cache.contains(3, 1, 0), "removed stream's packet should not be visible");
+		assertTrue(!cache.contains(1, 1, 0), "removed stream should miss");
+		assertTrue(cache.contains(3, 2, 0), "packet should be cached");
+		assertEquals(cache.size(), 2, "incorrect size");
+	}
+
+
+	public void testCorrectlyRejectsLargePackets()
+	{
+		final RetransmissionCache cache = RetransmissionCache.builder().withMaxPacketSize(13).build();
+		assertTrue(cache.put(packet(1, 1, 0), 0), "packet should be cached");
+
+		final RTPPacket big = RTPPacket.builder().withRequiredHeaderFields(96, 2, 0, 1).withPayload(new byte[] { 0x01, 0x02 }).build();
+		assertTrue(!cache.put(big, 0), "packet should not be cached");
+	}
+
+
+	public void testCorrectlyValidatesCacheData()
+	{
+		try
+		{
+			RetransmissionCache.builder().withHistory(0, 100).build();
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid packet count not 0", "wrong validation message");
+		}
+		try
+		{
+			RetransmissionCache.builder().withHistory(10, 0).build();
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid max age not 0", "wrong validation message");
+		}
+		try
+		{
+			RetransmissionCache.builder().withMaxPacketSize(12).build();
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid max packet size not 12", "wrong validation message");
+		}
+		try
+		{
+			RetransmissionCache.builder().withMaxStreams(0).build();
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid stream count not 0", "wrong validation message");
+		}
+		try
+		{
+			RetransmissionCache.builder().build().put((RTPPacket)null, 0);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "packet cannot be null", "wrong validation message");
+		}
+	}
+
+}
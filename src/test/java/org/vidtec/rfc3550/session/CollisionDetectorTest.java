@@ -0,0 +1,177 @@
+package org.vidtec.rfc3550.session;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+
+import org.testng.annotations.Test;
+import org.vidtec.rfc3550.rtcp.types.sdes.Chunk;
+import org.vidtec.rfc3550.rtcp.types.sdes.SdesItem;
+import org.vidtec.rfc3550.rtp.RTPPacket;
+import org.vidtec.rfc3550.rtp.RTPPacketView;
+import org.vidtec.rfc3550.session.CollisionDetector.Verdict;
+
+@Test
+public class CollisionDetectorTest
+{
+
+	private static final long A = CollisionDetector.transportAddress(0x0A000001, 5004);
+	private static final long A_RTCP = CollisionDetector.transportAddress(0x0A000001, 5005);
+	private static final long B = CollisionDetector.transportAddress(0x0A000002, 5004);
+
+
+	public void testTracksRemoteSources()
+	{
+		final CollisionDetector d = CollisionDetector.builder().build();
+		assertEquals(d.data(1, A, 0), Verdict.NEW, "incorrect verdict");
+		assertEquals(d.data(1, A, 10), Verdict.VALID, "incorrect verdict");
+
+		// The first control packet gives the control address.
+		assertEquals(d.control(1, A_RTCP, "a@host", 20), Verdict.VALID, "incorrect verdict");
+		assertEquals(d.control(1, A_RTCP, null, 30), Verdict.VALID, "incorrect verdict");
+
+		assertEquals(d.data(1, B, 40), Verdict.THIRD_PARTY_LOOP, "incorrect verdict");
+		assertEquals(d.control(1, B, "a@host", 50), Verdict.THIRD_PARTY_LOOP, "incorrect verdict");
+		assertEquals(d.control(Chunk.builder().withSsrc(1).withItems(SdesItem.cname("b@host")).build(), B, 60), Verdict.THIRD_PARTY_COLLISION, "incorrect verdict");
+		assertTrue(!Verdict.THIRD_PARTY_COLLISION.isAccepted(), "should not be accepted");
+
+		assertEquals(d.count(Verdict.VALID), 3, "incorrect count");
+		assertEquals(d.count(Verdict.THIRD_PARTY_LOOP), 2, "incorrect count");
+		assertEquals(d.size(), 1, "incorrect size");
+
+		assertTrue(d.remove(1), "should be removed");
+		assertEquals(d.data(1, B, 70), Verdict.NEW, "incorrect verdict");
+	}
+
+
+	public void testDetectsLocalCollisionsAndLoops()
+	{
+		final CollisionDetector d = CollisionDetector.builder().withConflictTimeout(1000).build();
+		d.addLocal(7, "me@host");
+		assertTrue(d.isLocal(7), "should be local");
+
+		// Another participant has chosen the same ssrc.
+		assertEquals(d.data(7, A, 0), Verdict.OWN_COLLISION, "incorrect verdict");
+		assertTrue(!d.isLocal(7), "ssrc should now be remote");
+		assertEquals(d.data(7, A, 10), Verdict.VALID, "incorrect verdict");
+
+		// Packets from the local source on its new ssrc, looped back from the conflicting address.
+		d.addLocal(8, "me@host");
+		assertEquals(d.data(8, A, 20), Verdict.OWN_LOOP, "incorrect verdict");
+		assertEquals(d.control(Chunk.builder().withSsrc(8).withItems(SdesItem.cname("me@host")).build(), A, 30), Verdict.OWN_LOOP, "incorrect verdict");
+		assertTrue(d.isLocal(8), "should be local");
+
+		// The conflicting address is forgotten after the timeout.
+		assertEquals(d.data(8, A, 2000), Verdict.OWN_COLLISION, "incorrect verdict");
+
+		try
+		{
+			d.addLocal(8, "me@host");
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "ssrc is already in use 8", "wrong validation message");
+		}
+	}
+
+
+	public void testDetectsLocalSourceInCsrcs()
+	{
+		final CollisionDetector d = CollisionDetector.builder().build();
+		d.addLocal(7, null);
+
+		final RTPPacket p = RTPPacket.builder().withRequiredHeaderFields(96, 1, 0, 100).withCsrcIdentifiers(3, 7).withPayload(new byte[4]).build();
+		assertEquals(d.data(p, B, 0), Verdict.OWN_LOOP, "incorrect verdict");
+
+		final byte[] data = RTPPacket.builder().withRequiredHeaderFields(96, 1, 0, 100).withCsrcIdentifiers(3, 4).withPayload(new byte[4]).build().asByteArray();
+		assertEquals(d.data(new RTPPacketView().wrap(ByteBuffer.wrap(data), 0, data.length), B, 0), Verdict.VALID, "incorrect verdict");
+		assertEquals(d.data(new RTPPacketView().wrap(ByteBuffer.wrap(p.asByteArray()), 0, p.packetLength()), B, 0), Verdict.OWN_LOOP, "incorrect verdict");
+		assertEquals(d.count(Verdict.OWN_LOOP), 2, "incorrect count");
+	}
+
+
+	public void testCanHoldManySources()
+	{
+		final CollisionDetector d = CollisionDetector.builder().withCapacity(16).build();
+		for (long ssrc = 0 ; ssrc < 5000 ; ssrc++)
+		{
+			assertEquals(d.data(ssrc * 0x10001L, CollisionDetector.transportAddress((int)ssrc, 5004), 0), Verdict.NEW, "incorrect verdict");
+		}
+		for (long ssrc = 0 ; ssrc < 5000 ; ssrc += 2)
+		{
+			assertTrue(d.remove(ssrc * 0x10001L), "should be removed");
+		}
+		assertEquals(d.size(), 2500, "incorrect size");
+		for (long ssrc = 1 ; ssrc < 5000 ; ssrc += 2)
+		{
+			assertEquals(d.data(ssrc * 0x10001L, CollisionDetector.transportAddress((int)ssrc, 5004), 0), Verdict.VALID, "incorrect verdict");
+		}
+	}
+
+
+	public void testCanMakeTransportAddresses()
+	{
+		assertEquals(CollisionDetector.transportAddress(new InetSocketAddress("10.0.0.1", 5004)), A, "incorrect address");
+		final long v6 = CollisionDetector.transportAddress(new InetSocketAddress("::1", 5004));
+		assertTrue(v6 < 0, "IPv6 addresses should be marked");
+		assertTrue(v6 != CollisionDetector.transportAddress(new InetSocketAddress("::1", 5005)), "addresses should differ");
+		assertTrue(A != A_RTCP && A != B, "addresses should differ");
+
+		try
+		{
+			CollisionDetector.transportAddress(new byte[4], 1);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid IPv6 address", "wrong validation message");
+		}
+	}
+
+
+	public void testCorrectlyValidatesData()
+	{
+		try
+		{
+			CollisionDetector.builder().withCapacity(8).build();
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid capacity not 8", "wrong validation message");
+		}
+		try
+		{
+			CollisionDetector.builder().withConflictTimeout(0).build();
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid conflict timeout not 0", "wrong validation message");
+		}
+		final CollisionDetector d = CollisionDetector.builder().build();
+		try
+		{
+			d.data((RTPPacket)null, A, 0);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "packet cannot be null", "wrong validation message");
+		}
+		try
+		{
+			d.control((Chunk)null, A, 0);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "chunk cannot be null", "wrong validation message");
+		}
+	}
+
+}
@@ -0,0 +1,155 @@
+package org.vidtec.rfc3550.session;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.Test;
+import org.vidtec.rfc3550.rtcp.types.bye.ByeRTCPPacket;
+import org.vidtec.rfc3550.rtp.RTPPacket;
+
+@Test
+public class MemberTableTest
+{
+
+	public void testTracksMembersAndSenders()
+	{
+		final MemberTable t = MemberTable.builder().build();
+		assertTrue(t.control(1, 0), "should be a new member");
+		assertTrue(!t.control(1, 10), "should not be a new member");
+		assertTrue(t.data(RTPPacket.builder().withRequiredHeaderFields(96, 1, 0, 2).withPayload(new byte[4]).build(), 20), "should be a new member");
+		assertTrue(!t.data(1, 30), "should not be a new member");
+
+		assertEquals(t.members(), 2, "incorrect members");
+		assertEquals(t.senders(), 2, "incorrect senders");
+		assertTrue(t.isSender(1), "should be a sender");
+		assertEquals(t.lastActivity(1), 30, "incorrect activity");
+		assertEquals(t.lastActivity(3), -1, "should not be a member");
+
+		assertEquals(t.update(ByeRTCPPacket.builder().withSsrcs(2, 3).build()), 1, "incorrect removals");
+		assertTrue(!t.isMember(2), "should be removed");
+		assertEquals(t.members(), 1, "incorrect members");
+		assertEquals(t.senders(), 1, "incorrect senders");
+	}
+
+
+	public void testExpiresSilentMembersAndSenders()
+	{
+		final MemberTable t = MemberTable.builder().build();
+		t.data(1, 0);
+		t.data(2, 0);
+		t.control(3, 0);
+
+		// Source 1 keeps sending, 2 only sends reports.
+		t.data(1, 2500);
+		t.control(2, 2500);
+		final List<Long> expired = new ArrayList<>();
+		assertEquals(t.expire(2500, 1000, expired::add), 0, "incorrect removals");
+		assertTrue(!t.isSender(2), "should no longer be a sender");
+		assertTrue(t.isSender(1), "should be a sender");
+		assertEquals(t.senders(), 1, "incorrect senders");
+
+		assertEquals(t.expire(5001, 1000, expired::add), 1, "incorrect removals");
+		assertEquals(expired.size(), 1, "incorrect removals");
+		assertEquals(expired.get(0).longValue(), 3, "incorrect removal");
+		assertEquals(t.members(), 2, "incorrect members");
+
+		assertEquals(t.expire(7501, 1000, null), 2, "incorrect removals");
+		assertEquals(t.members(), 0, "incorrect members");
+		assertEquals(t.senders(), 0, "incorrect senders");
+		assertTrue(t.control(1, 8000), "should be a new member");
+	}
+
+
+	public void testSendersExpireAfterTwoTransmissionIntervals()
+	{
+		final MemberTable t = MemberTable.builder().build();
+		t.data(1, 0);
+
+		// Silent for 2.5s, within 2 Td but not within 2 T.
+		assertEquals(t.expire(2500, 1500, 1200, null), 0, "incorrect removals");
+		assertTrue(!t.isSender(1), "should no longer be a sender");
+		assertTrue(t.isMember(1), "should still be a member");
+
+		try
+		{
+			t.expire(0, 1000, 0, null);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid transmission interval not 0", "wrong validation message");
+		}
+	}
+
+
+	public void testCanHoldManyMembers()
+	{
+		final MemberTable t = MemberTable.builder().withCapacity(16).build();
+		for (long ssrc = 0 ; ssrc < 20000 ; ssrc++)
+		{
+			t.control(ssrc * 0x10001L, ssrc);
+		}
+		assertEquals(t.members(), 20000, "incorrect members");
+
+		for (long ssrc = 0 ; ssrc < 20000 ; ssrc += 2)
+		{
+			t.data(ssrc * 0x10001L, 20000 + ssrc);
+		}
+		assertEquals(t.senders(), 10000, "incorrect senders");
+
+		// Only the odd members, silent since their first report, time out.
+		assertEquals(t.expire(20000 + 5000, 1000, null), 10000, "incorrect removals");
+		assertEquals(t.members(), 10000, "incorrect members");
+		for (long ssrc = 0 ; ssrc < 20000 ; ssrc++)
+		{
+			assertEquals(t.isMember(ssrc * 0x10001L), ssrc % 2 == 0, "incorrect member");
+		}
+	}
+
+
+	public void testCorrectlyValidatesData()
+	{
+		try
+		{
+			MemberTable.builder().withCapacity(100).build();
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid capacity not 100", "wrong validation message");
+		}
+		final MemberTable t = MemberTable.builder().build();
+		try
+		{
+			t.expire(0, 0, null);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid interval not 0", "wrong validation message");
+		}
+		try
+		{
+			t.data(null, 0);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "packet cannot be null", "wrong validation message");
+		}
+		try
+		{
+			t.update(null);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "packet cannot be null", "wrong validation message");
+		}
+	}
+
+}
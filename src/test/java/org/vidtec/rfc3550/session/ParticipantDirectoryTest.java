@@ -0,0 +1,137 @@
+package org.vidtec.rfc3550.session;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import org.testng.annotations.Test;
+import org.vidtec.rfc3550.rtcp.types.bye.ByeRTCPPacket;
+import org.vidtec.rfc3550.rtcp.types.sdes.Chunk;
+import org.vidtec.rfc3550.rtcp.types.sdes.SdesItem;
+import org.vidtec.rfc3550.rtcp.types.sdes.SdesItem.ItemType;
+import org.vidtec.rfc3550.rtcp.types.sdes.SdesRTCPPacket;
+
+@Test
+public class ParticipantDirectoryTest
+{
+
+	public void testCanDescribeSources()
+	{
+		final ParticipantDirectory d = ParticipantDirectory.builder().build();
+		assertEquals(d.participant(1), null, "should have no participant");
+
+		assertEquals(d.update(sdes(1, SdesItem.cname("user@host"), SdesItem.name("User"))), 0, "should have no changes");
+		assertEquals(d.update(sdes(2, SdesItem.cname("user@host"))), 0, "should have no changes");
+		assertEquals(d.size(), 2, "incorrect size");
+		assertEquals(d.cnameCount(), 1, "incorrect cname count");
+
+		final Participant p1 = d.participant(1);
+		assertEquals(p1.ssrc(), 1, "incorrect ssrc");
+		assertEquals(p1.cname(), "user@host", "incorrect cname");
+		assertEquals(p1.value(ItemType.NAME), "User", "incorrect name");
+		assertEquals(p1.value(ItemType.EMAIL), null, "should have no email");
+		assertTrue(d.cname(2) == p1.cname(), "cname should be interned");
+
+		// Repeating the description (decoded from the wire) changes nothing.
+		d.update(SdesRTCPPacket.fromByteArray(sdes(1, SdesItem.cname("user@host"), SdesItem.name("User")).asByteArray()));
+		assertTrue(d.participant(1) == p1, "participant should be unchanged");
+
+		// Items not sent are retained.
+		d.update(sdes(1, SdesItem.cname("user@host"), SdesItem.note("away")));
+		assertEquals(d.participant(1).value(ItemType.NAME), "User", "incorrect name");
+		assertEquals(d.participant(1).value(ItemType.NOTE), "away", "incorrect note");
+		assertTrue(d.participant(1).cname() == p1.cname(), "cname should be interned");
+		assertEquals(d.cnameChanges(), 0, "should have no changes");
+	}
+
+
+	public void testDetectsCnameChanges()
+	{
+		final ParticipantDirectory d = ParticipantDirectory.builder().build();
+		d.update(sdes(1, SdesItem.cname("a@host")));
+		d.update(sdes(2, SdesItem.cname("a@host")));
+
+		assertEquals(d.update(sdes(1, SdesItem.cname("b@host"))), 1, "should have a change");
+		assertEquals(d.cnameChanges(), 1, "incorrect change count");
+		assertEquals(d.cname(1), "b@host", "incorrect cname");
+		assertEquals(d.cnameCount(), 2, "incorrect cname count");
+
+		assertEquals(d.update(ByeRTCPPacket.builder().withSsrcs(2, 3).build()), 1, "incorrect removals");
+		assertEquals(d.cnameCount(), 1, "unused cname should be released");
+		assertEquals(d.participant(2), null, "should be removed");
+		assertEquals(d.cname(1), "b@host", "incorrect cname");
+	}
+
+
+	public void testCanHoldManySources()
+	{
+		final ParticipantDirectory d = ParticipantDirectory.builder().withCapacity(16).build();
+		for (long ssrc = 0 ; ssrc < 5000 ; ssrc++)
+		{
+			d.update(Chunk.builder().withSsrc(ssrc * 0x10001L).withItems(SdesItem.cname("user" + (ssrc % 100))).build());
+		}
+		assertEquals(d.size(), 5000, "incorrect size");
+		assertEquals(d.cnameCount(), 100, "incorrect cname count");
+
+		for (long ssrc = 0 ; ssrc < 5000 ; ssrc += 2)
+		{
+			assertTrue(d.remove(ssrc * 0x10001L), "should be removed");
+		}
+		assertEquals(d.size(), 2500, "incorrect size");
+		assertEquals(d.cnameCount(), 50, "incorrect cname count");
+		for (long ssrc = 1 ; ssrc < 5000 ; ssrc += 2)
+		{
+			assertEquals(d.cname(ssrc * 0x10001L), "user" + (ssrc % 100), "incorrect cname");
+		}
+		assertTrue(!d.remove(0), "should not be held");
+	}
+
+
+	public void testCorrectlyValidatesData()
+	{
+		try
+		{
+			ParticipantDirectory.builder().withCapacity(24).build();
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "Expected valid capacity not 24", "wrong validation message");
+		}
+		final ParticipantDirectory d = ParticipantDirectory.builder().build();
+		try
+		{
+			d.update((SdesRTCPPacket)null);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "packet cannot be null", "wrong validation message");
+		}
+		try
+		{
+			d.update((Chunk)null);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "chunk cannot be null", "wrong validation message");
+		}
+		try
+		{
+			d.update((ByeRTCPPacket)null);
+			fail("Expected error");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals(e.getMessage(), "packet cannot be null", "wrong validation message");
+		}
+	}
+
+
+	private static SdesRTCPPacket sdes(final long ssrc, final SdesItem ... items)
+	{
+		return SdesRTCPPacket.builder().withChunks(Chunk.builder().withSsrc(ssrc).withItems(items).build()).build();
+	}
+
+}